@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authz;
+
+import org.apache.shiro.subject.PrincipalCollection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Static helper methods for checking many instance-level permissions against an {@link Authorizer Authorizer} at
+ * once.  Each method uses the authorizer's own bulk operation if it is a {@link BulkAuthorizer BulkAuthorizer}, or
+ * individual permission checks otherwise.
+ *
+ * @since 1.1
+ */
+public final class AuthorizerUtils {
+
+    private AuthorizerUtils() {
+    }
+
+    /**
+     * Returns the ids for which the subject is permitted {@code domain:action:id}, in the iteration order of the
+     * given collection.
+     *
+     * @param authorizer  the authorizer to check with.
+     * @param principals  the application-specific subject/user identifier.
+     * @param domain      the permission domain, e.g. {@code document}.
+     * @param action      the action to perform on each instance, e.g. {@code read}.
+     * @param instanceIds the ids of the instances to filter.
+     * @return the permitted ids, in the iteration order of {@code instanceIds}.
+     * @see BulkAuthorizer#filterPermitted(PrincipalCollection, String, String, Collection)
+     */
+    public static <T> List<T> filterPermitted(Authorizer authorizer, PrincipalCollection principals, String domain,
+                                              String action, Collection<T> instanceIds) {
+        if (instanceIds == null || instanceIds.isEmpty()) {
+            return new ArrayList<T>();
+        }
+        if (authorizer instanceof BulkAuthorizer) {
+            return ((BulkAuthorizer) authorizer).filterPermitted(principals, domain, action, instanceIds);
+        }
+        String prefix = domain + ":" + action + ":";
+        List<T> permitted = new ArrayList<T>();
+        for (T id : instanceIds) {
+            if (authorizer.isPermitted(principals, prefix + id)) {
+                permitted.add(id);
+            }
+        }
+        return permitted;
+    }
+}
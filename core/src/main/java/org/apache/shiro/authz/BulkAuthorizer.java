@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authz;
+
+import org.apache.shiro.subject.PrincipalCollection;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An {@link Authorizer Authorizer} that can check an instance-level permission for many instances in a single call.
+ * <p/>
+ * Code checking many instances against an arbitrary {@code Authorizer} should use
+ * {@link AuthorizerUtils AuthorizerUtils}, which uses this operation when the authorizer supports it and falls back
+ * to one {@link Authorizer#isPermitted(PrincipalCollection, String) isPermitted} call per instance otherwise.
+ *
+ * @since 1.1
+ */
+public interface BulkAuthorizer extends Authorizer {
+
+    /**
+     * Returns the subset of the given instance ids for which the corresponding Subject/user is permitted to perform
+     * the specified action in the specified domain, i.e. each id {@code id} for which
+     * {@link #isPermitted(PrincipalCollection, String) isPermitted(subjectPrincipal, domain + ":" + action + ":" + id)}
+     * would return {@code true}.  Ids are compared by their {@code toString()} value and are returned in the
+     * iteration order of the given collection.
+     *
+     * <p>This is primarily a performance-enhancing method for listing or exporting many instances at once:
+     * implementations can evaluate all ids against the subject's grants in a single pass instead of constructing and
+     * checking one permission per id.
+     *
+     * @param subjectPrincipal the application-specific subject/user identifier.
+     * @param domain           the permission domain, e.g. {@code document}.
+     * @param action           the action to perform on each instance, e.g. {@code read}.
+     * @param instanceIds      the ids of the instances to filter.
+     * @return the permitted ids, in the iteration order of {@code instanceIds}.
+     */
+    <T> List<T> filterPermitted(PrincipalCollection subjectPrincipal, String domain, String action,
+                                Collection<T> instanceIds);
+}
@@ -24,9 +24,13 @@ import org.apache.shiro.authz.permission.RolePermissionResolver;
 import org.apache.shiro.authz.permission.RolePermissionResolverAware;
 import org.apache.shiro.realm.Realm;
 import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.util.CollectionUtils;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 
 /**
@@ -35,7 +39,8 @@ import java.util.List;
  *
  * @since 0.2
  */
-public class ModularRealmAuthorizer implements Authorizer, PermissionResolverAware, RolePermissionResolverAware {
+public class ModularRealmAuthorizer implements BulkAuthorizer, PermissionResolverAware, RolePermissionResolverAware,
+        RoleHierarchyAware {
 
     /**
      * The realms to consult during any authorization check.
@@ -54,6 +59,12 @@ public class ModularRealmAuthorizer implements Authorizer, PermissionResolverAwa
      */
     protected RolePermissionResolver rolePermissionResolver;
 
+    /**
+     * A RoleHierarchy to be used by <em>all</em> configured realms.  Leave <code>null</code> if you wish
+     * to configure different hierarchies for different realms.
+     */
+    protected RoleHierarchy roleHierarchy;
+
     /**
      * Default no-argument constructor, does nothing.
      */
@@ -88,6 +99,7 @@ public class ModularRealmAuthorizer implements Authorizer, PermissionResolverAwa
         this.realms = realms;
         applyPermissionResolverToRealms();
         applyRolePermissionResolverToRealms();
+        applyRoleHierarchyToRealms();
     }
 
     /**
@@ -196,6 +208,53 @@ public class ModularRealmAuthorizer implements Authorizer, PermissionResolverAwa
     }
 
 
+    /**
+     * Returns the RoleHierarchy to be used on <em>all</em> configured realms, or <code>null</code> (the default)
+     * if all realm instances will each configure their own role hierarchy.
+     *
+     * @return the RoleHierarchy to be used on <em>all</em> configured realms, or <code>null</code> (the default)
+     *         if realm instances will each configure their own role hierarchy.
+     * @since 1.1
+     */
+    public RoleHierarchy getRoleHierarchy() {
+        return this.roleHierarchy;
+    }
+
+    /**
+     * Sets the specified {@link RoleHierarchy RoleHierarchy} on <em>all</em> of the wrapped realms that
+     * implement the {@link RoleHierarchyAware RoleHierarchyAware} interface.
+     *
+     * @param roleHierarchy the roleHierarchy to set on all of the wrapped realms that implement the
+     *                      {@link RoleHierarchyAware RoleHierarchyAware} interface.
+     * @since 1.1
+     */
+    public void setRoleHierarchy(RoleHierarchy roleHierarchy) {
+        this.roleHierarchy = roleHierarchy;
+        applyRoleHierarchyToRealms();
+    }
+
+    /**
+     * Sets the internal {@link #getRoleHierarchy} on any internal configured
+     * {@link #getRealms Realms} that implement the {@link RoleHierarchyAware RoleHierarchyAware} interface.
+     * <p/>
+     * This method is called after setting a roleHierarchy on this ModularRealmAuthorizer via the
+     * {@link #setRoleHierarchy(RoleHierarchy) setRoleHierarchy} method and after setting one or more realms via the
+     * {@link #setRealms setRealms} method.
+     *
+     * @since 1.1
+     */
+    protected void applyRoleHierarchyToRealms() {
+        RoleHierarchy hierarchy = getRoleHierarchy();
+        Collection<Realm> realms = getRealms();
+        if (hierarchy != null && realms != null && !realms.isEmpty()) {
+            for (Realm realm : realms) {
+                if (realm instanceof RoleHierarchyAware) {
+                    ((RoleHierarchyAware) realm).setRoleHierarchy(hierarchy);
+                }
+            }
+        }
+    }
+
     /**
      * Used by the {@link Authorizer Authorizer} implementation methods to ensure that the {@link #setRealms realms}
      * has been set.  The default implementation ensures the property is not null and not empty.
@@ -311,6 +370,49 @@ public class ModularRealmAuthorizer implements Authorizer, PermissionResolverAwa
         return true;
     }
 
+    /**
+     * Returns the ids permitted by <em>any</em> of the configured realms, in the iteration order of the given
+     * collection.  Realms that are {@link BulkAuthorizer BulkAuthorizer}s check all ids in one call, other realms are
+     * asked about each id {@link #isPermitted(PrincipalCollection, String) individually}.  Each realm is only
+     * consulted for the ids not already permitted by a previous realm.
+     */
+    public <T> List<T> filterPermitted(PrincipalCollection principals, String domain, String action,
+                                       Collection<T> instanceIds) {
+        assertRealmsConfigured();
+        if (CollectionUtils.isEmpty(instanceIds)) {
+            return new ArrayList<T>();
+        }
+        Collection<Realm> realms = getRealms();
+        if (realms.size() == 1) {
+            return AuthorizerUtils.filterPermitted(realms.iterator().next(), principals, domain, action, instanceIds);
+        }
+        Set<T> permitted = new HashSet<T>();
+        Collection<T> remaining = instanceIds;
+        for (Realm realm : realms) {
+            permitted.addAll(AuthorizerUtils.filterPermitted(realm, principals, domain, action, remaining));
+            if (permitted.size() >= instanceIds.size()) {
+                break;
+            }
+            List<T> unresolved = new ArrayList<T>(remaining.size());
+            for (T id : remaining) {
+                if (!permitted.contains(id)) {
+                    unresolved.add(id);
+                }
+            }
+            if (unresolved.isEmpty()) {
+                break;
+            }
+            remaining = unresolved;
+        }
+        List<T> result = new ArrayList<T>(permitted.size());
+        for (T id : instanceIds) {
+            if (permitted.contains(id)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
     /**
      * If !{@link #isPermitted(org.apache.shiro.subject.PrincipalCollection , String) isPermitted(permission)}, throws
      * an <code>UnauthorizedException</code> otherwise returns quietly.
@@ -378,9 +480,17 @@ public class ModularRealmAuthorizer implements Authorizer, PermissionResolverAwa
     /**
      * Calls {@link #hasRole(org.apache.shiro.subject.PrincipalCollection , String)} for each role name in the specified
      * collection and places the return value from each call at the respective location in the returned array.
+     * <p/>
+     * If only a single realm is configured, the check is delegated to that realm's
+     * {@link Realm#hasRoles(org.apache.shiro.subject.PrincipalCollection, java.util.List) hasRoles} method instead so
+     * it can evaluate all roles at once.
      */
     public boolean[] hasRoles(PrincipalCollection principals, List<String> roleIdentifiers) {
         assertRealmsConfigured();
+        Collection<Realm> realms = getRealms();
+        if (realms.size() == 1) {
+            return realms.iterator().next().hasRoles(principals, roleIdentifiers);
+        }
         if (roleIdentifiers != null && !roleIdentifiers.isEmpty()) {
             boolean[] hasRoles = new boolean[roleIdentifiers.size()];
             int i = 0;
@@ -397,9 +507,17 @@ public class ModularRealmAuthorizer implements Authorizer, PermissionResolverAwa
      * Returns <code>true</code> iff any of the configured realms'
      * {@link Realm#hasRole(org.apache.shiro.subject.PrincipalCollection , String)} call returns <code>true</code> for
      * <em>all</em> roles specified, <code>false</code> otherwise.
+     * <p/>
+     * If only a single realm is configured, the check is delegated to that realm's
+     * {@link Realm#hasAllRoles(org.apache.shiro.subject.PrincipalCollection, java.util.Collection) hasAllRoles}
+     * method instead so it can evaluate all roles at once.
      */
     public boolean hasAllRoles(PrincipalCollection principals, Collection<String> roleIdentifiers) {
         assertRealmsConfigured();
+        Collection<Realm> realms = getRealms();
+        if (realms.size() == 1 && !CollectionUtils.isEmpty(roleIdentifiers)) {
+            return realms.iterator().next().hasAllRoles(principals, roleIdentifiers);
+        }
         for (String roleIdentifier : roleIdentifiers) {
             if (!hasRole(principals, roleIdentifier)) {
                 return false;
@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authz;
+
+import org.apache.shiro.cache.LruCache;
+import org.apache.shiro.util.CollectionUtils;
+import org.apache.shiro.util.StringUtils;
+
+import java.util.*;
+
+/**
+ * A graph of roles where a role may <em>inherit</em> other roles, e.g. an {@code admin} role inheriting the
+ * {@code manager} role, which in turn inherits the {@code user} role.  An account that has been assigned a role
+ * is considered to also have all of the roles that role (transitively) inherits.
+ * <p/>
+ * The transitive closure of the graph is computed once, when the graph is
+ * {@link #setInheritedRoles(java.util.Map) set}.  Every role is given a numeric id and each role's closure is kept
+ * as a bitset over those ids.  The <em>effective</em> roles of a set of assigned roles are the union of their
+ * closures, so role checks against them are simple bit tests.  Because many accounts share the same combination of
+ * assigned roles, effective role sets are memoized per combination, keeping the most recently used combinations.
+ * <p/>
+ * Setting a new graph replaces the previous one atomically:  concurrent role checks see either the complete old
+ * graph or the complete new one, never a mix of both.
+ *
+ * @see RoleHierarchyAware
+ * @since 1.1
+ */
+public class RoleHierarchy {
+
+    /**
+     * Maximum number of memoized effective role sets; the least recently used ones are evicted beyond it.
+     */
+    private static final int MAX_MEMOIZED_ROLE_SETS = 1024;
+
+    private volatile Graph graph;
+
+    public RoleHierarchy() {
+        this.graph = new Graph(Collections.<String, Collection<String>>emptyMap());
+    }
+
+    public RoleHierarchy(Map<String, ?> inheritedRoles) {
+        setInheritedRoles(inheritedRoles);
+    }
+
+    /**
+     * Atomically replaces the role graph.  Each map key is a role name and the corresponding value the roles that
+     * role directly inherits, either as a {@code Collection} of role names or as a {@code String} of
+     * whitespace-delimited role names (which allows configuration as an INI map property, e.g.
+     * {@code roleHierarchy.inheritedRoles = admin:manager, manager:user}).  Cycles are permitted; all roles on a
+     * cycle inherit each other.
+     *
+     * @param inheritedRoles the roles directly inherited by each role.
+     */
+    public void setInheritedRoles(Map<String, ?> inheritedRoles) {
+        Map<String, Collection<String>> edges = new LinkedHashMap<String, Collection<String>>();
+        if (!CollectionUtils.isEmpty(inheritedRoles)) {
+            for (Map.Entry<String, ?> entry : inheritedRoles.entrySet()) {
+                edges.put(entry.getKey(), toRoleNames(entry.getValue()));
+            }
+        }
+        this.graph = new Graph(edges);
+    }
+
+    /**
+     * Returns the roles directly inherited by each role in the current graph.
+     *
+     * @return the roles directly inherited by each role in the current graph.
+     */
+    public Map<String, Collection<String>> getInheritedRoles() {
+        return Collections.unmodifiableMap(this.graph.edges);
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private static Collection<String> toRoleNames(Object value) {
+        if (value instanceof Collection) {
+            return new LinkedHashSet<String>((Collection<String>) value);
+        }
+        if (value != null) {
+            String[] names = StringUtils.tokenizeToStringArray(value.toString(), " \t");
+            if (names != null) {
+                return new LinkedHashSet<String>(Arrays.asList(names));
+            }
+        }
+        return Collections.emptySet();
+    }
+
+    /**
+     * Returns {@code true} if an account assigned the given roles has the specified role, either directly or by
+     * inheritance, {@code false} otherwise.
+     *
+     * @param assignedRoles the roles directly assigned to an account.
+     * @param roleName      the role to check.
+     * @return {@code true} if an account assigned the given roles has the specified role, {@code false} otherwise.
+     */
+    public boolean hasRole(Collection<String> assignedRoles, String roleName) {
+        if (CollectionUtils.isEmpty(assignedRoles)) {
+            return false;
+        }
+        Graph graph = this.graph;
+        return graph.hasRole(graph.getEffectiveRoles(assignedRoles), assignedRoles, roleName);
+    }
+
+    /**
+     * Checks each of the specified roles against the given assigned roles, honoring inheritance, and places the
+     * result of each check at the respective location in the returned array.
+     *
+     * @param assignedRoles the roles directly assigned to an account.
+     * @param roleNames     the roles to check.
+     * @return an array with the result of each role check.
+     */
+    public boolean[] hasRoles(Collection<String> assignedRoles, List<String> roleNames) {
+        boolean[] result = new boolean[roleNames != null ? roleNames.size() : 0];
+        if (result.length == 0 || CollectionUtils.isEmpty(assignedRoles)) {
+            return result;
+        }
+        Graph graph = this.graph;
+        long[] effective = graph.getEffectiveRoles(assignedRoles);
+        int i = 0;
+        for (String roleName : roleNames) {
+            result[i++] = graph.hasRole(effective, assignedRoles, roleName);
+        }
+        return result;
+    }
+
+    /**
+     * Returns {@code true} if an account assigned the given roles has all of the specified roles, either directly or
+     * by inheritance, {@code false} otherwise.
+     *
+     * @param assignedRoles the roles directly assigned to an account.
+     * @param roleNames     the roles to check.
+     * @return {@code true} if an account assigned the given roles has all of the specified roles.
+     */
+    public boolean hasAllRoles(Collection<String> assignedRoles, Collection<String> roleNames) {
+        if (CollectionUtils.isEmpty(roleNames)) {
+            return true;
+        }
+        if (CollectionUtils.isEmpty(assignedRoles)) {
+            return false;
+        }
+        Graph graph = this.graph;
+        long[] effective = graph.getEffectiveRoles(assignedRoles);
+        for (String roleName : roleNames) {
+            if (!graph.hasRole(effective, assignedRoles, roleName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the given assigned roles plus every role they (transitively) inherit.
+     *
+     * @param assignedRoles the roles directly assigned to an account.
+     * @return the assigned roles plus every role they inherit.
+     */
+    public Set<String> getEffectiveRoles(Collection<String> assignedRoles) {
+        if (CollectionUtils.isEmpty(assignedRoles)) {
+            return Collections.emptySet();
+        }
+        Graph graph = this.graph;
+        Set<String> roles = new LinkedHashSet<String>(assignedRoles);
+        long[] effective = graph.getEffectiveRoles(assignedRoles);
+        for (int id = 0; id < graph.names.length; id++) {
+            if (isSet(effective, id)) {
+                roles.add(graph.names[id]);
+            }
+        }
+        return roles;
+    }
+
+    /**
+     * Returns the specified role plus every role that (transitively) inherits it, i.e. all roles whose members
+     * are affected by a change to the specified role.
+     *
+     * @param roleName the inherited role.
+     * @return the specified role plus every role that inherits it.
+     */
+    public Set<String> getInheritingRoles(String roleName) {
+        Set<String> roles = new LinkedHashSet<String>();
+        roles.add(roleName);
+        Graph graph = this.graph;
+        Integer id = graph.ids.get(roleName);
+        if (id != null) {
+            for (int i = 0; i < graph.closures.length; i++) {
+                if (isSet(graph.closures[i], id)) {
+                    roles.add(graph.names[i]);
+                }
+            }
+        }
+        return roles;
+    }
+
+    private static boolean isSet(long[] bits, int id) {
+        int word = id >>> 6;
+        return word < bits.length && (bits[word] & (1L << id)) != 0;
+    }
+
+    private static void set(long[] bits, int id) {
+        bits[id >>> 6] |= 1L << id;
+    }
+
+    /**
+     * Immutable snapshot of a role graph and its precomputed transitive closure.
+     */
+    private static class Graph {
+
+        private final Map<String, Collection<String>> edges;
+        private final Map<String, Integer> ids;
+        private final String[] names;
+        private final long[][] closures;
+        private final LruCache<Set<String>, long[]> memo =
+                new LruCache<Set<String>, long[]>(RoleHierarchy.class.getName(), MAX_MEMOIZED_ROLE_SETS);
+
+        private Graph(Map<String, Collection<String>> edges) {
+            this.edges = edges;
+            this.ids = new HashMap<String, Integer>();
+            List<String> names = new ArrayList<String>();
+            for (Map.Entry<String, Collection<String>> entry : edges.entrySet()) {
+                assignId(entry.getKey(), names);
+                for (String inherited : entry.getValue()) {
+                    assignId(inherited, names);
+                }
+            }
+            this.names = names.toArray(new String[names.size()]);
+            int words = (this.names.length + 63) >>> 6;
+            this.closures = new long[this.names.length][];
+            for (int id = 0; id < this.names.length; id++) {
+                this.closures[id] = computeClosure(id, words);
+            }
+        }
+
+        private void assignId(String roleName, List<String> names) {
+            if (!ids.containsKey(roleName)) {
+                ids.put(roleName, names.size());
+                names.add(roleName);
+            }
+        }
+
+        private long[] computeClosure(int id, int words) {
+            long[] closure = new long[words];
+            LinkedList<Integer> pending = new LinkedList<Integer>();
+            set(closure, id);
+            pending.add(id);
+            while (!pending.isEmpty()) {
+                Collection<String> inherited = edges.get(names[pending.removeFirst()]);
+                if (inherited == null) {
+                    continue;
+                }
+                for (String roleName : inherited) {
+                    int inheritedId = ids.get(roleName);
+                    if (!isSet(closure, inheritedId)) {
+                        set(closure, inheritedId);
+                        pending.add(inheritedId);
+                    }
+                }
+            }
+            return closure;
+        }
+
+        private long[] getEffectiveRoles(Collection<String> assignedRoles) {
+            Set<String> key = assignedRoles instanceof Set ?
+                    (Set<String>) assignedRoles : new HashSet<String>(assignedRoles);
+            long[] effective = memo.get(key);
+            if (effective == null) {
+                effective = new long[(names.length + 63) >>> 6];
+                for (String roleName : assignedRoles) {
+                    Integer id = ids.get(roleName);
+                    if (id != null) {
+                        long[] closure = closures[id];
+                        for (int i = 0; i < closure.length; i++) {
+                            effective[i] |= closure[i];
+                        }
+                    }
+                }
+                //copy the key - the caller's set may be mutable:
+                memo.put(new HashSet<String>(key), effective);
+            }
+            return effective;
+        }
+
+        private boolean hasRole(long[] effective, Collection<String> assignedRoles, String roleName) {
+            Integer id = ids.get(roleName);
+            if (id != null) {
+                return isSet(effective, id);
+            }
+            //not part of the hierarchy - can only have been assigned directly:
+            return assignedRoles.contains(roleName);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authz;
+
+/**
+ * Interface implemented by a component that wishes to use any application-configured {@link RoleHierarchy} that
+ * might already exist.
+ * <p/>
+ * This is mostly implemented by {@link Authorizer Authorizer} and {@link org.apache.shiro.realm.Realm Realm}
+ * implementations since they are the ones performing role checks.
+ *
+ * @since 1.1
+ */
+public interface RoleHierarchyAware {
+
+    /**
+     * Sets the specified {@code RoleHierarchy} on this instance.
+     *
+     * @param roleHierarchy the {@code RoleHierarchy} being set.
+     */
+    public void setRoleHierarchy(RoleHierarchy roleHierarchy);
+}
@@ -18,13 +18,23 @@
  */
 package org.apache.shiro.authz.permission;
 
+import org.apache.shiro.authz.Permission;
 import org.apache.shiro.util.StringUtils;
 
+import java.util.*;
+
 /**
  * Provides a base Permission class from which type-safe/domain-specific subclasses may extend.  Can be used
  * as a base class for JPA/Hibernate persisted permissions that wish to store the parts of the permission string
  * in separate columns (e.g. 'domain', 'actions' and 'targets' columns), which can be used in querying
  * strategies.
+ * <p/>
+ * A {@code DomainPermission} has the exact semantics of the {@link WildcardPermission} {@code domain:actions:targets},
+ * but does not build and re-parse that string:  the domain, action and target tokens are split and lower-cased once,
+ * with the domain and action tokens interned, and the wildcard parts are only created if a
+ * {@code WildcardPermission} needs them.  {@link #implies(Permission) implies} checks between two
+ * {@code DomainPermission}s compare these tokens directly; comparisons with any other type of permission use the
+ * regular {@code WildcardPermission} logic.
  *
  * @since 1.0
  */
@@ -34,6 +44,16 @@ public abstract class DomainPermission extends WildcardPermission {
     private String actions;
     private String targets;
 
+    /**
+     * The lower-cased tokens of each part, or {@code null} if the parts were set as a wildcard string.
+     */
+    private String[][] tokens;
+    /**
+     * Whether the respective part in {@link #tokens} contains the wildcard token.
+     */
+    private boolean[] wildcards;
+    private transient List<Set<String>> typedParts;
+
     /**
      * Creates a domain permission with *all* actions for *all* targets;
      */
@@ -53,6 +73,26 @@ public abstract class DomainPermission extends WildcardPermission {
         if (!StringUtils.hasText(domain)) {
             throw new IllegalArgumentException("domain argument cannot be null or empty.");
         }
+        setDomain(domain);
+        setActions(actions);
+        setTargets(targets);
+
+        String[][] tokens = tokenize(domain, actions, targets);
+        if (tokens == null) {
+            //not representable as simple tokens - let WildcardPermission interpret the equivalent string:
+            setParts(toWildcardString(domain, actions, targets));
+            return;
+        }
+        boolean[] wildcards = new boolean[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            wildcards[i] = contains(tokens[i], WILDCARD_TOKEN);
+        }
+        this.tokens = tokens;
+        this.wildcards = wildcards;
+        this.typedParts = null;
+    }
+
+    private static String toWildcardString(String domain, String actions, String targets) {
         StringBuilder sb = new StringBuilder(domain);
 
         if (!StringUtils.hasText(actions)) {
@@ -65,7 +105,133 @@ public abstract class DomainPermission extends WildcardPermission {
         if (targets != null) {
             sb.append(PART_DIVIDER_TOKEN).append(targets);
         }
-        setParts(sb.toString());
+        return sb.toString();
+    }
+
+    /**
+     * Returns the lower-cased tokens of each part, exactly as {@link WildcardPermission#setParts(String)} would
+     * produce them for the equivalent wildcard string, or {@code null} if any value is not a plain list of
+     * non-empty, comma-delimited tokens and so needs the full wildcard string interpretation.
+     */
+    private static String[][] tokenize(String domain, String actions, String targets) {
+        boolean hasActions = StringUtils.hasText(actions);
+        boolean hasTargets = StringUtils.hasText(targets);
+        String[][] tokens = new String[hasTargets ? 3 : (hasActions ? 2 : 1)][];
+        tokens[0] = tokenize(domain, true);
+        if (hasActions) {
+            tokens[1] = tokenize(actions, true);
+        } else if (hasTargets) {
+            tokens[1] = new String[]{WILDCARD_TOKEN};
+        }
+        if (hasTargets) {
+            //targets are often instance ids - don't intern them:
+            tokens[2] = tokenize(targets, false);
+        }
+        for (String[] part : tokens) {
+            if (part == null) {
+                return null;
+            }
+        }
+        return tokens;
+    }
+
+    private static String[] tokenize(String value, boolean intern) {
+        int length = value.length();
+        if (Character.isWhitespace(value.charAt(0)) || Character.isWhitespace(value.charAt(length - 1)) ||
+                value.indexOf(PART_DIVIDER_TOKEN.charAt(0)) >= 0) {
+            return null;
+        }
+        char divider = SUBPART_DIVIDER_TOKEN.charAt(0);
+        int count = 1;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) == divider) {
+                count++;
+            }
+        }
+        String[] tokens = new String[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = value.indexOf(divider, start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end == start) {
+                //empty token, e.g. 'read,,write':
+                return null;
+            }
+            String token = value.substring(start, end).toLowerCase();
+            tokens[i] = intern ? token.intern() : token;
+            start = end + 1;
+        }
+        return tokens;
+    }
+
+    private static boolean contains(String[] tokens, String token) {
+        for (String t : tokens) {
+            if (t == token || t.equals(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void setParts(String wildcardString, boolean caseSensitive) {
+        this.tokens = null;
+        this.wildcards = null;
+        this.typedParts = null;
+        super.setParts(wildcardString, caseSensitive);
+    }
+
+    @Override
+    protected List<Set<String>> getParts() {
+        String[][] tokens = this.tokens;
+        if (tokens == null) {
+            return super.getParts();
+        }
+        List<Set<String>> parts = this.typedParts;
+        if (parts == null) {
+            parts = new ArrayList<Set<String>>(tokens.length);
+            for (String[] part : tokens) {
+                Set<String> subparts = part.length == 1 ?
+                        Collections.singleton(part[0]) : new LinkedHashSet<String>(Arrays.asList(part));
+                parts.add(subparts);
+            }
+            parts = Collections.unmodifiableList(parts);
+            this.typedParts = parts;
+        }
+        return parts;
+    }
+
+    @Override
+    public boolean implies(Permission p) {
+        if (this.tokens != null && p instanceof DomainPermission && ((DomainPermission) p).tokens != null) {
+            return implies(((DomainPermission) p).tokens);
+        }
+        return super.implies(p);
+    }
+
+    //same logic as WildcardPermission.implies, over the token arrays:
+    private boolean implies(String[][] otherTokens) {
+        int i = 0;
+        for (; i < otherTokens.length; i++) {
+            if (i >= tokens.length) {
+                return true;
+            }
+            if (!wildcards[i]) {
+                for (String token : otherTokens[i]) {
+                    if (!contains(tokens[i], token)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        for (; i < tokens.length; i++) {
+            if (!wildcards[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     protected String getDomain(Class<? extends DomainPermission> clazz) {
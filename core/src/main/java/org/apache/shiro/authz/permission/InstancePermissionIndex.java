@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authz.permission;
+
+import org.apache.shiro.authz.Permission;
+
+import java.util.*;
+
+/**
+ * An index of granted permissions for a single {@code domain:action} pair, answering for many instance ids
+ * whether the instance permission {@code domain:action:id} is implied by the grants.
+ * <p/>
+ * The grants are classified once, when the index is built:  {@link WildcardPermission}s either apply to all
+ * instances, to a set of instance ids, or not at all, {@link InstanceSetPermission}s are queried for their ids
+ * directly and an {@link AllPermission} applies to all instances.  Checking an id is then a hash lookup instead of
+ * constructing the instance permission and evaluating it against every grant.  Any other permission type, as well
+ * as ids that cannot be represented as a single wildcard token (e.g. containing a {@code :} or {@code ,}), are
+ * evaluated the regular way, by resolving the instance permission and calling
+ * {@link Permission#implies(Permission) implies}.
+ * <p/>
+ * The index assumes instance permissions are resolved as case-insensitive {@link WildcardPermission}s, as the
+ * {@link WildcardPermissionResolver} does.  For any other resolver every id is evaluated the regular way.
+ *
+ * @since 1.1
+ */
+public class InstancePermissionIndex {
+
+    private final String domain;
+    private final String action;
+    private final PermissionResolver permissionResolver;
+    private final Collection<Permission> grants;
+
+    private final boolean indexed;
+    private boolean allInstances;
+    private final Set<String> instanceIds = new HashSet<String>();
+    private final List<InstanceSetPermission> instanceSets = new ArrayList<InstanceSetPermission>();
+    private final List<Permission> unindexed = new ArrayList<Permission>();
+
+    /**
+     * Builds an index of the given grants for the specified domain and action.
+     *
+     * @param grants             the permissions granted to a subject.
+     * @param domain             the domain of the instance permissions to check.
+     * @param action             the action of the instance permissions to check.
+     * @param permissionResolver the resolver used to resolve instance permissions that cannot be checked using the
+     *                           index.
+     */
+    public InstancePermissionIndex(Collection<Permission> grants, String domain, String action,
+                                   PermissionResolver permissionResolver) {
+        this.domain = domain;
+        this.action = action;
+        this.permissionResolver = permissionResolver;
+        this.grants = grants;
+        this.indexed = permissionResolver != null &&
+                permissionResolver.getClass() == WildcardPermissionResolver.class &&
+                isToken(domain) && isToken(action);
+        if (indexed) {
+            String domainToken = domain.toLowerCase();
+            String actionToken = action.toLowerCase();
+            for (Permission grant : grants) {
+                index(grant, domainToken, actionToken);
+            }
+        }
+    }
+
+    private static boolean isToken(String s) {
+        return s != null && s.length() > 0 && s.trim().length() == s.length() &&
+                s.indexOf(WildcardPermission.PART_DIVIDER_TOKEN.charAt(0)) < 0 &&
+                s.indexOf(WildcardPermission.SUBPART_DIVIDER_TOKEN.charAt(0)) < 0;
+    }
+
+    private static boolean matches(Set<String> part, String token) {
+        return part.contains(WildcardPermission.WILDCARD_TOKEN) || part.contains(token);
+    }
+
+    private void index(Permission grant, String domainToken, String actionToken) {
+        if (grant instanceof AllPermission) {
+            allInstances = true;
+        } else if (grant instanceof InstanceSetPermission) {
+            InstanceSetPermission instanceSet = (InstanceSetPermission) grant;
+            if (instanceSet.getDomain().equals(domainToken) && instanceSet.impliesAction(actionToken)) {
+                instanceSets.add(instanceSet);
+            }
+        } else if (grant instanceof WildcardPermission) {
+            index(((WildcardPermission) grant).getParts(), domainToken, actionToken);
+        } else {
+            unindexed.add(grant);
+        }
+    }
+
+    private void index(List<Set<String>> parts, String domainToken, String actionToken) {
+        //mirrors WildcardPermission.implies for an instance permission with exactly 3 parts:
+        if (!matches(parts.get(0), domainToken)) {
+            return;
+        }
+        if (parts.size() < 2) {
+            allInstances = true;
+            return;
+        }
+        if (!matches(parts.get(1), actionToken)) {
+            return;
+        }
+        if (parts.size() < 3) {
+            allInstances = true;
+            return;
+        }
+        for (int i = 3; i < parts.size(); i++) {
+            if (!parts.get(i).contains(WildcardPermission.WILDCARD_TOKEN)) {
+                return;
+            }
+        }
+        Set<String> ids = parts.get(2);
+        if (ids.contains(WildcardPermission.WILDCARD_TOKEN)) {
+            allInstances = true;
+        } else {
+            instanceIds.addAll(ids);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the grants imply the permission {@code domain:action:id} for the specified instance
+     * id, {@code false} otherwise.
+     *
+     * @param instanceId the id of the instance to check.
+     * @return {@code true} if the grants imply the instance permission for the specified id.
+     */
+    public boolean isPermitted(Object instanceId) {
+        if (instanceId == null) {
+            return false;
+        }
+        String id = instanceId.toString();
+        if (!indexed || !isToken(id)) {
+            return impliedByAny(grants, id);
+        }
+        if (allInstances) {
+            return true;
+        }
+        String idToken = id.toLowerCase();
+        if (instanceIds.contains(idToken)) {
+            return true;
+        }
+        for (InstanceSetPermission instanceSet : instanceSets) {
+            if (instanceSet.containsId(idToken)) {
+                return true;
+            }
+        }
+        return !unindexed.isEmpty() && impliedByAny(unindexed, id);
+    }
+
+    private boolean impliedByAny(Collection<Permission> permissions, String id) {
+        if (permissions.isEmpty()) {
+            return false;
+        }
+        Permission permission = permissionResolver.resolvePermission(
+                domain + WildcardPermission.PART_DIVIDER_TOKEN + action + WildcardPermission.PART_DIVIDER_TOKEN + id);
+        for (Permission p : permissions) {
+            if (p.implies(permission)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
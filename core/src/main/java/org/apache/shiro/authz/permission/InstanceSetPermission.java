@@ -0,0 +1,505 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authz.permission;
+
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.util.StringUtils;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * A single {@link Permission} granting one or more actions on a (potentially very large) set of instances of a
+ * domain, e.g. {@code invoice:view} on hundreds of thousands of invoice ids.
+ * <p/>
+ * Semantically an {@code InstanceSetPermission} for domain {@code invoice}, actions {@code view,print} and ids
+ * {@code 1, 2, 3} is equivalent to the {@link WildcardPermission} {@code invoice:view,print:1,2,3}, and it
+ * {@link #implies(org.apache.shiro.authz.Permission) implies} exactly the same {@code WildcardPermission}s
+ * (e.g. {@code invoice:view:2}) the equivalent wildcard permission would.  Unlike a wildcard permission (or one
+ * wildcard permission per id), the ids are stored in a compact form and looked up without a linear scan:
+ * <ul>
+ * <li>Integer ids are stored as a bitmap if they are dense, as sorted runs of consecutive ids if they are highly
+ * clustered, or as a sorted {@code int} array otherwise.  Look-ups take O(1) or O(log n) time.</li>
+ * <li>Any other ids are stored as a sorted {@code String} array and looked up in O(log n) time.</li>
+ * </ul>
+ * As with {@code WildcardPermission}, domain, actions and ids are case-insensitive.  The action list may be the
+ * {@code *} wildcard; the id set may not, since an unrestricted instance permission is better expressed as a
+ * regular {@code WildcardPermission}.
+ *
+ * @since 1.1
+ */
+public class InstanceSetPermission implements Permission, Serializable {
+
+    private static final String WILDCARD_TOKEN = WildcardPermission.WILDCARD_TOKEN;
+
+    private final String domain;
+    private final Set<String> actions;
+    private final IdSet ids;
+    /**
+     * Computed once: realms put permissions into hash based collections for every check.
+     */
+    private final int hashCode;
+
+    /**
+     * Creates a permission granting the specified actions on all of the given integer ids.
+     *
+     * @param domain  the domain (resource type), e.g. {@code invoice}.
+     * @param actions a comma-delimited list of actions or {@code *} for all actions.
+     * @param ids     the ids of the instances the actions are granted on.
+     */
+    public InstanceSetPermission(String domain, String actions, int[] ids) {
+        this.domain = normalizeDomain(domain);
+        this.actions = parseActions(actions);
+        if (ids == null) {
+            throw new IllegalArgumentException("ids argument cannot be null.");
+        }
+        this.ids = IntIdSet.create(ids);
+        this.hashCode = computeHashCode();
+    }
+
+    /**
+     * Creates a permission granting the specified actions on all of the given ids.  If every id is the canonical
+     * string representation of an {@code int}, the ids are stored in compressed numeric form.
+     *
+     * @param domain  the domain (resource type), e.g. {@code invoice}.
+     * @param actions a comma-delimited list of actions or {@code *} for all actions.
+     * @param ids     the ids of the instances the actions are granted on.
+     */
+    public InstanceSetPermission(String domain, String actions, Collection<String> ids) {
+        this.domain = normalizeDomain(domain);
+        this.actions = parseActions(actions);
+        if (ids == null) {
+            throw new IllegalArgumentException("ids argument cannot be null.");
+        }
+        this.ids = createIdSet(ids);
+        this.hashCode = computeHashCode();
+    }
+
+    private int computeHashCode() {
+        return 31 * (31 * domain.hashCode() + actions.hashCode()) + ids.hashCode();
+    }
+
+    private static String normalizeDomain(String domain) {
+        if (!StringUtils.hasText(domain)) {
+            throw new IllegalArgumentException("domain argument cannot be null or empty.");
+        }
+        return domain.trim().toLowerCase();
+    }
+
+    private static Set<String> parseActions(String actions) {
+        if (!StringUtils.hasText(actions)) {
+            throw new IllegalArgumentException("actions argument cannot be null or empty.");
+        }
+        Set<String> set = new HashSet<String>();
+        for (String action : actions.split(WildcardPermission.SUBPART_DIVIDER_TOKEN)) {
+            if (StringUtils.hasText(action)) {
+                set.add(action.trim().toLowerCase());
+            }
+        }
+        if (set.isEmpty()) {
+            throw new IllegalArgumentException("actions argument cannot contain only dividers.");
+        }
+        return set.contains(WILDCARD_TOKEN) ? Collections.singleton(WILDCARD_TOKEN) : set;
+    }
+
+    private static IdSet createIdSet(Collection<String> ids) {
+        int[] numeric = new int[ids.size()];
+        int i = 0;
+        for (String id : ids) {
+            Integer parsed = toCanonicalInt(id);
+            if (parsed == null) {
+                return StringIdSet.create(ids);
+            }
+            numeric[i++] = parsed;
+        }
+        return IntIdSet.create(numeric);
+    }
+
+    /**
+     * Returns the int value of the given token if the token is the canonical string representation of that int,
+     * {@code null} otherwise (so that e.g. {@code 007} is never confused with {@code 7}).
+     */
+    private static Integer toCanonicalInt(String token) {
+        if (token == null || token.length() == 0 || token.length() > 11) {
+            return null;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if ((c < '0' || c > '9') && !(i == 0 && c == '-' && token.length() > 1)) {
+                return null;
+            }
+        }
+        try {
+            int value = Integer.parseInt(token);
+            return Integer.toString(value).equals(token) ? value : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public String getDomain() {
+        return domain;
+    }
+
+    public Set<String> getActions() {
+        return Collections.unmodifiableSet(actions);
+    }
+
+    /**
+     * Returns the number of instance ids this permission applies to.
+     *
+     * @return the number of instance ids this permission applies to.
+     */
+    public int getIdCount() {
+        return ids.size();
+    }
+
+    /**
+     * Returns {@code true} if this permission applies to the instance with the specified id, {@code false}
+     * otherwise.
+     *
+     * @param id the instance id to check.
+     * @return {@code true} if this permission applies to the instance with the specified id.
+     */
+    public boolean containsId(String id) {
+        return id != null && ids.contains(id.toLowerCase());
+    }
+
+    /**
+     * Returns {@code true} if this permission applies to the instance with the specified id, {@code false}
+     * otherwise.
+     *
+     * @param id the instance id to check.
+     * @return {@code true} if this permission applies to the instance with the specified id.
+     */
+    public boolean containsId(int id) {
+        return ids.contains(id);
+    }
+
+    /**
+     * Returns {@code true} if this permission grants the specified action, {@code false} otherwise.
+     *
+     * @param action the action to check
+     * @return {@code true} if this permission grants the specified action.
+     */
+    public boolean impliesAction(String action) {
+        return actions.contains(WILDCARD_TOKEN) || (action != null && actions.contains(action.toLowerCase()));
+    }
+
+    /**
+     * Returns {@code true} if this permission implies the specified permission, {@code false} otherwise.
+     * <p/>
+     * Other {@code InstanceSetPermission}s are implied if they have the same domain, a subset of the actions and a
+     * subset of the ids.  {@link WildcardPermission}s are implied exactly when the wildcard permission
+     * {@code domain:actions:id1,id2,...} equivalent to this instance would imply them.  Any other type of
+     * permission is never implied.
+     *
+     * @param p the permission to check.
+     * @return {@code true} if this permission implies the specified permission, {@code false} otherwise.
+     */
+    public boolean implies(Permission p) {
+        if (p instanceof InstanceSetPermission) {
+            InstanceSetPermission other = (InstanceSetPermission) p;
+            return domain.equals(other.domain) && impliesActions(other.actions) && ids.containsAll(other.ids);
+        }
+        if (!(p instanceof WildcardPermission)) {
+            return false;
+        }
+        List<Set<String>> parts = ((WildcardPermission) p).getParts();
+        //this permission has exactly 3 non-wildcard parts (domain, actions, ids), so the other permission needs
+        //at least 3 parts. Any parts beyond the third are implied.
+        if (parts.size() < 3) {
+            return false;
+        }
+        Set<String> domainPart = parts.get(0);
+        if (domainPart.size() != 1 || !domainPart.contains(domain)) {
+            return false;
+        }
+        if (!impliesActions(parts.get(1))) {
+            return false;
+        }
+        for (String id : parts.get(2)) {
+            if (!ids.contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean impliesActions(Set<String> otherActions) {
+        return actions.contains(WILDCARD_TOKEN) || actions.containsAll(otherActions);
+    }
+
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o instanceof InstanceSetPermission) {
+            InstanceSetPermission other = (InstanceSetPermission) o;
+            return hashCode == other.hashCode && domain.equals(other.domain) && actions.equals(other.actions) &&
+                    ids.equals(other.ids);
+        }
+        return false;
+    }
+
+    public int hashCode() {
+        return hashCode;
+    }
+
+    public String toString() {
+        return domain + WildcardPermission.PART_DIVIDER_TOKEN + actions + WildcardPermission.PART_DIVIDER_TOKEN +
+                "[" + ids.size() + " ids]";
+    }
+
+    /*--------------------------------------------
+    |            I D   S E T S                  |
+    ============================================*/
+
+    /**
+     * Compact, immutable set of instance ids.
+     */
+    private static abstract class IdSet implements Serializable {
+
+        abstract int size();
+
+        /**
+         * Returns whether the set contains the given (lower case) id token.
+         */
+        abstract boolean contains(String id);
+
+        abstract boolean contains(int id);
+
+        abstract boolean containsAll(IdSet other);
+    }
+
+    /**
+     * Integer ids, stored either as a bitmap (dense ids) or as sorted runs of consecutive ids.  A run set without
+     * any run longer than one id degenerates into a plain sorted array.
+     */
+    private static class IntIdSet extends IdSet {
+
+        //bitmap representation:
+        private final long[] words;
+        private final int offset;
+        //sorted run representation, 'ends' is null if every run contains a single id:
+        private final int[] starts;
+        private final int[] ends;
+        private final int size;
+
+        private IntIdSet(long[] words, int offset, int[] starts, int[] ends, int size) {
+            this.words = words;
+            this.offset = offset;
+            this.starts = starts;
+            this.ends = ends;
+            this.size = size;
+        }
+
+        static IntIdSet create(int[] ids) {
+            int[] sorted = new int[ids.length];
+            System.arraycopy(ids, 0, sorted, 0, ids.length);
+            Arrays.sort(sorted);
+            //de-duplicate and count runs:
+            int count = 0;
+            int runs = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i > 0 && sorted[i] == sorted[count - 1]) {
+                    continue;
+                }
+                if (count == 0 || sorted[i] != sorted[count - 1] + 1) {
+                    runs++;
+                }
+                sorted[count++] = sorted[i];
+            }
+            if (count == 0) {
+                return new IntIdSet(null, 0, new int[0], null, 0);
+            }
+
+            long range = (long) sorted[count - 1] - sorted[0] + 1;
+            long bitmapBytes = ((range + 63) >>> 6) * 8;
+            long runBytes = runs < count ? runs * 8L : count * 4L;
+            if (bitmapBytes < runBytes) {
+                long[] words = new long[(int) ((range + 63) >>> 6)];
+                int offset = sorted[0];
+                for (int i = 0; i < count; i++) {
+                    int bit = sorted[i] - offset;
+                    words[bit >>> 6] |= 1L << bit;
+                }
+                return new IntIdSet(words, offset, null, null, count);
+            }
+
+            if (runs == count) {
+                int[] starts = new int[count];
+                System.arraycopy(sorted, 0, starts, 0, count);
+                return new IntIdSet(null, 0, starts, null, count);
+            }
+            int[] starts = new int[runs];
+            int[] ends = new int[runs];
+            int run = -1;
+            for (int i = 0; i < count; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1] + 1) {
+                    starts[++run] = sorted[i];
+                }
+                ends[run] = sorted[i];
+            }
+            return new IntIdSet(null, 0, starts, ends, count);
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean contains(String id) {
+            Integer value = toCanonicalInt(id);
+            return value != null && contains(value.intValue());
+        }
+
+        boolean contains(int id) {
+            if (words != null) {
+                long bit = (long) id - offset;
+                if (bit < 0 || bit >= (long) words.length << 6) {
+                    return false;
+                }
+                return (words[(int) (bit >>> 6)] & (1L << bit)) != 0;
+            }
+            int index = Arrays.binarySearch(starts, id);
+            if (index >= 0) {
+                return true;
+            }
+            if (ends == null) {
+                return false;
+            }
+            //the run starting right before the id's insertion point:
+            int run = -index - 2;
+            return run >= 0 && id <= ends[run];
+        }
+
+        boolean containsAll(IdSet other) {
+            if (other instanceof IntIdSet) {
+                for (int id : ((IntIdSet) other).toArray()) {
+                    if (!contains(id)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            for (String id : ((StringIdSet) other).ids) {
+                if (!contains(id)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int[] toArray() {
+            int[] array = new int[size];
+            int i = 0;
+            if (words != null) {
+                for (int w = 0; w < words.length; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        array[i++] = offset + (w << 6) + Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                    }
+                }
+            } else if (ends == null) {
+                System.arraycopy(starts, 0, array, 0, size);
+            } else {
+                for (int run = 0; run < starts.length; run++) {
+                    for (long id = starts[run]; id <= ends[run]; id++) {
+                        array[i++] = (int) id;
+                    }
+                }
+            }
+            return array;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof IntIdSet)) {
+                return false;
+            }
+            IntIdSet other = (IntIdSet) o;
+            return size == other.size && offset == other.offset && Arrays.equals(words, other.words) &&
+                    Arrays.equals(starts, other.starts) && Arrays.equals(ends, other.ends);
+        }
+
+        public int hashCode() {
+            return words != null ? Arrays.hashCode(words) + offset : Arrays.hashCode(starts);
+        }
+    }
+
+    /**
+     * Arbitrary string ids, stored as a sorted array.
+     */
+    private static class StringIdSet extends IdSet {
+
+        private final String[] ids;
+
+        private StringIdSet(String[] ids) {
+            this.ids = ids;
+        }
+
+        static StringIdSet create(Collection<String> ids) {
+            SortedSet<String> sorted = new TreeSet<String>();
+            for (String id : ids) {
+                if (!StringUtils.hasText(id)) {
+                    throw new IllegalArgumentException("ids cannot contain null or empty values.");
+                }
+                sorted.add(id.trim().toLowerCase());
+            }
+            return new StringIdSet(sorted.toArray(new String[sorted.size()]));
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        boolean contains(String id) {
+            return Arrays.binarySearch(ids, id) >= 0;
+        }
+
+        boolean contains(int id) {
+            return contains(Integer.toString(id));
+        }
+
+        boolean containsAll(IdSet other) {
+            if (other instanceof StringIdSet) {
+                for (String id : ((StringIdSet) other).ids) {
+                    if (!contains(id)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            for (int id : ((IntIdSet) other).toArray()) {
+                if (!contains(id)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof StringIdSet && Arrays.equals(ids, ((StringIdSet) o).ids);
+        }
+
+        public int hashCode() {
+            return Arrays.hashCode(ids);
+        }
+    }
+}
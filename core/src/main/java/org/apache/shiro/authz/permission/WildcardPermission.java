@@ -229,7 +229,7 @@ public class WildcardPermission implements Permission, Serializable {
 
     public String toString() {
         StringBuilder buffer = new StringBuilder();
-        for (Set<String> part : parts) {
+        for (Set<String> part : getParts()) {
             if (buffer.length() > 0) {
                 buffer.append(":");
             }
@@ -241,13 +241,13 @@ public class WildcardPermission implements Permission, Serializable {
     public boolean equals(Object o) {
         if (o instanceof WildcardPermission) {
             WildcardPermission wp = (WildcardPermission) o;
-            return parts.equals(wp.parts);
+            return getParts().equals(wp.getParts());
         }
         return false;
     }
 
     public int hashCode() {
-        return parts.hashCode();
+        return getParts().hashCode();
     }
 
 }
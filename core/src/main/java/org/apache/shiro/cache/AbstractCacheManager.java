@@ -23,6 +23,8 @@ import org.apache.shiro.util.LifecycleUtils;
 import org.apache.shiro.util.StringUtils;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -33,7 +35,7 @@ import java.util.concurrent.ConcurrentMap;
  *
  * @since 1.0
  */
-public abstract class AbstractCacheManager implements CacheManager, Destroyable {
+public abstract class AbstractCacheManager implements InstrumentedCacheManager, Destroyable {
 
     /**
      * Retains all Cache objects maintained by this cache manager.
@@ -85,6 +87,23 @@ public abstract class AbstractCacheManager implements CacheManager, Destroyable
      */
     protected abstract Cache createCache(String name) throws CacheException;
 
+    /**
+     * Returns the statistics of each managed cache that is an {@link InstrumentedCache InstrumentedCache}, keyed by
+     * cache name.
+     *
+     * @return the statistics of each managed instrumented cache, keyed by cache name.
+     * @since 1.1
+     */
+    public Map<String, CacheStatistics> getCacheStatistics() {
+        Map<String, CacheStatistics> statistics = new LinkedHashMap<String, CacheStatistics>();
+        for (Map.Entry<String, Cache> entry : caches.entrySet()) {
+            if (entry.getValue() instanceof InstrumentedCache) {
+                statistics.put(entry.getKey(), ((InstrumentedCache) entry.getValue()).getStatistics());
+            }
+        }
+        return statistics;
+    }
+
     /**
      * Cleanup method that first {@link LifecycleUtils#destroy destroys} all of it's managed caches and then
      * {@link java.util.Map#clear clears} out the internally referenced cache map.
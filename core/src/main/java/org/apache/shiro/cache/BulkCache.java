@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A {@link Cache Cache} that supports operating on many entries in a single call.  For remote or serializing caches
+ * this can save a round trip or copy per entry, for local caches it can save per-entry locking.
+ * <p/>
+ * Code operating on many entries of an arbitrary {@code Cache} should use {@link CacheUtils CacheUtils}, which uses
+ * these operations when the cache supports them and falls back to individual calls otherwise.
+ *
+ * @since 1.1
+ */
+public interface BulkCache<K, V> extends Cache<K, V> {
+
+    /**
+     * Returns the cached values for the specified keys.  Keys without a cached value are not contained in the
+     * returned map.
+     *
+     * @param keys the keys of the values to return.
+     * @return the cached values, keyed by their key.
+     * @throws CacheException if there is a problem accessing the underlying cache system
+     */
+    Map<K, V> getAll(Collection<? extends K> keys) throws CacheException;
+
+    /**
+     * Adds all of the specified entries to the cache.
+     *
+     * @param entries the entries to add to the cache.
+     * @throws CacheException if there is a problem accessing the underlying cache system
+     */
+    void putAll(Map<? extends K, ? extends V> entries) throws CacheException;
+
+    /**
+     * Removes the entries for all of the specified keys from the cache.
+     *
+     * @param keys the keys of the entries to remove.
+     * @throws CacheException if there is a problem accessing the underlying cache system
+     */
+    void removeAll(Collection<? extends K> keys) throws CacheException;
+}
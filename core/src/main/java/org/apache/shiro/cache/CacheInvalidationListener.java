@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+/**
+ * Callback notified when entries of an {@link InvalidationNotifyingCache InvalidationNotifyingCache} change or
+ * disappear, e.g. because they were updated or removed by another node of a replicated or distributed cache.
+ *
+ * @since 1.1
+ */
+public interface CacheInvalidationListener<K> {
+
+    /**
+     * Notification that the entry with the specified key was put, updated, removed, expired or evicted.
+     *
+     * @param key the key of the entry that changed.
+     */
+    void onInvalidate(K key);
+
+    /**
+     * Notification that all entries of the cache were removed.
+     */
+    void onClear();
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+/**
+ * Usage statistics of a single {@link Cache Cache}, suitable for export to JMX or a metrics registry.
+ * <p/>
+ * All counts are cumulative since the cache was created.  Implementations are thread-safe, but the values
+ * returned by subsequent calls are not guaranteed to form a consistent snapshot.
+ *
+ * @see InstrumentedCache
+ * @see InstrumentedCacheManager
+ * @since 1.1
+ */
+public interface CacheStatistics {
+
+    /**
+     * Returns the number of lookups that found a value in the cache.
+     *
+     * @return the number of lookups that found a value in the cache.
+     */
+    long getHitCount();
+
+    /**
+     * Returns the number of lookups that did not find a value in the cache.
+     *
+     * @return the number of lookups that did not find a value in the cache.
+     */
+    long getMissCount();
+
+    /**
+     * Returns the fraction of lookups that found a value in the cache, or {@code 0} if there were no lookups.
+     *
+     * @return the fraction of lookups that found a value in the cache.
+     */
+    double getHitRatio();
+
+    /**
+     * Returns the number of values put into the cache.
+     *
+     * @return the number of values put into the cache.
+     */
+    long getPutCount();
+
+    /**
+     * Returns the number of entries the cache removed on its own, e.g. because it was full or the entries expired,
+     * or {@code 0} if the cache does not track evictions.
+     *
+     * @return the number of entries the cache removed on its own.
+     */
+    long getEvictionCount();
+
+    /**
+     * Returns the number of values loaded by the users of the cache after a miss, as reported to
+     * {@link InstrumentedCache#recordLoad(long)}.
+     *
+     * @return the number of values loaded after a miss.
+     */
+    long getLoadCount();
+
+    /**
+     * Returns the total time in milliseconds spent loading values after a miss, as reported to
+     * {@link InstrumentedCache#recordLoad(long)}.
+     *
+     * @return the total time in milliseconds spent loading values after a miss.
+     */
+    long getTotalLoadTime();
+
+    /**
+     * Returns the current number of entries in the cache.
+     *
+     * @return the current number of entries in the cache.
+     */
+    int getSize();
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Static helper methods for operating on many entries of a {@link Cache Cache} at once.  Each method uses the
+ * cache's own bulk operation if it is a {@link BulkCache BulkCache} or {@link IterableCache IterableCache}, or
+ * individual or copying cache calls otherwise.
+ *
+ * @since 1.1
+ */
+public final class CacheUtils {
+
+    private CacheUtils() {
+    }
+
+    /**
+     * Returns the cached values for the specified keys, omitting keys without a cached value.
+     *
+     * @param cache the cache to read from.
+     * @param keys  the keys of the values to return.
+     * @return the cached values, keyed by their key.
+     * @throws CacheException if there is a problem accessing the underlying cache system
+     */
+    public static <K, V> Map<K, V> getAll(Cache<K, V> cache, Collection<? extends K> keys) throws CacheException {
+        if (keys == null || keys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        if (cache instanceof BulkCache) {
+            return ((BulkCache<K, V>) cache).getAll(keys);
+        }
+        Map<K, V> values = new HashMap<K, V>(keys.size());
+        for (K key : keys) {
+            V value = cache.get(key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Adds all of the specified entries to the cache.
+     *
+     * @param cache   the cache to add to.
+     * @param entries the entries to add.
+     * @throws CacheException if there is a problem accessing the underlying cache system
+     */
+    public static <K, V> void putAll(Cache<K, V> cache, Map<? extends K, ? extends V> entries) throws CacheException {
+        if (entries == null || entries.isEmpty()) {
+            return;
+        }
+        if (cache instanceof BulkCache) {
+            ((BulkCache<K, V>) cache).putAll(entries);
+            return;
+        }
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            cache.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Removes the entries for all of the specified keys from the cache.
+     *
+     * @param cache the cache to remove from.
+     * @param keys  the keys of the entries to remove.
+     * @throws CacheException if there is a problem accessing the underlying cache system
+     */
+    public static <K, V> void removeAll(Cache<K, V> cache, Collection<? extends K> keys) throws CacheException {
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        if (cache instanceof BulkCache) {
+            ((BulkCache<K, V>) cache).removeAll(keys);
+            return;
+        }
+        for (K key : keys) {
+            cache.remove(key);
+        }
+    }
+
+    /**
+     * Returns an iterator over the keys of the cache, without copying them if the cache is an
+     * {@link IterableCache IterableCache}.
+     *
+     * @param cache the cache whose keys to iterate.
+     * @return an iterator over the keys of the cache.
+     * @throws CacheException if there is a problem accessing the underlying cache system
+     */
+    public static <K, V> Iterator<K> keyIterator(Cache<K, V> cache) throws CacheException {
+        if (cache instanceof IterableCache) {
+            return ((IterableCache<K, V>) cache).keyIterator();
+        }
+        return cache.keys().iterator();
+    }
+
+    /**
+     * Returns an iterator over the values of the cache, without copying them if the cache is an
+     * {@link IterableCache IterableCache}.
+     *
+     * @param cache the cache whose values to iterate.
+     * @return an iterator over the values of the cache.
+     * @throws CacheException if there is a problem accessing the underlying cache system
+     */
+    public static <K, V> Iterator<V> valueIterator(Cache<K, V> cache) throws CacheException {
+        if (cache instanceof IterableCache) {
+            return ((IterableCache<K, V>) cache).valueIterator();
+        }
+        return cache.values().iterator();
+    }
+
+    /**
+     * Returns the values of the cache.  If the cache is an {@link IterableCache IterableCache}, the returned
+     * collection is an unmodifiable view that iterates the cache anew every time it is iterated, instead of a copy
+     * of the values; its {@code size} is the cache's {@link Cache#size() size}.
+     *
+     * @param cache the cache whose values to return.
+     * @return the values of the cache.
+     * @throws CacheException if there is a problem accessing the underlying cache system
+     */
+    public static <K, V> Collection<V> values(final Cache<K, V> cache) throws CacheException {
+        if (!(cache instanceof IterableCache)) {
+            return cache.values();
+        }
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return ((IterableCache<K, V>) cache).valueIterator();
+            }
+
+            @Override
+            public int size() {
+                return cache.size();
+            }
+        };
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default thread-safe {@link CacheStatistics CacheStatistics} implementation, based on counters that a cache
+ * increments as it is used.  The {@link #getSize() size} is obtained from the cache itself.
+ *
+ * @since 1.1
+ */
+public class DefaultCacheStatistics implements CacheStatistics, Serializable {
+
+    private final transient Cache<?, ?> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong puts = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadTime = new AtomicLong();
+
+    public DefaultCacheStatistics(Cache<?, ?> cache) {
+        this.cache = cache;
+    }
+
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    public void recordHits(long count) {
+        hits.addAndGet(count);
+    }
+
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    public void recordMisses(long count) {
+        misses.addAndGet(count);
+    }
+
+    public void recordPut() {
+        puts.incrementAndGet();
+    }
+
+    public void recordPuts(long count) {
+        puts.addAndGet(count);
+    }
+
+    public void recordEvictions(long count) {
+        evictions.addAndGet(count);
+    }
+
+    public void recordLoad(long loadTime) {
+        loads.incrementAndGet();
+        this.loadTime.addAndGet(loadTime);
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        long hits = getHitCount();
+        long lookups = hits + getMissCount();
+        return lookups > 0 ? (double) hits / lookups : 0;
+    }
+
+    public long getPutCount() {
+        return puts.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    public long getTotalLoadTime() {
+        return loadTime.get();
+    }
+
+    public int getSize() {
+        return cache != null ? cache.size() : 0;
+    }
+
+    public String toString() {
+        return new StringBuilder("hits=").append(getHitCount())
+                .append(", misses=").append(getMissCount())
+                .append(", puts=").append(getPutCount())
+                .append(", evictions=").append(getEvictionCount())
+                .append(", loads=").append(getLoadCount())
+                .append(", loadTime=").append(getTotalLoadTime()).append("ms")
+                .append(", size=").append(getSize())
+                .toString();
+    }
+}
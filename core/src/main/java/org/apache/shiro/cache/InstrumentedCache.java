@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+/**
+ * A {@link Cache Cache} that keeps {@link CacheStatistics statistics} about its usage.
+ *
+ * @since 1.1
+ */
+public interface InstrumentedCache<K, V> extends Cache<K, V> {
+
+    /**
+     * Returns the usage statistics of this cache.
+     *
+     * @return the usage statistics of this cache.
+     */
+    CacheStatistics getStatistics();
+
+    /**
+     * Records that a user of this cache loaded a value from its source after a cache miss, e.g. a realm
+     * querying its data store, so that the time spent on misses shows in the {@link #getStatistics() statistics}.
+     *
+     * @param loadTime the time in milliseconds it took to load the value.
+     */
+    void recordLoad(long loadTime);
+}
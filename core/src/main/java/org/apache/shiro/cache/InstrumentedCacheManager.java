@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import java.util.Map;
+
+/**
+ * A {@link CacheManager CacheManager} that provides access to the {@link CacheStatistics statistics} of the
+ * {@link InstrumentedCache InstrumentedCache}s it manages, e.g. for periodic export to JMX or a metrics registry.
+ *
+ * @since 1.1
+ */
+public interface InstrumentedCacheManager extends CacheManager {
+
+    /**
+     * Returns the statistics of each instrumented cache acquired from this manager so far, keyed by cache name.
+     *
+     * @return the statistics of each instrumented cache, keyed by cache name.
+     */
+    Map<String, CacheStatistics> getCacheStatistics();
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+/**
+ * A {@link Cache Cache} that notifies registered {@link CacheInvalidationListener listeners} of every change to its
+ * entries, including changes made by other nodes when the cache is replicated or distributed.  This allows
+ * copies of the entries held elsewhere, such as in a {@link NearCacheManager near cache}, to be kept coherent.
+ *
+ * @since 1.1
+ */
+public interface InvalidationNotifyingCache<K, V> extends Cache<K, V> {
+
+    /**
+     * Registers a listener to be notified of changes to the entries of this cache.
+     *
+     * @param listener the listener to register.
+     */
+    void addInvalidationListener(CacheInvalidationListener<K> listener);
+
+    /**
+     * Unregisters a previously {@link #addInvalidationListener(CacheInvalidationListener) registered} listener.
+     *
+     * @param listener the listener to unregister.
+     */
+    void removeInvalidationListener(CacheInvalidationListener<K> listener);
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import java.util.Iterator;
+
+/**
+ * A {@link Cache Cache} whose keys and values can be iterated without first copying all of them into a new
+ * collection, as {@link #keys()} and {@link #values()} typically do.  Walking a large cache, such as the active
+ * sessions cache during session validation, then only needs a small, constant amount of extra memory.
+ * <p/>
+ * The iterators are weakly consistent:  they never throw a {@link java.util.ConcurrentModificationException}, they
+ * may or may not reflect entries added or removed after their creation, and entries may be removed from the cache
+ * while iterating.  They do not support {@link Iterator#remove() removal}.
+ * <p/>
+ * Code iterating over an arbitrary {@code Cache} should use {@link CacheUtils CacheUtils}, which uses these
+ * iterators when the cache supports them and falls back to the copying methods otherwise.
+ *
+ * @since 1.1
+ */
+public interface IterableCache<K, V> extends Cache<K, V> {
+
+    /**
+     * Returns an iterator over the keys of this cache.
+     *
+     * @return an iterator over the keys of this cache.
+     * @throws CacheException if there is a problem accessing the underlying cache system
+     */
+    Iterator<K> keyIterator() throws CacheException;
+
+    /**
+     * Returns an iterator over the values of this cache.  Values whose entries were removed or expired during the
+     * iteration are skipped.
+     *
+     * @return an iterator over the values of this cache.
+     * @throws CacheException if there is a problem accessing the underlying cache system
+     */
+    Iterator<V> valueIterator() throws CacheException;
+}
@@ -0,0 +1,538 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe, size-bounded {@link Cache Cache} that evicts the least recently used entries once it is full and
+ * optionally expires entries a fixed time after they were created ({@link #getTimeToLive() time to live}) or
+ * last accessed ({@link #getTimeToIdle() time to idle}).
+ * <p/>
+ * The cache is split into segments by key hash, each guarded by its own lock and each holding an equal share of
+ * the {@link #getMaxEntries() maximum} number of entries, so that concurrent threads rarely contend.  Eviction is
+ * least-recently-used within a segment, which closely approximates global LRU order.  Expired entries are never
+ * returned; they are removed when they are encountered, from the least recently used end of a segment whenever
+ * an entry is added and, if a time to live is set, by a sweep of the whole segment after every {@code capacity}
+ * additions to it.
+ * <p/>
+ * Unlike a cache backed by a {@link org.apache.shiro.util.SoftHashMap SoftHashMap}, the memory used by this cache is
+ * bounded by its configuration rather than by garbage collector behavior, so it is not cleared wholesale when
+ * the JVM runs low on memory.
+ *
+ * @see LruCacheManager
+ * @since 1.1
+ */
+public class LruCache<K, V> implements InstrumentedCache<K, V>, BulkCache<K, V>, IterableCache<K, V> {
+
+    private static final int DEFAULT_SEGMENT_COUNT = 16;
+
+    private final String name;
+    private final int maxEntries;
+    private final long timeToLive;
+    private final long timeToIdle;
+    private final Segment<K, V>[] segments;
+    private final DefaultCacheStatistics statistics;
+
+    /**
+     * Creates a cache holding at most {@code maxEntries} entries that never expire.
+     *
+     * @param name       the name of the cache.
+     * @param maxEntries the maximum number of entries retained by the cache.
+     */
+    public LruCache(String name, int maxEntries) {
+        this(name, maxEntries, 0, 0);
+    }
+
+    /**
+     * Creates a cache holding at most {@code maxEntries} entries that expire after the given times.
+     *
+     * @param name       the name of the cache.
+     * @param maxEntries the maximum number of entries retained by the cache.
+     * @param timeToLive the number of milliseconds after its creation that an entry expires, or {@code 0} if
+     *                   entries do not expire based on their age.
+     * @param timeToIdle the number of milliseconds after its last access that an entry expires, or {@code 0} if
+     *                   entries do not expire based on their last access.
+     */
+    @SuppressWarnings({"unchecked"})
+    public LruCache(String name, int maxEntries, long timeToLive, long timeToIdle) {
+        if (name == null) {
+            throw new IllegalArgumentException("Cache name cannot be null.");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be greater than zero.");
+        }
+        if (timeToLive < 0 || timeToIdle < 0) {
+            throw new IllegalArgumentException("timeToLive and timeToIdle cannot be negative.");
+        }
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.timeToLive = timeToLive;
+        this.timeToIdle = timeToIdle;
+        this.statistics = new DefaultCacheStatistics(this);
+
+        //small caches get fewer segments so that each segment can still hold a reasonable number of entries:
+        int segmentCount = 1;
+        while (segmentCount < DEFAULT_SEGMENT_COUNT && segmentCount * 2 * 8 <= maxEntries) {
+            segmentCount *= 2;
+        }
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            int capacity = maxEntries / segmentCount + (i < maxEntries % segmentCount ? 1 : 0);
+            this.segments[i] = new Segment<K, V>(capacity, statistics);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the maximum number of entries retained by this cache.
+     *
+     * @return the maximum number of entries retained by this cache.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the number of milliseconds after its creation that an entry expires, or {@code 0} if entries do not
+     * expire based on their age.
+     *
+     * @return the number of milliseconds after its creation that an entry expires.
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Returns the number of milliseconds after its last access that an entry expires, or {@code 0} if entries do not
+     * expire based on their last access.
+     *
+     * @return the number of milliseconds after its last access that an entry expires.
+     */
+    public long getTimeToIdle() {
+        return timeToIdle;
+    }
+
+    private Segment<K, V> segmentFor(Object key) {
+        return segments[segmentIndex(key)];
+    }
+
+    private int segmentIndex(Object key) {
+        int h = key.hashCode();
+        //spread the hash bits, as ConcurrentHashMap does, so that poor hash codes still spread over the segments:
+        h += (h << 15) ^ 0xffffcd7d;
+        h ^= (h >>> 10);
+        h += (h << 3);
+        h ^= (h >>> 6);
+        h += (h << 2) + (h << 14);
+        h ^= (h >>> 16);
+        return h & (segments.length - 1);
+    }
+
+    /**
+     * Groups the given non-null keys by segment, so that bulk operations lock each segment only once.
+     */
+    @SuppressWarnings({"unchecked"})
+    private List<K>[] groupBySegment(Collection<? extends K> keys) {
+        List<K>[] groups = new List[segments.length];
+        for (K key : keys) {
+            if (key == null) {
+                continue;
+            }
+            int index = segmentIndex(key);
+            if (groups[index] == null) {
+                groups[index] = new ArrayList<K>();
+            }
+            groups[index].add(key);
+        }
+        return groups;
+    }
+
+    /**
+     * Returns the current time in milliseconds used to compute entry expiration.  Exists mainly so that tests can
+     * control the passing of time.
+     *
+     * @return the current time in milliseconds.
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private boolean isExpired(CacheEntry<V> entry, long now) {
+        return (timeToLive > 0 && now - entry.created >= timeToLive) ||
+                (timeToIdle > 0 && now - entry.lastAccessed >= timeToIdle);
+    }
+
+    public V get(K key) throws CacheException {
+        if (key == null) {
+            return null;
+        }
+        Segment<K, V> segment = segmentFor(key);
+        long now = currentTimeMillis();
+        segment.lock.lock();
+        try {
+            CacheEntry<V> entry = segment.map.get(key);
+            if (entry == null) {
+                statistics.recordMiss();
+                return null;
+            }
+            if (isExpired(entry, now)) {
+                segment.map.remove(key);
+                statistics.recordEvictions(1);
+                statistics.recordMiss();
+                return null;
+            }
+            entry.lastAccessed = now;
+            statistics.recordHit();
+            return entry.value;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public V put(K key, V value) throws CacheException {
+        if (key == null) {
+            throw new IllegalArgumentException("Cache key cannot be null.");
+        }
+        Segment<K, V> segment = segmentFor(key);
+        long now = currentTimeMillis();
+        segment.lock.lock();
+        try {
+            CacheEntry<V> previous = segment.map.put(key, new CacheEntry<V>(value, now));
+            statistics.recordPut();
+            purgeExpired(segment, now, 1);
+            return previous != null && !isExpired(previous, now) ? previous.value : null;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes expired entries from the segment after {@code puts} entries were put into it.  Entries are in access
+     * order, so entries expired by time to idle gather at the head of the map and are removed from there.  An entry
+     * expired by time to live may have been accessed recently and sit anywhere in the map, so with a time to live the
+     * whole segment is swept once per {@code capacity} puts, which keeps the cost per put constant on average.
+     */
+    private void purgeExpired(Segment<K, V> segment, long now, int puts) {
+        if (timeToLive <= 0 && timeToIdle <= 0) {
+            return;
+        }
+        boolean sweep = false;
+        if (timeToLive > 0) {
+            segment.putsSinceSweep += puts;
+            if (segment.putsSinceSweep >= segment.capacity) {
+                segment.putsSinceSweep = 0;
+                sweep = true;
+            }
+        }
+        Iterator<CacheEntry<V>> i = segment.map.values().iterator();
+        while (i.hasNext()) {
+            if (!isExpired(i.next(), now)) {
+                if (sweep) {
+                    continue;
+                }
+                break;
+            }
+            i.remove();
+            statistics.recordEvictions(1);
+        }
+    }
+
+    public V remove(K key) throws CacheException {
+        if (key == null) {
+            return null;
+        }
+        Segment<K, V> segment = segmentFor(key);
+        long now = currentTimeMillis();
+        segment.lock.lock();
+        try {
+            CacheEntry<V> previous = segment.map.remove(key);
+            return previous != null && !isExpired(previous, now) ? previous.value : null;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public Map<K, V> getAll(Collection<? extends K> keys) throws CacheException {
+        Map<K, V> values = new HashMap<K, V>(keys.size());
+        List<K>[] groups = groupBySegment(keys);
+        long now = currentTimeMillis();
+        for (int i = 0; i < groups.length; i++) {
+            if (groups[i] == null) {
+                continue;
+            }
+            Segment<K, V> segment = segments[i];
+            segment.lock.lock();
+            try {
+                for (K key : groups[i]) {
+                    CacheEntry<V> entry = segment.map.get(key);
+                    if (entry != null && isExpired(entry, now)) {
+                        segment.map.remove(key);
+                        statistics.recordEvictions(1);
+                    } else if (entry != null) {
+                        entry.lastAccessed = now;
+                        values.put(key, entry.value);
+                    }
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        statistics.recordHits(values.size());
+        statistics.recordMisses(keys.size() - values.size());
+        return values;
+    }
+
+    public void putAll(Map<? extends K, ? extends V> entries) throws CacheException {
+        for (K key : entries.keySet()) {
+            if (key == null) {
+                throw new IllegalArgumentException("Cache key cannot be null.");
+            }
+        }
+        List<K>[] groups = groupBySegment(entries.keySet());
+        long now = currentTimeMillis();
+        for (int i = 0; i < groups.length; i++) {
+            if (groups[i] == null) {
+                continue;
+            }
+            Segment<K, V> segment = segments[i];
+            segment.lock.lock();
+            try {
+                for (K key : groups[i]) {
+                    segment.map.put(key, new CacheEntry<V>(entries.get(key), now));
+                }
+                purgeExpired(segment, now, groups[i].size());
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        statistics.recordPuts(entries.size());
+    }
+
+    public void removeAll(Collection<? extends K> keys) throws CacheException {
+        List<K>[] groups = groupBySegment(keys);
+        for (int i = 0; i < groups.length; i++) {
+            if (groups[i] == null) {
+                continue;
+            }
+            Segment<K, V> segment = segments[i];
+            segment.lock.lock();
+            try {
+                for (K key : groups[i]) {
+                    segment.map.remove(key);
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    public void clear() throws CacheException {
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.map.clear();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries in this cache, which may include expired entries that have not yet been
+     * removed.  Expired entries are removed when they are read, and while entries are added:  entries expired by
+     * time to idle right away, entries expired by time to live at the latest after as many more entries were added
+     * to their segment as it can hold.
+     *
+     * @return the number of entries in this cache.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.map.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    public Set<K> keys() {
+        Set<K> keys = new HashSet<K>();
+        long now = currentTimeMillis();
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                for (Map.Entry<K, CacheEntry<V>> entry : segment.map.entrySet()) {
+                    if (!isExpired(entry.getValue(), now)) {
+                        keys.add(entry.getKey());
+                    }
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        if (keys.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(keys);
+    }
+
+    public Collection<V> values() {
+        List<V> values = new ArrayList<V>();
+        long now = currentTimeMillis();
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                for (CacheEntry<V> entry : segment.map.values()) {
+                    if (!isExpired(entry, now)) {
+                        values.add(entry.value);
+                    }
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        if (values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    public Iterator<K> keyIterator() throws CacheException {
+        return new SegmentIterator<K>() {
+            @Override
+            protected void collect(Map.Entry<K, CacheEntry<V>> entry, List<K> elements) {
+                elements.add(entry.getKey());
+            }
+        };
+    }
+
+    public Iterator<V> valueIterator() throws CacheException {
+        return new SegmentIterator<V>() {
+            @Override
+            protected void collect(Map.Entry<K, CacheEntry<V>> entry, List<V> elements) {
+                elements.add(entry.getValue().value);
+            }
+        };
+    }
+
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    public void recordLoad(long loadTime) {
+        statistics.recordLoad(loadTime);
+    }
+
+    public String toString() {
+        return new StringBuilder("LruCache '")
+                .append(name).append("' (")
+                .append(size())
+                .append(" of max ")
+                .append(maxEntries)
+                .append(" entries)")
+                .toString();
+    }
+
+    /**
+     * Iterates over the unexpired entries one segment at a time, copying the elements of a single segment under its
+     * lock, so that at most one segment's worth of elements is copied at once.
+     */
+    private abstract class SegmentIterator<T> implements Iterator<T> {
+
+        private final List<T> elements = new ArrayList<T>();
+        private int segmentIndex;
+        private int elementIndex;
+
+        protected abstract void collect(Map.Entry<K, CacheEntry<V>> entry, List<T> elements);
+
+        public boolean hasNext() {
+            while (elementIndex >= elements.size() && segmentIndex < segments.length) {
+                elements.clear();
+                elementIndex = 0;
+                Segment<K, V> segment = segments[segmentIndex++];
+                long now = currentTimeMillis();
+                segment.lock.lock();
+                try {
+                    for (Map.Entry<K, CacheEntry<V>> entry : segment.map.entrySet()) {
+                        if (!isExpired(entry.getValue(), now)) {
+                            collect(entry, elements);
+                        }
+                    }
+                } finally {
+                    segment.lock.unlock();
+                }
+            }
+            return elementIndex < elements.size();
+        }
+
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return elements.get(elementIndex++);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class CacheEntry<V> {
+
+        private final V value;
+        private final long created;
+        private long lastAccessed;
+
+        private CacheEntry(V value, long created) {
+            this.value = value;
+            this.created = created;
+            this.lastAccessed = created;
+        }
+    }
+
+    private static class Segment<K, V> {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<K, CacheEntry<V>> map;
+        private final int capacity;
+        private int putsSinceSweep;
+
+        private Segment(final int capacity, final DefaultCacheStatistics statistics) {
+            this.capacity = capacity;
+            this.map = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                    if (size() > capacity) {
+                        statistics.recordEvictions(1);
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Memory-only {@link CacheManager CacheManager} implementation that produces size-bounded, optionally expiring
+ * {@link LruCache LruCache}s.  Compared to the {@link MemoryConstrainedCacheManager}, the memory used by the caches
+ * is bounded by configuration and entries are evicted in least-recently-used order instead of being cleared by the
+ * garbage collector under memory pressure.
+ * <p/>
+ * The {@link #setMaxEntries(int) maxEntries}, {@link #setTimeToLive(long) timeToLive} and
+ * {@link #setTimeToIdle(long) timeToIdle} properties apply to every cache unless overridden for a specific cache
+ * name, which is easily configured in INI, for example:
+ * <pre>
+ * cacheManager = org.apache.shiro.cache.LruCacheManager
+ * cacheManager.maxEntries = 10000
+ * cacheManager.timeToIdle = 1800000
+ * cacheManager.cacheMaxEntries = myRealm.authorizationCache:50000
+ * cacheManager.cacheTimeToLive = myRealm.authorizationCache:600000
+ * securityManager.cacheManager = $cacheManager</pre>
+ * Changes to the configuration only affect caches that are created afterwards.
+ *
+ * @since 1.1
+ */
+public class LruCacheManager extends AbstractCacheManager {
+
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private long timeToLive;
+    private long timeToIdle;
+
+    private Map<String, Long> cacheMaxEntries = Collections.emptyMap();
+    private Map<String, Long> cacheTimeToLive = Collections.emptyMap();
+    private Map<String, Long> cacheTimeToIdle = Collections.emptyMap();
+
+    /**
+     * Returns the maximum number of entries retained by each cache, unless overridden per cache.  Defaults to
+     * {@link #DEFAULT_MAX_ENTRIES}.
+     *
+     * @return the maximum number of entries retained by each cache.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the number of milliseconds after its creation that a cache entry expires, unless overridden per
+     * cache.  Defaults to {@code 0}, meaning entries do not expire based on their age.
+     *
+     * @return the number of milliseconds after its creation that a cache entry expires.
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Returns the number of milliseconds after its last access that a cache entry expires, unless overridden per
+     * cache.  Defaults to {@code 0}, meaning entries do not expire based on their last access.
+     *
+     * @return the number of milliseconds after its last access that a cache entry expires.
+     */
+    public long getTimeToIdle() {
+        return timeToIdle;
+    }
+
+    public void setTimeToIdle(long timeToIdle) {
+        this.timeToIdle = timeToIdle;
+    }
+
+    public Map<String, Long> getCacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+
+    /**
+     * Sets the maximum number of entries for specific caches, keyed by cache name.  Values may be numbers or
+     * their String representation.
+     *
+     * @param cacheMaxEntries the maximum number of entries for specific caches, keyed by cache name.
+     */
+    public void setCacheMaxEntries(Map<String, ?> cacheMaxEntries) {
+        this.cacheMaxEntries = toLongs(cacheMaxEntries);
+    }
+
+    public Map<String, Long> getCacheTimeToLive() {
+        return cacheTimeToLive;
+    }
+
+    /**
+     * Sets the {@link #getTimeToLive() timeToLive} for specific caches, keyed by cache name.  Values may be numbers
+     * or their String representation.
+     *
+     * @param cacheTimeToLive the time to live in milliseconds for specific caches, keyed by cache name.
+     */
+    public void setCacheTimeToLive(Map<String, ?> cacheTimeToLive) {
+        this.cacheTimeToLive = toLongs(cacheTimeToLive);
+    }
+
+    public Map<String, Long> getCacheTimeToIdle() {
+        return cacheTimeToIdle;
+    }
+
+    /**
+     * Sets the {@link #getTimeToIdle() timeToIdle} for specific caches, keyed by cache name.  Values may be numbers
+     * or their String representation.
+     *
+     * @param cacheTimeToIdle the time to idle in milliseconds for specific caches, keyed by cache name.
+     */
+    public void setCacheTimeToIdle(Map<String, ?> cacheTimeToIdle) {
+        this.cacheTimeToIdle = toLongs(cacheTimeToIdle);
+    }
+
+    private static Map<String, Long> toLongs(Map<String, ?> values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> longs = new HashMap<String, Long>(values.size());
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Number) {
+                longs.put(entry.getKey(), ((Number) value).longValue());
+            } else if (value != null) {
+                try {
+                    longs.put(entry.getKey(), Long.parseLong(value.toString().trim()));
+                } catch (NumberFormatException e) {
+                    String msg = "Value [" + value + "] for cache [" + entry.getKey() + "] is not a number.";
+                    throw new IllegalArgumentException(msg, e);
+                }
+            }
+        }
+        return Collections.unmodifiableMap(longs);
+    }
+
+    private static long get(Map<String, Long> values, String name, long defaultValue) {
+        Long value = values.get(name);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Returns a new {@link LruCache LruCache} configured for the given cache name.
+     *
+     * @param name the name of the cache
+     * @return a new {@link LruCache LruCache} configured for the given cache name.
+     */
+    @Override
+    protected Cache createCache(String name) throws CacheException {
+        int max = (int) Math.min(Integer.MAX_VALUE, get(cacheMaxEntries, name, maxEntries));
+        return new LruCache<Object, Object>(name, max,
+                get(cacheTimeToLive, name, timeToLive), get(cacheTimeToIdle, name, timeToIdle));
+    }
+}
@@ -22,7 +22,10 @@ import org.apache.shiro.util.CollectionUtils;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -31,7 +34,7 @@ import java.util.Set;
  *
  * @since 1.0
  */
-public class MapCache<K, V> implements Cache<K, V> {
+public class MapCache<K, V> implements InstrumentedCache<K, V>, BulkCache<K, V>, IterableCache<K, V> {
 
     /**
      * Backing instance.
@@ -43,6 +46,8 @@ public class MapCache<K, V> implements Cache<K, V> {
      */
     private final String name;
 
+    private final DefaultCacheStatistics statistics;
+
     public MapCache(String name, Map<K, V> backingMap) {
         if (name == null) {
             throw new IllegalArgumentException("Cache name cannot be null.");
@@ -52,13 +57,21 @@ public class MapCache<K, V> implements Cache<K, V> {
         }
         this.name = name;
         this.map = backingMap;
+        this.statistics = new DefaultCacheStatistics(this);
     }
 
     public V get(K key) throws CacheException {
-        return map.get(key);
+        V value = map.get(key);
+        if (value != null) {
+            statistics.recordHit();
+        } else {
+            statistics.recordMiss();
+        }
+        return value;
     }
 
     public V put(K key, V value) throws CacheException {
+        statistics.recordPut();
         return map.put(key, value);
     }
 
@@ -66,6 +79,30 @@ public class MapCache<K, V> implements Cache<K, V> {
         return map.remove(key);
     }
 
+    public Map<K, V> getAll(Collection<? extends K> keys) throws CacheException {
+        Map<K, V> values = new HashMap<K, V>(keys.size());
+        for (K key : keys) {
+            V value = map.get(key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        statistics.recordHits(values.size());
+        statistics.recordMisses(keys.size() - values.size());
+        return values;
+    }
+
+    public void putAll(Map<? extends K, ? extends V> entries) throws CacheException {
+        statistics.recordPuts(entries.size());
+        map.putAll(entries);
+    }
+
+    public void removeAll(Collection<? extends K> keys) throws CacheException {
+        for (K key : keys) {
+            map.remove(key);
+        }
+    }
+
     public void clear() throws CacheException {
         map.clear();
     }
@@ -90,6 +127,61 @@ public class MapCache<K, V> implements Cache<K, V> {
         return Collections.emptySet();
     }
 
+    public Iterator<K> keyIterator() throws CacheException {
+        return Collections.unmodifiableSet(map.keySet()).iterator();
+    }
+
+    /**
+     * Returns an iterator looking up the value of each key as it goes, so that maps whose {@code values()} are
+     * computed copies, such as the {@link org.apache.shiro.util.ConcurrentSoftHashMap ConcurrentSoftHashMap}, are
+     * not copied either.
+     *
+     * @return an iterator over the values of this cache.
+     * @since 1.1
+     */
+    public Iterator<V> valueIterator() throws CacheException {
+        final Iterator<K> keys = map.keySet().iterator();
+        return new Iterator<V>() {
+            private V next;
+
+            public boolean hasNext() {
+                while (next == null && keys.hasNext()) {
+                    next = map.get(keys.next());
+                }
+                return next != null;
+            }
+
+            public V next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                V value = next;
+                next = null;
+                return value;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Returns the usage statistics of this cache.  Entries removed by the backing map itself, e.g. values cleared
+     * by the garbage collector from a {@link org.apache.shiro.util.SoftHashMap SoftHashMap}, are not counted as
+     * evictions.
+     *
+     * @return the usage statistics of this cache.
+     * @since 1.1
+     */
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    public void recordLoad(long loadTime) {
+        statistics.recordLoad(loadTime);
+    }
+
     public String toString() {
         return new StringBuilder("MapCache '")
                 .append(name).append("' (")
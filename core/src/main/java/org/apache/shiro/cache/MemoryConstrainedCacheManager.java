@@ -18,13 +18,15 @@
  */
 package org.apache.shiro.cache;
 
+import org.apache.shiro.util.ConcurrentSoftHashMap;
 import org.apache.shiro.util.SoftHashMap;
 
 /**
  * Simple memory-only based {@link CacheManager CacheManager} implementation usable in production
  * environments.  It will not cause memory leaks as it produces {@link Cache Cache}s backed by
- * {@link SoftHashMap SoftHashMap}s which auto-size themselves based on the runtime environment's memory
- * limitations and garbage collection behavior.
+ * {@link ConcurrentSoftHashMap ConcurrentSoftHashMap}s which auto-size themselves based on the runtime environment's
+ * memory limitations and garbage collection behavior.  Unlike with a {@link SoftHashMap SoftHashMap}, reads never lock,
+ * so heavily read caches scale with the number of processors.
  * <p/>
  * While the {@code Cache} instances created are thread-safe, they do not offer any enterprise-level features such as
  * cache coherency, optimistic locking, failover or other similar features.  For more enterprise features, consider
@@ -36,13 +38,13 @@ import org.apache.shiro.util.SoftHashMap;
 public class MemoryConstrainedCacheManager extends AbstractCacheManager {
 
     /**
-     * Returns a new {@link MapCache MapCache} instance backed by a {@link SoftHashMap}.
+     * Returns a new {@link MapCache MapCache} instance backed by a {@link ConcurrentSoftHashMap}.
      *
      * @param name the name of the cache
-     * @return a new {@link MapCache MapCache} instance backed by a {@link SoftHashMap}.
+     * @return a new {@link MapCache MapCache} instance backed by a {@link ConcurrentSoftHashMap}.
      */
     @Override
     protected Cache createCache(String name) {
-        return new MapCache<Object, Object>(name, new SoftHashMap<Object, Object>());
+        return new MapCache<Object, Object>(name, new ConcurrentSoftHashMap<Object, Object>());
     }
 }
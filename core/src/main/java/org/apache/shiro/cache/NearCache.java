@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import org.apache.shiro.util.Destroyable;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A two-tier {@link Cache Cache}:  a small, bounded local {@link LruCache LruCache} holding object references in
+ * front of a backing cache, typically a replicated or remote one where every read deserializes or copies the value.
+ * <p/>
+ * Reads are served from the local tier when possible and populate it on a miss.  Writes go through to the backing
+ * cache and remove the local copy, which the next read populates again.  The local tier is kept coherent with the
+ * backing cache through {@link CacheInvalidationListener invalidation callbacks} if the backing cache is an
+ * {@link InvalidationNotifyingCache InvalidationNotifyingCache}, so that a change made by another node removes the
+ * local copy.  A local entry read from the backing cache is only kept if no invalidation of its key arrived while it
+ * was being read, so a concurrent change cannot be overwritten by a stale local copy.  Invalidations are tracked by
+ * a fixed number of counters selected by key hash, so writes to other keys rarely prevent populating the local
+ * tier.
+ * <p/>
+ * The {@link #size() size}, {@link #keys() keys} and {@link #values() values} are those of the backing cache;
+ * the {@link #getStatistics() statistics} are those of the local tier, i.e. its hit ratio is the near cache hit ratio.
+ *
+ * @see NearCacheManager
+ * @since 1.1
+ */
+public class NearCache<K, V> implements InstrumentedCache<K, V>, IterableCache<K, V>, Destroyable {
+
+    private final Cache<K, V> backingCache;
+    private final LruCache<K, V> localCache;
+    private final CacheInvalidationListener<K> invalidationListener;
+
+    /**
+     * Number of invalidation counters, a power of two.
+     */
+    private static final int INVALIDATION_STRIPES = 64;
+
+    /**
+     * Incremented on every invalidation of a key mapped to the counter, to detect invalidations that happen while an
+     * entry is read from the backing cache.
+     */
+    private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+
+    /**
+     * Incremented whenever the whole cache is cleared.
+     */
+    private final AtomicLong clears = new AtomicLong();
+
+    /**
+     * Creates a near cache in front of the specified backing cache.
+     *
+     * @param backingCache the backing cache holding the authoritative entries.
+     * @param localCache   the local tier.
+     */
+    public NearCache(Cache<K, V> backingCache, LruCache<K, V> localCache) {
+        if (backingCache == null || localCache == null) {
+            throw new IllegalArgumentException("backingCache and localCache arguments cannot be null.");
+        }
+        this.backingCache = backingCache;
+        this.localCache = localCache;
+        this.invalidationListener = new CacheInvalidationListener<K>() {
+            public void onInvalidate(K key) {
+                invalidate(key);
+            }
+
+            public void onClear() {
+                clears.incrementAndGet();
+                NearCache.this.localCache.clear();
+            }
+        };
+        if (backingCache instanceof InvalidationNotifyingCache) {
+            ((InvalidationNotifyingCache<K, V>) backingCache).addInvalidationListener(invalidationListener);
+        }
+    }
+
+    public Cache<K, V> getBackingCache() {
+        return backingCache;
+    }
+
+    private static int stripe(Object key) {
+        int h = key != null ? key.hashCode() : 0;
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return h & (INVALIDATION_STRIPES - 1);
+    }
+
+    /**
+     * Returns a value that changes whenever the key, or any key sharing its counter, is invalidated.  Both counters
+     * only grow, so their sum changes whenever either of them does.
+     */
+    private long version(K key) {
+        return invalidations.get(stripe(key)) + clears.get();
+    }
+
+    private void invalidate(K key) {
+        invalidations.incrementAndGet(stripe(key));
+        localCache.remove(key);
+    }
+
+    public V get(K key) throws CacheException {
+        V value = localCache.get(key);
+        if (value != null) {
+            return value;
+        }
+        long before = version(key);
+        value = backingCache.get(key);
+        if (value != null && version(key) == before) {
+            localCache.put(key, value);
+            //an invalidation may have raced with the put - don't keep a possibly stale copy:
+            if (version(key) != before) {
+                localCache.remove(key);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Writes the entry to the backing cache and removes the local copy.  The local tier is not populated here, as a
+     * concurrent write of the same key could otherwise leave a stale local copy behind.
+     */
+    public V put(K key, V value) throws CacheException {
+        V previous = backingCache.put(key, value);
+        invalidate(key);
+        return previous;
+    }
+
+    public V remove(K key) throws CacheException {
+        V previous = backingCache.remove(key);
+        invalidate(key);
+        return previous;
+    }
+
+    public void clear() throws CacheException {
+        backingCache.clear();
+        clears.incrementAndGet();
+        localCache.clear();
+    }
+
+    public int size() {
+        return backingCache.size();
+    }
+
+    public Set<K> keys() {
+        return backingCache.keys();
+    }
+
+    public Collection<V> values() {
+        return backingCache.values();
+    }
+
+    public Iterator<K> keyIterator() throws CacheException {
+        return CacheUtils.keyIterator(backingCache);
+    }
+
+    public Iterator<V> valueIterator() throws CacheException {
+        return CacheUtils.valueIterator(backingCache);
+    }
+
+    public CacheStatistics getStatistics() {
+        return localCache.getStatistics();
+    }
+
+    public void recordLoad(long loadTime) {
+        localCache.recordLoad(loadTime);
+        if (backingCache instanceof InstrumentedCache) {
+            ((InstrumentedCache) backingCache).recordLoad(loadTime);
+        }
+    }
+
+    /**
+     * Unregisters this cache's invalidation listener from the backing cache and clears the local tier.
+     */
+    public void destroy() {
+        if (backingCache instanceof InvalidationNotifyingCache) {
+            ((InvalidationNotifyingCache<K, V>) backingCache).removeInvalidationListener(invalidationListener);
+        }
+        localCache.clear();
+    }
+
+    public String toString() {
+        return "NearCache [" + localCache + " in front of " + backingCache + "]";
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link CacheManager CacheManager} decorator that places a small, bounded local object cache
+ * ({@link NearCache NearCache}) in front of each cache of a backing {@code CacheManager}, typically one managing
+ * replicated or remote caches.  Entries read on every request, such as cached {@code AuthorizationInfo} or active
+ * sessions, are then served without deserializing or copying them from the backing cache each time.
+ * <p/>
+ * Local entries are kept coherent through invalidation callbacks of backing caches that are
+ * {@link InvalidationNotifyingCache InvalidationNotifyingCache}s.  Backing caches that cannot notify of changes are
+ * only fronted by a local tier if a {@link #setTimeToLive(long) timeToLive} is configured, which then bounds how
+ * long a change made by another node may go unnoticed; otherwise they are used directly.
+ * <p/>
+ * Example INI configuration:
+ * <pre>
+ * ehCacheManager = org.apache.shiro.cache.ehcache.EhCacheManager
+ * cacheManager = org.apache.shiro.cache.NearCacheManager
+ * cacheManager.backingCacheManager = $ehCacheManager
+ * cacheManager.maxEntries = 1000
+ * securityManager.cacheManager = $cacheManager</pre>
+ *
+ * @since 1.1
+ */
+public class NearCacheManager extends AbstractCacheManager {
+
+    private static final Logger log = LoggerFactory.getLogger(NearCacheManager.class);
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private CacheManager backingCacheManager;
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private long timeToLive;
+
+    public NearCacheManager() {
+    }
+
+    public NearCacheManager(CacheManager backingCacheManager) {
+        this.backingCacheManager = backingCacheManager;
+    }
+
+    public CacheManager getBackingCacheManager() {
+        return backingCacheManager;
+    }
+
+    public void setBackingCacheManager(CacheManager backingCacheManager) {
+        this.backingCacheManager = backingCacheManager;
+    }
+
+    /**
+     * Returns the maximum number of entries held by the local tier of each cache.  Defaults to
+     * {@link #DEFAULT_MAX_ENTRIES}.
+     *
+     * @return the maximum number of entries held by the local tier of each cache.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the number of milliseconds after which a local entry is discarded and read from the backing cache
+     * again, or {@code 0} (the default) if local entries are only discarded when invalidated or evicted.
+     *
+     * @return the number of milliseconds after which a local entry is discarded.
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    @Override
+    protected Cache createCache(String name) throws CacheException {
+        CacheManager backing = getBackingCacheManager();
+        if (backing == null) {
+            throw new IllegalStateException("A backingCacheManager must be configured.");
+        }
+        Cache<Object, Object> backingCache = backing.getCache(name);
+        if (!(backingCache instanceof InvalidationNotifyingCache) && getTimeToLive() <= 0) {
+            if (log.isInfoEnabled()) {
+                log.info("Cache [" + name + "] does not notify of invalidations and no timeToLive is configured.  " +
+                        "Using it without a near cache.");
+            }
+            return backingCache;
+        }
+        return new NearCache<Object, Object>(backingCache,
+                new LruCache<Object, Object>(name, getMaxEntries(), getTimeToLive(), 0));
+    }
+}
@@ -0,0 +1,498 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import org.apache.shiro.io.DefaultSerializer;
+import org.apache.shiro.io.Serializer;
+import org.apache.shiro.util.Destroyable;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link Cache Cache} implementation that stores its values serialized outside of the Java heap, in direct
+ * {@link ByteBuffer ByteBuffer}s.  Large caches, such as the active sessions of a busy application, then no longer
+ * add their object graphs to the heap the garbage collector has to trace; only a small on-heap index of the keys
+ * and the locations of their values remains.
+ * <p/>
+ * Memory is allocated in slabs of {@link #getSlabSize() slabSize} bytes as needed, up to the cache's
+ * {@link #getCapacity() capacity}.  Slabs are divided into blocks of {@link #getBlockSize() blockSize} bytes, and a
+ * value occupies as many blocks as its serialized form needs, so that blocks freed by any value can be reused by any
+ * other.  When no free blocks remain, least recently used entries are evicted until the new value fits, unless
+ * {@link #setEvictionEnabled(boolean) eviction is disabled}, in which case the {@link #put put} fails instead.
+ * <p/>
+ * Values are (de)serialized by the configured {@link Serializer Serializer}, a {@link DefaultSerializer} by default,
+ * outside of the cache's lock; every {@link #get get} returns a new copy of the cached value, so changes to a
+ * returned value must be {@link #put put} back into the cache.  Direct memory is only released after the cache has
+ * been {@link #destroy() destroyed} and garbage collected; size the JVM's {@code -XX:MaxDirectMemorySize}
+ * accordingly.
+ *
+ * @see OffHeapCacheManager
+ * @since 1.1
+ */
+public class OffHeapCache<K, V> implements InstrumentedCache<K, V>, IterableCache<K, V>, Destroyable {
+
+    public static final int DEFAULT_BLOCK_SIZE = 256;
+    public static final int DEFAULT_SLAB_SIZE = 1024 * 1024;
+
+    private final String name;
+    private final long capacity;
+    private final int blockSize;
+    private final int blocksPerSlab;
+    private final int totalBlocks;
+    private final Serializer<V> serializer;
+    private final DefaultCacheStatistics statistics;
+    private volatile boolean evictionEnabled = true;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<K, Slot> index;
+    private final ByteBuffer[] slabs;
+
+    /**
+     * Blocks that held removed values, available for reuse.
+     */
+    private final int[] freeBlocks;
+    private int freeCount;
+
+    /**
+     * Blocks from {@code nextBlock} on have never been used.
+     */
+    private int nextBlock;
+
+    /**
+     * Creates a cache storing at most {@code capacity} bytes with the default block and slab sizes and a
+     * {@link DefaultSerializer}.
+     *
+     * @param name     the name of the cache.
+     * @param capacity the maximum number of bytes of direct memory used by the cache.
+     */
+    public OffHeapCache(String name, long capacity) {
+        this(name, capacity, DEFAULT_BLOCK_SIZE, DEFAULT_SLAB_SIZE, new DefaultSerializer<V>());
+    }
+
+    /**
+     * Creates a cache storing at most {@code capacity} bytes.
+     *
+     * @param name       the name of the cache.
+     * @param capacity   the maximum number of bytes of direct memory used by the cache.
+     * @param blockSize  the unit of allocation, in bytes.
+     * @param slabSize   the number of bytes allocated at once, a multiple of the {@code blockSize}.
+     * @param serializer the serializer converting values to and from bytes.
+     */
+    public OffHeapCache(String name, long capacity, int blockSize, int slabSize, Serializer<V> serializer) {
+        if (name == null) {
+            throw new IllegalArgumentException("Cache name cannot be null.");
+        }
+        if (serializer == null) {
+            throw new IllegalArgumentException("Serializer cannot be null.");
+        }
+        if (blockSize <= 0 || slabSize < blockSize || slabSize % blockSize != 0) {
+            throw new IllegalArgumentException("slabSize must be a positive multiple of the positive blockSize.");
+        }
+        long blocks = capacity / blockSize;
+        if (blocks <= 0 || blocks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("capacity must be between blockSize and " +
+                    "blockSize * Integer.MAX_VALUE bytes.");
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.blockSize = blockSize;
+        this.blocksPerSlab = slabSize / blockSize;
+        this.totalBlocks = (int) blocks;
+        this.serializer = serializer;
+        this.statistics = new DefaultCacheStatistics(this);
+        this.index = new LinkedHashMap<K, Slot>(16, 0.75f, true);
+        this.slabs = new ByteBuffer[(totalBlocks + blocksPerSlab - 1) / blocksPerSlab];
+        this.freeBlocks = new int[totalBlocks];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the maximum number of bytes of direct memory used by this cache.
+     *
+     * @return the maximum number of bytes of direct memory used by this cache.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getSlabSize() {
+        return blocksPerSlab * blockSize;
+    }
+
+    public boolean isEvictionEnabled() {
+        return evictionEnabled;
+    }
+
+    /**
+     * Sets whether least recently used entries are evicted to make room for a new value once the capacity is
+     * exhausted.  If disabled, such a {@link #put put} throws a {@link CacheException} and leaves the cache
+     * unchanged instead, for caches that are the system of record of their values.  Defaults to {@code true}.
+     *
+     * @param evictionEnabled whether least recently used entries are evicted when the capacity is exhausted.
+     */
+    public void setEvictionEnabled(boolean evictionEnabled) {
+        this.evictionEnabled = evictionEnabled;
+    }
+
+    /**
+     * Returns the number of bytes of direct memory allocated so far.
+     *
+     * @return the number of bytes of direct memory allocated so far.
+     */
+    public long getAllocatedBytes() {
+        lock.lock();
+        try {
+            long allocated = 0;
+            for (ByteBuffer slab : slabs) {
+                if (slab != null) {
+                    allocated += slab.capacity();
+                }
+            }
+            return allocated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of bytes of direct memory in blocks currently holding values.
+     *
+     * @return the number of bytes of direct memory in blocks currently holding values.
+     */
+    public long getUsedBytes() {
+        lock.lock();
+        try {
+            return (long) (nextBlock - freeCount) * blockSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private V toValue(byte[] bytes) {
+        return bytes != null ? serializer.deserialize(bytes) : null;
+    }
+
+    public V get(K key) throws CacheException {
+        byte[] bytes;
+        lock.lock();
+        try {
+            Slot slot = index.get(key);
+            bytes = slot != null ? read(slot) : null;
+        } finally {
+            lock.unlock();
+        }
+        if (bytes != null) {
+            statistics.recordHit();
+        } else {
+            statistics.recordMiss();
+        }
+        return toValue(bytes);
+    }
+
+    public V put(K key, V value) throws CacheException {
+        return toValue(put(key, value, true));
+    }
+
+    /**
+     * Stores the value like {@link #put put}, without reading and deserializing the previous value to return it.
+     * Callers that ignore the previous value should use this method to save the copy and deserialization.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @throws CacheException if the value doesn't fit into the cache.
+     */
+    public void store(K key, V value) throws CacheException {
+        put(key, value, false);
+    }
+
+    private byte[] put(K key, V value, boolean readPrevious) throws CacheException {
+        byte[] bytes = serializer.serialize(value);
+        int blockCount = Math.max(1, (bytes.length + blockSize - 1) / blockSize);
+        if (blockCount > totalBlocks) {
+            throw new CacheException("Value of " + bytes.length + " bytes for key [" + key + "] exceeds the " +
+                    "capacity of cache [" + name + "].");
+        }
+        byte[] previous = null;
+        long evictions = 0;
+        lock.lock();
+        try {
+            Slot slot = index.get(key);
+            if (!evictionEnabled) {
+                int available = freeCount + totalBlocks - nextBlock + (slot != null ? slot.blocks.length : 0);
+                if (available < blockCount) {
+                    throw new CacheException("Cache [" + name + "] is full: the value of " + bytes.length +
+                            " bytes for key [" + key + "] does not fit into its capacity of " + capacity +
+                            " bytes and eviction is disabled.");
+                }
+            }
+            index.remove(key);
+            if (slot != null) {
+                if (readPrevious) {
+                    previous = read(slot);
+                }
+                free(slot);
+            }
+            //evict least recently used entries until the value fits:
+            Iterator<Slot> eldest = index.values().iterator();
+            while (freeCount + totalBlocks - nextBlock < blockCount) {
+                free(eldest.next());
+                eldest.remove();
+                evictions++;
+            }
+            slot = new Slot(bytes.length, new int[blockCount]);
+            for (int i = 0; i < blockCount; i++) {
+                slot.blocks[i] = allocate();
+            }
+            write(slot, bytes);
+            index.put(key, slot);
+        } finally {
+            lock.unlock();
+        }
+        statistics.recordPut();
+        if (evictions > 0) {
+            statistics.recordEvictions(evictions);
+        }
+        return previous;
+    }
+
+    public V remove(K key) throws CacheException {
+        byte[] previous = null;
+        lock.lock();
+        try {
+            Slot slot = index.remove(key);
+            if (slot != null) {
+                previous = read(slot);
+                free(slot);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return toValue(previous);
+    }
+
+    /**
+     * Removes the value like {@link #remove remove}, without reading and deserializing it to return it.
+     *
+     * @param key the key.
+     * @return {@code true} if a value was removed.
+     */
+    public boolean discard(K key) throws CacheException {
+        lock.lock();
+        try {
+            Slot slot = index.remove(key);
+            if (slot == null) {
+                return false;
+            }
+            free(slot);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all entries.  The allocated direct memory is retained for reuse.
+     */
+    public void clear() throws CacheException {
+        lock.lock();
+        try {
+            index.clear();
+            freeCount = 0;
+            nextBlock = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Set<K> keys() {
+        lock.lock();
+        try {
+            if (index.isEmpty()) {
+                return Collections.emptySet();
+            }
+            return Collections.unmodifiableSet(new LinkedHashSet<K>(index.keySet()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Collection<V> values() {
+        List<V> values = new ArrayList<V>();
+        for (Iterator<V> it = valueIterator(); it.hasNext();) {
+            values.add(it.next());
+        }
+        if (values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the keys, which are held on the heap anyway.
+     *
+     * @return an iterator over a snapshot of the keys.
+     */
+    public Iterator<K> keyIterator() throws CacheException {
+        return keys().iterator();
+    }
+
+    /**
+     * Returns an iterator that deserializes each value only when it is reached, so that at most one value is
+     * brought onto the heap at a time.
+     *
+     * @return an iterator over the values of this cache.
+     */
+    public Iterator<V> valueIterator() throws CacheException {
+        final Iterator<K> keys = keyIterator();
+        return new Iterator<V>() {
+            private byte[] next;
+
+            public boolean hasNext() {
+                while (next == null && keys.hasNext()) {
+                    K key = keys.next();
+                    lock.lock();
+                    try {
+                        Slot slot = index.get(key);
+                        next = slot != null ? read(slot) : null;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                return next != null;
+            }
+
+            public V next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                byte[] bytes = next;
+                next = null;
+                return toValue(bytes);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    public void recordLoad(long loadTime) {
+        statistics.recordLoad(loadTime);
+    }
+
+    /**
+     * Removes all entries and releases the direct memory for garbage collection.
+     */
+    public void destroy() {
+        lock.lock();
+        try {
+            clear();
+            Arrays.fill(slabs, null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeBlocks[--freeCount];
+        }
+        int block = nextBlock++;
+        int slab = block / blocksPerSlab;
+        if (slabs[slab] == null) {
+            int blocks = Math.min(blocksPerSlab, totalBlocks - slab * blocksPerSlab);
+            slabs[slab] = ByteBuffer.allocateDirect(blocks * blockSize);
+        }
+        return block;
+    }
+
+    private void free(Slot slot) {
+        for (int block : slot.blocks) {
+            freeBlocks[freeCount++] = block;
+        }
+    }
+
+    private ByteBuffer position(int block) {
+        ByteBuffer slab = slabs[block / blocksPerSlab];
+        slab.position((block % blocksPerSlab) * blockSize);
+        return slab;
+    }
+
+    private void write(Slot slot, byte[] bytes) {
+        for (int i = 0, offset = 0; offset < bytes.length; i++, offset += blockSize) {
+            position(slot.blocks[i]).put(bytes, offset, Math.min(blockSize, bytes.length - offset));
+        }
+    }
+
+    private byte[] read(Slot slot) {
+        byte[] bytes = new byte[slot.length];
+        for (int i = 0, offset = 0; offset < bytes.length; i++, offset += blockSize) {
+            position(slot.blocks[i]).get(bytes, offset, Math.min(blockSize, bytes.length - offset));
+        }
+        return bytes;
+    }
+
+    public String toString() {
+        return new StringBuilder("OffHeapCache '")
+                .append(name).append("' (")
+                .append(size())
+                .append(" entries in ")
+                .append(getUsedBytes())
+                .append(" of max ")
+                .append(capacity)
+                .append(" bytes)")
+                .toString();
+    }
+
+    /**
+     * The location of a serialized value:  its length in bytes and the blocks holding it, in order.
+     */
+    private static class Slot {
+
+        private final int length;
+        private final int[] blocks;
+
+        private Slot(int length, int[] blocks) {
+            this.length = length;
+            this.blocks = blocks;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import org.apache.shiro.io.DefaultSerializer;
+import org.apache.shiro.io.Serializer;
+
+/**
+ * {@link CacheManager CacheManager} implementation that produces {@link OffHeapCache OffHeapCache}s, which store
+ * their values serialized in direct memory outside of the Java heap.  This keeps large caches, e.g. of active
+ * sessions or authorization data, from increasing garbage collection pauses.
+ * <p/>
+ * Example INI configuration:
+ * <pre>
+ * cacheManager = org.apache.shiro.cache.OffHeapCacheManager
+ * cacheManager.capacity = 536870912
+ * securityManager.cacheManager = $cacheManager</pre>
+ * Changes to the configuration only affect caches that are created afterwards.
+ *
+ * @since 1.1
+ */
+public class OffHeapCacheManager extends AbstractCacheManager {
+
+    /**
+     * The default capacity of each cache, 64 MB.
+     */
+    public static final long DEFAULT_CAPACITY = 64L * 1024 * 1024;
+
+    private long capacity = DEFAULT_CAPACITY;
+    private int blockSize = OffHeapCache.DEFAULT_BLOCK_SIZE;
+    private int slabSize = OffHeapCache.DEFAULT_SLAB_SIZE;
+    private Serializer<Object> serializer = new DefaultSerializer<Object>();
+
+    /**
+     * Returns the maximum number of bytes of direct memory used by each cache.  Defaults to
+     * {@link #DEFAULT_CAPACITY}.
+     *
+     * @return the maximum number of bytes of direct memory used by each cache.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the unit of allocation of each cache in bytes, ideally a little larger than the typical serialized
+     * value divided by a small whole number.  Defaults to {@link OffHeapCache#DEFAULT_BLOCK_SIZE}.
+     *
+     * @return the unit of allocation of each cache in bytes.
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public void setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Returns the number of bytes of direct memory each cache allocates at once.  Defaults to
+     * {@link OffHeapCache#DEFAULT_SLAB_SIZE}.
+     *
+     * @return the number of bytes of direct memory each cache allocates at once.
+     */
+    public int getSlabSize() {
+        return slabSize;
+    }
+
+    public void setSlabSize(int slabSize) {
+        this.slabSize = slabSize;
+    }
+
+    public Serializer<Object> getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * Sets the serializer converting cached values to and from bytes.  Defaults to a {@link DefaultSerializer}.
+     *
+     * @param serializer the serializer converting cached values to and from bytes.
+     */
+    public void setSerializer(Serializer<Object> serializer) {
+        this.serializer = serializer;
+    }
+
+    @Override
+    protected Cache createCache(String name) throws CacheException {
+        return new OffHeapCache<Object, Object>(name, getCapacity(), getBlockSize(), getSlabSize(), getSerializer());
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.io;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Reads the values written to a {@link CompactOutput}, for {@link TypeEncoder}s.  Reading past the end of the
+ * data results in a {@link SerializationException}.
+ *
+ * @since 1.1
+ */
+public final class CompactInput {
+
+    private final CompactSerializer serializer;
+    private final byte[] buffer;
+    private int position;
+
+    CompactInput(CompactSerializer serializer, byte[] buffer, int position) {
+        this.serializer = serializer;
+        this.buffer = buffer;
+        this.position = position;
+    }
+
+    private void require(int length) {
+        if (length < 0 || position + length > buffer.length) {
+            throw new SerializationException("Unexpected end of data at byte " + position + ".");
+        }
+    }
+
+    public int readByte() {
+        require(1);
+        return buffer[position++];
+    }
+
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    public int readVarInt() {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Malformed variable-length int at byte " + position + ".");
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Malformed variable-length long at byte " + position + ".");
+    }
+
+    public long readSignedVarLong() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public long readLong() {
+        require(8);
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (buffer[position++] & 0xFF);
+        }
+        return value;
+    }
+
+    public byte[] readBytes() {
+        int length = readVarInt();
+        require(length);
+        byte[] bytes = new byte[length];
+        System.arraycopy(buffer, position, bytes, 0, length);
+        position += length;
+        return bytes;
+    }
+
+    public String readString() {
+        int length = readVarInt();
+        require(length);
+        int end = position + length;
+        for (int i = position; i < end; i++) {
+            if (buffer[i] < 0) {
+                try {
+                    String s = new String(buffer, position, length, "UTF-8");
+                    position = end;
+                    return s;
+                } catch (UnsupportedEncodingException e) {
+                    throw new SerializationException(e);
+                }
+            }
+        }
+        //ASCII only, one char per byte:
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) buffer[position++];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Reads a value written by {@link CompactOutput#writeObject(Object)}.
+     *
+     * @return the value read, possibly {@code null}.
+     * @throws SerializationException if the value cannot be read.
+     */
+    public Object readObject() throws SerializationException {
+        return serializer.readObject(this);
+    }
+
+    /**
+     * Returns the number of bytes not read yet.
+     *
+     * @return the number of bytes not read yet.
+     */
+    public int remaining() {
+        return buffer.length - position;
+    }
+}
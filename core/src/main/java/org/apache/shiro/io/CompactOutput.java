@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.io;
+
+import org.apache.shiro.codec.CodecSupport;
+
+/**
+ * Growable byte buffer that {@link TypeEncoder}s write values to in the binary format of a
+ * {@link CompactSerializer}.  Integers are written as variable-length quantities of 7 bits per byte, strings as
+ * their UTF-8 length followed by their UTF-8 bytes.
+ *
+ * @since 1.1
+ */
+public final class CompactOutput {
+
+    private final CompactSerializer serializer;
+    private byte[] buffer;
+    private int position;
+
+    CompactOutput(CompactSerializer serializer, int initialCapacity) {
+        this.serializer = serializer;
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    private void ensureCapacity(int additional) {
+        if (position + additional > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, position + additional)];
+            System.arraycopy(buffer, 0, grown, 0, position);
+            buffer = grown;
+        }
+    }
+
+    public void writeByte(int b) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) b;
+    }
+
+    public void writeBoolean(boolean b) {
+        writeByte(b ? 1 : 0);
+    }
+
+    /**
+     * Writes an int as an unsigned variable-length quantity:  1 byte for values up to 127, 5 bytes for negative
+     * values.  Use {@link #writeSignedVarLong(long)} for values that may be negative.
+     *
+     * @param value the value to write.
+     */
+    public void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Writes a long as an unsigned variable-length quantity:  1 byte for values up to 127, 10 bytes for negative
+     * values.  Use {@link #writeSignedVarLong(long)} for values that may be negative.
+     *
+     * @param value the value to write.
+     */
+    public void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Writes a long as a zig-zag encoded variable-length quantity, so that values close to zero take few bytes
+     * whatever their sign.
+     *
+     * @param value the value to write.
+     */
+    public void writeSignedVarLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeLong(long value) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (value >>> shift);
+        }
+    }
+
+    /**
+     * Writes a byte array preceded by its length.
+     *
+     * @param bytes the bytes to write, not {@code null}.
+     */
+    public void writeBytes(byte[] bytes) {
+        writeVarInt(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    /**
+     * Writes a string as its UTF-8 encoded length followed by its UTF-8 bytes.
+     *
+     * @param s the string to write, not {@code null}.
+     */
+    public void writeString(String s) {
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) >= 0x80) {
+                writeBytes(CodecSupport.toBytes(s));
+                return;
+            }
+        }
+        //ASCII only, one byte per char:
+        writeVarInt(length);
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buffer[position++] = (byte) s.charAt(i);
+        }
+    }
+
+    /**
+     * Writes any value, including {@code null}, preceded by the id of the {@link TypeEncoder} that writes it.
+     *
+     * @param value the value to write.
+     * @throws SerializationException if the value cannot be written.
+     */
+    public void writeObject(Object value) throws SerializationException {
+        serializer.writeObject(value, this);
+    }
+
+    /**
+     * Returns the number of bytes written.
+     *
+     * @return the number of bytes written.
+     */
+    public int size() {
+        return position;
+    }
+
+    /**
+     * Returns a copy of the bytes written.
+     *
+     * @return a copy of the bytes written.
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[position];
+        System.arraycopy(buffer, 0, bytes, 0, position);
+        return bytes;
+    }
+}
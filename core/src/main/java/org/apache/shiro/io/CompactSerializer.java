@@ -0,0 +1,534 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.io;
+
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.apache.shiro.subject.support.DefaultSubjectContext;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Serializer that writes objects in a compact, versioned binary format instead of Java serialization, which writes
+ * class descriptors along with every object graph and makes a small session take up kilobytes.
+ * <p/>
+ * Every value is written as the numeric id of the {@link TypeEncoder TypeEncoder} for its exact class, followed by
+ * the encoder's representation of it, with integers written as variable-length quantities.  Encoders are built in for
+ * {@code String}, {@code Boolean}, {@code Integer}, {@code Long}, {@code Double}, {@code Date}, {@code UUID},
+ * {@code byte[]}, {@code ArrayList}, {@code HashSet}, {@code LinkedHashSet}, {@code HashMap}, {@code LinkedHashMap},
+ * {@link SimpleSession SimpleSession} and {@link SimplePrincipalCollection SimplePrincipalCollection}; encoders for
+ * application types, such as session attribute values, can be {@link #register(int, TypeEncoder) registered} under
+ * ids from {@link #MIN_CUSTOM_ID} to {@link #MAX_ID}.  Values of any other {@code Serializable} type are written
+ * with Java serialization.  Shiro's own session attribute keys are written as a single index into a table of
+ * well-known strings.
+ * <p/>
+ * As encoder ids are part of the data, the same encoders must be registered under the same ids wherever the data
+ * is read.  Encoders should be registered when configuring the serializer, before it is used.
+ *
+ * @since 1.1
+ */
+public class CompactSerializer<T> implements Serializer<T> {
+
+    /**
+     * The version of the binary format, written as the first byte of the serialized data.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * The lowest id available for application encoders; lower ids are reserved for built-in encoders.
+     */
+    public static final int MIN_CUSTOM_ID = 32;
+
+    /**
+     * The highest encoder id.
+     */
+    public static final int MAX_ID = 255;
+
+    private static final int NULL_ID = 0;
+    private static final int SERIALIZED_ID = 1;
+    private static final int KNOWN_STRING_ID = 17;
+
+    /**
+     * Strings written as their index in this table.  Part of the format:  strings may only be appended.
+     */
+    private static final String[] KNOWN_STRINGS = {
+            DefaultSubjectContext.PRINCIPALS_SESSION_KEY,
+            DefaultSubjectContext.AUTHENTICATED_SESSION_KEY,
+            "org.apache.shiro.subject.support.DelegatingSubject.RUN_AS_PRINCIPALS_SESSION_KEY",
+            "shiroSavedRequest"
+    };
+    private static final Map<String, Integer> KNOWN_STRING_INDEXES = new HashMap<String, Integer>();
+
+    static {
+        for (int i = 0; i < KNOWN_STRINGS.length; i++) {
+            KNOWN_STRING_INDEXES.put(KNOWN_STRINGS[i], i);
+        }
+    }
+
+    private final TypeEncoder[] encoders = new TypeEncoder[MAX_ID + 1];
+    private final Map<Class, Integer> ids = new HashMap<Class, Integer>();
+    private final Serializer<Object> fallbackSerializer = new DefaultSerializer<Object>();
+
+    public CompactSerializer() {
+        registerBuiltIn(2, new StringEncoder());
+        registerBuiltIn(3, new BooleanEncoder());
+        registerBuiltIn(4, new IntegerEncoder());
+        registerBuiltIn(5, new LongEncoder());
+        registerBuiltIn(6, new DoubleEncoder());
+        registerBuiltIn(7, new DateEncoder());
+        registerBuiltIn(8, new UUIDEncoder());
+        registerBuiltIn(9, new BytesEncoder());
+        registerBuiltIn(10, new CollectionEncoder<ArrayList>(ArrayList.class) {
+            protected ArrayList create(int size) {
+                return new ArrayList(size);
+            }
+        });
+        registerBuiltIn(11, new CollectionEncoder<HashSet>(HashSet.class) {
+            protected HashSet create(int size) {
+                return new HashSet(size * 4 / 3 + 1);
+            }
+        });
+        registerBuiltIn(12, new CollectionEncoder<LinkedHashSet>(LinkedHashSet.class) {
+            protected LinkedHashSet create(int size) {
+                return new LinkedHashSet(size * 4 / 3 + 1);
+            }
+        });
+        registerBuiltIn(13, new MapEncoder<HashMap>(HashMap.class) {
+            protected HashMap create(int size) {
+                return new HashMap(size * 4 / 3 + 1);
+            }
+        });
+        registerBuiltIn(14, new MapEncoder<LinkedHashMap>(LinkedHashMap.class) {
+            protected LinkedHashMap create(int size) {
+                return new LinkedHashMap(size * 4 / 3 + 1);
+            }
+        });
+        registerBuiltIn(15, new SimpleSessionEncoder());
+        registerBuiltIn(16, new PrincipalCollectionEncoder());
+    }
+
+    private void registerBuiltIn(int id, TypeEncoder encoder) {
+        encoders[id] = encoder;
+        ids.put(encoder.getType(), id);
+    }
+
+    /**
+     * Registers an encoder for values of its {@link TypeEncoder#getType() type}, replacing the encoder otherwise
+     * used for that type when writing.
+     *
+     * @param id      the id written in front of the values written by the encoder, from {@link #MIN_CUSTOM_ID} to
+     *                {@link #MAX_ID}.
+     * @param encoder the encoder to register.
+     * @throws IllegalArgumentException if the id is out of range or already taken.
+     */
+    public void register(int id, TypeEncoder<?> encoder) {
+        if (encoder == null) {
+            throw new IllegalArgumentException("encoder argument cannot be null.");
+        }
+        if (id < MIN_CUSTOM_ID || id > MAX_ID) {
+            String msg = "Encoder id must be between " + MIN_CUSTOM_ID + " and " + MAX_ID + ", was " + id + ".";
+            throw new IllegalArgumentException(msg);
+        }
+        if (encoders[id] != null) {
+            String msg = "Encoder id " + id + " is already taken by encoder [" + encoders[id] + "].";
+            throw new IllegalArgumentException(msg);
+        }
+        encoders[id] = encoder;
+        ids.put(encoder.getType(), id);
+    }
+
+    public byte[] serialize(T o) throws SerializationException {
+        if (o == null) {
+            String msg = "argument cannot be null.";
+            throw new IllegalArgumentException(msg);
+        }
+        CompactOutput out = new CompactOutput(this, 256);
+        out.writeByte(FORMAT_VERSION);
+        writeObject(o, out);
+        return out.toByteArray();
+    }
+
+    public T deserialize(byte[] serialized) throws SerializationException {
+        if (serialized == null) {
+            String msg = "argument cannot be null.";
+            throw new IllegalArgumentException(msg);
+        }
+        CompactInput in = new CompactInput(this, serialized, 0);
+        int version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            String msg = "Unsupported format version " + version + ", expected " + FORMAT_VERSION + ".";
+            throw new SerializationException(msg);
+        }
+        @SuppressWarnings({"unchecked"})
+        T deserialized = (T) readObject(in);
+        return deserialized;
+    }
+
+    @SuppressWarnings({"unchecked"})
+    void writeObject(Object value, CompactOutput out) {
+        if (value == null) {
+            out.writeVarInt(NULL_ID);
+            return;
+        }
+        if (value.getClass() == String.class) {
+            Integer index = KNOWN_STRING_INDEXES.get(value);
+            if (index != null) {
+                out.writeVarInt(KNOWN_STRING_ID);
+                out.writeVarInt(index);
+                return;
+            }
+        }
+        Integer id = ids.get(value.getClass());
+        if (id == null) {
+            out.writeVarInt(SERIALIZED_ID);
+            out.writeBytes(fallbackSerializer.serialize(value));
+        } else {
+            out.writeVarInt(id);
+            encoders[id].write(value, out);
+        }
+    }
+
+    Object readObject(CompactInput in) {
+        int id = in.readVarInt();
+        if (id == NULL_ID) {
+            return null;
+        }
+        if (id == SERIALIZED_ID) {
+            return fallbackSerializer.deserialize(in.readBytes());
+        }
+        if (id == KNOWN_STRING_ID) {
+            int index = in.readVarInt();
+            if (index < 0 || index >= KNOWN_STRINGS.length) {
+                throw new SerializationException("Unknown well-known string index " + index + ".");
+            }
+            return KNOWN_STRINGS[index];
+        }
+        TypeEncoder encoder = id > 0 && id <= MAX_ID ? encoders[id] : null;
+        if (encoder == null) {
+            throw new SerializationException("No encoder registered for id " + id + ".");
+        }
+        return encoder.read(in);
+    }
+
+    /*--------------------------------------------
+    |  B U I L T - I N   E N C O D E R S         |
+    ============================================*/
+
+    private static class StringEncoder implements TypeEncoder<String> {
+        public Class<String> getType() {
+            return String.class;
+        }
+
+        public void write(String value, CompactOutput out) {
+            out.writeString(value);
+        }
+
+        public String read(CompactInput in) {
+            return in.readString();
+        }
+    }
+
+    private static class BooleanEncoder implements TypeEncoder<Boolean> {
+        public Class<Boolean> getType() {
+            return Boolean.class;
+        }
+
+        public void write(Boolean value, CompactOutput out) {
+            out.writeBoolean(value);
+        }
+
+        public Boolean read(CompactInput in) {
+            return in.readBoolean();
+        }
+    }
+
+    private static class IntegerEncoder implements TypeEncoder<Integer> {
+        public Class<Integer> getType() {
+            return Integer.class;
+        }
+
+        public void write(Integer value, CompactOutput out) {
+            out.writeSignedVarLong(value);
+        }
+
+        public Integer read(CompactInput in) {
+            return (int) in.readSignedVarLong();
+        }
+    }
+
+    private static class LongEncoder implements TypeEncoder<Long> {
+        public Class<Long> getType() {
+            return Long.class;
+        }
+
+        public void write(Long value, CompactOutput out) {
+            out.writeSignedVarLong(value);
+        }
+
+        public Long read(CompactInput in) {
+            return in.readSignedVarLong();
+        }
+    }
+
+    private static class DoubleEncoder implements TypeEncoder<Double> {
+        public Class<Double> getType() {
+            return Double.class;
+        }
+
+        public void write(Double value, CompactOutput out) {
+            out.writeLong(Double.doubleToLongBits(value));
+        }
+
+        public Double read(CompactInput in) {
+            return Double.longBitsToDouble(in.readLong());
+        }
+    }
+
+    private static class DateEncoder implements TypeEncoder<Date> {
+        public Class<Date> getType() {
+            return Date.class;
+        }
+
+        public void write(Date value, CompactOutput out) {
+            out.writeSignedVarLong(value.getTime());
+        }
+
+        public Date read(CompactInput in) {
+            return new Date(in.readSignedVarLong());
+        }
+    }
+
+    private static class UUIDEncoder implements TypeEncoder<UUID> {
+        public Class<UUID> getType() {
+            return UUID.class;
+        }
+
+        public void write(UUID value, CompactOutput out) {
+            out.writeLong(value.getMostSignificantBits());
+            out.writeLong(value.getLeastSignificantBits());
+        }
+
+        public UUID read(CompactInput in) {
+            return new UUID(in.readLong(), in.readLong());
+        }
+    }
+
+    private static class BytesEncoder implements TypeEncoder<byte[]> {
+        public Class<byte[]> getType() {
+            return byte[].class;
+        }
+
+        public void write(byte[] value, CompactOutput out) {
+            out.writeBytes(value);
+        }
+
+        public byte[] read(CompactInput in) {
+            return in.readBytes();
+        }
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private static abstract class CollectionEncoder<C extends Collection> implements TypeEncoder<C> {
+        private final Class<C> type;
+
+        protected CollectionEncoder(Class<C> type) {
+            this.type = type;
+        }
+
+        public Class<C> getType() {
+            return type;
+        }
+
+        protected abstract C create(int size);
+
+        public void write(C value, CompactOutput out) {
+            out.writeVarInt(value.size());
+            for (Object element : value) {
+                out.writeObject(element);
+            }
+        }
+
+        public C read(CompactInput in) {
+            int size = in.readVarInt();
+            C collection = create(Math.min(size, in.remaining()));
+            for (int i = 0; i < size; i++) {
+                collection.add(in.readObject());
+            }
+            return collection;
+        }
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private static abstract class MapEncoder<M extends Map> implements TypeEncoder<M> {
+        private final Class<M> type;
+
+        protected MapEncoder(Class<M> type) {
+            this.type = type;
+        }
+
+        public Class<M> getType() {
+            return type;
+        }
+
+        protected abstract M create(int size);
+
+        public void write(M value, CompactOutput out) {
+            writeEntries(value, out);
+        }
+
+        public M read(CompactInput in) {
+            int size = in.readVarInt();
+            M map = create(Math.min(size, in.remaining()));
+            readEntries(map, size, in);
+            return map;
+        }
+    }
+
+    private static void writeEntries(Map<?, ?> map, CompactOutput out) {
+        out.writeVarInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private static void readEntries(Map map, int size, CompactInput in) {
+        for (int i = 0; i < size; i++) {
+            Object key = in.readObject();
+            map.put(key, in.readObject());
+        }
+    }
+
+    /**
+     * Writes the fields of a {@link SimpleSession} that are set, preceded by a bit mask of those fields, so that
+     * fields can be added in later versions without breaking the format.
+     */
+    private static class SimpleSessionEncoder implements TypeEncoder<SimpleSession> {
+
+        private static final int ID = 1;
+        private static final int START_TIMESTAMP = 1 << 1;
+        private static final int STOP_TIMESTAMP = 1 << 2;
+        private static final int LAST_ACCESS_TIME = 1 << 3;
+        private static final int TIMEOUT = 1 << 4;
+        private static final int EXPIRED = 1 << 5;
+        private static final int HOST = 1 << 6;
+        private static final int ATTRIBUTES = 1 << 7;
+
+        public Class<SimpleSession> getType() {
+            return SimpleSession.class;
+        }
+
+        public void write(SimpleSession session, CompactOutput out) {
+            Map<Object, Object> attributes = session.getAttributes();
+            int fields = (session.getId() != null ? ID : 0) |
+                    (session.getStartTimestamp() != null ? START_TIMESTAMP : 0) |
+                    (session.getStopTimestamp() != null ? STOP_TIMESTAMP : 0) |
+                    (session.getLastAccessTime() != null ? LAST_ACCESS_TIME : 0) |
+                    (session.getTimeout() != 0 ? TIMEOUT : 0) |
+                    (session.isExpired() ? EXPIRED : 0) |
+                    (session.getHost() != null ? HOST : 0) |
+                    (attributes != null ? ATTRIBUTES : 0);
+            out.writeVarInt(fields);
+            if ((fields & ID) != 0) {
+                out.writeObject(session.getId());
+            }
+            if ((fields & START_TIMESTAMP) != 0) {
+                out.writeSignedVarLong(session.getStartTimestamp().getTime());
+            }
+            if ((fields & STOP_TIMESTAMP) != 0) {
+                out.writeSignedVarLong(session.getStopTimestamp().getTime());
+            }
+            if ((fields & LAST_ACCESS_TIME) != 0) {
+                out.writeSignedVarLong(session.getLastAccessTime().getTime());
+            }
+            if ((fields & TIMEOUT) != 0) {
+                out.writeSignedVarLong(session.getTimeout());
+            }
+            if ((fields & HOST) != 0) {
+                out.writeString(session.getHost());
+            }
+            if ((fields & ATTRIBUTES) != 0) {
+                writeEntries(attributes, out);
+            }
+        }
+
+        public SimpleSession read(CompactInput in) {
+            int fields = in.readVarInt();
+            SimpleSession session = new SimpleSession();
+            session.setId((fields & ID) != 0 ? (Serializable) in.readObject() : null);
+            session.setStartTimestamp((fields & START_TIMESTAMP) != 0 ? new Date(in.readSignedVarLong()) : null);
+            session.setStopTimestamp((fields & STOP_TIMESTAMP) != 0 ? new Date(in.readSignedVarLong()) : null);
+            session.setLastAccessTime((fields & LAST_ACCESS_TIME) != 0 ? new Date(in.readSignedVarLong()) : null);
+            session.setTimeout((fields & TIMEOUT) != 0 ? in.readSignedVarLong() : 0);
+            session.setExpired((fields & EXPIRED) != 0);
+            session.setHost((fields & HOST) != 0 ? in.readString() : null);
+            Map<Object, Object> attributes = null;
+            if ((fields & ATTRIBUTES) != 0) {
+                int size = in.readVarInt();
+                attributes = new HashMap<Object, Object>(Math.min(size, in.remaining()) * 4 / 3 + 1);
+                readEntries(attributes, size, in);
+            }
+            session.setAttributes(attributes);
+            session.clearDirtyState();
+            return session;
+        }
+    }
+
+    /**
+     * Writes the principals of a {@link SimplePrincipalCollection} grouped by realm name.
+     */
+    private static class PrincipalCollectionEncoder implements TypeEncoder<SimplePrincipalCollection> {
+
+        public Class<SimplePrincipalCollection> getType() {
+            return SimplePrincipalCollection.class;
+        }
+
+        public void write(SimplePrincipalCollection principals, CompactOutput out) {
+            Set<String> realmNames = principals.getRealmNames();
+            if (realmNames == null) {
+                out.writeVarInt(0);
+                return;
+            }
+            out.writeVarInt(realmNames.size());
+            for (String realmName : realmNames) {
+                Collection realmPrincipals = principals.fromRealm(realmName);
+                out.writeString(realmName);
+                out.writeVarInt(realmPrincipals.size());
+                for (Object principal : realmPrincipals) {
+                    out.writeObject(principal);
+                }
+            }
+        }
+
+        public SimplePrincipalCollection read(CompactInput in) {
+            SimplePrincipalCollection principals = new SimplePrincipalCollection();
+            int realms = in.readVarInt();
+            for (int i = 0; i < realms; i++) {
+                String realmName = in.readString();
+                int size = in.readVarInt();
+                for (int j = 0; j < size; j++) {
+                    principals.add(in.readObject(), realmName);
+                }
+            }
+            return principals;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.io;
+
+/**
+ * Writes and reads the values of one type to and from the binary format of a {@link CompactSerializer}.
+ * Encoders are {@link CompactSerializer#register(int, TypeEncoder) registered} with a serializer under a numeric
+ * id that is written in front of every encoded value, so the id of an encoder must never change once data has
+ * been written with it.
+ * <p/>
+ * Encoders must be thread-safe:  the same instance encodes and decodes values for many threads at once.
+ *
+ * @param <T> the type of the values written and read by this encoder.
+ * @since 1.1
+ */
+public interface TypeEncoder<T> {
+
+    /**
+     * Returns the exact class of the values this encoder writes.  Instances of subclasses are not written with this
+     * encoder, as it could not restore them.
+     *
+     * @return the exact class of the values this encoder writes.
+     */
+    Class<T> getType();
+
+    /**
+     * Writes the state of the specified value.
+     *
+     * @param value the value to write, never {@code null}.
+     * @param out   the output to write to.
+     * @throws SerializationException if the value cannot be written.
+     */
+    void write(T value, CompactOutput out) throws SerializationException;
+
+    /**
+     * Reads a value previously written by {@link #write(Object, CompactOutput) write}.
+     *
+     * @param in the input to read from.
+     * @return the value read.
+     * @throws SerializationException if the value cannot be read.
+     */
+    T read(CompactInput in) throws SerializationException;
+}
@@ -20,6 +20,8 @@ package org.apache.shiro.mgt;
 
 import org.apache.shiro.authz.AuthorizationException;
 import org.apache.shiro.authz.Authorizer;
+import org.apache.shiro.authz.AuthorizerUtils;
+import org.apache.shiro.authz.BulkAuthorizer;
 import org.apache.shiro.authz.ModularRealmAuthorizer;
 import org.apache.shiro.authz.Permission;
 import org.apache.shiro.subject.PrincipalCollection;
@@ -44,7 +46,7 @@ import java.util.List;
  *
  * @since 0.9
  */
-public abstract class AuthorizingSecurityManager extends AuthenticatingSecurityManager {
+public abstract class AuthorizingSecurityManager extends AuthenticatingSecurityManager implements BulkAuthorizer {
 
     /**
      * The wrapped instance to which all of this <tt>SecurityManager</tt> authorization calls are delegated.
@@ -133,6 +135,11 @@ public abstract class AuthorizingSecurityManager extends AuthenticatingSecurityM
         return this.authorizer.isPermittedAll(principals, permissions);
     }
 
+    public <T> List<T> filterPermitted(PrincipalCollection principals, String domain, String action,
+                                       Collection<T> instanceIds) {
+        return AuthorizerUtils.filterPermitted(this.authorizer, principals, domain, action, instanceIds);
+    }
+
     public void checkPermission(PrincipalCollection principals, String permission) throws AuthorizationException {
         this.authorizer.checkPermission(principals, permission);
     }
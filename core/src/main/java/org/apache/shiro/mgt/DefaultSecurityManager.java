@@ -20,13 +20,16 @@ package org.apache.shiro.mgt;
 
 import org.apache.shiro.authc.*;
 import org.apache.shiro.authz.Authorizer;
+import org.apache.shiro.realm.AuthorizingRealm;
 import org.apache.shiro.realm.Realm;
 import org.apache.shiro.session.InvalidSessionException;
 import org.apache.shiro.session.Session;
 import org.apache.shiro.session.mgt.DefaultSessionContext;
 import org.apache.shiro.session.mgt.DefaultSessionKey;
+import org.apache.shiro.session.mgt.PrincipalSessionManager;
 import org.apache.shiro.session.mgt.SessionContext;
 import org.apache.shiro.session.mgt.SessionKey;
+import org.apache.shiro.session.mgt.SessionManager;
 import org.apache.shiro.subject.PrincipalCollection;
 import org.apache.shiro.subject.Subject;
 import org.apache.shiro.subject.SubjectContext;
@@ -78,6 +81,8 @@ public class DefaultSecurityManager extends SessionsSecurityManager {
 
     protected SubjectFactory subjectFactory;
 
+    private boolean authorizationPrefetchEnabled;
+
     /**
      * Default no-arg constructor.
      */
@@ -122,6 +127,35 @@ public class DefaultSecurityManager extends SessionsSecurityManager {
         this.rememberMeManager = rememberMeManager;
     }
 
+    /**
+     * Returns {@code true} if the authorization data of a newly logged-in {@code Subject} will be loaded into each
+     * {@link AuthorizingRealm}'s authorization cache in the background, {@code false} otherwise.
+     * <p/>
+     * The default value is {@code false}.
+     *
+     * @return {@code true} if authorization data is prefetched upon successful login, {@code false} otherwise.
+     * @since 1.1
+     */
+    public boolean isAuthorizationPrefetchEnabled() {
+        return authorizationPrefetchEnabled;
+    }
+
+    /**
+     * Sets whether or not the authorization data of a newly logged-in {@code Subject} will be loaded into each
+     * {@link AuthorizingRealm}'s authorization cache in the background right after a successful login.  The first
+     * authorization check after login will then usually find a warm cache entry instead of querying the
+     * realm's data store.
+     * <p/>
+     * This only has an effect for realms with authorization caching enabled.  See
+     * {@link AuthorizingRealm#prefetchAuthorizationInfo(org.apache.shiro.subject.PrincipalCollection)} for more.
+     *
+     * @param authorizationPrefetchEnabled whether or not to prefetch authorization data upon successful login.
+     * @since 1.1
+     */
+    public void setAuthorizationPrefetchEnabled(boolean authorizationPrefetchEnabled) {
+        this.authorizationPrefetchEnabled = authorizationPrefetchEnabled;
+    }
+
     protected SubjectContext createSubjectContext() {
         return new DefaultSubjectContext();
     }
@@ -160,11 +194,21 @@ public class DefaultSecurityManager extends SessionsSecurityManager {
         // This implementation was copied from SessionSubjectBinder that was removed
         PrincipalCollection principals = subject.getPrincipals();
         if (principals != null && !principals.isEmpty()) {
-            Session session = subject.getSession();
-            bindPrincipalsToSession(principals, session);
+            Session existing = subject.getSession(false);
+            Session session = existing != null ? existing : subject.getSession();
+            try {
+                bindPrincipalsToSession(principals, session);
+            } catch (ConcurrentAccessException e) {
+                if (existing == null) {
+                    //don't leave the session started for the rejected login behind:
+                    stopQuietly(session);
+                }
+                throw e;
+            }
         } else {
             Session session = subject.getSession(false);
             if (session != null) {
+                bindPrincipalToSessionManager(null, session);
                 session.removeAttribute(DefaultSubjectContext.PRINCIPALS_SESSION_KEY);
             }
         }
@@ -195,9 +239,25 @@ public class DefaultSecurityManager extends SessionsSecurityManager {
         if (CollectionUtils.isEmpty(principals)) {
             throw new IllegalArgumentException("Principals cannot be null or empty.");
         }
+        bindPrincipalToSessionManager(principals.getPrimaryPrincipal(), session);
         session.setAttribute(DefaultSubjectContext.PRINCIPALS_SESSION_KEY, principals);
     }
 
+    /**
+     * Associates the session with the primary principal in the {@code SessionManager}, if it is a
+     * {@link PrincipalSessionManager}, so the user's sessions can be found without scanning all sessions.
+     *
+     * @param principal the primary principal to bind, or {@code null} to remove the session's association.
+     * @param session   the session being bound to or unbound from the principal.
+     * @since 1.1
+     */
+    private void bindPrincipalToSessionManager(Object principal, Session session) {
+        SessionManager sessionManager = getSessionManager();
+        if (sessionManager instanceof PrincipalSessionManager) {
+            ((PrincipalSessionManager) sessionManager).bindPrincipal(new DefaultSessionKey(session.getId()), principal);
+        }
+    }
+
     protected void rememberMeSuccessfulLogin(AuthenticationToken token, AuthenticationInfo info, Subject subject) {
         RememberMeManager rmm = getRememberMeManager();
         if (rmm != null) {
@@ -289,6 +349,37 @@ public class DefaultSecurityManager extends SessionsSecurityManager {
 
     protected void onSuccessfulLogin(AuthenticationToken token, AuthenticationInfo info, Subject subject) {
         rememberMeSuccessfulLogin(token, info, subject);
+        if (isAuthorizationPrefetchEnabled()) {
+            prefetchAuthorizationInfo(subject);
+        }
+    }
+
+    /**
+     * Starts loading the authorization data for the given (newly logged-in) {@code Subject} in the background for
+     * every configured {@link AuthorizingRealm}.  Any exception is logged and otherwise ignored since it must not
+     * affect the successful login.
+     *
+     * @param subject the newly logged-in Subject
+     * @since 1.1
+     */
+    protected void prefetchAuthorizationInfo(Subject subject) {
+        PrincipalCollection principals = subject.getPrincipals();
+        Collection<Realm> realms = getRealms();
+        if (principals == null || principals.isEmpty() || CollectionUtils.isEmpty(realms)) {
+            return;
+        }
+        for (Realm realm : realms) {
+            if (realm instanceof AuthorizingRealm) {
+                try {
+                    ((AuthorizingRealm) realm).prefetchAuthorizationInfo(principals);
+                } catch (Exception e) {
+                    if (log.isWarnEnabled()) {
+                        log.warn("Unable to prefetch authorization data from realm [" + realm.getName() + "].  " +
+                                "It will be loaded on demand.", e);
+                    }
+                }
+            }
+        }
     }
 
     protected void onFailedLogin(AuthenticationToken token, AuthenticationException ae, Subject subject) {
@@ -454,6 +545,11 @@ public class DefaultSecurityManager extends SessionsSecurityManager {
      * Note that if the SubjectContext cannot {@link SubjectContext#resolveSession resolve} a session, a new session
      * will be created receive the principals and then appended to the SubjectContext so it can be used later when
      * constructing the Subject.
+     * <p/>
+     * If the session can't receive the principals because the user already reached the
+     * {@link PrincipalSessionManager}'s maximum number of concurrent sessions, the principals are not retained and a
+     * session started for them is stopped again; the remembered identity is then simply resolved again on the next
+     * request.
      *
      * @param principals the non-null, non-empty principals to bind to the SubjectContext's session
      * @param context    the context to use to locate or create a session to which the principals will be saved
@@ -472,11 +568,35 @@ public class DefaultSecurityManager extends SessionsSecurityManager {
                     "discovered.", principals);
             //no session - start one:
             SessionContext sessionContext = createSessionContext(context);
-            session = start(sessionContext);
-            context.setSession(session);
-            log.debug("Created session with id {} to retain discovered principals {}", session.getId(), principals);
+            Session started = start(sessionContext);
+            try {
+                bindPrincipalsToSession(principals, started);
+            } catch (ConcurrentAccessException e) {
+                //the user reached the maximum number of sessions - keep using the rememberMe identity without a
+                //session rather than failing every request and leaving a new session behind each time:
+                log.debug("Unable to retain remembered principals {} in a new session: {}", principals,
+                        e.getMessage());
+                stopQuietly(started);
+                return;
+            }
+            context.setSession(started);
+            log.debug("Created session with id {} to retain discovered principals {}", started.getId(), principals);
+            return;
+        }
+        try {
+            bindPrincipalsToSession(principals, session);
+        } catch (ConcurrentAccessException e) {
+            log.debug("Unable to retain remembered principals {} in session {}: {}",
+                    new Object[]{principals, session.getId(), e.getMessage()});
+        }
+    }
+
+    private void stopQuietly(Session session) {
+        try {
+            session.stop();
+        } catch (InvalidSessionException e) {
+            log.trace("Session [{}] was already invalid.", session.getId());
         }
-        bindPrincipalsToSession(principals, session);
     }
 
     protected SessionContext createSessionContext(SubjectContext subjectContext) {
@@ -553,6 +673,7 @@ public class DefaultSecurityManager extends SessionsSecurityManager {
     protected void unbind(Subject subject) {
         Session session = subject.getSession(false);
         if (session != null) {
+            bindPrincipalToSessionManager(null, session);
             session.removeAttribute(DefaultSubjectContext.PRINCIPALS_SESSION_KEY);
             session.removeAttribute(DefaultSubjectContext.AUTHENTICATED_SESSION_KEY);
         }
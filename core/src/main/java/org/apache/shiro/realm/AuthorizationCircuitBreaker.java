@@ -0,0 +1,497 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.realm;
+
+import org.apache.shiro.authz.AuthorizationException;
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.MapCache;
+import org.apache.shiro.util.Destroyable;
+import org.apache.shiro.util.SoftHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A circuit breaker guarding an {@link AuthorizingRealm}'s back-end authorization lookups.
+ * <p/>
+ * Every call to the realm's {@link AuthorizingRealm#doGetAuthorizationInfo doGetAuthorizationInfo} method is timed.
+ * Calls that fail, or that take longer than the {@link #setSlowCallThreshold slowCallThreshold}, count as failures.
+ * When {@link #setFailureThreshold failureThreshold} consecutive failures have been recorded, the breaker
+ * <em>opens</em> and request threads no longer call the back-end at all.  Instead they are served the last
+ * known {@code AuthorizationInfo} for the account from a longer-lived <em>stale cache</em>, as long as that
+ * information is no older than {@link #setMaxStaleness maxStaleness} milliseconds.  If no sufficiently fresh
+ * information exists, the lookup fails fast with an {@link AuthorizationException}.
+ * <p/>
+ * While open, the breaker waits {@link #setRetryInterval retryInterval} milliseconds and then <em>probes</em> the
+ * back-end once on a background {@link #setExecutor executor}.  A successful, timely probe closes the breaker again;
+ * a failed probe re-opens it for another interval.  Request threads are never blocked by a probe.
+ * <p/>
+ * The breaker state and latency statistics are exposed via simple getters (e.g. {@link #getState() getState()},
+ * {@link #getAverageLatency() getAverageLatency()}) so they can be exported to JMX or any metrics registry.
+ *
+ * @see AuthorizingRealm#setAuthorizationCircuitBreaker(AuthorizationCircuitBreaker)
+ * @since 1.1
+ */
+public class AuthorizationCircuitBreaker implements Destroyable {
+
+    /**
+     * The states a circuit breaker can be in.
+     */
+    public static enum State {
+        /**
+         * Back-end lookups are executed normally.
+         */
+        CLOSED,
+        /**
+         * Back-end lookups are skipped; stale information is served or the lookup fails fast.
+         */
+        OPEN,
+        /**
+         * A single background probe is in progress; request threads are still treated as if the breaker was open.
+         */
+        HALF_OPEN
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(AuthorizationCircuitBreaker.class);
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_SLOW_CALL_THRESHOLD = 2000; //2 seconds
+    public static final long DEFAULT_RETRY_INTERVAL = 30 * 1000; //30 seconds
+    public static final long DEFAULT_MAX_STALENESS = 60 * 60 * 1000; //1 hour
+
+    private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private long slowCallThreshold = DEFAULT_SLOW_CALL_THRESHOLD;
+    private long retryInterval = DEFAULT_RETRY_INTERVAL;
+    private long maxStaleness = DEFAULT_MAX_STALENESS;
+
+    private Cache<Object, Object> staleCache;
+    private Executor executor;
+    private ExecutorService internalExecutor;
+
+    private final AtomicReference<State> state = new AtomicReference<State>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long lastOpenedTimestamp;
+
+    private final AtomicLong callCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong slowCallCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong staleHitCount = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private volatile long lastLatency;
+
+    public AuthorizationCircuitBreaker() {
+    }
+
+    /*--------------------------------------------
+    |  A C C E S S O R S / M O D I F I E R S    |
+    ============================================*/
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * Sets the number of consecutive failed or slow back-end calls after which the breaker opens.  Defaults to
+     * {@link #DEFAULT_FAILURE_THRESHOLD}.
+     *
+     * @param failureThreshold the number of consecutive failures that trip the breaker.
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public long getSlowCallThreshold() {
+        return slowCallThreshold;
+    }
+
+    /**
+     * Sets the time in milliseconds after which a successful back-end call is still counted as a failure.  A value
+     * of zero or less disables slow call detection.  Defaults to {@link #DEFAULT_SLOW_CALL_THRESHOLD}.
+     *
+     * @param slowCallThreshold the latency in milliseconds above which a call is considered slow.
+     */
+    public void setSlowCallThreshold(long slowCallThreshold) {
+        this.slowCallThreshold = slowCallThreshold;
+    }
+
+    public long getRetryInterval() {
+        return retryInterval;
+    }
+
+    /**
+     * Sets the time in milliseconds the breaker stays open before a background probe is attempted.  Defaults to
+     * {@link #DEFAULT_RETRY_INTERVAL}.
+     *
+     * @param retryInterval the time in milliseconds to wait before probing the back-end again.
+     */
+    public void setRetryInterval(long retryInterval) {
+        this.retryInterval = retryInterval;
+    }
+
+    public long getMaxStaleness() {
+        return maxStaleness;
+    }
+
+    /**
+     * Sets the maximum age in milliseconds of stale {@code AuthorizationInfo} that may be served while the breaker
+     * is open.  Lookups for which no information younger than this exists fail fast.  Defaults to
+     * {@link #DEFAULT_MAX_STALENESS}.
+     *
+     * @param maxStaleness the maximum age in milliseconds of information served while the breaker is open.
+     */
+    public void setMaxStaleness(long maxStaleness) {
+        this.maxStaleness = maxStaleness;
+    }
+
+    public Cache<Object, Object> getStaleCache() {
+        return staleCache;
+    }
+
+    /**
+     * Sets the cache retaining the last known {@code AuthorizationInfo} per account.  This cache should be
+     * configured to live (much) longer than the realm's regular authorization cache.  If not set, the owning realm
+     * will acquire one from its {@code CacheManager}, or a memory-sensitive local cache will be used.
+     *
+     * @param staleCache the cache retaining the last known {@code AuthorizationInfo} per account.
+     */
+    public void setStaleCache(Cache<Object, Object> staleCache) {
+        this.staleCache = staleCache;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the {@code Executor} used to probe the back-end while the breaker is open.  If not set, a single daemon
+     * thread will be created on demand and shut down when this breaker is {@link #destroy() destroyed}.
+     *
+     * @param executor the {@code Executor} used to probe the back-end.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /*--------------------------------------------
+    |              M E T R I C S                |
+    ============================================*/
+
+    public State getState() {
+        return state.get();
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    /**
+     * Returns the total number of back-end calls made through this breaker, including background probes.
+     *
+     * @return the total number of back-end calls made through this breaker.
+     */
+    public long getCallCount() {
+        return callCount.get();
+    }
+
+    /**
+     * Returns the number of back-end calls that failed with an exception.
+     *
+     * @return the number of back-end calls that failed with an exception.
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * Returns the number of back-end calls that succeeded but exceeded the {@link #getSlowCallThreshold() slowCallThreshold}.
+     *
+     * @return the number of back-end calls that exceeded the slow call threshold.
+     */
+    public long getSlowCallCount() {
+        return slowCallCount.get();
+    }
+
+    /**
+     * Returns the number of lookups that did not reach the back-end because the breaker was open.
+     *
+     * @return the number of lookups that did not reach the back-end because the breaker was open.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Returns the number of lookups that were answered from the stale cache.
+     *
+     * @return the number of lookups that were answered from the stale cache.
+     */
+    public long getStaleHitCount() {
+        return staleHitCount.get();
+    }
+
+    /**
+     * Returns the latency in milliseconds of the most recent back-end call.
+     *
+     * @return the latency in milliseconds of the most recent back-end call.
+     */
+    public long getLastLatency() {
+        return lastLatency;
+    }
+
+    /**
+     * Returns the average latency in milliseconds of all back-end calls made through this breaker.
+     *
+     * @return the average latency in milliseconds of all back-end calls, or {@code 0} if none have been made yet.
+     */
+    public double getAverageLatency() {
+        long calls = callCount.get();
+        return calls > 0 ? (double) totalLatency.get() / calls : 0;
+    }
+
+    /*--------------------------------------------
+    |               M E T H O D S               |
+    ============================================*/
+
+    /**
+     * Returns the {@code AuthorizationInfo} for the given cache {@code key}, calling the {@code loader} only if
+     * the breaker is closed.
+     * <p/>
+     * If the breaker is open, the last known information for the key is returned from the stale cache.  If none
+     * is available (or it is older than {@link #getMaxStaleness() maxStaleness}), an {@link AuthorizationException}
+     * is thrown immediately.  The same fallback applies when the loader itself fails.
+     *
+     * @param key    the key identifying the account, as determined by the realm's authorization cache key.
+     * @param loader the back-end lookup to guard.
+     * @return the (possibly stale) {@code AuthorizationInfo} for the account, or {@code null} if the back-end
+     *         knows no such account.
+     * @throws AuthorizationException if the back-end is unavailable and no sufficiently fresh stale information exists.
+     */
+    public AuthorizationInfo getAuthorizationInfo(Object key, Callable<AuthorizationInfo> loader)
+            throws AuthorizationException {
+        if (state.get() != State.CLOSED) {
+            rejectedCount.incrementAndGet();
+            if (tryStartProbe()) {
+                submitProbe(key, loader);
+            }
+            return getStaleAuthorizationInfo(key, null);
+        }
+
+        try {
+            return load(key, loader);
+        } catch (Exception e) {
+            return getStaleAuthorizationInfo(key, e);
+        }
+    }
+
+    /**
+     * Executes the loader, recording its latency and outcome, and retains a successful result in the stale cache.
+     */
+    private AuthorizationInfo load(Object key, Callable<AuthorizationInfo> loader) throws Exception {
+        long start = System.currentTimeMillis();
+        AuthorizationInfo info;
+        try {
+            info = loader.call();
+        } catch (Exception e) {
+            recordFailure(System.currentTimeMillis() - start);
+            throw e;
+        }
+        recordSuccess(System.currentTimeMillis() - start);
+        if (info != null) {
+            getAvailableStaleCache().put(key, new StaleEntry(info, System.currentTimeMillis()));
+        }
+        return info;
+    }
+
+    private AuthorizationInfo getStaleAuthorizationInfo(Object key, Exception cause) throws AuthorizationException {
+        Object value = getAvailableStaleCache().get(key);
+        if (value instanceof StaleEntry) {
+            StaleEntry entry = (StaleEntry) value;
+            if (System.currentTimeMillis() - entry.timestamp <= getMaxStaleness()) {
+                staleHitCount.incrementAndGet();
+                if (log.isDebugEnabled()) {
+                    log.debug("Serving stale AuthorizationInfo for key [" + key + "] (circuit " + getState() + ").");
+                }
+                return new StaleAuthorizationInfo(entry.info);
+            }
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        String msg = "Unable to acquire AuthorizationInfo for key [" + key + "]: the authorization back-end is " +
+                "unavailable (circuit " + getState() + ") and no stale information younger than " +
+                getMaxStaleness() + " ms is available.";
+        throw new AuthorizationException(msg, cause);
+    }
+
+    /**
+     * Discards the last known information for the given key, so that it is no longer served while the breaker is
+     * open.  Called by the owning realm when the key's cached authorization data is cleared.
+     *
+     * @param key the key identifying the account, as determined by the realm's authorization cache key.
+     */
+    public void remove(Object key) {
+        getAvailableStaleCache().remove(key);
+    }
+
+    /**
+     * Discards the last known information for all accounts, so that none of it is served while the breaker is open.
+     * Called by the owning realm when cached authorization data of possibly many accounts is cleared.
+     */
+    public void clear() {
+        getAvailableStaleCache().clear();
+    }
+
+    private Cache<Object, Object> getAvailableStaleCache() {
+        Cache<Object, Object> cache = this.staleCache;
+        if (cache == null) {
+            synchronized (this) {
+                if (this.staleCache == null) {
+                    this.staleCache = new MapCache<Object, Object>(getClass().getName() + ".staleCache",
+                            new SoftHashMap<Object, Object>());
+                }
+                cache = this.staleCache;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Records a completed back-end call.  Calls slower than the slow call threshold count as failures.
+     *
+     * @param latency the call's latency in milliseconds.
+     */
+    protected void recordSuccess(long latency) {
+        recordLatency(latency);
+        if (slowCallThreshold > 0 && latency > slowCallThreshold) {
+            slowCallCount.incrementAndGet();
+            onFailure();
+            return;
+        }
+        consecutiveFailures.set(0);
+        if (state.compareAndSet(State.HALF_OPEN, State.CLOSED) || state.compareAndSet(State.OPEN, State.CLOSED)) {
+            log.info("Authorization back-end has recovered.  Circuit closed.");
+        }
+    }
+
+    /**
+     * Records a back-end call that failed with an exception.
+     *
+     * @param latency the call's latency in milliseconds.
+     */
+    protected void recordFailure(long latency) {
+        recordLatency(latency);
+        failureCount.incrementAndGet();
+        onFailure();
+    }
+
+    private void recordLatency(long latency) {
+        callCount.incrementAndGet();
+        totalLatency.addAndGet(latency);
+        lastLatency = latency;
+    }
+
+    private void onFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (state.compareAndSet(State.HALF_OPEN, State.OPEN)) {
+            lastOpenedTimestamp = System.currentTimeMillis();
+            log.warn("Authorization back-end probe failed.  Circuit remains open.");
+        } else if (failures >= failureThreshold && state.compareAndSet(State.CLOSED, State.OPEN)) {
+            lastOpenedTimestamp = System.currentTimeMillis();
+            log.warn("Authorization back-end failed or was slow " + failures + " consecutive times.  Circuit opened.");
+        }
+    }
+
+    private boolean tryStartProbe() {
+        return state.get() == State.OPEN &&
+                System.currentTimeMillis() - lastOpenedTimestamp >= retryInterval &&
+                state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    private void submitProbe(final Object key, final Callable<AuthorizationInfo> loader) {
+        Runnable probe = new Runnable() {
+            public void run() {
+                try {
+                    load(key, loader);
+                } catch (Exception e) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Authorization back-end probe for key [" + key + "] failed.", e);
+                    }
+                }
+            }
+        };
+        try {
+            getAvailableExecutor().execute(probe);
+        } catch (RuntimeException e) {
+            log.warn("Unable to submit authorization back-end probe.  Circuit remains open.", e);
+            state.compareAndSet(State.HALF_OPEN, State.OPEN);
+            lastOpenedTimestamp = System.currentTimeMillis();
+        }
+    }
+
+    private synchronized Executor getAvailableExecutor() {
+        if (this.executor != null) {
+            return this.executor;
+        }
+        if (this.internalExecutor == null) {
+            this.internalExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "AuthorizationCircuitBreakerProbe");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return this.internalExecutor;
+    }
+
+    /**
+     * Shuts down the internally created probe thread, if any.  An explicitly {@link #setExecutor configured}
+     * executor is left untouched.
+     */
+    public synchronized void destroy() {
+        if (this.internalExecutor != null) {
+            this.internalExecutor.shutdownNow();
+            this.internalExecutor = null;
+        }
+    }
+
+    /**
+     * Stale cache value: the last known AuthorizationInfo and the time it was acquired from the back-end.
+     */
+    private static class StaleEntry implements Serializable {
+        private final AuthorizationInfo info;
+        private final long timestamp;
+
+        private StaleEntry(AuthorizationInfo info, long timestamp) {
+            this.info = info;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -21,19 +21,38 @@ package org.apache.shiro.realm;
 import org.apache.shiro.authc.credential.CredentialsMatcher;
 import org.apache.shiro.authz.AuthorizationException;
 import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.BulkAuthorizer;
 import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.RoleHierarchy;
+import org.apache.shiro.authz.RoleHierarchyAware;
 import org.apache.shiro.authz.UnauthorizedException;
 import org.apache.shiro.authz.permission.*;
 import org.apache.shiro.cache.Cache;
 import org.apache.shiro.cache.CacheManager;
+import org.apache.shiro.cache.CacheUtils;
+import org.apache.shiro.cache.InstrumentedCache;
 import org.apache.shiro.subject.PrincipalCollection;
 import org.apache.shiro.util.CollectionUtils;
+import org.apache.shiro.util.Destroyable;
 import org.apache.shiro.util.Initializable;
+import org.apache.shiro.util.LifecycleUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 
 /**
@@ -56,7 +75,8 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @since 0.2
  */
 public abstract class AuthorizingRealm extends AuthenticatingRealm
-        implements Initializable, PermissionResolverAware, RolePermissionResolverAware {
+        implements BulkAuthorizer, Initializable, Destroyable, PermissionResolverAware, RolePermissionResolverAware,
+        RoleHierarchyAware {
 
     //TODO - complete JavaDoc
 
@@ -70,6 +90,23 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
      */
     private static final String DEFAULT_AUTHORIZATION_CACHE_SUFFIX = ".authorizationCache";
 
+    /**
+     * The suffix appended to the authorization cache name for retaining stale AuthorizationInfo instances when an
+     * {@link AuthorizationCircuitBreaker} is configured.
+     */
+    private static final String STALE_AUTHORIZATION_CACHE_SUFFIX = ".stale";
+
+    /**
+     * Number of role-indexed cache keys below which the role index is never pruned of evicted entries.
+     */
+    private static final int ROLE_INDEX_PRUNE_MINIMUM = 64;
+
+    /**
+     * Number of counters (and locks) the authorization cache keys are spread over to track per-key invalidations.
+     * Must be a power of two.
+     */
+    private static final int AUTHORIZATION_KEY_STRIPES = 256;
+
     private static final AtomicInteger INSTANCE_COUNT = new AtomicInteger();
 
     /*--------------------------------------------
@@ -86,6 +123,48 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
 
     private RolePermissionResolver permissionRoleResolver;
 
+    private RoleHierarchy roleHierarchy;
+
+    private AuthorizationCircuitBreaker authorizationCircuitBreaker;
+
+    /**
+     * Age in milliseconds after which a cached AuthorizationInfo is reloaded in the background.  Zero or less
+     * disables refresh-ahead.
+     */
+    private long authorizationRefreshAheadTime;
+    private Executor authorizationLoadExecutor;
+    private ExecutorService internalAuthorizationLoadExecutor;
+
+    /**
+     * AuthorizationInfo loads currently in progress, keyed by authorization cache key, so that concurrent cache
+     * misses and background refreshes for the same account share a single back-end call.
+     */
+    private final ConcurrentMap<Object, FutureTask<AuthorizationInfo>> authorizationLoads =
+            new ConcurrentHashMap<Object, FutureTask<AuthorizationInfo>>();
+
+    /**
+     * Incremented before the cached AuthorizationInfo of all accounts mapped to the counter is cleared, so that
+     * loads which started before the clear and may have read the old authorization data do not cache it afterwards.
+     * Caching a loaded value and clearing a key are serialized by the key's lock in
+     * {@code authorizationKeyLocks}.
+     */
+    private final AtomicLongArray authorizationKeyGenerations = new AtomicLongArray(AUTHORIZATION_KEY_STRIPES);
+    private final Object[] authorizationKeyLocks = createLocks(AUTHORIZATION_KEY_STRIPES);
+
+    /**
+     * Incremented before cached AuthorizationInfo is cleared by role, which supersedes every load in progress.
+     */
+    private final AtomicLong authorizationCacheGeneration = new AtomicLong();
+
+    /**
+     * Reverse index from role name to the authorization cache keys whose cached AuthorizationInfo contains that
+     * role, plus the roles indexed per key so entries can be removed from the index again.
+     */
+    private final ConcurrentMap<String, ConcurrentMap<Object, Boolean>> authorizationCacheRoleIndex =
+            new ConcurrentHashMap<String, ConcurrentMap<Object, Boolean>>();
+    private final ConcurrentMap<Object, Collection<String>> authorizationCacheKeyRoles =
+            new ConcurrentHashMap<Object, Collection<String>>();
+
     /*--------------------------------------------
     |         C O N S T R U C T O R S           |
     ============================================*/
@@ -188,6 +267,121 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
         this.permissionRoleResolver = permissionRoleResolver;
     }
 
+    /**
+     * Returns the {@link RoleHierarchy} used to determine inherited roles, or {@code null} if roles are only ever
+     * granted directly (the default).
+     *
+     * @return the {@code RoleHierarchy} used to determine inherited roles, or {@code null} if none is configured.
+     * @since 1.1
+     */
+    public RoleHierarchy getRoleHierarchy() {
+        return roleHierarchy;
+    }
+
+    /**
+     * Sets the {@link RoleHierarchy} used to determine inherited roles.  When set, an account has every role
+     * (transitively) inherited from the roles in its {@link AuthorizationInfo#getRoles() AuthorizationInfo}, and the
+     * {@link #getRolePermissionResolver() rolePermissionResolver} resolves permissions for all of these roles.
+     *
+     * @param roleHierarchy the {@code RoleHierarchy} used to determine inherited roles.
+     * @since 1.1
+     */
+    public void setRoleHierarchy(RoleHierarchy roleHierarchy) {
+        this.roleHierarchy = roleHierarchy;
+    }
+
+    /**
+     * Returns the circuit breaker guarding calls to
+     * {@link #doGetAuthorizationInfo(org.apache.shiro.subject.PrincipalCollection) doGetAuthorizationInfo}, or
+     * {@code null} if the back-end is always called directly (the default).
+     *
+     * @return the circuit breaker guarding back-end authorization lookups, or {@code null} if none is configured.
+     * @since 1.1
+     */
+    public AuthorizationCircuitBreaker getAuthorizationCircuitBreaker() {
+        return authorizationCircuitBreaker;
+    }
+
+    /**
+     * Sets the circuit breaker guarding calls to
+     * {@link #doGetAuthorizationInfo(org.apache.shiro.subject.PrincipalCollection) doGetAuthorizationInfo}.
+     * <p/>
+     * If the breaker does not have its own stale cache configured, one named
+     * {@link #getAuthorizationCacheName() authorizationCacheName}{@code + ".stale"} will be acquired from this realm's
+     * {@link #setCacheManager cacheManager}, if available.
+     *
+     * @param authorizationCircuitBreaker the circuit breaker guarding back-end authorization lookups.
+     * @since 1.1
+     */
+    public void setAuthorizationCircuitBreaker(AuthorizationCircuitBreaker authorizationCircuitBreaker) {
+        this.authorizationCircuitBreaker = authorizationCircuitBreaker;
+        initStaleAuthorizationCache();
+    }
+
+    /**
+     * Returns the age in milliseconds after which a cached {@code AuthorizationInfo} is reloaded in the background
+     * while the cached value continues to be served.  Zero (the default) disables refresh-ahead.
+     *
+     * @return the age in milliseconds after which cached authorization data is refreshed ahead of expiry.
+     * @since 1.1
+     */
+    public long getAuthorizationRefreshAheadTime() {
+        return authorizationRefreshAheadTime;
+    }
+
+    /**
+     * Enables refresh-ahead (stale-while-revalidate) authorization caching by setting the age in milliseconds after
+     * which a cached {@code AuthorizationInfo} is reloaded asynchronously.  This value should be somewhat less than
+     * the time-to-live of the underlying authorization cache (e.g. 80% of it), so that popular entries are
+     * reloaded before they expire and no request thread has to wait for the back-end.
+     * <p/>
+     * When enabled, concurrent cache misses for the same account also share a single in-flight call to
+     * {@link #doGetAuthorizationInfo(org.apache.shiro.subject.PrincipalCollection) doGetAuthorizationInfo}.
+     * <p/>
+     * Refresh-ahead only has an effect if authorization caching is enabled.
+     *
+     * @param authorizationRefreshAheadTime the age in milliseconds after which cached authorization data is
+     *                                      refreshed, or zero to disable refresh-ahead.
+     * @since 1.1
+     */
+    public void setAuthorizationRefreshAheadTime(long authorizationRefreshAheadTime) {
+        this.authorizationRefreshAheadTime = authorizationRefreshAheadTime;
+    }
+
+    /**
+     * Returns {@code true} if {@link #setAuthorizationRefreshAheadTime refresh-ahead} authorization caching is
+     * enabled, {@code false} otherwise.
+     *
+     * @return {@code true} if refresh-ahead authorization caching is enabled, {@code false} otherwise.
+     * @since 1.1
+     */
+    public boolean isAuthorizationRefreshAheadEnabled() {
+        return authorizationRefreshAheadTime > 0;
+    }
+
+    /**
+     * Returns the {@code Executor} used to load AuthorizationInfo in the background (for refresh-ahead and
+     * {@link #prefetchAuthorizationInfo prefetching}), or {@code null} if a single internal daemon thread will be
+     * created on demand.
+     *
+     * @return the {@code Executor} used to load AuthorizationInfo in the background.
+     * @since 1.1
+     */
+    public Executor getAuthorizationLoadExecutor() {
+        return authorizationLoadExecutor;
+    }
+
+    /**
+     * Sets the {@code Executor} used to load AuthorizationInfo in the background.  If not set, a single daemon
+     * thread will be created on demand and shut down when this realm is {@link #destroy() destroyed}.
+     *
+     * @param authorizationLoadExecutor the {@code Executor} used to load AuthorizationInfo in the background.
+     * @since 1.1
+     */
+    public void setAuthorizationLoadExecutor(Executor authorizationLoadExecutor) {
+        this.authorizationLoadExecutor = authorizationLoadExecutor;
+    }
+
     /*--------------------------------------------
     |               M E T H O D S               |
     ============================================*/
@@ -215,6 +409,7 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
     public final void init() {
         //trigger obtaining the authorization cache if possible
         getAvailableAuthorizationCache();
+        initStaleAuthorizationCache();
         onInit();
     }
 
@@ -224,6 +419,36 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
     protected void afterCacheManagerSet() {
         //trigger obtaining the authorization cache if possible
         getAvailableAuthorizationCache();
+        initStaleAuthorizationCache();
+    }
+
+    /**
+     * Cleans up any resources held by this realm's {@link #getAuthorizationCircuitBreaker() circuit breaker}.
+     * Subclasses are free to override for additional behavior, but be sure to call {@code super.destroy()}.
+     *
+     * @since 1.1
+     */
+    public void destroy() {
+        LifecycleUtils.destroy(getAuthorizationCircuitBreaker());
+        synchronized (this.authorizationLoads) {
+            if (this.internalAuthorizationLoadExecutor != null) {
+                this.internalAuthorizationLoadExecutor.shutdownNow();
+                this.internalAuthorizationLoadExecutor = null;
+            }
+        }
+    }
+
+    private void initStaleAuthorizationCache() {
+        AuthorizationCircuitBreaker breaker = getAuthorizationCircuitBreaker();
+        CacheManager cacheManager = getCacheManager();
+        if (breaker != null && breaker.getStaleCache() == null && cacheManager != null && isCachingEnabled()) {
+            String cacheName = getAuthorizationCacheName() + STALE_AUTHORIZATION_CACHE_SUFFIX;
+            if (log.isDebugEnabled()) {
+                log.debug("Building stale authorization cache named [" + cacheName + "]");
+            }
+            Cache<Object, Object> staleCache = cacheManager.getCache(cacheName);
+            breaker.setStaleCache(staleCache);
+        }
     }
 
     private Cache<Object, AuthorizationInfo> getAuthorizationCacheLazy() {
@@ -333,25 +558,241 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
                     log.trace("AuthorizationInfo found in cache for principals [" + principals + "]");
                 }
             }
+            if (info instanceof TimestampedAuthorizationInfo) {
+                TimestampedAuthorizationInfo timestamped = (TimestampedAuthorizationInfo) info;
+                if (isAuthorizationRefreshAheadEnabled() &&
+                        System.currentTimeMillis() - timestamped.timestamp >= getAuthorizationRefreshAheadTime()) {
+                    loadAuthorizationInfoAsync(principals, key, cache);
+                }
+                info = timestamped.info;
+            }
         }
 
 
         if (info == null) {
-            // Call template method if the info was not found in a cache
-            info = doGetAuthorizationInfo(principals);
-            // If the info is not null and the cache has been created, then cache the authorization info.
-            if (info != null && cache != null) {
-                if (log.isTraceEnabled()) {
-                    log.trace("Caching authorization info for principals: [" + principals + "].");
+            Object key = cache != null ? getAuthorizationCacheKey(principals) : null;
+            if (cache != null && (isAuthorizationRefreshAheadEnabled() || this.authorizationLoads.containsKey(key))) {
+                // Share a single back-end call between all threads missing on the same key, including any
+                // background load (e.g. a prefetch) that is already in progress
+                info = loadAndCacheAuthorizationInfoShared(principals, key, cache);
+            } else {
+                long generation = getAuthorizationCacheGeneration(key);
+                // Call template method if the info was not found in a cache
+                info = loadAuthorizationInfo(principals, cache);
+                if (info instanceof StaleAuthorizationInfo) {
+                    // Fallback served by the circuit breaker - don't cache it as if it were fresh
+                    info = ((StaleAuthorizationInfo) info).getInfo();
+                } else if (info != null && cache != null) {
+                    // If the info is not null and the cache has been created, then cache the authorization info.
+                    if (log.isTraceEnabled()) {
+                        log.trace("Caching authorization info for principals: [" + principals + "].");
+                    }
+                    cacheAuthorizationInfo(key, info, info, cache, generation);
                 }
-                Object key = getAuthorizationCacheKey(principals);
-                cache.put(key, info);
             }
         }
 
         return info;
     }
 
+    /**
+     * Loads the AuthorizationInfo for the given principals and caches it, sharing the back-end call with any other
+     * thread currently loading the same key.  A background load that has not started yet is run by the calling
+     * thread.
+     */
+    private AuthorizationInfo loadAndCacheAuthorizationInfoShared(PrincipalCollection principals, Object key,
+                                                                 Cache<Object, AuthorizationInfo> cache) {
+        FutureTask<AuthorizationInfo> task = createAuthorizationLoad(principals, key, cache);
+        FutureTask<AuthorizationInfo> inFlight = this.authorizationLoads.putIfAbsent(key, task);
+        if (inFlight == null) {
+            inFlight = task;
+            try {
+                task.run();
+            } finally {
+                this.authorizationLoads.remove(key, task);
+            }
+        } else {
+            if (log.isTraceEnabled()) {
+                log.trace("Joining in-flight AuthorizationInfo load for principals [" + principals + "]");
+            }
+            //a background load (e.g. a prefetch) may still be queued behind others - run it here rather than wait
+            //for the executor.  This does nothing if the load already started:
+            inFlight.run();
+        }
+        try {
+            return inFlight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthorizationException("Interrupted while waiting for AuthorizationInfo to load.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new AuthorizationException("Unable to load AuthorizationInfo.", cause);
+        }
+    }
+
+    /**
+     * Starts loading the AuthorizationInfo for the given principals into the authorization cache on the
+     * {@link #getAuthorizationLoadExecutor() authorizationLoadExecutor} and returns immediately.
+     * <p/>
+     * This is typically called right after a successful login (see
+     * {@link org.apache.shiro.mgt.DefaultSecurityManager#setAuthorizationPrefetchEnabled(boolean)}) so that the
+     * first authorization check of the new session finds a warm cache entry instead of paying the cost of
+     * {@link #doGetAuthorizationInfo(org.apache.shiro.subject.PrincipalCollection) doGetAuthorizationInfo}.
+     * <p/>
+     * This method does nothing if authorization caching is disabled, if the info is already cached or if it is
+     * already being loaded.
+     *
+     * @param principals the principals of the account for which to prefetch the AuthorizationInfo.
+     * @since 1.1
+     */
+    public void prefetchAuthorizationInfo(PrincipalCollection principals) {
+        if (principals == null || principals.isEmpty()) {
+            return;
+        }
+        Cache<Object, AuthorizationInfo> cache = getAvailableAuthorizationCache();
+        if (cache == null) {
+            if (log.isTraceEnabled()) {
+                log.trace("Authorization caching is disabled.  Skipping AuthorizationInfo prefetch.");
+            }
+            return;
+        }
+        Object key = getAuthorizationCacheKey(principals);
+        if (cache.get(key) == null) {
+            loadAuthorizationInfoAsync(principals, key, cache);
+        }
+    }
+
+    /**
+     * Loads the AuthorizationInfo for the given principals into the cache on the
+     * {@link #getAuthorizationLoadExecutor() authorizationLoadExecutor}, unless a load for the same key is already
+     * in progress.  Any currently cached value keeps being served until the load completes.
+     */
+    private void loadAuthorizationInfoAsync(PrincipalCollection principals, final Object key,
+                                            Cache<Object, AuthorizationInfo> cache) {
+        final FutureTask<AuthorizationInfo> task = createAuthorizationLoad(principals, key, cache);
+        if (this.authorizationLoads.putIfAbsent(key, task) != null) {
+            //already being loaded
+            return;
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("Loading AuthorizationInfo for principals [" + principals + "] in the background.");
+        }
+        Runnable load = new Runnable() {
+            public void run() {
+                try {
+                    task.run();
+                    task.get();
+                } catch (Exception e) {
+                    log.warn("Unable to load AuthorizationInfo for key [" + key + "] in the background.  It " +
+                            "will be loaded on demand.", e);
+                } finally {
+                    authorizationLoads.remove(key, task);
+                }
+            }
+        };
+        boolean submitted = false;
+        try {
+            getAvailableAuthorizationLoadExecutor().execute(load);
+            submitted = true;
+        } catch (RejectedExecutionException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Background AuthorizationInfo load for key [" + key + "] rejected by executor.", e);
+            }
+        } finally {
+            if (!submitted) {
+                //the task will never run, so it must not make other threads wait for it:
+                this.authorizationLoads.remove(key, task);
+            }
+        }
+    }
+
+    private FutureTask<AuthorizationInfo> createAuthorizationLoad(final PrincipalCollection principals,
+                                                                  final Object key,
+                                                                  final Cache<Object, AuthorizationInfo> cache) {
+        return new FutureTask<AuthorizationInfo>(new Callable<AuthorizationInfo>() {
+            public AuthorizationInfo call() throws Exception {
+                long generation = getAuthorizationCacheGeneration(key);
+                AuthorizationInfo info = loadAuthorizationInfo(principals, cache);
+                if (info instanceof StaleAuthorizationInfo) {
+                    //fallback served by the circuit breaker - don't cache it as if it were fresh:
+                    return ((StaleAuthorizationInfo) info).getInfo();
+                }
+                if (info != null) {
+                    if (log.isTraceEnabled()) {
+                        log.trace("Caching authorization info for principals: [" + principals + "].");
+                    }
+                    AuthorizationInfo value = info;
+                    if (isAuthorizationRefreshAheadEnabled()) {
+                        value = new TimestampedAuthorizationInfo(info, System.currentTimeMillis());
+                    }
+                    cacheAuthorizationInfo(key, info, value, cache, generation);
+                }
+                return info;
+            }
+        });
+    }
+
+    /**
+     * Loads the AuthorizationInfo after a cache miss, reporting the load time to the cache if it keeps
+     * {@link org.apache.shiro.cache.CacheStatistics statistics}.
+     */
+    private AuthorizationInfo loadAuthorizationInfo(PrincipalCollection principals,
+                                                    Cache<Object, AuthorizationInfo> cache) {
+        if (!(cache instanceof InstrumentedCache)) {
+            return loadAuthorizationInfo(principals);
+        }
+        long start = System.currentTimeMillis();
+        try {
+            return loadAuthorizationInfo(principals);
+        } finally {
+            ((InstrumentedCache) cache).recordLoad(System.currentTimeMillis() - start);
+        }
+    }
+
+    private Executor getAvailableAuthorizationLoadExecutor() {
+        Executor executor = getAuthorizationLoadExecutor();
+        if (executor != null) {
+            return executor;
+        }
+        synchronized (this.authorizationLoads) {
+            if (this.internalAuthorizationLoadExecutor == null) {
+                final String threadName = getName() + ".authorizationLoader";
+                this.internalAuthorizationLoadExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            return this.internalAuthorizationLoadExecutor;
+        }
+    }
+
+    /**
+     * Acquires the AuthorizationInfo from the underlying data store after a cache miss, through the
+     * {@link #getAuthorizationCircuitBreaker() authorizationCircuitBreaker} if one is configured.  Fallback
+     * information served by the breaker is returned as a {@link StaleAuthorizationInfo}, which the callers unwrap
+     * without caching it.
+     */
+    private AuthorizationInfo loadAuthorizationInfo(final PrincipalCollection principals) {
+        AuthorizationCircuitBreaker breaker = getAuthorizationCircuitBreaker();
+        if (breaker == null) {
+            return doGetAuthorizationInfo(principals);
+        }
+        return breaker.getAuthorizationInfo(getAuthorizationCacheKey(principals), new Callable<AuthorizationInfo>() {
+            public AuthorizationInfo call() throws Exception {
+                return doGetAuthorizationInfo(principals);
+            }
+        });
+    }
+
     protected Object getAuthorizationCacheKey(PrincipalCollection principals) {
         return principals;
     }
@@ -379,7 +820,183 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
         //cache instance will be non-null if caching is enabled:
         if (cache != null) {
             Object key = getAuthorizationCacheKey(principals);
-            cache.remove(key);
+            int stripe = stripe(key);
+            synchronized (this.authorizationKeyLocks[stripe]) {
+                //supersede any load of this key in progress, which may have read the old authorization data:
+                this.authorizationKeyGenerations.incrementAndGet(stripe);
+                this.authorizationLoads.remove(key);
+                cache.remove(key);
+                unindexAuthorizationCacheKey(key);
+            }
+        }
+        AuthorizationCircuitBreaker breaker = getAuthorizationCircuitBreaker();
+        if (breaker != null) {
+            //the last known information must not be served as a fallback after it was invalidated:
+            breaker.remove(getAuthorizationCacheKey(principals));
+        }
+    }
+
+    /**
+     * Clears out the cached AuthorizationInfo of every account that has been assigned the specified role.
+     * <p/>
+     * This method should be called when a role's definition changes at runtime (e.g. permissions are added to or
+     * removed from it).  Unlike clearing the entire authorization cache, only the affected accounts will need to
+     * re-acquire their authorization data from the underlying data store.
+     * <p/>
+     * If a {@link #getRoleHierarchy() roleHierarchy} is configured, the members of every role inheriting the
+     * specified role are cleared as well.
+     * <p/>
+     * Affected cache entries are found via a reverse index from role name to cache key that this realm maintains
+     * whenever it caches an {@code AuthorizationInfo}.  Entries placed into a shared (e.g. replicated) cache by
+     * other application nodes are not known to this realm's index and must be invalidated on those nodes.
+     *
+     * @param roleName the name of the role whose members' cached AuthorizationInfo should be cleared.
+     * @since 1.1
+     */
+    public void clearCachedAuthorizationInfoForRole(String roleName) {
+        if (roleName == null) {
+            return;
+        }
+        RoleHierarchy hierarchy = getRoleHierarchy();
+        //members of roles inheriting this role are affected as well:
+        Collection<String> roleNames = hierarchy != null ?
+                hierarchy.getInheritingRoles(roleName) : Collections.singleton(roleName);
+        //Loads in progress may have read the old role definition, and accounts loading for the first time are not
+        //indexed yet, so supersede all of them:
+        this.authorizationCacheGeneration.incrementAndGet();
+        this.authorizationLoads.clear();
+        AuthorizationCircuitBreaker breaker = getAuthorizationCircuitBreaker();
+        if (breaker != null) {
+            //the breaker's last known information of accounts that are no longer cached isn't indexed by role, so
+            //none of it may be served as a fallback anymore:
+            breaker.clear();
+        }
+        Set<Object> keys = new HashSet<Object>();
+        for (String name : roleNames) {
+            ConcurrentMap<Object, Boolean> roleKeys = this.authorizationCacheRoleIndex.remove(name);
+            if (roleKeys != null) {
+                keys.addAll(roleKeys.keySet());
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Clearing " + keys.size() + " cached AuthorizationInfo instance(s) for role [" + roleName + "]");
+        }
+        Cache<Object, AuthorizationInfo> cache = getAvailableAuthorizationCache();
+        if (cache != null) {
+            CacheUtils.removeAll(cache, keys);
+        }
+        for (Object key : keys) {
+            unindexAuthorizationCacheKey(key);
+        }
+    }
+
+    private static Object[] createLocks(int count) {
+        Object[] locks = new Object[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+
+    private static int stripe(Object key) {
+        int h = key != null ? key.hashCode() : 0;
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return h & (AUTHORIZATION_KEY_STRIPES - 1);
+    }
+
+    /**
+     * Returns a value that changes whenever the cached AuthorizationInfo of the given key may have been cleared.
+     */
+    private long getAuthorizationCacheGeneration(Object key) {
+        return this.authorizationKeyGenerations.get(stripe(key)) + this.authorizationCacheGeneration.get();
+    }
+
+    /**
+     * Puts the given value into the authorization cache and records the info's roles in the role index, unless
+     * cached authorization data of the key was cleared since the load started at the given {@code generation}.
+     * Clearing a single key takes the same lock, so it either happens before the check or removes the new entry.
+     * Clearing by role doesn't, so the generation is checked again once the entry is indexed and visible to it.
+     */
+    private void cacheAuthorizationInfo(Object key, AuthorizationInfo info, AuthorizationInfo value,
+                                        Cache<Object, AuthorizationInfo> cache, long generation) {
+        synchronized (this.authorizationKeyLocks[stripe(key)]) {
+            if (getAuthorizationCacheGeneration(key) == generation) {
+                cache.put(key, value);
+                indexAuthorizationCacheKey(key, info.getRoles(), cache);
+                if (getAuthorizationCacheGeneration(key) == generation) {
+                    return;
+                }
+                //only entries cached under this lock can be removed here, so this never drops a newer entry:
+                cache.remove(key);
+                unindexAuthorizationCacheKey(key);
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Cached AuthorizationInfo was cleared while loading key [" + key + "].  Discarding the " +
+                    "possibly outdated result.");
+        }
+    }
+
+    private void indexAuthorizationCacheKey(Object key, Collection<String> roles,
+                                            Cache<Object, AuthorizationInfo> cache) {
+        Collection<String> indexed = CollectionUtils.isEmpty(roles) ?
+                Collections.<String>emptySet() : new HashSet<String>(roles);
+        Collection<String> previous = this.authorizationCacheKeyRoles.put(key, indexed);
+        if (previous != null) {
+            for (String roleName : previous) {
+                if (!indexed.contains(roleName)) {
+                    unindexRole(roleName, key);
+                }
+            }
+        }
+        for (String roleName : indexed) {
+            ConcurrentMap<Object, Boolean> keys = this.authorizationCacheRoleIndex.get(roleName);
+            if (keys == null) {
+                keys = new ConcurrentHashMap<Object, Boolean>();
+                ConcurrentMap<Object, Boolean> existing = this.authorizationCacheRoleIndex.putIfAbsent(roleName, keys);
+                if (existing != null) {
+                    keys = existing;
+                }
+            }
+            keys.put(key, Boolean.TRUE);
+        }
+        pruneAuthorizationCacheRoleIndex(cache);
+    }
+
+    private void unindexAuthorizationCacheKey(Object key) {
+        Collection<String> roles = this.authorizationCacheKeyRoles.remove(key);
+        if (roles != null) {
+            for (String roleName : roles) {
+                unindexRole(roleName, key);
+            }
+        }
+    }
+
+    private void unindexRole(String roleName, Object key) {
+        ConcurrentMap<Object, Boolean> keys = this.authorizationCacheRoleIndex.get(roleName);
+        if (keys != null) {
+            keys.remove(key);
+        }
+    }
+
+    /**
+     * Entries evicted by the cache itself (e.g. due to expiry) are not reported to this realm.  Once the index
+     * has grown well beyond the cache's size, drop all index entries for keys that are no longer cached.
+     */
+    private void pruneAuthorizationCacheRoleIndex(Cache<Object, AuthorizationInfo> cache) {
+        int indexed = this.authorizationCacheKeyRoles.size();
+        if (indexed <= ROLE_INDEX_PRUNE_MINIMUM || indexed <= cache.size() * 2) {
+            return;
+        }
+        Set<Object> cachedKeys = cache.keys();
+        for (Object key : this.authorizationCacheKeyRoles.keySet()) {
+            if (!cachedKeys.contains(key)) {
+                unindexAuthorizationCacheKey(key);
+            }
         }
     }
 
@@ -407,7 +1024,12 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
                 permissions.addAll(perms);
             }
 
-            perms = resolveRolePermissions(info.getRoles());
+            Collection<String> roles = info.getRoles();
+            RoleHierarchy hierarchy = getRoleHierarchy();
+            if (hierarchy != null) {
+                roles = hierarchy.getEffectiveRoles(roles);
+            }
+            perms = resolveRolePermissions(roles);
             if (!CollectionUtils.isEmpty(perms)) {
                 permissions.addAll(perms);
             }
@@ -525,6 +1147,44 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
         return true;
     }
 
+    /**
+     * Returns the ids for which the principals' {@link #getAuthorizationInfo(PrincipalCollection) AuthorizationInfo}
+     * implies the permission {@code domain:action:id}.  The permissions granted to the principals are resolved and
+     * indexed once for the whole collection by an {@link InstancePermissionIndex}, rather than resolving and checking
+     * one instance permission per id.
+     *
+     * @param principals  the principals of the subject being checked.
+     * @param domain      the permission domain.
+     * @param action      the action to perform on each instance.
+     * @param instanceIds the ids of the instances to filter.
+     * @return the permitted ids, in the iteration order of {@code instanceIds}.
+     * @since 1.1
+     */
+    public <T> List<T> filterPermitted(PrincipalCollection principals, String domain, String action,
+                                       Collection<T> instanceIds) {
+        if (CollectionUtils.isEmpty(instanceIds)) {
+            return new ArrayList<T>();
+        }
+        AuthorizationInfo info = getAuthorizationInfo(principals);
+        return filterPermitted(domain, action, instanceIds, info);
+    }
+
+    protected <T> List<T> filterPermitted(String domain, String action, Collection<T> instanceIds,
+                                          AuthorizationInfo info) {
+        List<T> permitted = new ArrayList<T>();
+        Collection<Permission> perms = getPermissions(info);
+        if (perms.isEmpty() || CollectionUtils.isEmpty(instanceIds)) {
+            return permitted;
+        }
+        InstancePermissionIndex index = new InstancePermissionIndex(perms, domain, action, getPermissionResolver());
+        for (T id : instanceIds) {
+            if (index.isPermitted(id)) {
+                permitted.add(id);
+            }
+        }
+        return permitted;
+    }
+
     public void checkPermission(PrincipalCollection subjectIdentifier, String permission) throws AuthorizationException {
         Permission p = getPermissionResolver().resolvePermission(permission);
         checkPermission(subjectIdentifier, p);
@@ -569,7 +1229,14 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
     }
 
     protected boolean hasRole(String roleIdentifier, AuthorizationInfo info) {
-        return info != null && info.getRoles() != null && info.getRoles().contains(roleIdentifier);
+        if (info == null || info.getRoles() == null) {
+            return false;
+        }
+        RoleHierarchy hierarchy = getRoleHierarchy();
+        if (hierarchy != null) {
+            return hierarchy.hasRole(info.getRoles(), roleIdentifier);
+        }
+        return info.getRoles().contains(roleIdentifier);
     }
 
     public boolean[] hasRoles(PrincipalCollection principal, List<String> roleIdentifiers) {
@@ -582,6 +1249,10 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
     }
 
     protected boolean[] hasRoles(List<String> roleIdentifiers, AuthorizationInfo info) {
+        RoleHierarchy hierarchy = getRoleHierarchy();
+        if (hierarchy != null && info != null) {
+            return hierarchy.hasRoles(info.getRoles(), roleIdentifiers);
+        }
         boolean[] result;
         if (roleIdentifiers != null && !roleIdentifiers.isEmpty()) {
             int size = roleIdentifiers.size();
@@ -602,6 +1273,10 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
     }
 
     private boolean hasAllRoles(Collection<String> roleIdentifiers, AuthorizationInfo info) {
+        RoleHierarchy hierarchy = getRoleHierarchy();
+        if (hierarchy != null) {
+            return hierarchy.hasAllRoles(info.getRoles(), roleIdentifiers);
+        }
         if (roleIdentifiers != null && !roleIdentifiers.isEmpty()) {
             for (String roleName : roleIdentifiers) {
                 if (!hasRole(roleName, info)) {
@@ -684,4 +1359,31 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
         }
         return primary;
     }
+
+    /**
+     * Cached AuthorizationInfo wrapper remembering when the info was acquired from the back-end, used to determine
+     * when a {@link AuthorizingRealm#setAuthorizationRefreshAheadTime refresh-ahead} is due.
+     */
+    private static class TimestampedAuthorizationInfo implements AuthorizationInfo {
+
+        private final AuthorizationInfo info;
+        private final long timestamp;
+
+        private TimestampedAuthorizationInfo(AuthorizationInfo info, long timestamp) {
+            this.info = info;
+            this.timestamp = timestamp;
+        }
+
+        public Collection<String> getRoles() {
+            return info.getRoles();
+        }
+
+        public Collection<String> getStringPermissions() {
+            return info.getStringPermissions();
+        }
+
+        public Collection<Permission> getObjectPermissions() {
+            return info.getObjectPermissions();
+        }
+    }
 }
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.realm;
+
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.Permission;
+
+import java.util.Collection;
+
+/**
+ * Last known AuthorizationInfo served by an {@link AuthorizationCircuitBreaker} in place of a back-end lookup.  The
+ * {@link AuthorizingRealm} recognizes it so that fallback information is never cached as if it were fresh.
+ *
+ * @since 1.1
+ */
+class StaleAuthorizationInfo implements AuthorizationInfo {
+
+    private final AuthorizationInfo info;
+
+    StaleAuthorizationInfo(AuthorizationInfo info) {
+        this.info = info;
+    }
+
+    /**
+     * Returns the wrapped AuthorizationInfo, as acquired from the back-end.
+     *
+     * @return the wrapped AuthorizationInfo.
+     */
+    AuthorizationInfo getInfo() {
+        return info;
+    }
+
+    public Collection<String> getRoles() {
+        return info.getRoles();
+    }
+
+    public Collection<String> getStringPermissions() {
+        return info.getStringPermissions();
+    }
+
+    public Collection<Permission> getObjectPermissions() {
+        return info.getObjectPermissions();
+    }
+}
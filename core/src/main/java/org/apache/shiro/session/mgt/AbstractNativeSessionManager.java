@@ -21,15 +21,25 @@ import org.apache.shiro.util.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Abstract implementation supporting the {@link NativeSessionManager NativeSessionManager} interface, supporting
  * {@link SessionListener SessionListener}s and application of the
  * {@link #getGlobalSessionTimeout() globalSessionTimeout}.
+ * <h3>Touch throttling</h3>
+ * By default every {@link #touch(SessionKey) touch} of a session is persisted via {@link #onChange(Session)}.  With a
+ * {@link #setSessionTouchThreshold(double) sessionTouchThreshold} configured, a touch is only persisted once the
+ * {@link Session#getLastAccessTime() lastAccessTime} advanced by more than that fraction of the session's timeout
+ * since it was last persisted; until then, the latest access time is kept in memory and applied to the session
+ * whenever it is looked up or validated by this session manager.
  *
  * @since 1.0
  */
@@ -39,10 +49,42 @@ public abstract class AbstractNativeSessionManager extends AbstractSessionManage
 
     private Collection<SessionListener> listeners;
 
+    private double sessionTouchThreshold;
+
+    /**
+     * Access times of touches not persisted yet, keyed by session id.
+     */
+    private final ConcurrentMap<Serializable, PendingTouch> pendingTouches =
+            new ConcurrentHashMap<Serializable, PendingTouch>();
+
     public AbstractNativeSessionManager() {
         this.listeners = new ArrayList<SessionListener>();
     }
 
+    /**
+     * Returns the fraction of a session's timeout by which its {@link Session#getLastAccessTime() lastAccessTime}
+     * must advance before a {@link #touch(SessionKey) touch} is persisted.  Defaults to {@code 0}, meaning every
+     * touch is persisted.
+     * <p/>
+     * For example, a threshold of {@code 0.01} with a 30 minute timeout persists at most one touch every 18
+     * seconds per session.  The persisted lastAccessTime may then lag behind by that much, so other nodes sharing
+     * the session store may consider an idle session expired up to that much earlier.
+     *
+     * @return the fraction of a session's timeout by which its lastAccessTime must advance before a touch is
+     *         persisted.
+     * @since 1.1
+     */
+    public double getSessionTouchThreshold() {
+        return sessionTouchThreshold;
+    }
+
+    public void setSessionTouchThreshold(double sessionTouchThreshold) {
+        if (sessionTouchThreshold < 0 || sessionTouchThreshold >= 1) {
+            throw new IllegalArgumentException("sessionTouchThreshold must be >= 0 and < 1.");
+        }
+        this.sessionTouchThreshold = sessionTouchThreshold;
+    }
+
     public void setSessionListeners(Collection<SessionListener> listeners) {
         this.listeners = listeners != null ? listeners : new ArrayList<SessionListener>();
     }
@@ -186,8 +228,74 @@ public abstract class AbstractNativeSessionManager extends AbstractSessionManage
 
     public void touch(SessionKey key) throws InvalidSessionException {
         Session s = lookupRequiredSession(key);
+        double threshold = getSessionTouchThreshold();
+        Serializable id = s.getId();
+        if (threshold <= 0 || id == null || !(s instanceof SimpleSession)) {
+            s.touch();
+            onChange(s);
+            return;
+        }
+        PendingTouch pending = pendingTouches.get(id);
+        Date lastAccessTime = s.getLastAccessTime();
+        long persisted = pending != null ? pending.persisted : (lastAccessTime != null ? lastAccessTime.getTime() : 0);
         s.touch();
-        onChange(s);
+        long now = s.getLastAccessTime().getTime();
+        long timeout = s.getTimeout();
+        if (timeout < 0 || now - persisted > threshold * timeout) {
+            pendingTouches.remove(id);
+            onChange(s);
+        } else {
+            pendingTouches.put(id, new PendingTouch(persisted, now, timeout));
+        }
+    }
+
+    /**
+     * Applies the latest access time of {@link #touch(SessionKey) touches} that were not persisted yet to the
+     * specified session, as looked up from the underlying data store.
+     *
+     * @param session the session to apply not yet persisted touches to.
+     * @since 1.1
+     */
+    protected void applyPendingTouch(Session session) {
+        if (pendingTouches.isEmpty() || !(session instanceof SimpleSession)) {
+            return;
+        }
+        PendingTouch pending = pendingTouches.get(session.getId());
+        if (pending != null) {
+            Date lastAccessTime = session.getLastAccessTime();
+            if (lastAccessTime == null || lastAccessTime.getTime() < pending.latest) {
+                ((SimpleSession) session).setLastAccessTime(new Date(pending.latest));
+            }
+        }
+    }
+
+    /**
+     * Forgets any not yet persisted touches of the specified session, e.g. because it was stopped or expired.
+     *
+     * @param session the session whose not yet persisted touches to forget.
+     * @since 1.1
+     */
+    protected void removePendingTouch(Session session) {
+        Serializable id = session.getId();
+        if (id != null) {
+            pendingTouches.remove(id);
+        }
+    }
+
+    /**
+     * Forgets the not yet persisted touches of sessions that would have expired by now anyway, e.g. because they
+     * were removed from the data store without this session manager noticing.
+     *
+     * @since 1.1
+     */
+    protected void prunePendingTouches() {
+        long now = System.currentTimeMillis();
+        for (Iterator<PendingTouch> it = pendingTouches.values().iterator(); it.hasNext();) {
+            PendingTouch pending = it.next();
+            if (pending.latest + pending.timeout < now) {
+                it.remove();
+            }
+        }
     }
 
     public String getHost(SessionKey key) {
@@ -240,6 +348,7 @@ public abstract class AbstractNativeSessionManager extends AbstractSessionManage
             log.debug("Stopping session with id [" + session.getId() + "]");
         }
         session.stop();
+        removePendingTouch(session);
         onStop(session, key);
         notifyStop(session);
         afterStopped(session);
@@ -263,4 +372,20 @@ public abstract class AbstractNativeSessionManager extends AbstractSessionManage
 
     protected void onChange(Session s) {
     }
+
+    /**
+     * A session's last persisted access time and its latest access time kept in memory.
+     */
+    private static class PendingTouch {
+
+        private final long persisted;
+        private final long latest;
+        private final long timeout;
+
+        private PendingTouch(long persisted, long latest, long timeout) {
+            this.persisted = persisted;
+            this.latest = latest;
+            this.timeout = timeout;
+        }
+    }
 }
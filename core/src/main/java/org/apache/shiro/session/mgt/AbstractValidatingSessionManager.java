@@ -28,11 +28,31 @@ import org.apache.shiro.util.LifecycleUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
  * Default business-tier implementation of the {@link ValidatingSessionManager} interface.
+ * <h3>Validating large numbers of sessions</h3>
+ * {@link #validateSessions() Session validation} checks the sessions in chunks of
+ * {@link #setSessionValidationChunkSize(int) sessionValidationChunkSize} sessions.  If
+ * {@link #setSessionValidationThreads(int) sessionValidationThreads} is larger than 1, or a
+ * {@link #setSessionValidationExecutor(ExecutorService) sessionValidationExecutor} is configured, chunks are validated
+ * in parallel.  A {@link #setSessionValidationDutyCycle(double) sessionValidationDutyCycle} below 1 makes each
+ * validating thread pause after each chunk, limiting the share of CPU time validation takes from the rest of the
+ * application.  The outcome of the latest pass is available as the
+ * {@link #getLastSessionValidationResult() lastSessionValidationResult}.
  *
  * @since 0.1
  */
@@ -58,6 +78,18 @@ public abstract class AbstractValidatingSessionManager extends AbstractNativeSes
 
     protected long sessionValidationInterval;
 
+    /**
+     * The default number of sessions validated as one unit of work (1000).
+     */
+    public static final int DEFAULT_SESSION_VALIDATION_CHUNK_SIZE = 1000;
+
+    private int sessionValidationChunkSize = DEFAULT_SESSION_VALIDATION_CHUNK_SIZE;
+    private int sessionValidationThreads = 1;
+    private double sessionValidationDutyCycle = 1.0;
+    private ExecutorService sessionValidationExecutor;
+    private boolean sessionValidationExecutorCreated;
+    private volatile SessionValidationResult lastSessionValidationResult;
+
     public AbstractValidatingSessionManager() {
         this.sessionValidationSchedulerEnabled = true;
         this.sessionValidationInterval = DEFAULT_SESSION_VALIDATION_INTERVAL;
@@ -109,6 +141,104 @@ public abstract class AbstractValidatingSessionManager extends AbstractNativeSes
         return sessionValidationInterval;
     }
 
+    /**
+     * Returns the number of sessions validated as one unit of work, i.e. between two throttling pauses and by one
+     * thread when validating in parallel.  Defaults to {@link #DEFAULT_SESSION_VALIDATION_CHUNK_SIZE}.
+     *
+     * @return the number of sessions validated as one unit of work.
+     * @since 1.1
+     */
+    public int getSessionValidationChunkSize() {
+        return sessionValidationChunkSize;
+    }
+
+    public void setSessionValidationChunkSize(int sessionValidationChunkSize) {
+        this.sessionValidationChunkSize = sessionValidationChunkSize;
+    }
+
+    /**
+     * Returns the number of threads validating sessions in parallel if no
+     * {@link #getSessionValidationExecutor() sessionValidationExecutor} is configured.  Defaults to {@code 1},
+     * meaning sessions are validated by the thread calling {@link #validateSessions()}.
+     *
+     * @return the number of threads validating sessions in parallel.
+     * @since 1.1
+     */
+    public int getSessionValidationThreads() {
+        return sessionValidationThreads;
+    }
+
+    public void setSessionValidationThreads(int sessionValidationThreads) {
+        this.sessionValidationThreads = sessionValidationThreads;
+    }
+
+    /**
+     * Returns the share of time, between 0 (exclusive) and 1, that each thread spends validating sessions during a
+     * validation pass; after validating a chunk in {@code t} milliseconds, a thread pauses for
+     * {@code t * (1 - dutyCycle) / dutyCycle} milliseconds.  Defaults to {@code 1}, meaning there are no pauses.
+     *
+     * @return the share of time each thread spends validating sessions during a validation pass.
+     * @since 1.1
+     */
+    public double getSessionValidationDutyCycle() {
+        return sessionValidationDutyCycle;
+    }
+
+    public void setSessionValidationDutyCycle(double sessionValidationDutyCycle) {
+        if (sessionValidationDutyCycle <= 0 || sessionValidationDutyCycle > 1) {
+            throw new IllegalArgumentException("sessionValidationDutyCycle must be > 0 and <= 1.");
+        }
+        this.sessionValidationDutyCycle = sessionValidationDutyCycle;
+    }
+
+    /**
+     * Returns the executor validating chunks of sessions in parallel, or {@code null} if one is created as needed
+     * for the configured {@link #getSessionValidationThreads() sessionValidationThreads}.
+     *
+     * @return the executor validating chunks of sessions in parallel.
+     * @since 1.1
+     */
+    public ExecutorService getSessionValidationExecutor() {
+        return sessionValidationExecutor;
+    }
+
+    /**
+     * Sets the executor validating chunks of sessions in parallel.  A configured executor is not shut down when this
+     * session manager is destroyed.
+     *
+     * @param sessionValidationExecutor the executor validating chunks of sessions in parallel.
+     * @since 1.1
+     */
+    public void setSessionValidationExecutor(ExecutorService sessionValidationExecutor) {
+        this.sessionValidationExecutor = sessionValidationExecutor;
+    }
+
+    /**
+     * Returns the outcome of the latest completed {@link #validateSessions() validation pass}, or {@code null} if no
+     * pass completed yet.
+     *
+     * @return the outcome of the latest completed validation pass.
+     * @since 1.1
+     */
+    public SessionValidationResult getLastSessionValidationResult() {
+        return lastSessionValidationResult;
+    }
+
+    private synchronized ExecutorService getSessionValidationExecutorLazy() {
+        if (this.sessionValidationExecutor == null && getSessionValidationThreads() > 1) {
+            this.sessionValidationExecutor = Executors.newFixedThreadPool(getSessionValidationThreads(),
+                    new ThreadFactory() {
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "shiro-session-validation");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            this.sessionValidationExecutorCreated = true;
+        }
+        return this.sessionValidationExecutor;
+    }
+
     @Override
     protected final Session doGetSession(final SessionKey key) throws InvalidSessionException {
         enableSessionValidationIfNecessary();
@@ -139,12 +269,15 @@ public abstract class AbstractValidatingSessionManager extends AbstractNativeSes
     protected abstract Session doCreateSession(SessionContext initData) throws AuthorizationException;
 
     protected void validate(Session session, SessionKey key) throws InvalidSessionException {
+        applyPendingTouch(session);
         try {
             doValidate(session);
         } catch (ExpiredSessionException ese) {
+            removePendingTouch(session);
             onExpiration(session, ese, key);
             throw ese;
         } catch (InvalidSessionException ise) {
+            removePendingTouch(session);
             onInvalidation(session, ise, key);
             throw ise;
         }
@@ -255,6 +388,13 @@ public abstract class AbstractValidatingSessionManager extends AbstractNativeSes
 
     public void destroy() {
         disableSessionValidation();
+        synchronized (this) {
+            if (sessionValidationExecutorCreated) {
+                sessionValidationExecutor.shutdownNow();
+                sessionValidationExecutor = null;
+                sessionValidationExecutorCreated = false;
+            }
+        }
     }
 
     /**
@@ -265,36 +405,179 @@ public abstract class AbstractValidatingSessionManager extends AbstractNativeSes
             log.info("Validating all active sessions...");
         }
 
-        int invalidCount = 0;
-
-        Collection<Session> activeSessions = getActiveSessions();
-
-        if (activeSessions != null && !activeSessions.isEmpty()) {
-            for (Session s : activeSessions) {
-                try {
-                    doValidate(s);
-                } catch (InvalidSessionException e) {
-                    if (log.isDebugEnabled()) {
-                        boolean expired = (e instanceof ExpiredSessionException);
-                        String msg = "Invalidated session with id [" + s.getId() + "]" +
-                                (expired ? " (expired)" : " (stopped)");
-                        log.debug(msg);
-                    }
-                    invalidCount++;
+        Date startTimestamp = new Date();
+        ValidationCounts counts = new ValidationCounts();
+
+        ExecutorService executor = null;
+        int chunkSize = Math.max(1, getSessionValidationChunkSize());
+        //bound the chunks waiting for a thread, so that sessions are not all collected up front:
+        int maxPending = 2 * Runtime.getRuntime().availableProcessors();
+        LinkedList<Future<?>> pending = new LinkedList<Future<?>>();
+        int partitions = Math.max(1, getSessionValidationPartitionCount());
+        for (int partition = 0; partition < partitions; partition++) {
+            //partitions are collected one at a time, and a chunk never spans two of them:
+            Collection<Session> sessions = partitions > 1 ? getSessionsToValidate(partition) : getSessionsToValidate();
+            if (sessions == null || sessions.isEmpty()) {
+                continue;
+            }
+            if (executor == null) {
+                executor = getSessionValidationExecutorLazy();
+            }
+            List<Session> chunk = new ArrayList<Session>(chunkSize);
+            for (Session s : sessions) {
+                chunk.add(s);
+                if (chunk.size() == chunkSize) {
+                    dispatch(chunk, counts, executor, pending, maxPending);
+                    chunk = new ArrayList<Session>(chunkSize);
                 }
             }
+            if (!chunk.isEmpty()) {
+                dispatch(chunk, counts, executor, pending, maxPending);
+            }
+        }
+        while (!pending.isEmpty()) {
+            await(pending.removeFirst());
         }
 
+        prunePendingTouches();
+
+        SessionValidationResult result = new SessionValidationResult(startTimestamp,
+                System.currentTimeMillis() - startTimestamp.getTime(), counts.validated.get(),
+                counts.expired.get(), counts.stopped.get());
+        this.lastSessionValidationResult = result;
+
         if (log.isInfoEnabled()) {
             String msg = "Finished session validation.";
-            if (invalidCount > 0) {
-                msg += "  [" + invalidCount + "] sessions were stopped.";
+            if (result.getInvalidCount() > 0) {
+                msg += "  [" + result.getInvalidCount() + "] sessions were stopped.";
             } else {
                 msg += "  No sessions were stopped.";
             }
-            log.info(msg);
+            log.info(msg + "  " + result);
+        }
+    }
+
+    private void dispatch(final List<Session> chunk, final ValidationCounts counts, ExecutorService executor,
+                          LinkedList<Future<?>> pending, int maxPending) {
+        if (executor == null) {
+            validate(chunk, counts);
+            return;
+        }
+        while (pending.size() >= maxPending) {
+            await(pending.removeFirst());
+        }
+        pending.add(executor.submit(new Runnable() {
+            public void run() {
+                validate(chunk, counts);
+            }
+        }));
+    }
+
+    private void await(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Unable to validate sessions.", cause);
+        }
+    }
+
+    /**
+     * Validates a chunk of sessions and then pauses as required by the
+     * {@link #getSessionValidationDutyCycle() sessionValidationDutyCycle}.
+     *
+     * @param chunk  the sessions to validate
+     * @param counts the counts to add the outcome to
+     */
+    private void validate(List<Session> chunk, ValidationCounts counts) {
+        long start = System.currentTimeMillis();
+        for (Session s : chunk) {
+            counts.validated.incrementAndGet();
+            try {
+                //validate with a key so that invalid sessions are handled (and deleted) as on access:
+                validate(s, new DefaultSessionKey(s.getId()));
+            } catch (InvalidSessionException e) {
+                boolean expired = (e instanceof ExpiredSessionException);
+                if (log.isDebugEnabled()) {
+                    String msg = "Invalidated session with id [" + s.getId() + "]" +
+                            (expired ? " (expired)" : " (stopped)");
+                    log.debug(msg);
+                }
+                if (expired) {
+                    counts.expired.incrementAndGet();
+                } else {
+                    counts.stopped.incrementAndGet();
+                }
+            }
+        }
+        double dutyCycle = getSessionValidationDutyCycle();
+        if (dutyCycle < 1) {
+            long pause = (long) ((System.currentTimeMillis() - start) * (1 - dutyCycle) / dutyCycle);
+            if (pause > 0) {
+                try {
+                    Thread.sleep(pause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
         }
     }
 
+    /**
+     * Returns the sessions to check during {@link #validateSessions() session validation}.  This implementation
+     * returns all {@link #getActiveSessions() active sessions}; subclasses able to determine which sessions may have
+     * become invalid should override it to return only those.
+     *
+     * @return the sessions to check during session validation.
+     * @since 1.1
+     */
+    protected Collection<Session> getSessionsToValidate() {
+        return getActiveSessions();
+    }
+
+    /**
+     * Returns the number of partitions whose sessions are {@link #getSessionsToValidate(int) collected} and
+     * validated one after the other during {@link #validateSessions() session validation}.  This implementation
+     * returns {@code 1}, meaning all sessions are collected at once by {@link #getSessionsToValidate()}.
+     *
+     * @return the number of partitions the sessions to validate are collected by.
+     * @since 1.1
+     */
+    protected int getSessionValidationPartitionCount() {
+        return 1;
+    }
+
+    /**
+     * Returns the sessions of the specified partition to check during {@link #validateSessions() session
+     * validation}, only called if the {@link #getSessionValidationPartitionCount() partition count} is larger than
+     * {@code 1}.  This implementation returns {@link #getSessionsToValidate()} for the first partition and nothing
+     * for the others.
+     *
+     * @param partition the partition, from {@code 0} to the partition count.
+     * @return the sessions of the specified partition to check during session validation.
+     * @since 1.1
+     */
+    protected Collection<Session> getSessionsToValidate(int partition) {
+        return partition == 0 ? getSessionsToValidate() : Collections.<Session>emptySet();
+    }
+
     protected abstract Collection<Session> getActiveSessions();
+
+    /**
+     * Counts of a validation pass, shared by the threads validating its chunks.
+     */
+    private static class ValidationCounts {
+        private final AtomicInteger validated = new AtomicInteger();
+        private final AtomicInteger expired = new AtomicInteger();
+        private final AtomicInteger stopped = new AtomicInteger();
+    }
 }
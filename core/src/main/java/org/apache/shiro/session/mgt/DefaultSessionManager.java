@@ -18,27 +18,43 @@
  */
 package org.apache.shiro.session.mgt;
 
+import org.apache.shiro.authc.ConcurrentAccessException;
 import org.apache.shiro.cache.CacheManager;
 import org.apache.shiro.cache.CacheManagerAware;
+import org.apache.shiro.session.InvalidSessionException;
 import org.apache.shiro.session.Session;
 import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.eis.DeltaSessionDAO;
+import org.apache.shiro.session.mgt.eis.ExpiryIndexedSessionDAO;
 import org.apache.shiro.session.mgt.eis.MemorySessionDAO;
+import org.apache.shiro.session.mgt.eis.PartitionedSessionDAO;
 import org.apache.shiro.session.mgt.eis.SessionDAO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Default business-tier implementation of a {@link ValidatingSessionManager}.  All session CRUD operations are
  * delegated to an internal {@link SessionDAO}.
+ * <h3>Sessions per user</h3>
+ * As a {@link PrincipalSessionManager}, this manager keeps a {@link SessionPrincipalIndex} of the sessions bound to
+ * each primary principal, so that a user's sessions can be {@link #getSessions(Object) listed} or
+ * {@link #stopSessions(Object) stopped} without reading every session from the {@code SessionDAO}.  The index is held
+ * in memory and only covers sessions bound through this instance.  Setting
+ * {@link #setMaxConcurrentSessions(int) maxConcurrentSessions} limits the number of sessions per user: once the
+ * limit is reached, binding another session either stops the user's least recently accessed sessions, or is
+ * rejected if {@link #setRejectExcessSessions(boolean) rejectExcessSessions} is enabled.
  *
  * @since 0.1
  */
-public class DefaultSessionManager extends AbstractValidatingSessionManager implements CacheManagerAware {
+public class DefaultSessionManager extends AbstractValidatingSessionManager
+        implements CacheManagerAware, PrincipalSessionManager {
 
     //TODO - complete JavaDoc
 
@@ -52,10 +68,18 @@ public class DefaultSessionManager extends AbstractValidatingSessionManager impl
 
     private boolean deleteInvalidSessions;
 
+    private final SessionPrincipalIndex sessionPrincipalIndex;
+
+    private int maxConcurrentSessions;
+
+    private boolean rejectExcessSessions;
+
     public DefaultSessionManager() {
         this.deleteInvalidSessions = true;
         this.sessionFactory = new SimpleSessionFactory();
         this.sessionDAO = new MemorySessionDAO();
+        this.sessionPrincipalIndex = new SessionPrincipalIndex();
+        this.maxConcurrentSessions = -1;
     }
 
     public void setSessionDAO(SessionDAO sessionDAO) {
@@ -128,6 +152,62 @@ public class DefaultSessionManager extends AbstractValidatingSessionManager impl
         this.deleteInvalidSessions = deleteInvalidSessions;
     }
 
+    /**
+     * Returns the maximum number of sessions a user may have at the same time, or a value less than {@code 1} if the
+     * number is not limited, which is the default.
+     *
+     * @return the maximum number of sessions a user may have at the same time.
+     * @since 1.1
+     */
+    public int getMaxConcurrentSessions() {
+        return maxConcurrentSessions;
+    }
+
+    /**
+     * Sets the maximum number of sessions a user may have at the same time.  A value less than {@code 1} disables
+     * the limit.
+     *
+     * @param maxConcurrentSessions the maximum number of sessions a user may have at the same time.
+     * @since 1.1
+     */
+    public void setMaxConcurrentSessions(int maxConcurrentSessions) {
+        this.maxConcurrentSessions = maxConcurrentSessions;
+    }
+
+    /**
+     * Returns {@code true} if binding a session to a user who already reached the
+     * {@link #getMaxConcurrentSessions() maxConcurrentSessions} fails with a {@link ConcurrentAccessException}, or
+     * {@code false} if the user's least recently accessed sessions are stopped instead, which is the default.
+     *
+     * @return {@code true} if sessions beyond the limit are rejected, {@code false} if older sessions are stopped.
+     * @since 1.1
+     */
+    public boolean isRejectExcessSessions() {
+        return rejectExcessSessions;
+    }
+
+    /**
+     * Sets whether binding a session to a user who already reached the
+     * {@link #getMaxConcurrentSessions() maxConcurrentSessions} fails, rather than stopping the user's least recently
+     * accessed sessions.
+     *
+     * @param rejectExcessSessions whether sessions beyond the limit are rejected.
+     * @since 1.1
+     */
+    public void setRejectExcessSessions(boolean rejectExcessSessions) {
+        this.rejectExcessSessions = rejectExcessSessions;
+    }
+
+    /**
+     * Returns the index of the sessions bound to each primary principal.
+     *
+     * @return the index of the sessions bound to each primary principal.
+     * @since 1.1
+     */
+    public SessionPrincipalIndex getSessionPrincipalIndex() {
+        return sessionPrincipalIndex;
+    }
+
     public void setCacheManager(CacheManager cacheManager) {
         this.cacheManager = cacheManager;
         applyCacheManagerToSessionDAO();
@@ -175,6 +255,9 @@ public class DefaultSessionManager extends AbstractValidatingSessionManager impl
             log.debug("Creating new EIS record for new session instance [" + session + "]");
         }
         sessionDAO.create(session);
+        if (session instanceof SimpleSession) {
+            ((SimpleSession) session).clearDirtyState();
+        }
     }
 
     @Override
@@ -189,6 +272,7 @@ public class DefaultSessionManager extends AbstractValidatingSessionManager impl
 
     @Override
     protected void afterStopped(Session session) {
+        sessionPrincipalIndex.unbind(session.getId());
         if (isDeleteInvalidSessions()) {
             delete(session);
         }
@@ -203,13 +287,43 @@ public class DefaultSessionManager extends AbstractValidatingSessionManager impl
 
     @Override
     protected void afterExpired(Session session) {
+        sessionPrincipalIndex.unbind(session.getId());
         if (isDeleteInvalidSessions()) {
             delete(session);
         }
     }
 
+    /**
+     * Persists the changes of the given session.  If the session is a {@link SimpleSession} and the
+     * {@link #getSessionDAO() sessionDAO} is a {@link DeltaSessionDAO}, only the session's
+     * {@link SimpleSession#takeDelta() changes} are passed to the DAO, and the update is skipped altogether if nothing
+     * changed.  Otherwise the whole session is {@link SessionDAO#update(Session) updated}.  If the DAO update fails,
+     * the changes are marked as dirty again so that the next update retries them.
+     *
+     * @param session the session that changed.
+     */
     protected void onChange(Session session) {
-        sessionDAO.update(session);
+        if (!(session instanceof SimpleSession)) {
+            sessionDAO.update(session);
+            return;
+        }
+        SimpleSession ss = (SimpleSession) session;
+        //snapshot and clear before the update so that changes made during the update are kept for the next one:
+        SessionDelta delta = ss.takeDelta();
+        try {
+            if (sessionDAO instanceof DeltaSessionDAO) {
+                if (delta.isEmpty()) {
+                    log.trace("Session [{}] is unchanged, skipping update.", ss.getId());
+                    return;
+                }
+                ((DeltaSessionDAO) sessionDAO).update(ss, delta);
+            } else {
+                sessionDAO.update(ss);
+            }
+        } catch (RuntimeException e) {
+            ss.markDirty(delta);
+            throw e;
+        }
     }
 
     protected Session retrieveSession(SessionKey sessionKey) throws UnknownSessionException {
@@ -240,6 +354,179 @@ public class DefaultSessionManager extends AbstractValidatingSessionManager impl
         sessionDAO.delete(session);
     }
 
+    /**
+     * Returns the {@link ExpiryIndexedSessionDAO#getPossiblyExpiredSessions(long) possibly expired} sessions if the
+     * {@code SessionDAO} indexes its sessions by expiry time, or all active sessions otherwise.
+     *
+     * @return the sessions to check during session validation.
+     * @since 1.1
+     */
+    @Override
+    protected Collection<Session> getSessionsToValidate() {
+        if (sessionDAO instanceof ExpiryIndexedSessionDAO) {
+            return ((ExpiryIndexedSessionDAO) sessionDAO).getPossiblyExpiredSessions(System.currentTimeMillis());
+        }
+        return getActiveSessions();
+    }
+
+    /**
+     * Returns the {@link PartitionedSessionDAO#getPartitionCount() partition count} of the {@code SessionDAO} if it
+     * is partitioned, so that its partitions are validated one after the other, or {@code 1} otherwise.
+     *
+     * @return the number of partitions the sessions to validate are collected by.
+     * @since 1.1
+     */
+    @Override
+    protected int getSessionValidationPartitionCount() {
+        if (sessionDAO instanceof PartitionedSessionDAO) {
+            return ((PartitionedSessionDAO) sessionDAO).getPartitionCount();
+        }
+        return 1;
+    }
+
+    /**
+     * Returns the {@link PartitionedSessionDAO#getPossiblyExpiredSessions(int, long) possibly expired} sessions of
+     * the specified partition of a partitioned {@code SessionDAO}.
+     *
+     * @param partition the partition, from {@code 0} to the partition count.
+     * @return the sessions of the specified partition to check during session validation.
+     * @since 1.1
+     */
+    @Override
+    protected Collection<Session> getSessionsToValidate(int partition) {
+        if (sessionDAO instanceof PartitionedSessionDAO) {
+            return ((PartitionedSessionDAO) sessionDAO).getPossiblyExpiredSessions(partition,
+                    System.currentTimeMillis());
+        }
+        return super.getSessionsToValidate(partition);
+    }
+
+    /**
+     * Associates the session with the given primary principal in the {@link #getSessionPrincipalIndex() index},
+     * enforcing the {@link #getMaxConcurrentSessions() maxConcurrentSessions} limit.  Rebinding a session to the
+     * principal it is already bound to does nothing.
+     *
+     * @param key       the session key to use to look up the target session.
+     * @param principal the primary principal of the user the session belongs to, or {@code null} if it no longer
+     *                  belongs to any user.
+     * @throws ConcurrentAccessException if the user already reached the limit and
+     *                                   {@link #isRejectExcessSessions() rejectExcessSessions} is enabled.
+     * @since 1.1
+     */
+    public void bindPrincipal(SessionKey key, Object principal) {
+        Serializable sessionId = getSessionId(key);
+        if (sessionId == null) {
+            throw new IllegalArgumentException("Unable to resolve a session ID from SessionKey [" + key + "].");
+        }
+        if (principal == null) {
+            sessionPrincipalIndex.unbind(sessionId);
+            return;
+        }
+        if (principal.equals(sessionPrincipalIndex.getPrincipal(sessionId))) {
+            return;
+        }
+        if (maxConcurrentSessions > 0 && rejectExcessSessions) {
+            //drop invalid sessions from the index first so that they don't count against the limit:
+            getSessions(principal);
+            if (!sessionPrincipalIndex.bind(sessionId, principal, maxConcurrentSessions)) {
+                String msg = "[" + principal + "] already has the maximum of " + maxConcurrentSessions +
+                        " concurrent sessions.";
+                throw new ConcurrentAccessException(msg);
+            }
+            return;
+        }
+        sessionPrincipalIndex.bind(sessionId, principal);
+        if (maxConcurrentSessions > 0) {
+            stopExcessSessions(principal, sessionId);
+        }
+    }
+
+    /**
+     * Stops the least recently accessed sessions of the principal other than the given session, until the principal
+     * has no more than {@link #getMaxConcurrentSessions() maxConcurrentSessions} sessions.
+     *
+     * @param principal the primary principal.
+     * @param sessionId the id of the session that was just bound, which is never stopped.
+     */
+    private void stopExcessSessions(Object principal, Serializable sessionId) {
+        List<Session> others = new ArrayList<Session>();
+        List<Date> lastAccessTimes = new ArrayList<Date>();
+        for (Session session : getSessions(principal)) {
+            if (!sessionId.equals(session.getId())) {
+                others.add(session);
+                lastAccessTimes.add(session.getLastAccessTime());
+            }
+        }
+        int excess = others.size() + 1 - maxConcurrentSessions;
+        for (int i = 0; i < excess; i++) {
+            int oldest = 0;
+            for (int j = 1; j < others.size(); j++) {
+                if (lastAccessTimes.get(j).before(lastAccessTimes.get(oldest))) {
+                    oldest = j;
+                }
+            }
+            Session session = others.remove(oldest);
+            lastAccessTimes.remove(oldest);
+            log.debug("[{}] exceeds the maximum of {} concurrent sessions, stopping session [{}].",
+                    new Object[]{principal, maxConcurrentSessions, session.getId()});
+            try {
+                session.stop();
+            } catch (InvalidSessionException e) {
+                log.trace("Session [{}] was already invalid.", session.getId());
+            }
+        }
+    }
+
+    /**
+     * Returns the valid sessions bound to the given primary principal.  Sessions found to be invalid or missing are
+     * removed from the {@link #getSessionPrincipalIndex() index}.
+     *
+     * @param principal the primary principal of the user whose sessions to return.
+     * @return the valid sessions bound to the given primary principal.
+     * @since 1.1
+     */
+    public Collection<Session> getSessions(Object principal) {
+        Collection<Serializable> ids = sessionPrincipalIndex.getSessionIds(principal);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Session> sessions = new ArrayList<Session>(ids.size());
+        for (Serializable id : ids) {
+            try {
+                Session session = getSession(new DefaultSessionKey(id));
+                if (session != null) {
+                    sessions.add(session);
+                } else {
+                    sessionPrincipalIndex.unbind(id);
+                }
+            } catch (InvalidSessionException e) {
+                sessionPrincipalIndex.unbind(id);
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Stops all sessions bound to the given primary principal.
+     *
+     * @param principal the primary principal of the user whose sessions to stop.
+     * @return the number of sessions that were stopped.
+     * @since 1.1
+     */
+    public int stopSessions(Object principal) {
+        int stopped = 0;
+        for (Serializable id : sessionPrincipalIndex.getSessionIds(principal)) {
+            try {
+                stop(new DefaultSessionKey(id));
+                stopped++;
+            } catch (InvalidSessionException e) {
+                log.trace("Session [{}] was already invalid.", id);
+                sessionPrincipalIndex.unbind(id);
+            }
+        }
+        return stopped;
+    }
+
     protected Collection<Session> getActiveSessions() {
         Collection<Session> active = sessionDAO.getActiveSessions();
         return active != null ? active : Collections.<Session>emptySet();
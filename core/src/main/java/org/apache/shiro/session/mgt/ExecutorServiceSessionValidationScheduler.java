@@ -99,10 +99,24 @@ public class ExecutorServiceSessionValidationScheduler implements SessionValidat
             log.debug("Executing session validation...");
         }
         long startTime = System.currentTimeMillis();
-        this.sessionManager.validateSessions();
+        try {
+            this.sessionManager.validateSessions();
+        } catch (RuntimeException e) {
+            //an exception would cancel all further executions of this scheduled task:
+            log.error("Session validation failed.  It will be retried at the next interval.", e);
+            return;
+        }
         long stopTime = System.currentTimeMillis();
         if (log.isDebugEnabled()) {
-            log.debug("Session validation completed successfully in " + (stopTime - startTime) + " milliseconds.");
+            String msg = "Session validation completed successfully in " + (stopTime - startTime) + " milliseconds.";
+            if (this.sessionManager instanceof AbstractValidatingSessionManager) {
+                SessionValidationResult result =
+                        ((AbstractValidatingSessionManager) this.sessionManager).getLastSessionValidationResult();
+                if (result != null) {
+                    msg += "  " + result;
+                }
+            }
+            log.debug(msg);
         }
     }
 
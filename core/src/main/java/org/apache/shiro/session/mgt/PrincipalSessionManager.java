@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt;
+
+import org.apache.shiro.session.Session;
+
+import java.util.Collection;
+
+/**
+ * A {@code SessionManager} that knows which sessions belong to which user, so that all sessions of a user can be
+ * found or stopped without examining every session in the system.  Sessions are associated with the primary
+ * principal of the user they were {@link #bindPrincipal(SessionKey, Object) bound} to, which the
+ * {@link org.apache.shiro.mgt.DefaultSecurityManager DefaultSecurityManager} does whenever it saves a
+ * {@code Subject}'s principals to its session.
+ *
+ * @since 1.1
+ */
+public interface PrincipalSessionManager extends SessionManager {
+
+    /**
+     * Associates the specified session with the given primary principal, or removes its association if the
+     * principal is {@code null}.  A session is associated with at most one principal at a time.
+     *
+     * @param key       the session key to use to look up the target session.
+     * @param principal the primary principal of the user the session belongs to, or {@code null} if it no longer
+     *                  belongs to any user.
+     * @throws org.apache.shiro.authc.ConcurrentAccessException
+     *          if the user already reached the maximum number of concurrent sessions and the implementation rejects
+     *          additional sessions.
+     */
+    void bindPrincipal(SessionKey key, Object principal);
+
+    /**
+     * Returns the valid sessions associated with the given primary principal, or an empty collection if there are
+     * none.
+     *
+     * @param principal the primary principal of the user whose sessions to return.
+     * @return the valid sessions associated with the given primary principal.
+     */
+    Collection<Session> getSessions(Object principal);
+
+    /**
+     * Stops all sessions associated with the given primary principal, logging the user out everywhere.
+     *
+     * @param principal the primary principal of the user whose sessions to stop.
+     * @return the number of sessions that were stopped.
+     */
+    int stopSessions(Object principal);
+}
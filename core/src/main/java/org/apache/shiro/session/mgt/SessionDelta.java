@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * The changes made to a {@link SimpleSession SimpleSession} since its state was last persisted:  the fields that
+ * changed, and the attributes that were set or removed.  Allows
+ * {@link org.apache.shiro.session.mgt.eis.DeltaSessionDAO DeltaSessionDAO}s to write only what changed.
+ *
+ * @see SimpleSession#takeDelta()
+ * @since 1.1
+ */
+public class SessionDelta implements Serializable {
+
+    /**
+     * The session fields that can change.
+     */
+    public static enum Field {
+        START_TIMESTAMP, STOP_TIMESTAMP, LAST_ACCESS_TIME, TIMEOUT, EXPIRED, HOST,
+        /**
+         * The attributes map as a whole was replaced, so all attributes must be written.
+         */
+        ATTRIBUTES
+    }
+
+    private final Serializable sessionId;
+    private final Set<Field> fields;
+    private final Map<Object, Object> setAttributes;
+    private final Set<Object> removedAttributeKeys;
+
+    public SessionDelta(Serializable sessionId, Set<Field> fields, Map<Object, Object> setAttributes,
+                        Set<Object> removedAttributeKeys) {
+        this.sessionId = sessionId;
+        this.fields = fields.isEmpty() ? Collections.<Field>emptySet() :
+                Collections.unmodifiableSet(EnumSet.copyOf(fields));
+        this.setAttributes = setAttributes.isEmpty() ? Collections.emptyMap() :
+                Collections.unmodifiableMap(new HashMap<Object, Object>(setAttributes));
+        this.removedAttributeKeys = removedAttributeKeys.isEmpty() ? Collections.emptySet() :
+                Collections.unmodifiableSet(new HashSet<Object>(removedAttributeKeys));
+    }
+
+    public Serializable getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Returns the fields that changed.
+     *
+     * @return the fields that changed.
+     */
+    public Set<Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns {@code true} if the specified field changed.
+     *
+     * @param field the field to check.
+     * @return {@code true} if the specified field changed.
+     */
+    public boolean isChanged(Field field) {
+        return fields.contains(field);
+    }
+
+    /**
+     * Returns the attributes that were set, with their current values.  Empty if the
+     * {@link Field#ATTRIBUTES attributes} were replaced as a whole.
+     *
+     * @return the attributes that were set, with their current values.
+     */
+    public Map<Object, Object> getSetAttributes() {
+        return setAttributes;
+    }
+
+    /**
+     * Returns the keys of the attributes that were removed.  Empty if the {@link Field#ATTRIBUTES attributes} were
+     * replaced as a whole.
+     *
+     * @return the keys of the attributes that were removed.
+     */
+    public Set<Object> getRemovedAttributeKeys() {
+        return removedAttributeKeys;
+    }
+
+    /**
+     * Returns {@code true} if nothing changed.
+     *
+     * @return {@code true} if nothing changed.
+     */
+    public boolean isEmpty() {
+        return fields.isEmpty() && setAttributes.isEmpty() && removedAttributeKeys.isEmpty();
+    }
+
+    public String toString() {
+        return "SessionDelta [" + sessionId + "]: fields " + fields + ", set attributes " + setAttributes.keySet() +
+                ", removed attributes " + removedAttributeKeys;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index from primary principals to the ids of the sessions they are bound to, as maintained by the
+ * {@link DefaultSessionManager} to implement the {@link PrincipalSessionManager} interface.  Principals only change
+ * on login and logout, so the index favours simplicity and guards both of its maps with the index's monitor.
+ * <p/>
+ * The index only knows about sessions bound through this instance; it is not persisted with the sessions.
+ *
+ * @since 1.1
+ */
+public class SessionPrincipalIndex {
+
+    private final Map<Object, Set<Serializable>> sessionIds = new HashMap<Object, Set<Serializable>>();
+    private final Map<Serializable, Object> principals = new HashMap<Serializable, Object>();
+
+    /**
+     * Associates the session with the given principal, replacing any previous association of the session.
+     *
+     * @param sessionId the id of the session.
+     * @param principal the primary principal the session belongs to.
+     */
+    public synchronized void bind(Serializable sessionId, Object principal) {
+        if (sessionId == null || principal == null) {
+            throw new IllegalArgumentException("sessionId and principal arguments cannot be null.");
+        }
+        Object previous = principals.put(sessionId, principal);
+        if (previous != null && !previous.equals(principal)) {
+            remove(previous, sessionId);
+        }
+        Set<Serializable> ids = sessionIds.get(principal);
+        if (ids == null) {
+            ids = new LinkedHashSet<Serializable>();
+            sessionIds.put(principal, ids);
+        }
+        ids.add(sessionId);
+    }
+
+    /**
+     * Associates the session with the given principal like {@link #bind(Serializable, Object) bind}, unless the
+     * principal is already associated with {@code maxSessions} other sessions.  The check and the association are
+     * made atomically, so concurrent calls can never associate more than {@code maxSessions} sessions.
+     *
+     * @param sessionId   the id of the session.
+     * @param principal   the primary principal the session belongs to.
+     * @param maxSessions the maximum number of sessions the principal may be associated with.
+     * @return {@code true} if the session was associated, {@code false} if the principal already reached the limit.
+     */
+    public synchronized boolean bind(Serializable sessionId, Object principal, int maxSessions) {
+        Set<Serializable> ids = sessionIds.get(principal);
+        int others = ids != null ? ids.size() : 0;
+        if (ids != null && ids.contains(sessionId)) {
+            others--;
+        }
+        if (others >= maxSessions) {
+            return false;
+        }
+        bind(sessionId, principal);
+        return true;
+    }
+
+    /**
+     * Removes the association of the session, if any.
+     *
+     * @param sessionId the id of the session.
+     * @return the principal the session was associated with, or {@code null} if it was not associated.
+     */
+    public synchronized Object unbind(Serializable sessionId) {
+        Object principal = principals.remove(sessionId);
+        if (principal != null) {
+            remove(principal, sessionId);
+        }
+        return principal;
+    }
+
+    private void remove(Object principal, Serializable sessionId) {
+        Set<Serializable> ids = sessionIds.get(principal);
+        if (ids != null) {
+            ids.remove(sessionId);
+            if (ids.isEmpty()) {
+                sessionIds.remove(principal);
+            }
+        }
+    }
+
+    /**
+     * Returns the principal the session is associated with, or {@code null} if it is not associated.
+     *
+     * @param sessionId the id of the session.
+     * @return the principal the session is associated with, or {@code null} if it is not associated.
+     */
+    public synchronized Object getPrincipal(Serializable sessionId) {
+        return principals.get(sessionId);
+    }
+
+    /**
+     * Returns a snapshot of the ids of the sessions associated with the given principal, in the order they were
+     * first bound.
+     *
+     * @param principal the primary principal.
+     * @return a snapshot of the ids of the sessions associated with the given principal.
+     */
+    public synchronized Collection<Serializable> getSessionIds(Object principal) {
+        Set<Serializable> ids = sessionIds.get(principal);
+        if (ids == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<Serializable>(ids);
+    }
+
+    /**
+     * Returns the number of sessions associated with the given principal.
+     *
+     * @param principal the primary principal.
+     * @return the number of sessions associated with the given principal.
+     */
+    public synchronized int getSessionCount(Object principal) {
+        Set<Serializable> ids = sessionIds.get(principal);
+        return ids != null ? ids.size() : 0;
+    }
+
+    /**
+     * Returns the number of sessions associated with any principal.
+     *
+     * @return the number of sessions associated with any principal.
+     */
+    public synchronized int size() {
+        return principals.size();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * The outcome of a single {@link ValidatingSessionManager#validateSessions() session validation} pass:  when it
+ * started, how long it took, how many sessions it checked and how many of them it found expired or stopped.
+ *
+ * @see AbstractValidatingSessionManager#getLastSessionValidationResult()
+ * @since 1.1
+ */
+public class SessionValidationResult implements Serializable {
+
+    private final Date startTimestamp;
+    private final long duration;
+    private final int validatedCount;
+    private final int expiredCount;
+    private final int stoppedCount;
+
+    public SessionValidationResult(Date startTimestamp, long duration, int validatedCount, int expiredCount,
+                                   int stoppedCount) {
+        this.startTimestamp = startTimestamp;
+        this.duration = duration;
+        this.validatedCount = validatedCount;
+        this.expiredCount = expiredCount;
+        this.stoppedCount = stoppedCount;
+    }
+
+    public Date getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    /**
+     * Returns the duration of the validation pass in milliseconds, including any throttling pauses.
+     *
+     * @return the duration of the validation pass in milliseconds.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Returns the number of sessions checked.
+     *
+     * @return the number of sessions checked.
+     */
+    public int getValidatedCount() {
+        return validatedCount;
+    }
+
+    /**
+     * Returns the number of sessions found to have expired.
+     *
+     * @return the number of sessions found to have expired.
+     */
+    public int getExpiredCount() {
+        return expiredCount;
+    }
+
+    /**
+     * Returns the number of sessions found to be invalid for reasons other than expiration, e.g. because they were
+     * explicitly stopped.
+     *
+     * @return the number of sessions found to be invalid for reasons other than expiration.
+     */
+    public int getStoppedCount() {
+        return stoppedCount;
+    }
+
+    /**
+     * Returns the total number of invalid sessions, i.e. the sum of the expired and stopped counts.
+     *
+     * @return the total number of invalid sessions.
+     */
+    public int getInvalidCount() {
+        return expiredCount + stoppedCount;
+    }
+
+    public String toString() {
+        return "Validated " + validatedCount + " sessions in " + duration + " ms: " + expiredCount +
+                " expired, " + stoppedCount + " stopped.";
+    }
+}
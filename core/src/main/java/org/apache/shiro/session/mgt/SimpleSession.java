@@ -36,6 +36,14 @@ import java.util.*;
 /**
  * Simple {@link org.apache.shiro.session.Session} JavaBeans-compatible POJO implementation, intended to be used on the
  * business/server tier.
+ * <p/>
+ * Changes made through the setters, {@link #touch()}, {@link #stop()} and the attribute methods are tracked until
+ * {@link #clearDirtyState()} is called, typically after the session was persisted, and are available as a
+ * {@link #getDelta() SessionDelta}.  {@link #takeDelta()} returns the changes and clears the dirty state in one
+ * atomic step, so that a change made concurrently is never lost.  Changes made directly to the
+ * {@link #getAttributes() attributes} map or to attribute values are not tracked; call
+ * {@link #setAttribute setAttribute} again after changing a value.  Dirty state is not serialized:  a deserialized
+ * session starts out clean.
  *
  * @since 0.1
  */
@@ -76,6 +84,12 @@ public class SimpleSession implements ValidatingSession, Serializable {
 
     private Map<Object, Object> attributes;
 
+    /**
+     * Bit mask of the fields changed since the dirty state was last cleared, using the serialization bit masks.
+     */
+    private transient int dirtyFields;
+    private transient Set<Object> dirtyAttributeKeys;
+
     public SimpleSession() {
         this.timeout = DefaultSessionManager.DEFAULT_GLOBAL_SESSION_TIMEOUT; //TODO - remove concrete reference to DefaultSessionManager
         this.startTimestamp = new Date();
@@ -101,6 +115,7 @@ public class SimpleSession implements ValidatingSession, Serializable {
 
     public void setStartTimestamp(Date startTimestamp) {
         this.startTimestamp = startTimestamp;
+        markDirty(START_TIMESTAMP_BIT_MASK);
     }
 
     /**
@@ -126,6 +141,7 @@ public class SimpleSession implements ValidatingSession, Serializable {
 
     public void setStopTimestamp(Date stopTimestamp) {
         this.stopTimestamp = stopTimestamp;
+        markDirty(STOP_TIMESTAMP_BIT_MASK);
     }
 
     public Date getLastAccessTime() {
@@ -134,6 +150,7 @@ public class SimpleSession implements ValidatingSession, Serializable {
 
     public void setLastAccessTime(Date lastAccessTime) {
         this.lastAccessTime = lastAccessTime;
+        markDirty(LAST_ACCESS_TIME_BIT_MASK);
     }
 
     /**
@@ -148,6 +165,7 @@ public class SimpleSession implements ValidatingSession, Serializable {
 
     public void setExpired(boolean expired) {
         this.expired = expired;
+        markDirty(EXPIRED_BIT_MASK);
     }
 
     public long getTimeout() {
@@ -156,6 +174,7 @@ public class SimpleSession implements ValidatingSession, Serializable {
 
     public void setTimeout(long timeout) {
         this.timeout = timeout;
+        markDirty(TIMEOUT_BIT_MASK);
     }
 
     public String getHost() {
@@ -164,6 +183,7 @@ public class SimpleSession implements ValidatingSession, Serializable {
 
     public void setHost(String host) {
         this.host = host;
+        markDirty(HOST_BIT_MASK);
     }
 
     public Map<Object, Object> getAttributes() {
@@ -172,15 +192,19 @@ public class SimpleSession implements ValidatingSession, Serializable {
 
     public void setAttributes(Map<Object, Object> attributes) {
         this.attributes = attributes;
+        markDirty(ATTRIBUTES_BIT_MASK);
+        this.dirtyAttributeKeys = null;
     }
 
     public void touch() {
         this.lastAccessTime = new Date();
+        markDirty(LAST_ACCESS_TIME_BIT_MASK);
     }
 
     public void stop() {
         if (this.stopTimestamp == null) {
             this.stopTimestamp = new Date();
+            markDirty(STOP_TIMESTAMP_BIT_MASK);
         }
     }
 
@@ -191,6 +215,7 @@ public class SimpleSession implements ValidatingSession, Serializable {
     protected void expire() {
         stop();
         this.expired = true;
+        markDirty(EXPIRED_BIT_MASK);
     }
 
     /**
@@ -281,7 +306,12 @@ public class SimpleSession implements ValidatingSession, Serializable {
         Map<Object, Object> attributes = getAttributes();
         if (attributes == null) {
             attributes = new HashMap<Object, Object>();
-            setAttributes(attributes);
+            //creating the map isn't a change to track, only the attributes put into it are:
+            synchronized (this) {
+                int dirty = dirtyFields;
+                setAttributes(attributes);
+                dirtyFields = dirty;
+            }
         }
         return attributes;
     }
@@ -307,6 +337,7 @@ public class SimpleSession implements ValidatingSession, Serializable {
             removeAttribute(key);
         } else {
             getAttributesLazy().put(key, value);
+            markAttributeDirty(key);
         }
     }
 
@@ -315,7 +346,134 @@ public class SimpleSession implements ValidatingSession, Serializable {
         if (attributes == null) {
             return null;
         } else {
-            return attributes.remove(key);
+            Object removed = attributes.remove(key);
+            if (removed != null) {
+                markAttributeDirty(key);
+            }
+            return removed;
+        }
+    }
+
+    private synchronized void markDirty(int bitMask) {
+        dirtyFields |= bitMask;
+    }
+
+    private synchronized void markAttributeDirty(Object key) {
+        if ((dirtyFields & ATTRIBUTES_BIT_MASK) != 0) {
+            //all attributes are dirty already
+            return;
+        }
+        if (dirtyAttributeKeys == null) {
+            dirtyAttributeKeys = new HashSet<Object>();
+        }
+        dirtyAttributeKeys.add(key);
+    }
+
+    /**
+     * Returns {@code true} if this session changed since its dirty state was last {@link #clearDirtyState() cleared}.
+     *
+     * @return {@code true} if this session changed since its dirty state was last cleared.
+     * @since 1.1
+     */
+    public synchronized boolean isDirty() {
+        return dirtyFields != 0 || !CollectionUtils.isEmpty(dirtyAttributeKeys);
+    }
+
+    /**
+     * Returns the changes made to this session since its dirty state was last {@link #clearDirtyState() cleared}.
+     *
+     * @return the changes made to this session since its dirty state was last cleared.
+     * @since 1.1
+     */
+    public synchronized SessionDelta getDelta() {
+        Set<SessionDelta.Field> fields = EnumSet.noneOf(SessionDelta.Field.class);
+        addIfDirty(fields, START_TIMESTAMP_BIT_MASK, SessionDelta.Field.START_TIMESTAMP);
+        addIfDirty(fields, STOP_TIMESTAMP_BIT_MASK, SessionDelta.Field.STOP_TIMESTAMP);
+        addIfDirty(fields, LAST_ACCESS_TIME_BIT_MASK, SessionDelta.Field.LAST_ACCESS_TIME);
+        addIfDirty(fields, TIMEOUT_BIT_MASK, SessionDelta.Field.TIMEOUT);
+        addIfDirty(fields, EXPIRED_BIT_MASK, SessionDelta.Field.EXPIRED);
+        addIfDirty(fields, HOST_BIT_MASK, SessionDelta.Field.HOST);
+        addIfDirty(fields, ATTRIBUTES_BIT_MASK, SessionDelta.Field.ATTRIBUTES);
+        Map<Object, Object> setAttributes = new HashMap<Object, Object>();
+        Set<Object> removedAttributeKeys = new HashSet<Object>();
+        if (dirtyAttributeKeys != null) {
+            for (Object key : dirtyAttributeKeys) {
+                Object value = getAttribute(key);
+                if (value != null) {
+                    setAttributes.put(key, value);
+                } else {
+                    removedAttributeKeys.add(key);
+                }
+            }
+        }
+        return new SessionDelta(id, fields, setAttributes, removedAttributeKeys);
+    }
+
+    private void addIfDirty(Set<SessionDelta.Field> fields, int bitMask, SessionDelta.Field field) {
+        if ((dirtyFields & bitMask) != 0) {
+            fields.add(field);
+        }
+    }
+
+    /**
+     * Marks this session as unchanged, typically after its state was persisted.
+     *
+     * @since 1.1
+     */
+    public synchronized void clearDirtyState() {
+        dirtyFields = 0;
+        dirtyAttributeKeys = null;
+    }
+
+    /**
+     * Returns the changes made to this session since its dirty state was last cleared and clears the dirty state in
+     * a single atomic step, so that a change made concurrently is either part of the returned delta or of the next
+     * one.
+     *
+     * @return the changes made to this session since its dirty state was last cleared.
+     * @since 1.1
+     */
+    public synchronized SessionDelta takeDelta() {
+        SessionDelta delta = getDelta();
+        clearDirtyState();
+        return delta;
+    }
+
+    /**
+     * Marks the fields and attributes of the given delta as changed again, typically after persisting a delta
+     * obtained from {@link #takeDelta()} failed.
+     *
+     * @param delta the changes to mark as dirty again.
+     * @since 1.1
+     */
+    public synchronized void markDirty(SessionDelta delta) {
+        for (SessionDelta.Field field : delta.getFields()) {
+            dirtyFields |= getBitMask(field);
+        }
+        for (Object key : delta.getSetAttributes().keySet()) {
+            markAttributeDirty(key);
+        }
+        for (Object key : delta.getRemovedAttributeKeys()) {
+            markAttributeDirty(key);
+        }
+    }
+
+    private static int getBitMask(SessionDelta.Field field) {
+        switch (field) {
+            case START_TIMESTAMP:
+                return START_TIMESTAMP_BIT_MASK;
+            case STOP_TIMESTAMP:
+                return STOP_TIMESTAMP_BIT_MASK;
+            case LAST_ACCESS_TIME:
+                return LAST_ACCESS_TIME_BIT_MASK;
+            case TIMEOUT:
+                return TIMEOUT_BIT_MASK;
+            case EXPIRED:
+                return EXPIRED_BIT_MASK;
+            case HOST:
+                return HOST_BIT_MASK;
+            default:
+                return ATTRIBUTES_BIT_MASK;
         }
     }
 
@@ -21,8 +21,10 @@ package org.apache.shiro.session.mgt.eis;
 import org.apache.shiro.cache.Cache;
 import org.apache.shiro.cache.CacheManager;
 import org.apache.shiro.cache.CacheManagerAware;
+import org.apache.shiro.cache.CacheUtils;
 import org.apache.shiro.session.Session;
 import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.SessionDelta;
 import org.apache.shiro.session.mgt.ValidatingSession;
 
 import java.io.Serializable;
@@ -42,10 +44,13 @@ import java.util.Collections;
  * All {@code SessionDAO} methods are implemented by this class to employ
  * caching behavior and delegates the actual EIS operations to respective do* methods to be implemented by
  * subclasses (doCreate, doRead, etc).
+ * <p/>
+ * Changes-only updates are delegated to {@link #doUpdate(Session, SessionDelta)}, which writes the whole session by
+ * default.  Subclasses backed by a store that supports partial writes can override it to write only what changed.
  *
  * @since 0.2
  */
-public abstract class CachingSessionDAO extends AbstractSessionDAO implements CacheManagerAware {
+public abstract class CachingSessionDAO extends AbstractSessionDAO implements CacheManagerAware, DeltaSessionDAO {
 
     /**
      * The default active sessions cache name, equal to {@code shiro-activeSessionCache}.
@@ -275,6 +280,26 @@ public abstract class CachingSessionDAO extends AbstractSessionDAO implements Ca
      */
     public void update(Session session) throws UnknownSessionException {
         doUpdate(session);
+        cacheUpdated(session);
+    }
+
+    /**
+     * Persists the changes of the given session to the EIS by first delegating to
+     * {@link #doUpdate(org.apache.shiro.session.Session, SessionDelta)}, after which the session is (un)cached as
+     * described for {@link #update(org.apache.shiro.session.Session)}.
+     *
+     * @param session the session object to update in the EIS.
+     * @param delta   the changes made to the session since it was last persisted.
+     * @throws UnknownSessionException if no existing EIS session record exists with the
+     *                                 identifier of {@link Session#getId() session.getId()}
+     * @since 1.1
+     */
+    public void update(Session session, SessionDelta delta) throws UnknownSessionException {
+        doUpdate(session, delta);
+        cacheUpdated(session);
+    }
+
+    private void cacheUpdated(Session session) {
         if (session instanceof ValidatingSession) {
             if (((ValidatingSession) session).isValid()) {
                 cache(session, session.getId());
@@ -293,6 +318,19 @@ public abstract class CachingSessionDAO extends AbstractSessionDAO implements Ca
      */
     protected abstract void doUpdate(Session session);
 
+    /**
+     * Subclass implementation hook to persist only the changes of the {@code Session} to the underlying EIS.  This
+     * default implementation simply delegates to {@link #doUpdate(org.apache.shiro.session.Session)} and persists
+     * the whole session.
+     *
+     * @param session the session object whose changes will be propagated to the EIS.
+     * @param delta   the changes made to the session since it was last persisted.
+     * @since 1.1
+     */
+    protected void doUpdate(Session session, SessionDelta delta) {
+        doUpdate(session);
+    }
+
     /**
      * Removes the specified session from any cache and then permanently deletes the session from the EIS by
      * delegating to {@link #doDelete}.
@@ -336,13 +374,16 @@ public abstract class CachingSessionDAO extends AbstractSessionDAO implements Ca
      * <p>This implementation merely returns the sessions found in the activeSessions cache.  Subclass implementations
      * may wish to override this method to retrieve them in a different way, perhaps by an RDBMS query or by other
      * means.
+     * <p/>
+     * If the cache is an {@link org.apache.shiro.cache.IterableCache IterableCache}, the returned collection is a
+     * view that iterates the cache when it is iterated, rather than a copy of all active sessions.
      *
      * @return the sessions found in the activeSessions cache.
      */
     public Collection<Session> getActiveSessions() {
         Cache<Serializable, Session> cache = getActiveSessionsCacheLazy();
         if (cache != null) {
-            return cache.values();
+            return CacheUtils.values(cache);
         } else {
             return Collections.emptySet();
         }
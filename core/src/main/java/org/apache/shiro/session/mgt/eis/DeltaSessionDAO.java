@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.SessionDelta;
+
+/**
+ * A {@link SessionDAO} that can persist only the changes made to a session, instead of its whole state.  Session
+ * managers that track the changes of their sessions call {@link #update(Session, SessionDelta)} instead of
+ * {@link #update(Session)}, so that implementations backed by a database or a remote store can write only the
+ * fields and attributes that changed.
+ *
+ * @see org.apache.shiro.session.mgt.SimpleSession#takeDelta()
+ * @since 1.1
+ */
+public interface DeltaSessionDAO extends SessionDAO {
+
+    /**
+     * Persists the changes described by the specified {@code delta} to the EIS record of the given session.  The
+     * {@code session} argument reflects the complete current state, for implementations that need more than the
+     * changes alone.
+     *
+     * @param session the session whose changes will be persisted.
+     * @param delta   the changes made to the session since it was last persisted.
+     * @throws UnknownSessionException if no existing EIS session record exists with the
+     *                                 identifier of {@link Session#getId() session.getId()}
+     */
+    void update(Session session, SessionDelta delta) throws UnknownSessionException;
+}
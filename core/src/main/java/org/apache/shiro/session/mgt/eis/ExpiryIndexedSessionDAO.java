@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.session.Session;
+
+import java.util.Collection;
+
+/**
+ * A {@link SessionDAO} that indexes its sessions by the time they may expire, so that a
+ * {@link org.apache.shiro.session.mgt.ValidatingSessionManager ValidatingSessionManager} only has to validate the
+ * sessions that could actually have expired or been stopped, instead of {@link #getActiveSessions() all} of them.
+ *
+ * @see SessionExpiryIndex
+ * @since 1.1
+ */
+public interface ExpiryIndexedSessionDAO extends SessionDAO {
+
+    /**
+     * Returns the sessions that may be invalid at the specified time:  at least every session that was stopped or
+     * whose {@link Session#getLastAccessTime() lastAccessTime} plus {@link Session#getTimeout() timeout} is not
+     * after {@code time}, as far as known to this DAO.  A few sessions that are still valid may be returned as well.
+     *
+     * @param time the time in milliseconds since the epoch to check for, usually the current time.
+     * @return the sessions that may be invalid at the specified time, never {@code null}.
+     */
+    Collection<Session> getPossiblyExpiredSessions(long time);
+}
@@ -0,0 +1,801 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.io.CompactSerializer;
+import org.apache.shiro.io.Serializer;
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.SessionException;
+import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.SessionDelta;
+import org.apache.shiro.util.Destroyable;
+import org.apache.shiro.util.Initializable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * SessionDAO implementation that persists sessions to local files, so that they survive a restart of the
+ * application without an external database.
+ * <h2>Storage</h2>
+ * Sessions are appended to a log of memory-mapped segment files of {@link #setSegmentSize(int) segmentSize} bytes
+ * in the configured {@link #setDirectory(java.io.File) directory}.  Every update appends a new version of the
+ * session, every delete a small tombstone record.  An in-memory index maps session ids to the location of their
+ * latest version, from which a read deserializes the session directly out of the mapping, without a system call.
+ * On startup the index is rebuilt by replaying the log; a record that was only partially written when the process
+ * or the machine crashed fails its checksum and ends the replay, so the previous version of that session is used.
+ * <h2>Durability</h2>
+ * Written records are in the operating system's page cache immediately, so they survive a crash of the process.
+ * To also survive a crash of the machine, the mapping is forced to disk:  by a background thread every
+ * {@link #setSyncInterval(long) syncInterval} milliseconds, or, if the sync interval is {@code 0}, before each write
+ * returns.  In the latter case concurrent writers share a single force (group commit).
+ * <h2>Compaction</h2>
+ * Superseded versions and tombstones are garbage.  When garbage makes up more than the
+ * {@link #setCompactionThreshold(double) compactionThreshold} of the log, the oldest segments are compacted every
+ * {@link #setCompactionInterval(long) compactionInterval} milliseconds:  their live sessions are appended to the end
+ * of the log and the segment files are deleted.  Compacting oldest first means tombstones can simply be dropped,
+ * as no older version of their session remains.
+ * <p/>
+ * The log is opened on {@link #init() init} or first use; changes to the configuration have no effect afterwards.
+ * A directory must only be used by a single instance at a time.
+ *
+ * @since 1.1
+ */
+public class FileSessionDAO extends AbstractSessionDAO
+        implements ExpiryIndexedSessionDAO, DeltaSessionDAO, Initializable, Destroyable {
+
+    private static final Logger log = LoggerFactory.getLogger(FileSessionDAO.class);
+
+    /**
+     * The default segment size, 16 MB.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The default sync interval, 1 second.
+     */
+    public static final long DEFAULT_SYNC_INTERVAL = 1000;
+
+    /**
+     * The default compaction interval, 1 minute.
+     */
+    public static final long DEFAULT_COMPACTION_INTERVAL = 60 * 1000;
+
+    /**
+     * The default compaction threshold:  compact when half of the log is garbage.
+     */
+    public static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+
+    private static final String SEGMENT_PREFIX = "sessions-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * Every record starts with the length of its body and the checksum of its body.
+     */
+    private static final int HEADER_LENGTH = 8;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    private File directory = new File(System.getProperty("java.io.tmpdir"), "shiro-sessions");
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private long syncInterval = DEFAULT_SYNC_INTERVAL;
+    private long compactionInterval = DEFAULT_COMPACTION_INTERVAL;
+    private double compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    private Serializer<Session> serializer = new CompactSerializer<Session>();
+    private final Serializer<Serializable> idSerializer = new CompactSerializer<Serializable>();
+
+    private final ConcurrentMap<Serializable, Location> index = new ConcurrentHashMap<Serializable, Location>();
+    private final SessionExpiryIndex expiryIndex = new SessionExpiryIndex();
+
+    /**
+     * Guards appending to the log, the segment list and the byte counts.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final LinkedList<Segment> segments = new LinkedList<Segment>();
+    private Segment current;
+    private long appendedBytes;
+    private long usedBytes;
+    private long liveBytes;
+
+    /**
+     * Only one thread forces the log at a time, on behalf of all writers waiting for it.
+     */
+    private final Object syncLock = new Object();
+    private volatile long durableBytes;
+
+    private volatile boolean open;
+    private ScheduledExecutorService maintenance;
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Sets the directory holding the segment files, created if necessary.  Defaults to a {@code shiro-sessions}
+     * directory in the {@code java.io.tmpdir} directory, which many systems clear on reboot:  configure a
+     * directory that is kept for sessions to survive restarts of the machine as well.
+     *
+     * @param directory the directory holding the segment files.
+     */
+    public void setDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Sets the size in bytes of each segment file, which is also the maximum size of a serialized session.
+     * Defaults to {@link #DEFAULT_SEGMENT_SIZE}.
+     *
+     * @param segmentSize the size in bytes of each segment file.
+     */
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public long getSyncInterval() {
+        return syncInterval;
+    }
+
+    /**
+     * Sets the number of milliseconds between forcing written sessions to disk, or {@code 0} to force them before
+     * every write returns.  Defaults to {@link #DEFAULT_SYNC_INTERVAL}.
+     *
+     * @param syncInterval the number of milliseconds between forcing written sessions to disk.
+     */
+    public void setSyncInterval(long syncInterval) {
+        this.syncInterval = syncInterval;
+    }
+
+    public long getCompactionInterval() {
+        return compactionInterval;
+    }
+
+    /**
+     * Sets the number of milliseconds between checks whether the log needs compaction, or {@code 0} to only
+     * compact when {@link #compact()} is called.  Defaults to {@link #DEFAULT_COMPACTION_INTERVAL}.
+     *
+     * @param compactionInterval the number of milliseconds between checks whether the log needs compaction.
+     */
+    public void setCompactionInterval(long compactionInterval) {
+        this.compactionInterval = compactionInterval;
+    }
+
+    public double getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    /**
+     * Sets the fraction of the log that must be garbage for it to be compacted.  Defaults to
+     * {@link #DEFAULT_COMPACTION_THRESHOLD}.
+     *
+     * @param compactionThreshold the fraction of the log that must be garbage for it to be compacted.
+     */
+    public void setCompactionThreshold(double compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    public Serializer<Session> getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * Sets the serializer that converts sessions to and from the bytes stored in the log.  Defaults to a
+     * {@link CompactSerializer CompactSerializer}.
+     *
+     * @param serializer the serializer that converts sessions to and from the bytes stored in the log.
+     */
+    public void setSerializer(Serializer<Session> serializer) {
+        this.serializer = serializer;
+    }
+
+    /**
+     * Opens the log, replaying the existing segment files.
+     */
+    public void init() {
+        ensureOpen();
+    }
+
+    private void ensureOpen() {
+        if (!open) {
+            synchronized (this) {
+                if (!open) {
+                    doOpen();
+                    open = true;
+                }
+            }
+        }
+    }
+
+    private void doOpen() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new SessionException("Unable to create session directory [" + directory + "].");
+        }
+        writeLock.lock();
+        try {
+            index.clear();
+            expiryIndex.clear();
+            segments.clear();
+            usedBytes = 0;
+            liveBytes = 0;
+            for (long number : findSegmentNumbers()) {
+                Segment segment = openSegment(number);
+                segments.add(segment);
+                replay(segment);
+            }
+            if (segments.isEmpty()) {
+                segments.add(openSegment(1));
+            }
+            current = segments.getLast();
+            current.clearTail();
+            appendedBytes = 0;
+            durableBytes = 0;
+        } finally {
+            writeLock.unlock();
+        }
+        for (Map.Entry<Serializable, Location> entry : index.entrySet()) {
+            try {
+                expiryIndex.update(serializer.deserialize(entry.getValue().readPayload()));
+            } catch (RuntimeException e) {
+                log.warn("Unable to read session [" + entry.getKey() + "], discarding it.", e);
+                discard(entry.getKey());
+            }
+        }
+        log.info("Recovered {} sessions from {} segment files in [{}].",
+                new Object[]{index.size(), segments.size(), directory});
+        startMaintenance();
+    }
+
+    private List<Long> findSegmentNumbers() {
+        List<Long> numbers = new ArrayList<Long>();
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        numbers.add(Long.parseLong(
+                                name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        log.debug("Ignoring file [{}] in session directory.", name);
+                    }
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private Segment openSegment(long number) {
+        File file = new File(directory, SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            long size = raf.length() > 0 ? raf.length() : segmentSize;
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new Segment(number, file, raf, buffer);
+        } catch (IOException e) {
+            throw new SessionException("Unable to map session file [" + file + "].", e);
+        }
+    }
+
+    /**
+     * Rebuilds the index from the records of the specified segment, up to the first record that is missing or
+     * incomplete.
+     *
+     * @param segment the segment to replay.
+     */
+    private void replay(Segment segment) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int size = buffer.capacity();
+        int offset = 0;
+        CRC32 crc = new CRC32();
+        while (offset + HEADER_LENGTH <= size) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || length > size - offset - HEADER_LENGTH) {
+                break;
+            }
+            byte[] body = new byte[length];
+            buffer.position(offset + HEADER_LENGTH);
+            buffer.get(body);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                log.warn("Incomplete record at byte {} of [{}], ignoring the rest of the file.", offset, segment.file);
+                break;
+            }
+            ByteBuffer bodyBuffer = ByteBuffer.wrap(body);
+            byte type = bodyBuffer.get();
+            byte[] idBytes = new byte[bodyBuffer.getInt()];
+            bodyBuffer.get(idBytes);
+            Serializable id = idSerializer.deserialize(idBytes);
+            int recordLength = HEADER_LENGTH + length;
+            Location previous;
+            if (type == PUT) {
+                previous = index.put(id, new Location(segment, offset, recordLength,
+                        HEADER_LENGTH + bodyBuffer.position()));
+                liveBytes += recordLength;
+            } else {
+                previous = index.remove(id);
+            }
+            if (previous != null) {
+                liveBytes -= previous.length;
+            }
+            offset += recordLength;
+        }
+        segment.position = offset;
+        usedBytes += offset;
+    }
+
+    private void discard(Serializable id) {
+        writeLock.lock();
+        try {
+            Location location = index.remove(id);
+            if (location != null) {
+                liveBytes -= location.length;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void startMaintenance() {
+        if (syncInterval <= 0 && compactionInterval <= 0) {
+            return;
+        }
+        maintenance = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "shiro-session-file-maintenance");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        if (syncInterval > 0) {
+            maintenance.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    try {
+                        sync();
+                    } catch (RuntimeException e) {
+                        log.warn("Unable to force sessions to disk.", e);
+                    }
+                }
+            }, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        }
+        if (compactionInterval > 0) {
+            maintenance.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    try {
+                        compact();
+                    } catch (RuntimeException e) {
+                        log.warn("Unable to compact session files.", e);
+                    }
+                }
+            }, compactionInterval, compactionInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /*--------------------------------------------
+    |  W R I T I N G                             |
+    ============================================*/
+
+    private static byte[] record(byte type, byte[] id, byte[] payload) {
+        int length = 1 + 4 + id.length + (payload != null ? payload.length : 0);
+        byte[] record = new byte[HEADER_LENGTH + length];
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.putInt(length);
+        buffer.putInt(0);
+        buffer.put(type);
+        buffer.putInt(id.length);
+        buffer.put(id);
+        if (payload != null) {
+            buffer.put(payload);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record, HEADER_LENGTH, length);
+        buffer.putInt(4, (int) crc.getValue());
+        return record;
+    }
+
+    /**
+     * Appends a record to the log, starting a new segment if it doesn't fit in the current one.  Must be called
+     * while holding the write lock.
+     *
+     * @param record the record to append.
+     * @return the location of the record, the payload starting at {@code payloadOffset}.
+     */
+    private Location append(byte[] record, int payloadOffset) {
+        if (current.position + record.length > current.size()) {
+            if (record.length > segmentSize) {
+                String msg = "A record of " + record.length + " bytes does not fit in a segment of " +
+                        segmentSize + " bytes.  Increase the segmentSize.";
+                throw new IllegalStateException(msg);
+            }
+            //seal the current segment:
+            current.buffer.force();
+            current = openSegment(current.number + 1);
+            segments.add(current);
+        }
+        int offset = current.position;
+        current.write(offset, record);
+        current.position += record.length;
+        appendedBytes += record.length;
+        usedBytes += record.length;
+        return new Location(current, offset, record.length, payloadOffset);
+    }
+
+    private void write(Serializable id, Session session) {
+        if (id == null) {
+            throw new NullPointerException("id argument cannot be null.");
+        }
+        ensureOpen();
+        byte[] idBytes = idSerializer.serialize(id);
+        byte[] record = record(PUT, idBytes, serializer.serialize(session));
+        long appended;
+        writeLock.lock();
+        try {
+            Location location = append(record, HEADER_LENGTH + 1 + 4 + idBytes.length);
+            Location previous = index.put(id, location);
+            liveBytes += location.length;
+            if (previous != null) {
+                liveBytes -= previous.length;
+            }
+            appended = appendedBytes;
+        } finally {
+            writeLock.unlock();
+        }
+        expiryIndex.update(session);
+        if (syncInterval <= 0) {
+            sync(appended);
+        }
+    }
+
+    /**
+     * Forces everything written so far to disk.
+     */
+    public void sync() {
+        ensureOpen();
+        long appended;
+        writeLock.lock();
+        try {
+            appended = appendedBytes;
+        } finally {
+            writeLock.unlock();
+        }
+        sync(appended);
+    }
+
+    private void sync(long appended) {
+        if (durableBytes >= appended) {
+            return;
+        }
+        synchronized (syncLock) {
+            //another writer may have forced the log while this one was waiting:
+            if (durableBytes >= appended) {
+                return;
+            }
+            Segment segment;
+            long target;
+            writeLock.lock();
+            try {
+                segment = current;
+                target = appendedBytes;
+            } finally {
+                writeLock.unlock();
+            }
+            //earlier segments were forced when they were sealed:
+            segment.buffer.force();
+            durableBytes = target;
+        }
+    }
+
+    /**
+     * Compacts the oldest segments of the log while more than the {@link #getCompactionThreshold() threshold} of
+     * it is garbage:  their live sessions are appended to the end of the log and the segment files are deleted.
+     */
+    public void compact() {
+        ensureOpen();
+        writeLock.lock();
+        try {
+            int candidates = segments.size() - 1;
+            for (int i = 0; i < candidates && isCompactionNeeded(); i++) {
+                Segment oldest = segments.getFirst();
+                int moved = 0;
+                for (Map.Entry<Serializable, Location> entry : index.entrySet()) {
+                    Location location = entry.getValue();
+                    if (location.segment == oldest) {
+                        Location copy = append(location.readRecord(), location.payloadOffset);
+                        entry.setValue(copy);
+                        moved++;
+                    }
+                }
+                //the moved sessions must be on disk before their old versions are deleted:
+                current.buffer.force();
+                segments.removeFirst();
+                usedBytes -= oldest.position;
+                oldest.close();
+                if (!oldest.file.delete()) {
+                    log.warn("Unable to delete compacted session file [{}].", oldest.file);
+                }
+                log.debug("Compacted session file [{}], moving {} sessions.", oldest.file, moved);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private boolean isCompactionNeeded() {
+        return segments.size() > 1 && usedBytes - liveBytes > compactionThreshold * usedBytes;
+    }
+
+    /*--------------------------------------------
+    |  S E S S I O N D A O   M E T H O D S       |
+    ============================================*/
+
+    protected Serializable doCreate(Session session) {
+        Serializable sessionId = generateSessionId(session);
+        assignSessionId(session, sessionId);
+        write(sessionId, session);
+        return sessionId;
+    }
+
+    protected Session doReadSession(Serializable sessionId) {
+        ensureOpen();
+        Location location = index.get(sessionId);
+        return location != null ? serializer.deserialize(location.readPayload()) : null;
+    }
+
+    public void update(Session session) throws UnknownSessionException {
+        write(session.getId(), session);
+    }
+
+    /**
+     * Writes the session as a whole, as the log holds complete versions of sessions.  Implementing the delta
+     * contract lets session managers skip updates of unchanged sessions.
+     *
+     * @param session the session to write.
+     * @param delta   the changes made to the session, ignored.
+     * @throws UnknownSessionException never.
+     */
+    public void update(Session session, SessionDelta delta) throws UnknownSessionException {
+        update(session);
+    }
+
+    public void delete(Session session) {
+        if (session == null) {
+            throw new NullPointerException("session argument cannot be null.");
+        }
+        Serializable id = session.getId();
+        if (id == null) {
+            return;
+        }
+        ensureOpen();
+        expiryIndex.remove(id);
+        byte[] record = record(DELETE, idSerializer.serialize(id), null);
+        long appended;
+        writeLock.lock();
+        try {
+            Location previous = index.remove(id);
+            if (previous == null) {
+                return;
+            }
+            liveBytes -= previous.length;
+            append(record, record.length);
+            appended = appendedBytes;
+        } finally {
+            writeLock.unlock();
+        }
+        if (syncInterval <= 0) {
+            sync(appended);
+        }
+    }
+
+    /**
+     * Returns a view of the active sessions that reads each session from the log as it is iterated.
+     *
+     * @return a view of the active sessions.
+     */
+    public Collection<Session> getActiveSessions() {
+        ensureOpen();
+        return new AbstractCollection<Session>() {
+            public Iterator<Session> iterator() {
+                final Iterator<Serializable> ids = index.keySet().iterator();
+                return new Iterator<Session>() {
+                    private Session next = advance();
+
+                    private Session advance() {
+                        while (ids.hasNext()) {
+                            Session session = doReadSession(ids.next());
+                            if (session != null) {
+                                return session;
+                            }
+                        }
+                        return null;
+                    }
+
+                    public boolean hasNext() {
+                        return next != null;
+                    }
+
+                    public Session next() {
+                        if (next == null) {
+                            throw new NoSuchElementException();
+                        }
+                        Session session = next;
+                        next = advance();
+                        return session;
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            public int size() {
+                return index.size();
+            }
+        };
+    }
+
+    /**
+     * Returns the sessions that may be invalid at the specified time, reading only those from the log.
+     *
+     * @param time the time in milliseconds since the epoch to check for, usually the current time.
+     * @return the sessions that may be invalid at the specified time.
+     */
+    public Collection<Session> getPossiblyExpiredSessions(long time) {
+        ensureOpen();
+        List<Serializable> ids = expiryIndex.getPossiblyExpired(time);
+        if (ids.isEmpty()) {
+            return Collections.emptySet();
+        }
+        List<Session> possiblyExpired = new ArrayList<Session>(ids.size());
+        for (Serializable id : ids) {
+            Session session = doReadSession(id);
+            if (session == null) {
+                expiryIndex.remove(id);
+            } else if (SessionExpiryIndex.getExpiryTime(session) <= time) {
+                possiblyExpired.add(session);
+            } else {
+                expiryIndex.update(session);
+            }
+        }
+        return possiblyExpired;
+    }
+
+    /**
+     * Forces the log to disk, stops the background thread and closes the segment files.  The log is opened again
+     * on next use.
+     */
+    public void destroy() {
+        synchronized (this) {
+            if (!open) {
+                return;
+            }
+            if (maintenance != null) {
+                maintenance.shutdownNow();
+                maintenance = null;
+            }
+            sync();
+            writeLock.lock();
+            try {
+                for (Segment segment : segments) {
+                    segment.close();
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            open = false;
+        }
+    }
+
+    /**
+     * A memory-mapped segment file.  Its records are never changed once written, so reads need no locking.
+     */
+    private static class Segment {
+        private final long number;
+        private final File file;
+        private final RandomAccessFile raf;
+        private final MappedByteBuffer buffer;
+
+        /**
+         * The offset at which the next record is appended, guarded by the write lock.
+         */
+        private int position;
+
+        private Segment(long number, File file, RandomAccessFile raf, MappedByteBuffer buffer) {
+            this.number = number;
+            this.file = file;
+            this.raf = raf;
+            this.buffer = buffer;
+        }
+
+        private int size() {
+            return buffer.capacity();
+        }
+
+        private void write(int offset, byte[] bytes) {
+            ByteBuffer writer = buffer.duplicate();
+            writer.position(offset);
+            writer.put(bytes);
+        }
+
+        private byte[] read(int offset, int length) {
+            byte[] bytes = new byte[length];
+            ByteBuffer reader = buffer.duplicate();
+            reader.position(offset);
+            reader.get(bytes);
+            return bytes;
+        }
+
+        /**
+         * Zeroes any remains of an incomplete record after the last complete one, so that records appended from
+         * here on are not followed by stale data.
+         */
+        private void clearTail() {
+            if (position + HEADER_LENGTH <= size() && buffer.getInt(position) != 0) {
+                write(position, new byte[size() - position]);
+            }
+        }
+
+        private void close() {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                log.debug("Unable to close session file [" + file + "].", e);
+            }
+        }
+    }
+
+    /**
+     * The location of a record in the log.
+     */
+    private static class Location {
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+        private final int payloadOffset;
+
+        private Location(Segment segment, int offset, int length, int payloadOffset) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.payloadOffset = payloadOffset;
+        }
+
+        private byte[] readRecord() {
+            return segment.read(offset, length);
+        }
+
+        private byte[] readPayload() {
+            return segment.read(offset + payloadOffset, length - payloadOffset);
+        }
+    }
+}
@@ -0,0 +1,559 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.io.CompactSerializer;
+import org.apache.shiro.io.Serializer;
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.SessionException;
+import org.apache.shiro.util.Destroyable;
+import org.apache.shiro.util.JdbcUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link CachingSessionDAO} that stores sessions in a relational database via JDBC, writing behind:  creates,
+ * updates and deletes are queued and written in JDBC batches every {@link #setFlushInterval(long) flushInterval}
+ * milliseconds, instead of one statement per change.
+ * <p/>
+ * Queued writes are coalesced per session, the last one winning:  a session updated many times between two flushes
+ * is written once, and a session created and deleted between two flushes is never written at all.  Reads of a
+ * session with a queued write return the queued state, so the queue is never bypassed.  When the queue holds
+ * {@link #setMaxPendingWrites(int) maxPendingWrites} sessions, the writing thread flushes it before queueing more,
+ * bounding both memory use and the number of writes lost if the application terminates abruptly.  If a flush fails,
+ * its writes are queued again unless newer writes for the same sessions were queued in the meantime.
+ * <p/>
+ * Sessions are stored {@link #setSerializer(org.apache.shiro.io.Serializer) serialized} in a binary column.  The
+ * default queries assume the following table, which can be changed by setting the query properties:
+ * <pre>
+ * create table sessions (
+ *     session_id varchar(255) primary key,
+ *     session_data varbinary(8192) not null
+ * )</pre>
+ *
+ * @since 1.1
+ */
+public class JdbcSessionDAO extends CachingSessionDAO implements Destroyable {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcSessionDAO.class);
+
+    /**
+     * The default query used to insert a session, with the session id and data as parameters.
+     */
+    protected static final String DEFAULT_INSERT_QUERY =
+            "insert into sessions (session_id, session_data) values (?, ?)";
+
+    /**
+     * The default query used to update a session, with the session data and id as parameters.
+     */
+    protected static final String DEFAULT_UPDATE_QUERY = "update sessions set session_data = ? where session_id = ?";
+
+    /**
+     * The default query used to delete a session, with the session id as parameter.
+     */
+    protected static final String DEFAULT_DELETE_QUERY = "delete from sessions where session_id = ?";
+
+    /**
+     * The default query used to select the data of a session, with the session id as parameter.
+     */
+    protected static final String DEFAULT_SELECT_QUERY = "select session_data from sessions where session_id = ?";
+
+    /**
+     * The default flush interval, 1 second.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    /**
+     * The default maximum number of sessions with queued writes.
+     */
+    public static final int DEFAULT_MAX_PENDING_WRITES = 10000;
+
+    /**
+     * The default maximum number of statements per JDBC batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static enum Operation {
+        INSERT, UPDATE, DELETE
+    }
+
+    private DataSource dataSource;
+    protected String insertQuery = DEFAULT_INSERT_QUERY;
+    protected String updateQuery = DEFAULT_UPDATE_QUERY;
+    protected String deleteQuery = DEFAULT_DELETE_QUERY;
+    protected String selectQuery = DEFAULT_SELECT_QUERY;
+    private Serializer<Session> serializer = new CompactSerializer<Session>();
+    private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+    private int maxPendingWrites = DEFAULT_MAX_PENDING_WRITES;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Guards the queued and in-flight writes.
+     */
+    private final Object lock = new Object();
+    private Map<Serializable, PendingWrite> pending = new LinkedHashMap<Serializable, PendingWrite>();
+    private Map<Serializable, PendingWrite> inFlight;
+
+    /**
+     * Flushes are executed one at a time, so that they reach the database in the order the writes were queued.
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile ScheduledExecutorService flusher;
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Sets the data source that provides connections to the database holding the sessions.
+     *
+     * @param dataSource the data source that provides connections to the database holding the sessions.
+     */
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public String getInsertQuery() {
+        return insertQuery;
+    }
+
+    /**
+     * Overrides the default query used to insert a session, with the session id and the session data as
+     * parameters.
+     *
+     * @param insertQuery the query used to insert a session.
+     */
+    public void setInsertQuery(String insertQuery) {
+        this.insertQuery = insertQuery;
+    }
+
+    public String getUpdateQuery() {
+        return updateQuery;
+    }
+
+    /**
+     * Overrides the default query used to update a session, with the session data and the session id as
+     * parameters.
+     *
+     * @param updateQuery the query used to update a session.
+     */
+    public void setUpdateQuery(String updateQuery) {
+        this.updateQuery = updateQuery;
+    }
+
+    public String getDeleteQuery() {
+        return deleteQuery;
+    }
+
+    /**
+     * Overrides the default query used to delete a session, with the session id as parameter.
+     *
+     * @param deleteQuery the query used to delete a session.
+     */
+    public void setDeleteQuery(String deleteQuery) {
+        this.deleteQuery = deleteQuery;
+    }
+
+    public String getSelectQuery() {
+        return selectQuery;
+    }
+
+    /**
+     * Overrides the default query used to select the data of a session, with the session id as parameter.
+     *
+     * @param selectQuery the query used to select the data of a session.
+     */
+    public void setSelectQuery(String selectQuery) {
+        this.selectQuery = selectQuery;
+    }
+
+    public Serializer<Session> getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * Sets the serializer that converts sessions to and from the stored session data.  Defaults to a
+     * {@link CompactSerializer CompactSerializer}.
+     *
+     * @param serializer the serializer that converts sessions to and from the stored session data.
+     */
+    public void setSerializer(Serializer<Session> serializer) {
+        this.serializer = serializer;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * Sets the number of milliseconds between flushes of the queued writes, or {@code 0} to only flush when the
+     * queue is full or {@link #flush()} is called.  Defaults to {@link #DEFAULT_FLUSH_INTERVAL}.
+     *
+     * @param flushInterval the number of milliseconds between flushes of the queued writes.
+     */
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public int getMaxPendingWrites() {
+        return maxPendingWrites;
+    }
+
+    /**
+     * Sets the maximum number of sessions with queued writes, after which writing threads flush the queue
+     * themselves.  Defaults to {@link #DEFAULT_MAX_PENDING_WRITES}.
+     *
+     * @param maxPendingWrites the maximum number of sessions with queued writes.
+     */
+    public void setMaxPendingWrites(int maxPendingWrites) {
+        this.maxPendingWrites = maxPendingWrites;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the maximum number of statements sent to the database in a single JDBC batch.  Defaults to
+     * {@link #DEFAULT_BATCH_SIZE}.
+     *
+     * @param batchSize the maximum number of statements per JDBC batch.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the number of sessions with writes queued, not including a flush in progress.
+     *
+     * @return the number of sessions with writes queued.
+     */
+    public int getPendingWriteCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /*--------------------------------------------
+    |  Q U E U E I N G                           |
+    ============================================*/
+
+    private void enqueue(Serializable id, Operation operation, Session session) {
+        if (id == null) {
+            throw new NullPointerException("id argument cannot be null.");
+        }
+        //snapshot the state now, the session may change before it is written:
+        byte[] data = session != null ? serializer.serialize(session) : null;
+        if (getPendingWriteCount() >= maxPendingWrites) {
+            flush();
+        }
+        synchronized (lock) {
+            PendingWrite previous = pending.get(id);
+            if (previous != null && previous.operation == Operation.INSERT) {
+                if (operation == Operation.DELETE) {
+                    //never written, nothing to delete:
+                    pending.remove(id);
+                    return;
+                }
+                operation = Operation.INSERT;
+            }
+            pending.put(id, new PendingWrite(id, operation, data));
+        }
+        ensureFlusher();
+    }
+
+    private void ensureFlusher() {
+        if (flushInterval <= 0 || flusher != null) {
+            return;
+        }
+        synchronized (this) {
+            if (flusher == null) {
+                ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "shiro-session-jdbc-flush");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+                service.scheduleWithFixedDelay(new Runnable() {
+                    public void run() {
+                        try {
+                            flush();
+                        } catch (RuntimeException e) {
+                            log.warn("Unable to flush queued session writes, retrying in " + flushInterval + " ms.", e);
+                        }
+                    }
+                }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+                flusher = service;
+            }
+        }
+    }
+
+    /**
+     * Writes all queued writes to the database in JDBC batches, in a single transaction.
+     *
+     * @throws SessionException if the writes could not be written, in which case they are queued again.
+     */
+    public void flush() throws SessionException {
+        flushLock.lock();
+        try {
+            Map<Serializable, PendingWrite> writes;
+            synchronized (lock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                writes = pending;
+                inFlight = writes;
+                pending = new LinkedHashMap<Serializable, PendingWrite>();
+            }
+            boolean written = false;
+            try {
+                write(writes.values());
+                written = true;
+                log.debug("Flushed {} queued session writes.", writes.size());
+            } finally {
+                synchronized (lock) {
+                    inFlight = null;
+                    if (!written) {
+                        requeue(writes.values());
+                    }
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Queues writes that failed again, unless newer writes for the same sessions were queued meanwhile.  Must be
+     * called while holding the lock.
+     *
+     * @param writes the writes that failed.
+     */
+    private void requeue(Collection<PendingWrite> writes) {
+        Map<Serializable, PendingWrite> requeued = new LinkedHashMap<Serializable, PendingWrite>();
+        for (PendingWrite write : writes) {
+            PendingWrite newer = pending.remove(write.id);
+            if (newer == null) {
+                requeued.put(write.id, write);
+            } else if (write.operation == Operation.INSERT) {
+                //the session was never inserted:
+                if (newer.operation != Operation.DELETE) {
+                    requeued.put(write.id, new PendingWrite(write.id, Operation.INSERT, newer.data));
+                }
+            } else {
+                requeued.put(write.id, newer);
+            }
+        }
+        //the failed writes were queued first:
+        requeued.putAll(pending);
+        pending = requeued;
+    }
+
+    private void write(Collection<PendingWrite> writes) throws SessionException {
+        List<PendingWrite> inserts = new ArrayList<PendingWrite>();
+        List<PendingWrite> updates = new ArrayList<PendingWrite>();
+        List<PendingWrite> deletes = new ArrayList<PendingWrite>();
+        for (PendingWrite write : writes) {
+            if (write.operation == Operation.INSERT) {
+                inserts.add(write);
+            } else if (write.operation == Operation.UPDATE) {
+                updates.add(write);
+            } else {
+                deletes.add(write);
+            }
+        }
+        Connection conn = null;
+        boolean autoCommit = true;
+        try {
+            conn = getConnection();
+            autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            executeBatches(conn, deleteQuery, Operation.DELETE, deletes);
+            int[] updateCounts = executeBatches(conn, updateQuery, Operation.UPDATE, updates);
+            for (int i = 0; i < updateCounts.length; i++) {
+                if (updateCounts[i] == 0) {
+                    //the session is not in the database (anymore):
+                    inserts.add(updates.get(i));
+                }
+            }
+            executeBatches(conn, insertQuery, Operation.INSERT, inserts);
+            conn.commit();
+        } catch (SQLException e) {
+            rollback(conn);
+            throw new SessionException("Unable to write " + writes.size() + " sessions to the database.", e);
+        } catch (RuntimeException e) {
+            rollback(conn);
+            throw e;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(autoCommit);
+                } catch (SQLException e) {
+                    log.debug("Unable to restore auto-commit mode.", e);
+                }
+            }
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    private int[] executeBatches(Connection conn, String query, Operation operation, List<PendingWrite> writes)
+            throws SQLException {
+        int[] counts = new int[writes.size()];
+        if (writes.isEmpty()) {
+            return counts;
+        }
+        PreparedStatement ps = null;
+        try {
+            ps = conn.prepareStatement(query);
+            int batched = 0;
+            for (int i = 0; i < writes.size(); i++) {
+                PendingWrite write = writes.get(i);
+                String id = write.id.toString();
+                if (operation == Operation.INSERT) {
+                    ps.setString(1, id);
+                    ps.setBytes(2, write.data);
+                } else if (operation == Operation.UPDATE) {
+                    ps.setBytes(1, write.data);
+                    ps.setString(2, id);
+                } else {
+                    ps.setString(1, id);
+                }
+                ps.addBatch();
+                if (++batched == batchSize || i == writes.size() - 1) {
+                    int[] batchCounts = ps.executeBatch();
+                    System.arraycopy(batchCounts, 0, counts, i + 1 - batched, batchCounts.length);
+                    batched = 0;
+                }
+            }
+        } finally {
+            JdbcUtils.closeStatement(ps);
+        }
+        return counts;
+    }
+
+    private static void rollback(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                log.debug("Unable to roll back session writes.", e);
+            }
+        }
+    }
+
+    protected Connection getConnection() throws SQLException {
+        if (dataSource == null) {
+            throw new IllegalStateException("The dataSource property must be set.");
+        }
+        return dataSource.getConnection();
+    }
+
+    /*--------------------------------------------
+    |  C A C H I N G S E S S I O N D A O         |
+    ============================================*/
+
+    protected Serializable doCreate(Session session) {
+        Serializable sessionId = generateSessionId(session);
+        assignSessionId(session, sessionId);
+        enqueue(sessionId, Operation.INSERT, session);
+        return sessionId;
+    }
+
+    /**
+     * Returns the queued state of the session if it has a queued write, otherwise reads it from the database.
+     *
+     * @param sessionId the id of the session to read.
+     * @return the session, or {@code null} if there is no such session.
+     */
+    protected Session doReadSession(Serializable sessionId) {
+        PendingWrite write;
+        synchronized (lock) {
+            write = pending.get(sessionId);
+            if (write == null && inFlight != null) {
+                write = inFlight.get(sessionId);
+            }
+        }
+        if (write != null) {
+            return write.data != null ? serializer.deserialize(write.data) : null;
+        }
+        Connection conn = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            conn = getConnection();
+            ps = conn.prepareStatement(selectQuery);
+            ps.setString(1, sessionId.toString());
+            rs = ps.executeQuery();
+            return rs.next() ? serializer.deserialize(rs.getBytes(1)) : null;
+        } catch (SQLException e) {
+            throw new SessionException("Unable to read session [" + sessionId + "] from the database.", e);
+        } finally {
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(ps);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    protected void doUpdate(Session session) {
+        enqueue(session.getId(), Operation.UPDATE, session);
+    }
+
+    protected void doDelete(Session session) {
+        enqueue(session.getId(), Operation.DELETE, null);
+    }
+
+    /**
+     * Stops the background flushes and flushes the queued writes.
+     */
+    public void destroy() {
+        synchronized (this) {
+            if (flusher != null) {
+                flusher.shutdownNow();
+                flusher = null;
+            }
+        }
+        flush();
+    }
+
+    private static class PendingWrite {
+        private final Serializable id;
+        private final Operation operation;
+        private final byte[] data;
+
+        private PendingWrite(Serializable id, Operation operation, byte[] data) {
+            this.id = id;
+            this.operation = operation;
+            this.data = data;
+        }
+    }
+}
@@ -20,13 +20,16 @@ package org.apache.shiro.session.mgt.eis;
 
 import org.apache.shiro.session.Session;
 import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.SessionDelta;
 import org.apache.shiro.util.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -49,18 +52,24 @@ import java.util.concurrent.ConcurrentMap;
  * cache implementations that would expunge entries due to TTL settings, resulting in Sessions that would be randomly
  * (and permanently) lost.  The Shiro 1.0 release refactored this implementation to be 100% memory-based (without
  * {@code Cache} usage to avoid this problem.
+ * <h2>Session Validation</h2>
+ * Sessions are {@link SessionExpiryIndex indexed} by the time they may expire, so that session validation only
+ * visits the sessions {@link #getPossiblyExpiredSessions(long) possibly expired} instead of all active sessions.
  *
  * @see CachingSessionDAO
  * @since 0.1
  */
-public class MemorySessionDAO extends AbstractSessionDAO {
+public class MemorySessionDAO extends AbstractSessionDAO implements ExpiryIndexedSessionDAO, DeltaSessionDAO {
 
     private static final Logger log = LoggerFactory.getLogger(MemorySessionDAO.class);
 
     private ConcurrentMap<Serializable, Session> sessions;
 
+    private final SessionExpiryIndex expiryIndex;
+
     public MemorySessionDAO() {
         this.sessions = new ConcurrentHashMap<Serializable, Session>();
+        this.expiryIndex = new SessionExpiryIndex();
     }
 
     protected Serializable doCreate(Session session) {
@@ -74,7 +83,9 @@ public class MemorySessionDAO extends AbstractSessionDAO {
         if (id == null) {
             throw new NullPointerException("id argument cannot be null.");
         }
-        return sessions.putIfAbsent(id, session);
+        Session previous = sessions.putIfAbsent(id, session);
+        expiryIndex.update(session);
+        return previous;
     }
 
     protected Session doReadSession(Serializable sessionId) {
@@ -85,6 +96,19 @@ public class MemorySessionDAO extends AbstractSessionDAO {
         storeSession(session.getId(), session);
     }
 
+    /**
+     * Stores the session as a whole:  sessions are kept in memory, so there is nothing to gain from writing only
+     * the changes.  Implementing the delta contract lets session managers skip updates of unchanged sessions.
+     *
+     * @param session the session to store.
+     * @param delta   the changes made to the session, ignored.
+     * @throws UnknownSessionException never.
+     * @since 1.1
+     */
+    public void update(Session session, SessionDelta delta) throws UnknownSessionException {
+        update(session);
+    }
+
     public void delete(Session session) {
         if (session == null) {
             throw new NullPointerException("session argument cannot be null.");
@@ -92,6 +116,7 @@ public class MemorySessionDAO extends AbstractSessionDAO {
         Serializable id = session.getId();
         if (id != null) {
             sessions.remove(id);
+            expiryIndex.remove(id);
         }
     }
 
@@ -104,4 +129,30 @@ public class MemorySessionDAO extends AbstractSessionDAO {
         }
     }
 
+    /**
+     * Returns the indexed sessions that may be invalid at the specified time.  Sessions whose expiry time moved
+     * forward without an {@link #update update}, i.e. that were accessed in the meantime, are re-indexed instead of
+     * returned.
+     *
+     * @param time the time in milliseconds since the epoch to check for, usually the current time.
+     * @return the sessions that may be invalid at the specified time.
+     */
+    public Collection<Session> getPossiblyExpiredSessions(long time) {
+        List<Serializable> ids = expiryIndex.getPossiblyExpired(time);
+        if (ids.isEmpty()) {
+            return Collections.emptySet();
+        }
+        List<Session> possiblyExpired = new ArrayList<Session>(ids.size());
+        for (Serializable id : ids) {
+            Session session = sessions.get(id);
+            if (session == null) {
+                expiryIndex.remove(id);
+            } else if (SessionExpiryIndex.getExpiryTime(session) <= time) {
+                possiblyExpired.add(session);
+            } else {
+                expiryIndex.update(session);
+            }
+        }
+        return possiblyExpired;
+    }
 }
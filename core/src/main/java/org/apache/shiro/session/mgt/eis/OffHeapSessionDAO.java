@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.OffHeapCache;
+import org.apache.shiro.io.CompactSerializer;
+import org.apache.shiro.io.Serializer;
+import org.apache.shiro.session.Session;
+import org.apache.shiro.util.Destroyable;
+import org.apache.shiro.util.LifecycleUtils;
+
+import java.io.Serializable;
+
+/**
+ * SessionDAO implementation that stores all sessions serialized in direct memory outside of the Java heap, in an
+ * {@link OffHeapCache OffHeapCache}.  Compared to the {@link MemorySessionDAO}, a large number of active sessions
+ * no longer adds to the heap the garbage collector has to trace, at the cost of (de)serializing a session on every
+ * read and update.
+ * <p/>
+ * The cache is the system of record, as with the parent {@link EnterpriseCacheSessionDAO}; it is always created by
+ * this class, any {@link #setCacheManager(org.apache.shiro.cache.CacheManager) cacheManager} is ignored.  Its
+ * {@link #setCapacity(long) capacity} must be large enough for all active sessions:  since an evicted session would
+ * silently log its user out, the cache never evicts sessions, and creating or updating a session fails with a
+ * {@link org.apache.shiro.cache.CacheException CacheException} once the capacity is exhausted.
+ *
+ * @since 1.1
+ */
+public class OffHeapSessionDAO extends EnterpriseCacheSessionDAO implements Destroyable {
+
+    /**
+     * The default capacity, 256 MB.
+     */
+    public static final long DEFAULT_CAPACITY = 256L * 1024 * 1024;
+
+    private long capacity = DEFAULT_CAPACITY;
+    private int blockSize = OffHeapCache.DEFAULT_BLOCK_SIZE;
+    private int slabSize = OffHeapCache.DEFAULT_SLAB_SIZE;
+    private Serializer<Session> serializer = new CompactSerializer<Session>();
+
+    public OffHeapSessionDAO() {
+        setCacheManager(null);
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets the maximum number of bytes of direct memory used for sessions.  Defaults to {@link #DEFAULT_CAPACITY}.
+     *
+     * @param capacity the maximum number of bytes of direct memory used for sessions.
+     */
+    public void setCapacity(long capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public void setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    public int getSlabSize() {
+        return slabSize;
+    }
+
+    public void setSlabSize(int slabSize) {
+        this.slabSize = slabSize;
+    }
+
+    /**
+     * Returns the serializer that converts sessions to and from the bytes stored in direct memory.  Defaults to a
+     * {@link CompactSerializer CompactSerializer}.
+     *
+     * @return the serializer that converts sessions to and from the bytes stored in direct memory.
+     */
+    public Serializer<Session> getSerializer() {
+        return serializer;
+    }
+
+    public void setSerializer(Serializer<Session> serializer) {
+        this.serializer = serializer;
+    }
+
+    /**
+     * Creates the {@link OffHeapCache OffHeapCache} holding the active sessions, with
+     * {@link OffHeapCache#setEvictionEnabled(boolean) eviction} disabled so that sessions are never dropped silently
+     * when the {@link #getCapacity() capacity} is exhausted.
+     *
+     * @return the cache holding the active sessions.
+     */
+    @Override
+    protected Cache<Serializable, Session> createActiveSessionsCache() {
+        OffHeapCache<Serializable, Session> cache = new OffHeapCache<Serializable, Session>(
+                getActiveSessionsCacheName(), getCapacity(), getBlockSize(), getSlabSize(), getSerializer());
+        cache.setEvictionEnabled(false);
+        return cache;
+    }
+
+    /**
+     * Stores the session with {@link OffHeapCache#store OffHeapCache.store}, which unlike {@code put} doesn't
+     * deserialize the previous version of the session only to return it.
+     *
+     * @param session   the session to cache
+     * @param sessionId the id of the session, expected to be the cache key.
+     * @param cache     the cache to store the session
+     */
+    @Override
+    protected void cache(Session session, Serializable sessionId, Cache<Serializable, Session> cache) {
+        if (cache instanceof OffHeapCache) {
+            ((OffHeapCache<Serializable, Session>) cache).store(sessionId, session);
+        } else {
+            super.cache(session, sessionId, cache);
+        }
+    }
+
+    /**
+     * Removes the session with {@link OffHeapCache#discard OffHeapCache.discard}, which unlike {@code remove}
+     * doesn't deserialize the removed session only to return it.
+     *
+     * @param session the session to remove from the cache.
+     */
+    @Override
+    protected void uncache(Session session) {
+        Cache<Serializable, Session> cache = getActiveSessionsCache();
+        if (session == null || session.getId() == null || !(cache instanceof OffHeapCache)) {
+            super.uncache(session);
+            return;
+        }
+        ((OffHeapCache<Serializable, Session>) cache).discard(session.getId());
+    }
+
+    /**
+     * Releases the direct memory holding the sessions.
+     */
+    public void destroy() {
+        LifecycleUtils.destroy(getActiveSessionsCache());
+    }
+}
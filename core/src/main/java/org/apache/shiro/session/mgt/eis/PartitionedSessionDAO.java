@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.session.Session;
+
+import java.util.Collection;
+
+/**
+ * A {@link SessionDAO} that divides its sessions into a fixed number of partitions, so that work over all sessions,
+ * such as session validation or listing, can be done one partition at a time, possibly in parallel, instead of over
+ * all sessions at once.
+ *
+ * @since 1.1
+ */
+public interface PartitionedSessionDAO extends SessionDAO {
+
+    /**
+     * Returns the number of partitions, which never changes.
+     *
+     * @return the number of partitions.
+     */
+    int getPartitionCount();
+
+    /**
+     * Returns the active sessions of the specified partition.
+     *
+     * @param partition the partition, from {@code 0} to the {@link #getPartitionCount() partition count}.
+     * @return the active sessions of the specified partition, never {@code null}.
+     */
+    Collection<Session> getActiveSessions(int partition);
+
+    /**
+     * Returns the sessions of the specified partition that may be invalid at the specified time, as defined by
+     * {@link ExpiryIndexedSessionDAO#getPossiblyExpiredSessions(long)}.  Implementations that do not track the
+     * expiry of their sessions return all {@link #getActiveSessions(int) active sessions} of the partition.
+     *
+     * @param partition the partition, from {@code 0} to the {@link #getPartitionCount() partition count}.
+     * @param time      the time in milliseconds since the epoch to check for, usually the current time.
+     * @return the sessions of the specified partition that may be invalid at the specified time, never {@code null}.
+     */
+    Collection<Session> getPossiblyExpiredSessions(int partition, long time);
+}
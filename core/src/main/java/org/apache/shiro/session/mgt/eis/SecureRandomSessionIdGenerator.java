@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.session.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * {@link SessionIdGenerator} that generates session IDs from a cryptographically strong random number generator
+ * private to each thread.  Unlike the {@link RandomSessionIdGenerator} and the {@link JavaUuidSessionIdGenerator},
+ * which draw from a single {@link SecureRandom} shared by all threads, threads creating sessions at the same time
+ * never contend for a lock.  Every thread's {@code SecureRandom} seeds itself independently when it is first used.
+ * <p/>
+ * IDs are {@link #setByteLength(int) byteLength} random bytes (16 by default, i.e. 128 bits) encoded with the
+ * URL and filename safe Base64 alphabet of RFC 4648 without padding, so the default IDs are 22 characters long and
+ * can be used as cookie values and URL path parameters without further encoding.
+ *
+ * @since 1.1
+ */
+public class SecureRandomSessionIdGenerator implements SessionIdGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(SecureRandomSessionIdGenerator.class);
+
+    /**
+     * The default number of random bytes in each session ID, equal to 16 (128 bits).
+     */
+    public static final int DEFAULT_BYTE_LENGTH = 16;
+
+    /**
+     * The minimum number of random bytes in each session ID, equal to 16 (128 bits).
+     */
+    public static final int MIN_BYTE_LENGTH = 16;
+
+    private static final String DEFAULT_ALGORITHM_NAME = "SHA1PRNG";
+
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    private String algorithmName = DEFAULT_ALGORITHM_NAME;
+    private int byteLength = DEFAULT_BYTE_LENGTH;
+
+    private final ThreadLocal<SecureRandom> randoms = new ThreadLocal<SecureRandom>() {
+        @Override
+        protected SecureRandom initialValue() {
+            return createRandom();
+        }
+    };
+
+    /**
+     * Returns the name of the {@link SecureRandom} algorithm instantiated for each thread, {@code SHA1PRNG} by
+     * default.  If the algorithm is not available, the platform's default {@code SecureRandom} algorithm is used.
+     *
+     * @return the name of the {@link SecureRandom} algorithm instantiated for each thread.
+     */
+    public String getAlgorithmName() {
+        return algorithmName;
+    }
+
+    /**
+     * Sets the name of the {@link SecureRandom} algorithm instantiated for each thread.  Threads that already
+     * generated an ID keep using their existing instance, so this property should be set during configuration.
+     *
+     * @param algorithmName the name of the {@link SecureRandom} algorithm instantiated for each thread.
+     */
+    public void setAlgorithmName(String algorithmName) {
+        this.algorithmName = algorithmName;
+    }
+
+    /**
+     * Returns the number of random bytes in each session ID, {@link #DEFAULT_BYTE_LENGTH} by default.
+     *
+     * @return the number of random bytes in each session ID.
+     */
+    public int getByteLength() {
+        return byteLength;
+    }
+
+    /**
+     * Sets the number of random bytes in each session ID, which may not be less than {@link #MIN_BYTE_LENGTH}.
+     *
+     * @param byteLength the number of random bytes in each session ID.
+     * @throws IllegalArgumentException if {@code byteLength} is less than {@link #MIN_BYTE_LENGTH}.
+     */
+    public void setByteLength(int byteLength) {
+        if (byteLength < MIN_BYTE_LENGTH) {
+            String msg = "byteLength must be at least " + MIN_BYTE_LENGTH + " (" + (MIN_BYTE_LENGTH * 8) + " bits).";
+            throw new IllegalArgumentException(msg);
+        }
+        this.byteLength = byteLength;
+    }
+
+    /**
+     * Creates the {@link SecureRandom} used by the current thread.  The instance is not explicitly seeded, so it
+     * seeds itself from the platform's entropy source on first use.
+     *
+     * @return a new {@link SecureRandom} for the current thread.
+     */
+    protected SecureRandom createRandom() {
+        String name = getAlgorithmName();
+        if (name != null) {
+            try {
+                return SecureRandom.getInstance(name);
+            } catch (NoSuchAlgorithmException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("The SecureRandom " + name + " algorithm is not available on the current platform.  " +
+                            "Using the platform's default SecureRandom algorithm.", e);
+                }
+            }
+        }
+        return new SecureRandom();
+    }
+
+    /**
+     * Ignores the method argument and returns {@link #getByteLength() byteLength} bytes of the current thread's
+     * {@link SecureRandom}, encoded as unpadded URL-safe Base64.
+     *
+     * @param session the {@link Session} instance to which the ID will be applied.
+     * @return a new random, URL-safe session ID.
+     */
+    public Serializable generateId(Session session) {
+        byte[] bytes = new byte[byteLength];
+        randoms.get().nextBytes(bytes);
+        return encode(bytes);
+    }
+
+    private static String encode(byte[] bytes) {
+        char[] chars = new char[(bytes.length * 8 + 5) / 6];
+        int c = 0;
+        int i = 0;
+        for (; i + 2 < bytes.length; i += 3) {
+            int bits = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | (bytes[i + 2] & 0xff);
+            chars[c++] = ALPHABET[bits >>> 18];
+            chars[c++] = ALPHABET[(bits >>> 12) & 0x3f];
+            chars[c++] = ALPHABET[(bits >>> 6) & 0x3f];
+            chars[c++] = ALPHABET[bits & 0x3f];
+        }
+        int remaining = bytes.length - i;
+        if (remaining > 0) {
+            int bits = (bytes[i] & 0xff) << 16 | (remaining > 1 ? (bytes[i + 1] & 0xff) << 8 : 0);
+            chars[c++] = ALPHABET[bits >>> 18];
+            chars[c++] = ALPHABET[(bits >>> 12) & 0x3f];
+            if (remaining > 1) {
+                chars[c++] = ALPHABET[(bits >>> 6) & 0x3f];
+            }
+        }
+        return new String(chars, 0, c);
+    }
+}
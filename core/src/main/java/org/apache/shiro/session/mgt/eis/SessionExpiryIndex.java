@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.mgt.ValidatingSession;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Index of session ids by the time their sessions may expire, for use by {@link ExpiryIndexedSessionDAO}
+ * implementations.
+ * <p/>
+ * Sessions are kept in buckets of {@link #getGranularity() granularity} milliseconds, ordered by time.  Updating a
+ * session whose expiry time stays within the same bucket, i.e. most updates of frequently accessed sessions, only
+ * costs a single concurrent map lookup; moving it to another bucket takes a short lock.  Stopped and otherwise
+ * invalid {@link ValidatingSession}s are indexed as expiring immediately, sessions without a timeout are not indexed.
+ * <p/>
+ * The index only knows about the changes it is told about via {@link #update(Session)}.  Since a session's expiry
+ * time only moves forward when it is accessed, an index entry is at worst too early, which merely causes the session
+ * to be checked, and then re-indexed, earlier than necessary.  Changes that make a session expire earlier, such as
+ * stopping it or reducing its timeout, must be followed by an {@code update}.
+ *
+ * @since 1.1
+ */
+public class SessionExpiryIndex {
+
+    /**
+     * The default bucket granularity, 1 minute.
+     */
+    public static final long DEFAULT_GRANULARITY = 60 * 1000;
+
+    private final long granularity;
+
+    /**
+     * The bucket of each indexed session id.
+     */
+    private final ConcurrentMap<Serializable, Long> bucketsById;
+
+    /**
+     * The session ids of each bucket, guarded by the {@code lock}.
+     */
+    private final SortedMap<Long, Set<Serializable>> buckets;
+    private final ReentrantLock lock;
+
+    public SessionExpiryIndex() {
+        this(DEFAULT_GRANULARITY);
+    }
+
+    public SessionExpiryIndex(long granularity) {
+        if (granularity <= 0) {
+            throw new IllegalArgumentException("granularity must be positive.");
+        }
+        this.granularity = granularity;
+        this.bucketsById = new ConcurrentHashMap<Serializable, Long>();
+        this.buckets = new TreeMap<Long, Set<Serializable>>();
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * Returns the number of milliseconds of expiry times grouped together in a single bucket.
+     *
+     * @return the number of milliseconds of expiry times grouped together in a single bucket.
+     */
+    public long getGranularity() {
+        return granularity;
+    }
+
+    /**
+     * Returns the time in milliseconds since the epoch at which the specified session expires if it is not accessed
+     * until then, {@code 0} if it is already invalid, or {@link Long#MAX_VALUE} if it does not expire.
+     *
+     * @param session the session to return the expiry time of.
+     * @return the time at which the specified session expires if it is not accessed until then.
+     */
+    public static long getExpiryTime(Session session) {
+        if (session instanceof ValidatingSession && !((ValidatingSession) session).isValid()) {
+            return 0;
+        }
+        long timeout = session.getTimeout();
+        Date lastAccessTime = session.getLastAccessTime();
+        if (timeout < 0 || lastAccessTime == null) {
+            return Long.MAX_VALUE;
+        }
+        return lastAccessTime.getTime() + timeout;
+    }
+
+    /**
+     * Indexes the specified session by its current expiry time, replacing any earlier entry.
+     *
+     * @param session the session to index.
+     */
+    public void update(Session session) {
+        Serializable id = session.getId();
+        if (id == null) {
+            return;
+        }
+        long expiryTime = getExpiryTime(session);
+        if (expiryTime == Long.MAX_VALUE) {
+            remove(id);
+            return;
+        }
+        Long bucket = expiryTime / granularity;
+        if (bucket.equals(bucketsById.get(id))) {
+            return;
+        }
+        lock.lock();
+        try {
+            Long previous = bucketsById.put(id, bucket);
+            if (previous != null) {
+                removeFromBucket(previous, id);
+            }
+            Set<Serializable> ids = buckets.get(bucket);
+            if (ids == null) {
+                ids = new HashSet<Serializable>();
+                buckets.put(bucket, ids);
+            }
+            ids.add(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the session with the specified id from the index.
+     *
+     * @param id the id of the session to remove.
+     */
+    public void remove(Serializable id) {
+        if (!bucketsById.containsKey(id)) {
+            return;
+        }
+        lock.lock();
+        try {
+            Long previous = bucketsById.remove(id);
+            if (previous != null) {
+                removeFromBucket(previous, id);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeFromBucket(Long bucket, Serializable id) {
+        Set<Serializable> ids = buckets.get(bucket);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            buckets.remove(bucket);
+        }
+    }
+
+    /**
+     * Returns the ids of all sessions indexed as expiring at or before the specified time, plus those expiring
+     * within the same {@link #getGranularity() granularity} as that time.
+     *
+     * @param time the time in milliseconds since the epoch.
+     * @return the ids of the sessions that may have expired at the specified time.
+     */
+    public List<Serializable> getPossiblyExpired(long time) {
+        lock.lock();
+        try {
+            List<Serializable> ids = new ArrayList<Serializable>();
+            for (Set<Serializable> bucket : buckets.headMap(time / granularity + 1).values()) {
+                ids.addAll(bucket);
+            }
+            return ids;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of indexed sessions.
+     *
+     * @return the number of indexed sessions.
+     */
+    public int size() {
+        return bucketsById.size();
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            bucketsById.clear();
+            buckets.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.SessionDelta;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Memory-based SessionDAO that stripes its sessions over a number of shards, each a {@link MemorySessionDAO} with
+ * its own map and its own {@link SessionExpiryIndex expiry index}, selected by the hash of the session id.
+ * <p/>
+ * Each shard is a {@link PartitionedSessionDAO partition}:  a {@link org.apache.shiro.session.mgt.DefaultSessionManager
+ * DefaultSessionManager} collects and validates the sessions of one shard at a time, and its
+ * {@link org.apache.shiro.session.mgt.AbstractValidatingSessionManager#setSessionValidationThreads(int) validation
+ * threads} work on different shards in parallel, so that validation never locks or walks all sessions at once and
+ * the expiry indexes of other shards remain free for creating and updating sessions.  The
+ * {@link #getActiveSessions() active sessions} are a view over all shards that visits them one after the other.
+ * <p/>
+ * The {@link #setShardCount(int) shardCount} defaults to twice the number of processors.  Like the
+ * {@code MemorySessionDAO}, this implementation is limited by the memory available to the JVM.
+ *
+ * @since 1.1
+ */
+public class ShardedMemorySessionDAO extends AbstractSessionDAO
+        implements PartitionedSessionDAO, ExpiryIndexedSessionDAO, DeltaSessionDAO {
+
+    private MemorySessionDAO[] shards;
+    private int mask;
+
+    public ShardedMemorySessionDAO() {
+        this(2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public ShardedMemorySessionDAO(int shardCount) {
+        createShards(shardCount);
+    }
+
+    private void createShards(int shardCount) {
+        int count = 1;
+        while (count < shardCount) {
+            count <<= 1;
+        }
+        MemorySessionDAO[] shards = new MemorySessionDAO[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new MemorySessionDAO();
+        }
+        this.shards = shards;
+        this.mask = count - 1;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Sets the number of shards, rounded up to a power of two.  May only be set while there are no sessions.
+     *
+     * @param shardCount the number of shards.
+     * @throws IllegalStateException if there are sessions already.
+     */
+    public void setShardCount(int shardCount) {
+        if (!getActiveSessions().isEmpty()) {
+            throw new IllegalStateException("The shardCount cannot be changed once sessions exist.");
+        }
+        createShards(shardCount);
+    }
+
+    private MemorySessionDAO shard(Serializable id) {
+        int h = id.hashCode();
+        //spread the bits, as the shards are selected by the lowest ones:
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return shards[h & mask];
+    }
+
+    private MemorySessionDAO shard(int partition) {
+        if (partition < 0 || partition >= shards.length) {
+            String msg = "Partition must be between 0 and " + (shards.length - 1) + ", was " + partition + ".";
+            throw new IllegalArgumentException(msg);
+        }
+        return shards[partition];
+    }
+
+    protected Serializable doCreate(Session session) {
+        Serializable sessionId = generateSessionId(session);
+        assignSessionId(session, sessionId);
+        shard(sessionId).storeSession(sessionId, session);
+        return sessionId;
+    }
+
+    protected Session doReadSession(Serializable sessionId) {
+        return shard(sessionId).doReadSession(sessionId);
+    }
+
+    public void update(Session session) throws UnknownSessionException {
+        shard(session.getId()).update(session);
+    }
+
+    public void update(Session session, SessionDelta delta) throws UnknownSessionException {
+        update(session);
+    }
+
+    public void delete(Session session) {
+        if (session == null) {
+            throw new NullPointerException("session argument cannot be null.");
+        }
+        Serializable id = session.getId();
+        if (id != null) {
+            shard(id).delete(session);
+        }
+    }
+
+    public int getPartitionCount() {
+        return shards.length;
+    }
+
+    public Collection<Session> getActiveSessions(int partition) {
+        return shard(partition).getActiveSessions();
+    }
+
+    public Collection<Session> getPossiblyExpiredSessions(int partition, long time) {
+        return shard(partition).getPossiblyExpiredSessions(time);
+    }
+
+    /**
+     * Returns a view of the active sessions of all shards, visiting the shards one after the other.
+     *
+     * @return a view of the active sessions of all shards.
+     */
+    public Collection<Session> getActiveSessions() {
+        return new AbstractCollection<Session>() {
+            public Iterator<Session> iterator() {
+                return new Iterator<Session>() {
+                    private int next;
+                    private Iterator<Session> current = Collections.<Session>emptySet().iterator();
+
+                    public boolean hasNext() {
+                        while (!current.hasNext() && next < shards.length) {
+                            current = shards[next++].getActiveSessions().iterator();
+                        }
+                        return current.hasNext();
+                    }
+
+                    public Session next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return current.next();
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            public int size() {
+                int size = 0;
+                for (MemorySessionDAO shard : shards) {
+                    size += shard.getActiveSessions().size();
+                }
+                return size;
+            }
+        };
+    }
+
+    public Collection<Session> getPossiblyExpiredSessions(long time) {
+        List<Session> possiblyExpired = new ArrayList<Session>();
+        for (MemorySessionDAO shard : shards) {
+            possiblyExpired.addAll(shard.getPossiblyExpiredSessions(time));
+        }
+        return possiblyExpired;
+    }
+}
@@ -22,6 +22,8 @@ import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.authc.HostAuthenticationToken;
 import org.apache.shiro.authz.AuthorizationException;
+import org.apache.shiro.authz.AuthorizerUtils;
+import org.apache.shiro.authz.BulkAuthorizer;
 import org.apache.shiro.authz.Permission;
 import org.apache.shiro.authz.UnauthenticatedException;
 import org.apache.shiro.mgt.SecurityManager;
@@ -179,6 +181,27 @@ public class DelegatingSubject implements Subject, Serializable {
         return hasPrincipals() && securityManager.isPermittedAll(getPrincipals(), permissions);
     }
 
+    /**
+     * Returns the subset of the given instance ids for which this Subject is permitted to perform the specified
+     * action in the specified domain, i.e. each id {@code id} for which
+     * {@link #isPermitted(String) isPermitted(domain + ":" + action + ":" + id)} would return {@code true}, in the
+     * iteration order of the given collection.  If the {@code SecurityManager} is a
+     * {@link BulkAuthorizer BulkAuthorizer}, all ids are checked in a single call.
+     *
+     * @param domain      the permission domain, e.g. {@code document}.
+     * @param action      the action to perform on each instance, e.g. {@code read}.
+     * @param instanceIds the ids of the instances to filter.
+     * @return the permitted ids, in the iteration order of {@code instanceIds}.
+     * @since 1.1
+     */
+    public <T> List<T> filterPermitted(String domain, String action, Collection<T> instanceIds) {
+        if (hasPrincipals()) {
+            return AuthorizerUtils.filterPermitted(securityManager, getPrincipals(), domain, action, instanceIds);
+        } else {
+            return new ArrayList<T>();
+        }
+    }
+
     protected void assertAuthzCheckPossible() throws AuthorizationException {
         if (!hasPrincipals()) {
             String msg = "This subject is anonymous - it does not have any identifying principals and " +
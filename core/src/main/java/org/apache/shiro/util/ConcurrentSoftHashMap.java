@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrent variant of the {@link SoftHashMap SoftHashMap} for maps that are read by many threads at once.
+ * Like the {@code SoftHashMap}, it stores its values in {@link SoftReference SoftReference}s and keeps the most
+ * recently used values strongly referenced, but none of its read operations lock:
+ * <ul>
+ * <li>Entries are held in a {@link ConcurrentHashMap ConcurrentHashMap}.</li>
+ * <li>Strongly referenced values are kept in a set of ring buffers, one stripe per group of threads, rather than in
+ * a single lock-guarded queue.  Retaining a value is a single slot write into the current thread's stripe, which
+ * overwrites the least recently retained value of that stripe.</li>
+ * <li>Entries whose values were garbage collected are removed from the map in batches by whichever writing thread
+ * acquires the drain lock without waiting; other threads simply skip draining.  Reads only remove the entry they
+ * find cleared.</li>
+ * </ul>
+ * As with the {@code SoftHashMap}, the retention size is a best-effort low water mark:  values retained by threads
+ * mapped to the same stripe may displace each other a little earlier than in strict access order.
+ *
+ * @since 1.1
+ */
+public class ConcurrentSoftHashMap<K, V> implements Map<K, V> {
+
+    /**
+     * The default value of the retention size, equal to 100.
+     */
+    private static final int DEFAULT_RETENTION_SIZE = 100;
+
+    /**
+     * Distance between the cursors of two stripes in the cursor array, so that they do not share a cache line.
+     */
+    private static final int CURSOR_PADDING = 16;
+
+    private final ConcurrentMap<K, SoftValue<V, K>> map;
+
+    /**
+     * Ring buffers of strongly referenced values, {@code stripeSize} slots per stripe.
+     */
+    private final AtomicReferenceArray<V> strongReferences;
+    private final AtomicIntegerArray cursors;
+    private final int stripeMask;
+    private final int stripeSize;
+
+    /**
+     * Reference queue for cleared SoftReference objects.
+     */
+    private final ReferenceQueue<? super V> queue;
+    private final ReentrantLock drainLock;
+
+    /**
+     * Creates a new ConcurrentSoftHashMap with a default retention size of 100 entries.
+     */
+    public ConcurrentSoftHashMap() {
+        this(DEFAULT_RETENTION_SIZE);
+    }
+
+    /**
+     * Creates a new ConcurrentSoftHashMap with the specified retention size, i.e. the approximate number of most
+     * recently used values that will be strongly referenced to prevent them from being eagerly garbage collected.
+     *
+     * @param retentionSize the approximate number of most recently used values that will be strongly referenced.
+     */
+    public ConcurrentSoftHashMap(int retentionSize) {
+        this.map = new ConcurrentHashMap<K, SoftValue<V, K>>();
+        this.queue = new ReferenceQueue<V>();
+        this.drainLock = new ReentrantLock();
+
+        retentionSize = Math.max(0, retentionSize);
+        int stripes = 1;
+        //one stripe per processor, but keep at least 8 slots per stripe:
+        while (stripes < Runtime.getRuntime().availableProcessors() && stripes * 2 * 8 <= retentionSize) {
+            stripes *= 2;
+        }
+        this.stripeMask = stripes - 1;
+        this.stripeSize = retentionSize > 0 ? (retentionSize + stripes - 1) / stripes : 0;
+        this.strongReferences = new AtomicReferenceArray<V>(stripes * stripeSize);
+        this.cursors = new AtomicIntegerArray(stripes * CURSOR_PADDING);
+    }
+
+    /**
+     * Creates a {@code ConcurrentSoftHashMap} populated with the entries of the specified {@code source}, with a
+     * default retention size of 100 entries.
+     *
+     * @param source the map whose entries will populate this {@code ConcurrentSoftHashMap}
+     */
+    public ConcurrentSoftHashMap(Map<K, V> source) {
+        this(DEFAULT_RETENTION_SIZE);
+        putAll(source);
+    }
+
+    private void retain(V value) {
+        if (stripeSize == 0) {
+            return;
+        }
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        int cursor = cursors.getAndIncrement(stripe * CURSOR_PADDING) & Integer.MAX_VALUE;
+        strongReferences.set(stripe * stripeSize + cursor % stripeSize, value);
+    }
+
+    /**
+     * Removes the entries of garbage-collected values from the backing map, unless another thread is already doing
+     * so, in which case this method returns immediately.
+     */
+    private void processQueue() {
+        if (!drainLock.tryLock()) {
+            return;
+        }
+        try {
+            SoftValue sv;
+            while ((sv = (SoftValue) queue.poll()) != null) {
+                //only remove the entry if it wasn't replaced in the meantime:
+                //noinspection unchecked
+                map.remove(sv.key, sv);
+            }
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    public V get(Object key) {
+        SoftValue<V, K> value = map.get(key);
+        if (value == null) {
+            return null;
+        }
+        V result = value.get();
+        if (result == null) {
+            //The wrapped value was garbage collected, so remove this entry from the backing map:
+            map.remove(key, value);
+        } else {
+            retain(result);
+        }
+        return result;
+    }
+
+    public V put(K key, V value) {
+        processQueue();
+        SoftValue<V, K> previous = map.put(key, new SoftValue<V, K>(value, key, queue));
+        retain(value);
+        return previous != null ? previous.get() : null;
+    }
+
+    public void putAll(Map<? extends K, ? extends V> m) {
+        if (m == null || m.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<? extends K, ? extends V> entry : m.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public V remove(Object key) {
+        processQueue();
+        SoftValue<V, K> raw = map.remove(key);
+        return raw != null ? raw.get() : null;
+    }
+
+    public void clear() {
+        for (int i = 0; i < strongReferences.length(); i++) {
+            strongReferences.set(i, null);
+        }
+        processQueue();
+        map.clear();
+    }
+
+    public int size() {
+        processQueue();
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        processQueue();
+        return map.isEmpty();
+    }
+
+    public boolean containsKey(Object key) {
+        SoftValue<V, K> value = map.get(key);
+        return value != null && value.get() != null;
+    }
+
+    public boolean containsValue(Object value) {
+        for (SoftValue<V, K> sv : map.values()) {
+            V v = sv.get();
+            if (v != null && v.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Set<K> keySet() {
+        processQueue();
+        return map.keySet();
+    }
+
+    public Collection<V> values() {
+        processQueue();
+        if (map.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Collection<V> values = new ArrayList<V>(map.size());
+        for (SoftValue<V, K> sv : map.values()) {
+            V v = sv.get();
+            if (v != null) {
+                values.add(v);
+            }
+        }
+        return values;
+    }
+
+    public Set<Map.Entry<K, V>> entrySet() {
+        processQueue();
+        if (map.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Map<K, V> kvPairs = new HashMap<K, V>(map.size());
+        for (Map.Entry<K, SoftValue<V, K>> entry : map.entrySet()) {
+            V v = entry.getValue().get();
+            if (v != null) {
+                kvPairs.put(entry.getKey(), v);
+            }
+        }
+        return kvPairs.entrySet();
+    }
+
+    /**
+     * SoftReference to a map value that also holds the key, to find the entry in the map after the value has been
+     * garbage collected.
+     */
+    private static class SoftValue<V, K> extends SoftReference<V> {
+
+        private final K key;
+
+        private SoftValue(V value, K key, ReferenceQueue<? super V> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+}
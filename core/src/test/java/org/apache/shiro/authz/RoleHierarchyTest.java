@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authz;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @since 1.1
+ */
+public class RoleHierarchyTest {
+
+    private RoleHierarchy hierarchy;
+
+    @Before
+    public void setUp() {
+        Map<String, Object> graph = new LinkedHashMap<String, Object>();
+        graph.put("admin", Arrays.asList("manager", "auditor"));
+        graph.put("manager", "user");
+        graph.put("user", "guest");
+        hierarchy = new RoleHierarchy(graph);
+    }
+
+    private static Set<String> roles(String... names) {
+        return new HashSet<String>(Arrays.asList(names));
+    }
+
+    @Test
+    public void testTransitiveRoles() {
+        Set<String> admin = roles("admin");
+        assertTrue(hierarchy.hasRole(admin, "admin"));
+        assertTrue(hierarchy.hasRole(admin, "manager"));
+        assertTrue(hierarchy.hasRole(admin, "guest"));
+        assertTrue(hierarchy.hasRole(admin, "auditor"));
+        assertFalse(hierarchy.hasRole(roles("manager"), "auditor"));
+        assertFalse(hierarchy.hasRole(roles("user"), "manager"));
+        assertTrue(hierarchy.hasAllRoles(admin, Arrays.asList("user", "auditor", "guest")));
+        assertFalse(hierarchy.hasAllRoles(roles("manager"), Arrays.asList("user", "auditor")));
+
+        boolean[] result = hierarchy.hasRoles(roles("manager"), Arrays.asList("admin", "user", "guest"));
+        assertFalse(result[0]);
+        assertTrue(result[1]);
+        assertTrue(result[2]);
+    }
+
+    @Test
+    public void testRolesOutsideHierarchy() {
+        Set<String> assigned = roles("user", "standalone");
+        assertTrue(hierarchy.hasRole(assigned, "standalone"));
+        assertTrue(hierarchy.hasRole(assigned, "guest"));
+        assertFalse(hierarchy.hasRole(assigned, "unknown"));
+        assertEquals(roles("user", "standalone", "guest"), hierarchy.getEffectiveRoles(assigned));
+    }
+
+    @Test
+    public void testManyRoleCombinations() {
+        //more distinct combinations than are memoized, with the most recent ones still answered correctly:
+        for (int i = 0; i < 3000; i++) {
+            Set<String> assigned = roles("user", "standalone" + i);
+            assertTrue(hierarchy.hasRole(assigned, "guest"));
+            assertTrue(hierarchy.hasRole(assigned, "standalone" + i));
+            assertFalse(hierarchy.hasRole(assigned, "manager"));
+        }
+        assertTrue(hierarchy.hasRole(roles("user", "standalone0"), "standalone0"));
+        assertFalse(hierarchy.hasRole(roles("user", "standalone0"), "standalone1"));
+    }
+
+    @Test
+    public void testCycle() {
+        Map<String, Object> graph = new HashMap<String, Object>();
+        graph.put("a", "b");
+        graph.put("b", "c");
+        graph.put("c", "a");
+        hierarchy.setInheritedRoles(graph);
+        assertTrue(hierarchy.hasAllRoles(roles("c"), Arrays.asList("a", "b", "c")));
+        assertEquals(roles("a", "b", "c"), hierarchy.getInheritingRoles("b"));
+    }
+
+    @Test
+    public void testReload() {
+        assertTrue(hierarchy.hasRole(roles("admin"), "guest"));
+        assertEquals(roles("guest", "user", "manager", "admin"), hierarchy.getInheritingRoles("guest"));
+
+        hierarchy.setInheritedRoles(Collections.singletonMap("admin", "guest"));
+        assertTrue(hierarchy.hasRole(roles("admin"), "guest"));
+        assertFalse(hierarchy.hasRole(roles("admin"), "manager"));
+        assertEquals(roles("guest", "admin"), hierarchy.getInheritingRoles("guest"));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authz.permission;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @since 1.1
+ */
+public class DomainPermissionTest {
+
+    public static class PrinterPermission extends DomainPermission {
+        public PrinterPermission() {
+        }
+
+        public PrinterPermission(String actions) {
+            super(actions);
+        }
+
+        public PrinterPermission(String actions, String targets) {
+            super(actions, targets);
+        }
+    }
+
+    private static final String[][] VALUES = {
+            {null, null}, {"print", null}, {"Print,Query", null}, {"*", null}, {null, "lp1"}, {"print", "lp1,LP2"},
+            {"print", "*"}, {"*", "lp1"}, {"print,query", "lp1"}, {"print", ""}, {"", "lp1"}, {" print", "lp1"},
+            {"print", "lp1:tray2"}, {"print,,query", "lp1"}
+    };
+
+    private static PrinterPermission domainPermission(String[] value) {
+        if (value[0] == null && value[1] == null) {
+            return new PrinterPermission();
+        }
+        return value[1] == null ? new PrinterPermission(value[0]) : new PrinterPermission(value[0], value[1]);
+    }
+
+    private static WildcardPermission wildcardPermission(String[] value) {
+        StringBuilder sb = new StringBuilder("printer");
+        if (value[0] == null || value[0].trim().length() == 0) {
+            if (value[1] != null && value[1].trim().length() > 0) {
+                sb.append(":*");
+            }
+        } else {
+            sb.append(':').append(value[0]);
+        }
+        if (value[1] != null) {
+            sb.append(':').append(value[1]);
+        }
+        return new WildcardPermission(sb.toString());
+    }
+
+    @Test
+    public void testWildcardEquivalence() {
+        for (String[] a : VALUES) {
+            PrinterPermission typedA = domainPermission(a);
+            WildcardPermission wildcardA = wildcardPermission(a);
+            assertEquals(wildcardA, typedA);
+            assertEquals(wildcardA.hashCode(), typedA.hashCode());
+            assertEquals(wildcardA.toString(), typedA.toString());
+            for (String[] b : VALUES) {
+                PrinterPermission typedB = domainPermission(b);
+                WildcardPermission wildcardB = wildcardPermission(b);
+                boolean expected = wildcardA.implies(wildcardB);
+                String msg = typedA + " implies " + typedB;
+                assertEquals(msg, expected, typedA.implies(typedB));
+                assertEquals(msg, expected, typedA.implies(wildcardB));
+                assertEquals(msg, expected, wildcardA.implies(typedB));
+            }
+        }
+    }
+
+    @Test
+    public void testProperties() {
+        PrinterPermission p = new PrinterPermission("print", "lp1");
+        assertEquals("printer", p.getDomain());
+        assertEquals("print", p.getActions());
+        assertEquals("lp1", p.getTargets());
+        assertTrue(new PrinterPermission().implies(p));
+        assertFalse(p.implies(new PrinterPermission("print")));
+        assertFalse(p.implies(new WildcardPermission("scanner:print:lp1")));
+    }
+}
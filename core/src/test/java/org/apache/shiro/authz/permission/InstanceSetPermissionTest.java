@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authz.permission;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * @since 1.1
+ */
+public class InstanceSetPermissionTest {
+
+    private static int[] range(int from, int to, int step) {
+        int[] ids = new int[(to - from) / step];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = from + i * step;
+        }
+        return ids;
+    }
+
+    private void assertWildcardEquivalent(InstanceSetPermission p) {
+        assertTrue(p.implies(new WildcardPermission("invoice:view:100")));
+        assertTrue(p.implies(new WildcardPermission("invoice:view:100:line7")));
+        assertTrue(p.implies(new WildcardPermission("INVOICE:View:100,200")));
+        assertFalse(p.implies(new WildcardPermission("invoice:view:99")));
+        assertFalse(p.implies(new WildcardPermission("invoice:view:100,99")));
+        assertFalse(p.implies(new WildcardPermission("invoice:view:*")));
+        assertFalse(p.implies(new WildcardPermission("invoice:view")));
+        assertFalse(p.implies(new WildcardPermission("invoice:edit:100")));
+        assertFalse(p.implies(new WildcardPermission("order:view:100")));
+        assertFalse(p.implies(new WildcardPermission("invoice:view:0100")));
+    }
+
+    @Test
+    public void testDenseIds() {
+        InstanceSetPermission p = new InstanceSetPermission("invoice", "view", range(100, 100000, 2));
+        assertEquals(49950, p.getIdCount());
+        assertTrue(p.containsId(99998));
+        assertFalse(p.containsId(99999));
+        assertWildcardEquivalent(p);
+    }
+
+    @Test
+    public void testClusteredIds() {
+        int[] ids = new int[4000];
+        System.arraycopy(range(100, 2100, 1), 0, ids, 0, 2000);
+        System.arraycopy(range(1000000, 1002000, 1), 0, ids, 2000, 2000);
+        InstanceSetPermission p = new InstanceSetPermission("invoice", "view,print", ids);
+        assertTrue(p.containsId(1001999));
+        assertFalse(p.containsId(1002000));
+        assertFalse(p.containsId(5000));
+        assertWildcardEquivalent(p);
+        assertTrue(p.implies(new WildcardPermission("invoice:view,print:1000000")));
+    }
+
+    @Test
+    public void testSparseIds() {
+        int[] sparse = range(100, 100000000, 997);
+        int[] ids = new int[sparse.length + 1];
+        System.arraycopy(sparse, 0, ids, 0, sparse.length);
+        ids[sparse.length] = 200;
+        InstanceSetPermission p = new InstanceSetPermission("invoice", "view,delete", ids);
+        assertTrue(p.containsId(100 + 997 * 1000));
+        assertFalse(p.containsId(101));
+        assertWildcardEquivalent(p);
+        assertTrue(p.implies(new WildcardPermission("invoice:delete:100")));
+    }
+
+    @Test
+    public void testStringIds() {
+        InstanceSetPermission p = new InstanceSetPermission("invoice", "view", Arrays.asList("100", "200", "ABC-1"));
+        assertTrue(p.containsId("abc-1"));
+        assertTrue(p.implies(new WildcardPermission("invoice:view:abc-1")));
+        assertWildcardEquivalent(p);
+    }
+
+    @Test
+    public void testImpliesInstanceSetPermission() {
+        InstanceSetPermission all = new InstanceSetPermission("invoice", "view,edit", range(0, 1000, 1));
+        InstanceSetPermission some = new InstanceSetPermission("invoice", "view", Arrays.asList("5", "10"));
+        assertTrue(all.implies(some));
+        assertFalse(some.implies(all));
+        assertTrue(all.implies(new InstanceSetPermission("invoice", "edit", range(0, 1000, 10))));
+        assertFalse(all.implies(new InstanceSetPermission("invoice", "edit", Arrays.asList("5", "x"))));
+        assertEquals(some, new InstanceSetPermission("invoice", "VIEW", new int[]{10, 5, 5}));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import org.apache.shiro.util.ConcurrentSoftHashMap;
+import org.apache.shiro.util.SoftHashMap;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-alone benchmark comparing the {@link LruCache} with {@link SoftHashMap} and {@link ConcurrentSoftHashMap}
+ * backed {@link MapCache}s under a multi-threaded, zipfian distributed read-through load.  Not run as part of the
+ * build; run its {@code main} method with the test classpath, optionally passing the number of threads, keys, cache
+ * size and operations per thread.
+ *
+ * @since 1.1
+ */
+public class LruCacheBenchmark {
+
+    private final int threads;
+    private final int operations;
+    private final int[] samples;
+
+    public LruCacheBenchmark(int threads, int keyCount, int operations) {
+        this.threads = threads;
+        this.operations = operations;
+        this.samples = zipfianSamples(keyCount, 1 << 20, 0.99, new Random(42));
+    }
+
+    private static int[] zipfianSamples(int keyCount, int count, double skew, Random random) {
+        double[] cumulative = new double[keyCount];
+        double sum = 0;
+        for (int i = 0; i < keyCount; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cumulative[i] = sum;
+        }
+        int[] samples = new int[count];
+        for (int i = 0; i < count; i++) {
+            double r = random.nextDouble() * sum;
+            int low = 0;
+            int high = keyCount - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < r) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            samples[i] = low;
+        }
+        return samples;
+    }
+
+    public void run(final Cache<Integer, Object> cache) throws InterruptedException {
+        final AtomicLong hits = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final int offset = t * 7919;
+            new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        long localHits = 0;
+                        for (int i = 0; i < operations; i++) {
+                            Integer key = samples[(offset + i) & (samples.length - 1)];
+                            if (cache.get(key) != null) {
+                                localHits++;
+                            } else {
+                                //simulate loading e.g. an AuthorizationInfo:
+                                cache.put(key, new byte[256]);
+                            }
+                        }
+                        hits.addAndGet(localHits);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        long total = (long) threads * operations;
+        System.out.printf("%-60s %,12d ops/s  hit ratio %.3f  size %,d%n", cache,
+                total * 1000000000L / Math.max(1, elapsed), (double) hits.get() / total, cache.size());
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int keys = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+        int operations = args.length > 3 ? Integer.parseInt(args[3]) : 2000000;
+
+        LruCacheBenchmark benchmark = new LruCacheBenchmark(threads, keys, operations);
+        for (int round = 0; round < 3; round++) {
+            //SoftHashMap is only thread-safe for single operations, as used by MemoryConstrainedCacheManager:
+            benchmark.run(new MapCache<Integer, Object>("softHashMap", new SoftHashMap<Integer, Object>()));
+            benchmark.run(new MapCache<Integer, Object>("concurrentSoftHashMap",
+                    new ConcurrentSoftHashMap<Integer, Object>()));
+            benchmark.run(new LruCache<Integer, Object>("lru", size));
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import org.apache.shiro.config.ReflectionBuilder;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @since 1.1
+ */
+public class LruCacheTest {
+
+    private static class ClockedLruCache extends LruCache<String, String> {
+        private long now = 1000;
+
+        private ClockedLruCache(int maxEntries, long timeToLive, long timeToIdle) {
+            super("test", maxEntries, timeToLive, timeToIdle);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        LruCache<Integer, Integer> cache = new LruCache<Integer, Integer>("test", 4);
+        for (int i = 0; i < 4; i++) {
+            cache.put(i, i);
+        }
+        assertEquals(Integer.valueOf(0), cache.get(0));
+        cache.put(4, 4);
+        assertEquals(4, cache.size());
+        assertNull(cache.get(1));
+        assertEquals(Integer.valueOf(0), cache.get(0));
+        assertEquals(Integer.valueOf(4), cache.get(4));
+    }
+
+    @Test
+    public void testBoundedUnderManyKeys() {
+        LruCache<Integer, Integer> cache = new LruCache<Integer, Integer>("test", 1000);
+        for (int i = 0; i < 100000; i++) {
+            cache.put(i, i);
+        }
+        assertTrue(cache.size() <= 1000);
+        assertEquals(cache.size(), cache.keys().size());
+        assertEquals(Integer.valueOf(99999), cache.get(99999));
+    }
+
+    @Test
+    public void testTimeToLive() {
+        ClockedLruCache cache = new ClockedLruCache(10, 100, 0);
+        cache.put("a", "1");
+        cache.now += 60;
+        assertEquals("1", cache.get("a"));
+        cache.now += 40;
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testTimeToLivePurgesRecentlyUsedEntries() {
+        //a single segment holding 4 entries:
+        ClockedLruCache cache = new ClockedLruCache(4, 100, 0);
+        cache.put("a", "1");
+        cache.now += 50;
+        cache.put("b", "2");
+        //"a" is the most recently used entry now, behind "b", which doesn't expire for another 50 ms:
+        assertEquals("1", cache.get("a"));
+        cache.now += 60;
+        cache.put("c", "3");
+        assertEquals(3, cache.size());
+        //"a" expired by time to live is removed at the latest after the segment's capacity of puts:
+        cache.put("d", "4");
+        assertEquals(3, cache.size());
+        assertFalse(cache.keys().contains("a"));
+        assertEquals("2", cache.get("b"));
+    }
+
+    @Test
+    public void testTimeToIdle() {
+        ClockedLruCache cache = new ClockedLruCache(10, 0, 100);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.now += 60;
+        assertEquals("1", cache.get("a"));
+        cache.now += 60;
+        assertEquals("1", cache.get("a"));
+        assertTrue(cache.values().contains("1"));
+        assertFalse(cache.keys().contains("b"));
+        //adding an entry purges idle entries:
+        cache.put("c", "3");
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testStatistics() {
+        LruCacheManager cacheManager = new LruCacheManager();
+        cacheManager.setMaxEntries(4);
+        InstrumentedCache<Integer, Integer> cache =
+                (InstrumentedCache<Integer, Integer>) cacheManager.<Integer, Integer>getCache("test");
+        for (int i = 0; i < 6; i++) {
+            if (cache.get(i) == null) {
+                cache.recordLoad(5);
+                cache.put(i, i);
+            }
+        }
+        cache.get(5);
+
+        CacheStatistics statistics = cacheManager.getCacheStatistics().get("test");
+        assertSame(cache.getStatistics(), statistics);
+        assertEquals(1, statistics.getHitCount());
+        assertEquals(6, statistics.getMissCount());
+        assertEquals(6, statistics.getPutCount());
+        assertEquals(2, statistics.getEvictionCount());
+        assertEquals(6, statistics.getLoadCount());
+        assertEquals(30, statistics.getTotalLoadTime());
+        assertEquals(4, statistics.getSize());
+        assertEquals(1 / 7.0, statistics.getHitRatio(), 0.0001);
+    }
+
+    private void assertBulkOperations(Cache<Integer, String> cache) {
+        Map<Integer, String> entries = new HashMap<Integer, String>();
+        for (int i = 0; i < 100; i++) {
+            entries.put(i, "v" + i);
+        }
+        CacheUtils.putAll(cache, entries);
+        assertEquals(100, cache.size());
+        Map<Integer, String> values = CacheUtils.getAll(cache, Arrays.asList(1, 50, 99, 100));
+        assertEquals(3, values.size());
+        assertEquals("v50", values.get(50));
+        CacheUtils.removeAll(cache, Arrays.asList(1, 2, 3, 200));
+        assertEquals(97, cache.size());
+        assertNull(cache.get(2));
+    }
+
+    @Test
+    public void testBulkOperations() {
+        assertBulkOperations(new LruCache<Integer, String>("test", 1000));
+        assertBulkOperations(new MapCache<Integer, String>("test", new HashMap<Integer, String>()));
+        LruCache<Integer, String> bounded = new LruCache<Integer, String>("test", 64);
+        Map<Integer, String> entries = new HashMap<Integer, String>();
+        for (int i = 0; i < 1000; i++) {
+            entries.put(i, "v" + i);
+        }
+        bounded.putAll(entries);
+        assertTrue(bounded.size() <= 64);
+    }
+
+    @Test
+    public void testIniConfiguration() {
+        Map<String, String> defs = new LinkedHashMap<String, String>();
+        defs.put("cacheManager", LruCacheManager.class.getName());
+        defs.put("cacheManager.maxEntries", "500");
+        defs.put("cacheManager.timeToIdle", "60000");
+        defs.put("cacheManager.cacheMaxEntries", "big:100000");
+        defs.put("cacheManager.cacheTimeToLive", "big:3600000, short:1000");
+        LruCacheManager cacheManager = (LruCacheManager) new ReflectionBuilder().buildObjects(defs).get("cacheManager");
+
+        LruCache big = (LruCache) cacheManager.getCache("big");
+        assertEquals(100000, big.getMaxEntries());
+        assertEquals(3600000, big.getTimeToLive());
+        assertEquals(60000, big.getTimeToIdle());
+        LruCache other = (LruCache) cacheManager.getCache("other");
+        assertEquals(500, other.getMaxEntries());
+        assertEquals(0, other.getTimeToLive());
+        assertEquals(1000, ((LruCache) cacheManager.getCache("short")).getTimeToLive());
+    }
+
+    @Test
+    public void testIterators() {
+        LruCache<Integer, Integer> cache = new LruCache<Integer, Integer>("test", 1000);
+        for (int i = 0; i < 500; i++) {
+            cache.put(i, -i);
+        }
+        Set<Integer> keys = new HashSet<Integer>();
+        for (Iterator<Integer> it = cache.keyIterator(); it.hasNext();) {
+            Integer key = it.next();
+            keys.add(key);
+            //removal while iterating must not disturb the iteration:
+            cache.remove(key);
+        }
+        assertEquals(500, keys.size());
+        assertEquals(0, cache.size());
+        assertFalse(cache.valueIterator().hasNext());
+
+        cache.put(1, -1);
+        cache.put(2, -2);
+        Set<Integer> values = new HashSet<Integer>();
+        for (Integer value : CacheUtils.values(cache)) {
+            values.add(value);
+        }
+        assertEquals(new HashSet<Integer>(Arrays.asList(-1, -2)), values);
+        assertEquals(2, CacheUtils.values(cache).size());
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @since 1.1
+ */
+public class NearCacheManagerTest {
+
+    /**
+     * In-process stand-in for a distributed cache shared by several nodes: counts the reads reaching it and
+     * notifies every registered node of each change.
+     */
+    private static class RemoteCache extends MapCache<Object, Object>
+            implements InvalidationNotifyingCache<Object, Object> {
+
+        private final AtomicInteger reads = new AtomicInteger();
+        private volatile Runnable onRead;
+        private final CopyOnWriteArrayList<CacheInvalidationListener<Object>> listeners =
+                new CopyOnWriteArrayList<CacheInvalidationListener<Object>>();
+
+        private RemoteCache(String name) {
+            super(name, new ConcurrentHashMap<Object, Object>());
+        }
+
+        @Override
+        public Object get(Object key) throws CacheException {
+            reads.incrementAndGet();
+            Object value = super.get(key);
+            Runnable r = onRead;
+            if (r != null) {
+                onRead = null;
+                r.run();
+            }
+            return value;
+        }
+
+        @Override
+        public Object put(Object key, Object value) throws CacheException {
+            Object previous = super.put(key, value);
+            for (CacheInvalidationListener<Object> listener : listeners) {
+                listener.onInvalidate(key);
+            }
+            return previous;
+        }
+
+        @Override
+        public Object remove(Object key) throws CacheException {
+            Object previous = super.remove(key);
+            for (CacheInvalidationListener<Object> listener : listeners) {
+                listener.onInvalidate(key);
+            }
+            return previous;
+        }
+
+        @Override
+        public void clear() throws CacheException {
+            super.clear();
+            for (CacheInvalidationListener<Object> listener : listeners) {
+                listener.onClear();
+            }
+        }
+
+        public void addInvalidationListener(CacheInvalidationListener<Object> listener) {
+            listeners.add(listener);
+        }
+
+        public void removeInvalidationListener(CacheInvalidationListener<Object> listener) {
+            listeners.remove(listener);
+        }
+    }
+
+    private static class RemoteCacheManager implements CacheManager {
+        private final ConcurrentHashMap<String, RemoteCache> caches = new ConcurrentHashMap<String, RemoteCache>();
+
+        @SuppressWarnings({"unchecked"})
+        public <K, V> Cache<K, V> getCache(String name) throws CacheException {
+            caches.putIfAbsent(name, new RemoteCache(name));
+            return (Cache<K, V>) caches.get(name);
+        }
+    }
+
+    private RemoteCacheManager remote;
+    private NearCacheManager node1;
+    private NearCacheManager node2;
+
+    @Before
+    public void setUp() {
+        remote = new RemoteCacheManager();
+        node1 = new NearCacheManager(remote);
+        node2 = new NearCacheManager(remote);
+    }
+
+    private RemoteCache remoteCache() {
+        return (RemoteCache) remote.<Object, Object>getCache("test");
+    }
+
+    @Test
+    public void testLocalHitsAvoidRemoteReads() {
+        Cache<Object, Object> cache = node1.getCache("test");
+        assertTrue(cache instanceof NearCache);
+        cache.put("key", "value");
+        //the first read populates the local tier:
+        assertEquals("value", cache.get("key"));
+        int reads = remoteCache().reads.get();
+        for (int i = 0; i < 10; i++) {
+            assertEquals("value", cache.get("key"));
+        }
+        assertEquals(reads, remoteCache().reads.get());
+        assertEquals(10, ((NearCache) cache).getStatistics().getHitCount());
+    }
+
+    @Test
+    public void testWritesInvalidateOtherNodes() {
+        Cache<Object, Object> cache1 = node1.getCache("test");
+        Cache<Object, Object> cache2 = node2.getCache("test");
+        cache1.put("key", "v1");
+        assertEquals("v1", cache2.get("key"));
+        int reads = remoteCache().reads.get();
+        assertEquals("v1", cache2.get("key"));
+        assertEquals(reads, remoteCache().reads.get());
+
+        cache1.put("key", "v2");
+        assertEquals("v2", cache2.get("key"));
+        assertEquals("v2", cache1.get("key"));
+
+        cache2.remove("key");
+        assertNull(cache1.get("key"));
+
+        cache1.put("a", "a");
+        cache1.put("b", "b");
+        assertEquals("a", cache2.get("a"));
+        cache1.clear();
+        assertNull(cache2.get("a"));
+        assertEquals(0, cache2.size());
+    }
+
+    @Test
+    public void testInvalidationDuringRead() {
+        final Cache<Object, Object> cache1 = node1.getCache("test");
+        Cache<Object, Object> cache2 = node2.getCache("test");
+        cache1.put("key", "v1");
+
+        //a write of the same key while node 2 reads it must not leave a stale local copy:
+        remoteCache().onRead = new Runnable() {
+            public void run() {
+                cache1.put("key", "v2");
+            }
+        };
+        assertEquals("v1", cache2.get("key"));
+        assertEquals("v2", cache2.get("key"));
+
+        //writes of other keys do not prevent populating the local tier:
+        remoteCache().onRead = new Runnable() {
+            public void run() {
+                cache1.put("other", "value");
+            }
+        };
+        cache1.put("key", "v3");
+        assertEquals("v3", cache2.get("key"));
+        int reads = remoteCache().reads.get();
+        assertEquals("v3", cache2.get("key"));
+        assertEquals(reads, remoteCache().reads.get());
+    }
+
+    @Test
+    public void testDestroyUnregistersListeners() throws Exception {
+        node1.getCache("test");
+        node2.getCache("test");
+        assertEquals(2, remoteCache().listeners.size());
+        node1.destroy();
+        assertEquals(1, remoteCache().listeners.size());
+    }
+
+    @Test
+    public void testNonNotifyingCacheWithoutTimeToLiveIsNotWrapped() {
+        CacheManager plain = new MemoryConstrainedCacheManager();
+        NearCacheManager manager = new NearCacheManager(plain);
+        assertSame(plain.getCache("test"), manager.getCache("test"));
+        manager.setTimeToLive(1000);
+        assertTrue(manager.getCache("other") instanceof NearCache);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import org.apache.shiro.session.mgt.SimpleSession;
+
+import java.io.Serializable;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stand-alone benchmark comparing garbage collection pauses and read/update throughput of an on-heap
+ * {@link MapCache} and an {@link OffHeapCache} holding many sessions.  Not run as part of the build; run its
+ * {@code main} method with the test classpath and enough heap and direct memory (e.g. {@code -Xmx2g
+ * -XX:MaxDirectMemorySize=2g}), optionally passing the number of sessions and operations.
+ *
+ * @since 1.1
+ */
+public class OffHeapCacheBenchmark {
+
+    private final int sessions;
+    private final int operations;
+
+    public OffHeapCacheBenchmark(int sessions, int operations) {
+        this.sessions = sessions;
+        this.operations = operations;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static SimpleSession session(int id) {
+        SimpleSession session = new SimpleSession("10.0.0." + (id & 255));
+        session.setId(id);
+        session.setAttribute("userId", (long) id);
+        session.setAttribute("locale", "en_US");
+        session.setAttribute("csrfToken", Integer.toHexString(id * 31) + Integer.toHexString(id * 17));
+        return session;
+    }
+
+    public void run(Cache<Serializable, SimpleSession> cache) {
+        for (int i = 0; i < sessions; i++) {
+            cache.put(i, session(i));
+        }
+        //full collections trace every live object, so their pause grows with the on-heap session graphs:
+        long fullGcNanos = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long begin = System.nanoTime();
+            System.gc();
+            fullGcNanos = Math.min(fullGcNanos, System.nanoTime() - begin);
+        }
+
+        Random random = new Random(42);
+        long gcBefore = gcMillis();
+        long begin = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            Integer id = random.nextInt(sessions);
+            SimpleSession session = cache.get(id);
+            session.touch();
+            if ((i & 7) == 0) {
+                cache.put(id, session);
+            }
+            //request garbage, promoting some of it:
+            byte[][] garbage = new byte[16][];
+            for (int j = 0; j < garbage.length; j++) {
+                garbage[j] = new byte[128];
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+        System.out.printf("%-60s full GC %,6d ms  %,10d ops/s  GC time %,6d ms%n", cache,
+                fullGcNanos / 1000000, (long) operations * 1000000000L / Math.max(1, elapsed),
+                gcMillis() - gcBefore);
+        cache.clear();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+
+        OffHeapCacheBenchmark benchmark = new OffHeapCacheBenchmark(sessions, operations);
+        for (int round = 0; round < 2; round++) {
+            benchmark.run(new MapCache<Serializable, SimpleSession>("onHeap",
+                    new ConcurrentHashMap<Serializable, SimpleSession>()));
+            OffHeapCache<Serializable, SimpleSession> offHeap =
+                    new OffHeapCache<Serializable, SimpleSession>("offHeap", 1024L * sessions);
+            benchmark.run(offHeap);
+            offHeap.destroy();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import org.apache.shiro.io.DefaultSerializer;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @since 1.1
+ */
+public class OffHeapCacheTest {
+
+    private static String value(int length, char c) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static OffHeapCache<Integer, String> cache(long capacity) {
+        return new OffHeapCache<Integer, String>("test", capacity, 64, 256, new DefaultSerializer<String>());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        OffHeapCache<Integer, String> cache = cache(4096);
+        String large = value(300, 'x');
+        assertNull(cache.put(1, "one"));
+        assertNull(cache.put(2, large));
+        assertEquals("one", cache.get(1));
+        assertEquals(large, cache.get(2));
+        assertNotSame(cache.get(2), cache.get(2));
+        assertEquals("one", cache.put(1, "uno"));
+        assertEquals("uno", cache.get(1));
+        assertEquals(2, cache.size());
+        assertEquals("uno", cache.remove(1));
+        assertNull(cache.get(1));
+        assertEquals(1, cache.size());
+        assertEquals(3, cache.getStatistics().getPutCount());
+        assertEquals(1, cache.getStatistics().getMissCount());
+    }
+
+    @Test
+    public void testStoreAndDiscard() {
+        OffHeapCache<Integer, String> cache = cache(4096);
+        cache.store(1, "one");
+        cache.store(1, "uno");
+        assertEquals("uno", cache.get(1));
+        assertEquals(1, cache.size());
+        assertTrue(cache.discard(1));
+        assertFalse(cache.discard(1));
+        assertNull(cache.get(1));
+        assertEquals(0, cache.getUsedBytes());
+        assertEquals(2, cache.getStatistics().getPutCount());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        //16 blocks of 64 bytes, each value below needs 2 blocks:
+        OffHeapCache<Integer, String> cache = cache(1024);
+        for (int i = 0; i < 8; i++) {
+            cache.put(i, value(80, (char) ('a' + i)));
+        }
+        assertEquals(8, cache.size());
+        assertEquals(1024, cache.getUsedBytes());
+        assertNotNull(cache.get(0));
+        cache.put(8, value(80, 'z'));
+        assertEquals(8, cache.size());
+        assertNull(cache.get(1));
+        assertNotNull(cache.get(0));
+        assertEquals(1, cache.getStatistics().getEvictionCount());
+
+        //a value needing more blocks evicts as many entries as necessary:
+        cache.put(9, value(300, 'y'));
+        assertEquals(value(300, 'y'), cache.get(9));
+        assertEquals(1024, cache.getAllocatedBytes());
+        assertTrue(cache.getUsedBytes() <= 1024);
+    }
+
+    @Test
+    public void testRemoveAndClearFreeMemory() {
+        OffHeapCache<Integer, String> cache = cache(1024);
+        cache.put(1, value(100, 'a'));
+        long used = cache.getUsedBytes();
+        assertTrue(used > 0);
+        cache.put(2, value(100, 'b'));
+        cache.remove(1);
+        assertEquals(used, cache.getUsedBytes());
+        cache.clear();
+        assertEquals(0, cache.getUsedBytes());
+        assertEquals(0, cache.size());
+        cache.put(3, value(100, 'c'));
+        assertEquals(value(100, 'c'), cache.get(3));
+        cache.destroy();
+        assertEquals(0, cache.getAllocatedBytes());
+    }
+
+    @Test
+    public void testFullCacheWithoutEviction() {
+        //16 blocks of 64 bytes, each value below needs 2 blocks:
+        OffHeapCache<Integer, String> cache = cache(1024);
+        cache.setEvictionEnabled(false);
+        for (int i = 0; i < 8; i++) {
+            cache.put(i, value(80, (char) ('a' + i)));
+        }
+        try {
+            cache.put(8, value(80, 'z'));
+            fail("The full cache should have rejected the value.");
+        } catch (CacheException expected) {
+        }
+        try {
+            cache.put(0, value(200, 'z'));
+            fail("The full cache should have rejected the larger value.");
+        } catch (CacheException expected) {
+        }
+        //nothing was evicted or replaced:
+        assertEquals(8, cache.size());
+        assertEquals(value(80, 'a'), cache.get(0));
+        assertNull(cache.get(8));
+        assertEquals(0, cache.getStatistics().getEvictionCount());
+
+        //replacing a value with one of the same size reuses its blocks:
+        cache.put(0, value(80, 'z'));
+        assertEquals(value(80, 'z'), cache.get(0));
+    }
+
+    @Test(expected = CacheException.class)
+    public void testValueLargerThanCapacity() {
+        cache(256).put(1, value(1000, 'x'));
+    }
+
+    @Test
+    public void testValueIterator() {
+        OffHeapCache<Integer, String> cache = cache(4096);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(3, "c");
+        Iterator<String> values = cache.valueIterator();
+        cache.remove(2);
+        Set<String> seen = new HashSet<String>();
+        while (values.hasNext()) {
+            seen.add(values.next());
+        }
+        assertEquals(2, seen.size());
+        assertFalse(seen.contains("b"));
+    }
+}
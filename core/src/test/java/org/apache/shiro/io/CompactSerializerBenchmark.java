@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.io;
+
+import org.apache.shiro.session.mgt.SimpleSession;
+
+/**
+ * Stand-alone benchmark comparing the serialized size and the serialization and deserialization throughput of a
+ * typical session with the {@link CompactSerializer} and the {@link DefaultSerializer}.  Not run as part of the
+ * build; run its {@code main} method with the test classpath, optionally passing the number of iterations.
+ *
+ * @since 1.1
+ */
+public class CompactSerializerBenchmark {
+
+    private static void run(Serializer<SimpleSession> serializer, SimpleSession session, int iterations) {
+        byte[] serialized = serializer.serialize(session);
+        long begin = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            serialized = serializer.serialize(session);
+        }
+        long serializeNanos = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            session = serializer.deserialize(serialized);
+        }
+        long deserializeNanos = System.nanoTime() - begin;
+        System.out.printf("%-20s %,6d bytes  serialize %,10d ops/s  deserialize %,10d ops/s%n",
+                serializer.getClass().getSimpleName(), serialized.length,
+                (long) iterations * 1000000000L / Math.max(1, serializeNanos),
+                (long) iterations * 1000000000L / Math.max(1, deserializeNanos));
+    }
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        SimpleSession session = CompactSerializerTest.session();
+        for (int round = 0; round < 3; round++) {
+            run(new DefaultSerializer<SimpleSession>(), session, iterations);
+            run(new CompactSerializer<SimpleSession>(), session, iterations);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.io;
+
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.apache.shiro.subject.support.DefaultSubjectContext;
+import org.junit.Test;
+
+import java.awt.Point;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @since 1.1
+ */
+public class CompactSerializerTest {
+
+    static SimpleSession session() {
+        SimpleSession session = new SimpleSession("192.168.1.17");
+        session.setId(UUID.randomUUID().toString());
+        session.setTimeout(1800000);
+        session.setAttribute(DefaultSubjectContext.PRINCIPALS_SESSION_KEY,
+                new SimplePrincipalCollection("jsmith", "iniRealm"));
+        session.setAttribute(DefaultSubjectContext.AUTHENTICATED_SESSION_KEY, Boolean.TRUE);
+        session.setAttribute("locale", "de_DE");
+        session.setAttribute("cartItems", 3);
+        session.clearDirtyState();
+        return session;
+    }
+
+    @Test
+    public void testSessionRoundTrip() {
+        CompactSerializer<SimpleSession> serializer = new CompactSerializer<SimpleSession>();
+        SimpleSession session = session();
+        session.stop();
+        SimpleSession copy = serializer.deserialize(serializer.serialize(session));
+
+        assertEquals(session.getId(), copy.getId());
+        assertEquals(session.getStartTimestamp(), copy.getStartTimestamp());
+        assertEquals(session.getStopTimestamp(), copy.getStopTimestamp());
+        assertEquals(session.getLastAccessTime(), copy.getLastAccessTime());
+        assertEquals(session.getTimeout(), copy.getTimeout());
+        assertEquals(session.getHost(), copy.getHost());
+        assertFalse(copy.isExpired());
+        assertEquals(session.getAttributes(), copy.getAttributes());
+        assertFalse(copy.isDirty());
+
+        //a new session without attributes:
+        session = new SimpleSession();
+        copy = serializer.deserialize(serializer.serialize(session));
+        assertNull(copy.getId());
+        assertNull(copy.getAttributes());
+        assertNull(copy.getStopTimestamp());
+        assertEquals(session.getTimeout(), copy.getTimeout());
+    }
+
+    @Test
+    public void testSmallerThanJavaSerialization() {
+        SimpleSession session = session();
+        int compact = new CompactSerializer<SimpleSession>().serialize(session).length;
+        int java = new DefaultSerializer<SimpleSession>().serialize(session).length;
+        assertTrue("compact " + compact + " bytes, java " + java + " bytes", compact * 4 < java);
+    }
+
+    @Test
+    public void testBuiltInTypes() {
+        CompactSerializer<Object> serializer = new CompactSerializer<Object>();
+        Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+        map.put("string", "gr\u00fc\u00dfe \u263a");
+        map.put(1, Long.MIN_VALUE);
+        map.put(-1L, Integer.MAX_VALUE);
+        map.put(Math.PI, new Date(-1000));
+        map.put(UUID.randomUUID(), new ArrayList<Object>(Arrays.asList(null, false, "")));
+        map.put("set", new LinkedHashSet<Object>(Arrays.asList(3, 1, 2)));
+        map.put("hashes", new HashSet<Object>(Arrays.asList("a", "b")));
+        map.put("nested", new HashMap<Object, Object>(Collections.singletonMap("key", new LinkedHashMap())));
+        map.put("serializable", new Point(3, 4));
+
+        @SuppressWarnings({"unchecked"})
+        Map<Object, Object> copy = (Map<Object, Object>) serializer.deserialize(serializer.serialize(map));
+        assertEquals(LinkedHashMap.class, copy.getClass());
+        assertEquals(map, copy);
+        assertEquals(new ArrayList<Object>(map.keySet()), new ArrayList<Object>(copy.keySet()));
+        assertEquals(Arrays.asList(3, 1, 2), new ArrayList<Object>((Set) copy.get("set")));
+
+        byte[] bytes = {1, -1, 0, 127};
+        assertTrue(Arrays.equals(bytes, (byte[]) serializer.deserialize(serializer.serialize(bytes))));
+    }
+
+    @Test
+    public void testCustomEncoder() {
+        CompactSerializer<Object> serializer = new CompactSerializer<Object>();
+        int javaSize = serializer.serialize(new Point(3, 4)).length;
+        TypeEncoder<Point> encoder = new TypeEncoder<Point>() {
+            public Class<Point> getType() {
+                return Point.class;
+            }
+
+            public void write(Point value, CompactOutput out) {
+                out.writeSignedVarLong(value.x);
+                out.writeSignedVarLong(value.y);
+            }
+
+            public Point read(CompactInput in) {
+                return new Point((int) in.readSignedVarLong(), (int) in.readSignedVarLong());
+            }
+        };
+        serializer.register(CompactSerializer.MIN_CUSTOM_ID, encoder);
+        byte[] serialized = serializer.serialize(new Point(3, -4));
+        assertEquals(4, serialized.length);
+        assertTrue(serialized.length < javaSize);
+        assertEquals(new Point(3, -4), serializer.deserialize(serialized));
+
+        try {
+            serializer.register(CompactSerializer.MIN_CUSTOM_ID, encoder);
+            fail("the id is already taken");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testMalformedData() {
+        CompactSerializer<Object> serializer = new CompactSerializer<Object>();
+        byte[] serialized = serializer.serialize(session());
+        try {
+            byte[] truncated = new byte[serialized.length / 2];
+            System.arraycopy(serialized, 0, truncated, 0, truncated.length);
+            serializer.deserialize(truncated);
+            fail("the data is truncated");
+        } catch (SerializationException expected) {
+        }
+        serialized[0] = (byte) (CompactSerializer.FORMAT_VERSION + 1);
+        try {
+            serializer.deserialize(serialized);
+            fail("the format version is unknown");
+        } catch (SerializationException expected) {
+        }
+        try {
+            serializer.deserialize(new byte[]{CompactSerializer.FORMAT_VERSION, 100});
+            fail("no encoder is registered for the id");
+        } catch (SerializationException expected) {
+        }
+    }
+}
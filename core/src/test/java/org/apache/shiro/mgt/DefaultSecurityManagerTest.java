@@ -19,19 +19,34 @@
 package org.apache.shiro.mgt;
 
 import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authc.ConcurrentAccessException;
 import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.cache.MemoryConstrainedCacheManager;
 import org.apache.shiro.config.Ini;
 import org.apache.shiro.realm.text.IniRealm;
 import org.apache.shiro.session.ExpiredSessionException;
 import org.apache.shiro.session.Session;
 import org.apache.shiro.session.mgt.AbstractValidatingSessionManager;
+import org.apache.shiro.session.mgt.DefaultSessionKey;
+import org.apache.shiro.session.mgt.DefaultSessionManager;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
 import org.apache.shiro.subject.Subject;
+import org.apache.shiro.subject.SubjectContext;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -82,6 +97,207 @@ public class DefaultSecurityManagerTest extends AbstractSecurityManagerTest {
         assertNull(subject.getPrincipals());
     }
 
+    @Test
+    public void testSessionsPerPrincipal() {
+        DefaultSessionManager sessionManager = (DefaultSessionManager) sm.getSessionManager();
+        sessionManager.setMaxConcurrentSessions(2);
+
+        Subject[] subjects = new Subject[3];
+        Serializable[] ids = new Serializable[subjects.length];
+        for (int i = 0; i < subjects.length; i++) {
+            subjects[i] = new Subject.Builder(sm).buildSubject();
+            subjects[i].login(new UsernamePasswordToken("guest", "guest"));
+            ids[i] = subjects[i].getSession().getId();
+        }
+        Subject other = new Subject.Builder(sm).buildSubject();
+        other.login(new UsernamePasswordToken("lonestarr", "vespa"));
+
+        //the first, least recently accessed session was stopped to stay within the limit:
+        assertEquals(2, sessionManager.getSessions("guest").size());
+        assertFalse(sessionManager.isValid(new DefaultSessionKey(ids[0])));
+        assertTrue(sessionManager.isValid(new DefaultSessionKey(ids[2])));
+
+        //logout everywhere:
+        assertEquals(2, sessionManager.stopSessions("guest"));
+        assertTrue(sessionManager.getSessions("guest").isEmpty());
+        assertFalse(sessionManager.isValid(new DefaultSessionKey(ids[1])));
+        assertFalse(sessionManager.isValid(new DefaultSessionKey(ids[2])));
+        assertEquals(1, sessionManager.getSessions("lonestarr").size());
+
+        other.logout();
+        assertEquals(0, sessionManager.getSessionPrincipalIndex().size());
+    }
+
+    @Test
+    public void testRejectExcessSessions() {
+        DefaultSessionManager sessionManager = (DefaultSessionManager) sm.getSessionManager();
+        sessionManager.setMaxConcurrentSessions(1);
+        sessionManager.setRejectExcessSessions(true);
+
+        Subject first = new Subject.Builder(sm).buildSubject();
+        first.login(new UsernamePasswordToken("guest", "guest"));
+        Subject second = new Subject.Builder(sm).buildSubject();
+        try {
+            second.login(new UsernamePasswordToken("guest", "guest"));
+            fail("The second login should have been rejected.");
+        } catch (ConcurrentAccessException expected) {
+        }
+        //the session started for the rejected login was stopped again:
+        assertEquals(1, sessionManager.getSessionDAO().getActiveSessions().size());
+
+        //a remembered identity is used without a session instead of failing every request:
+        sm.setRememberMeManager(new RememberMeManager() {
+            public PrincipalCollection getRememberedPrincipals(SubjectContext subjectContext) {
+                return new SimplePrincipalCollection("guest", "iniRealm");
+            }
+
+            public void forgetIdentity(SubjectContext subjectContext) {
+            }
+
+            public void onSuccessfulLogin(Subject subject, AuthenticationToken token, AuthenticationInfo info) {
+            }
+
+            public void onFailedLogin(Subject subject, AuthenticationToken token, AuthenticationException ae) {
+            }
+
+            public void onLogout(Subject subject) {
+            }
+        });
+        for (int i = 0; i < 3; i++) {
+            Subject remembered = new Subject.Builder(sm).buildSubject();
+            assertEquals("guest", remembered.getPrincipal());
+            assertNull(remembered.getSession(false));
+        }
+        assertEquals(1, sessionManager.getSessionDAO().getActiveSessions().size());
+    }
+
+    @Test
+    public void testAuthorizationPrefetch() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Thread> loaders = new ArrayList<Thread>();
+        final AtomicInteger loads = new AtomicInteger();
+        sm.setRealm(createPrefetchRealm(loads, release, 0, new Executor() {
+            public void execute(Runnable command) {
+                Thread thread = new Thread(command);
+                loaders.add(thread);
+                thread.start();
+            }
+        }));
+        sm.setAuthorizationPrefetchEnabled(true);
+
+        Subject subject = new Subject.Builder(sm).buildSubject();
+        subject.login(new UsernamePasswordToken("guest", "guest"));
+        assertTrue(subject.isAuthenticated());
+        assertEquals(1, loaders.size());
+        while (loads.get() < 1) {
+            Thread.sleep(1);
+        }
+
+        //the first check joins the prefetch that is still in progress instead of loading again:
+        Thread releaser = new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    //ignored
+                }
+                release.countDown();
+            }
+        };
+        releaser.start();
+        assertTrue(subject.isPermitted("document:read"));
+        assertFalse(subject.isPermitted("document:write"));
+        loaders.get(0).join();
+        releaser.join();
+        assertEquals(1, loaders.size());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testFailedAuthorizationPrefetch() {
+        AtomicInteger loads = new AtomicInteger();
+        //the background load fails:
+        sm.setRealm(createPrefetchRealm(loads, new CountDownLatch(0), 1, new Executor() {
+            public void execute(Runnable command) {
+                command.run();
+            }
+        }));
+        sm.setAuthorizationPrefetchEnabled(true);
+        Subject subject = new Subject.Builder(sm).buildSubject();
+        subject.login(new UsernamePasswordToken("guest", "guest"));
+        assertTrue(subject.isAuthenticated());
+        assertEquals(1, loads.get());
+        assertTrue(subject.isPermitted("document:read"));
+        assertEquals(2, loads.get());
+
+        //the background load can't even be started:
+        loads.set(0);
+        sm.setRealm(createPrefetchRealm(loads, new CountDownLatch(0), 0, new Executor() {
+            public void execute(Runnable command) {
+                throw new IllegalStateException("executor unavailable");
+            }
+        }));
+        subject = new Subject.Builder(sm).buildSubject();
+        subject.login(new UsernamePasswordToken("guest", "guest"));
+        assertTrue(subject.isAuthenticated());
+        assertEquals(0, loads.get());
+        assertTrue(subject.isPermitted("document:read"));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testAuthorizationPrefetchDisabled() {
+        final List<Runnable> submitted = new ArrayList<Runnable>();
+        AtomicInteger loads = new AtomicInteger();
+        sm.setRealm(createPrefetchRealm(loads, new CountDownLatch(0), 0, new Executor() {
+            public void execute(Runnable command) {
+                submitted.add(command);
+                command.run();
+            }
+        }));
+        assertFalse(sm.isAuthorizationPrefetchEnabled());
+
+        Subject subject = new Subject.Builder(sm).buildSubject();
+        subject.login(new UsernamePasswordToken("guest", "guest"));
+        assertTrue(subject.isAuthenticated());
+        assertTrue(submitted.isEmpty());
+        assertEquals(0, loads.get());
+
+        assertTrue(subject.isPermitted("document:read"));
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * Creates a caching realm that counts its AuthorizationInfo loads, waits for the given latch before completing
+     * each load and fails the given number of loads first.
+     */
+    private static IniRealm createPrefetchRealm(final AtomicInteger loads, final CountDownLatch release,
+                                                int failures, Executor executor) {
+        Ini ini = new Ini();
+        ini.addSection(IniRealm.USERS_SECTION_NAME).put("guest", "guest, guest");
+        ini.addSection(IniRealm.ROLES_SECTION_NAME).put("guest", "document:read");
+        final AtomicInteger remainingFailures = new AtomicInteger(failures);
+        IniRealm realm = new IniRealm(ini) {
+            @Override
+            protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+                loads.incrementAndGet();
+                if (remainingFailures.getAndDecrement() > 0) {
+                    throw new IllegalStateException("authorization back-end unavailable");
+                }
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return super.doGetAuthorizationInfo(principals);
+            }
+        };
+        realm.setAuthorizationCachingEnabled(true);
+        realm.setCacheManager(new MemoryConstrainedCacheManager());
+        realm.setAuthorizationLoadExecutor(executor);
+        return realm;
+    }
+
     /**
      * Test that validates functionality for issue
      * <a href="https://issues.apache.org/jira/browse/JSEC-46">JSEC-46</a>
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.realm;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authz.AuthorizationException;
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.SimpleAuthorizationInfo;
+import org.apache.shiro.cache.MemoryConstrainedCacheManager;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link AuthorizationCircuitBreaker} when used by an {@link AuthorizingRealm}.
+ *
+ * @since 1.1
+ */
+public class AuthorizationCircuitBreakerTest {
+
+    private static final String ROLE = "admin";
+
+    private FlakyRealm realm;
+    private AuthorizationCircuitBreaker breaker;
+    private PrincipalCollection principals;
+
+    @Before
+    public void setUp() {
+        breaker = new AuthorizationCircuitBreaker();
+        breaker.setFailureThreshold(2);
+        breaker.setSlowCallThreshold(0);
+        //run probes synchronously so the test is deterministic:
+        breaker.setExecutor(new Executor() {
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        realm = new FlakyRealm();
+        realm.setAuthorizationCircuitBreaker(breaker);
+        principals = new SimplePrincipalCollection("user", realm.getName());
+    }
+
+    @Test
+    public void testServesStaleInfoWhenOpen() {
+        assertTrue(realm.hasRole(principals, ROLE));
+        assertEquals(AuthorizationCircuitBreaker.State.CLOSED, breaker.getState());
+
+        realm.failing = true;
+        assertTrue(realm.hasRole(principals, ROLE));
+        assertTrue(realm.hasRole(principals, ROLE));
+        assertEquals(AuthorizationCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getFailureCount());
+
+        int calls = realm.calls;
+        assertTrue(realm.hasRole(principals, ROLE));
+        //breaker is open - the back-end must not have been called:
+        assertEquals(calls, realm.calls);
+        assertEquals(1, breaker.getRejectedCount());
+        assertEquals(3, breaker.getStaleHitCount());
+    }
+
+    @Test(expected = AuthorizationException.class)
+    public void testFailsFastWithoutStaleInfo() {
+        realm.failing = true;
+        PrincipalCollection other = new SimplePrincipalCollection("other", realm.getName());
+        try {
+            realm.hasRole(other, ROLE);
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            realm.hasRole(other, ROLE);
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(AuthorizationCircuitBreaker.State.OPEN, breaker.getState());
+        realm.hasRole(other, ROLE);
+    }
+
+    @Test(expected = AuthorizationException.class)
+    public void testMaxStaleness() {
+        breaker.setMaxStaleness(-1);
+        assertTrue(realm.hasRole(principals, ROLE));
+        realm.failing = true;
+        try {
+            realm.hasRole(principals, ROLE);
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            realm.hasRole(principals, ROLE);
+        } catch (IllegalStateException expected) {
+        }
+        realm.hasRole(principals, ROLE);
+    }
+
+    @Test
+    public void testProbeClosesCircuit() {
+        breaker.setRetryInterval(0);
+        assertTrue(realm.hasRole(principals, ROLE));
+        realm.failing = true;
+        realm.hasRole(principals, ROLE);
+        realm.hasRole(principals, ROLE);
+        assertEquals(AuthorizationCircuitBreaker.State.OPEN, breaker.getState());
+
+        realm.failing = false;
+        //this call is answered from the stale cache and triggers the probe:
+        assertTrue(realm.hasRole(principals, ROLE));
+        assertEquals(AuthorizationCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getConsecutiveFailures());
+    }
+
+    @Test
+    public void testStaleInfoIsNotCached() throws Exception {
+        realm.setAuthorizationCachingEnabled(true);
+        realm.setCacheManager(new MemoryConstrainedCacheManager());
+        realm.setAuthorizationRefreshAheadTime(60 * 1000);
+        assertTrue(realm.hasRole(principals, ROLE));
+        assertEquals(1, realm.getAuthorizationCache().size());
+
+        realm.failing = true;
+        realm.getAuthorizationCache().clear();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(realm.hasRole(principals, ROLE));
+        }
+        assertEquals(AuthorizationCircuitBreaker.State.OPEN, breaker.getState());
+        //the fallback must not look like freshly loaded information:
+        assertEquals(0, realm.getAuthorizationCache().size());
+
+        //once the back-end recovers, the next check loads and caches fresh information:
+        breaker.setRetryInterval(0);
+        realm.failing = false;
+        assertTrue(realm.hasRole(principals, ROLE));
+        assertEquals(AuthorizationCircuitBreaker.State.CLOSED, breaker.getState());
+        int calls = realm.calls;
+        assertTrue(realm.hasRole(principals, ROLE));
+        assertEquals(calls + 1, realm.calls);
+        assertEquals(1, realm.getAuthorizationCache().size());
+    }
+
+    @Test
+    public void testClearedInfoIsNotServedStale() {
+        PrincipalCollection other = new SimplePrincipalCollection("other", realm.getName());
+        assertTrue(realm.hasRole(principals, ROLE));
+        assertTrue(realm.hasRole(other, ROLE));
+
+        //e.g. the account's roles were revoked, then the back-end goes down:
+        realm.clearCachedAuthorizationInfo(principals);
+        realm.failing = true;
+        assertNotServed(principals);
+        assertNotServed(principals);
+        assertEquals(AuthorizationCircuitBreaker.State.OPEN, breaker.getState());
+        assertNotServed(principals);
+        //other accounts are not affected:
+        assertTrue(realm.hasRole(other, ROLE));
+
+        //a role's definition changed - no account's last known information may be served:
+        realm.clearCachedAuthorizationInfoForRole(ROLE);
+        assertNotServed(other);
+        assertEquals(1, breaker.getStaleHitCount());
+    }
+
+    private void assertNotServed(PrincipalCollection principals) {
+        try {
+            realm.hasRole(principals, ROLE);
+            fail("Cleared AuthorizationInfo must not be served.");
+        } catch (IllegalStateException expected) {
+            //back-end failure while the breaker is closed
+        } catch (AuthorizationException expected) {
+            //no stale information while the breaker is open
+        }
+    }
+
+    private static class FlakyRealm extends AuthorizingRealm {
+
+        private volatile boolean failing;
+        private volatile int calls;
+
+        private FlakyRealm() {
+            //no authorization cache - every check reaches the back-end (or the breaker)
+            setAuthorizationCachingEnabled(false);
+        }
+
+        protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+            calls++;
+            if (failing) {
+                throw new IllegalStateException("back-end unavailable");
+            }
+            SimpleAuthorizationInfo info = new SimpleAuthorizationInfo();
+            info.addRole(ROLE);
+            return info;
+        }
+
+        protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) throws AuthenticationException {
+            return null;
+        }
+    }
+}
@@ -21,11 +21,16 @@ package org.apache.shiro.realm;
 import org.apache.shiro.authc.*;
 import org.apache.shiro.authc.credential.AllowAllCredentialsMatcher;
 import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.Authorizer;
+import org.apache.shiro.authz.AuthorizerUtils;
+import org.apache.shiro.authz.ModularRealmAuthorizer;
 import org.apache.shiro.authz.Permission;
 import org.apache.shiro.authz.SimpleAuthorizationInfo;
 import org.apache.shiro.authz.UnauthorizedException;
+import org.apache.shiro.authz.permission.InstanceSetPermission;
 import org.apache.shiro.authz.permission.RolePermissionResolver;
 import org.apache.shiro.authz.permission.WildcardPermission;
+import org.apache.shiro.cache.MemoryConstrainedCacheManager;
 import org.apache.shiro.subject.PrincipalCollection;
 import org.apache.shiro.subject.SimplePrincipalCollection;
 import org.junit.After;
@@ -33,8 +38,14 @@ import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.security.Principal;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -214,6 +225,257 @@ public class AuthorizingRealmTest {
         assertTrue( realm.isPermitted( pCollection, "other:bar:foo" ) );
     }
 
+    @Test
+    public void testRefreshAhead() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        AuthorizingRealm realm = new AllowAllRealm() {
+            protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+                loads.incrementAndGet();
+                return super.doGetAuthorizationInfo(principals);
+            }
+        };
+        realm.setCacheManager(new MemoryConstrainedCacheManager());
+        realm.setAuthorizationRefreshAheadTime(1);
+        realm.setAuthorizationLoadExecutor(new Executor() {
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        PrincipalCollection pCollection = new SimplePrincipalCollection(USERNAME, "testRefreshAhead");
+
+        assertTrue(realm.hasRole(pCollection, ROLE));
+        assertEquals(1, loads.get());
+        Thread.sleep(10);
+        //served from the cache, but old enough to trigger a (here: synchronous) background reload:
+        assertTrue(realm.hasRole(pCollection, ROLE));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testRefreshAheadSharesConcurrentLoads() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final AuthorizingRealm realm = new AllowAllRealm() {
+            protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+                loads.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return super.doGetAuthorizationInfo(principals);
+            }
+        };
+        realm.setCacheManager(new MemoryConstrainedCacheManager());
+        realm.setAuthorizationRefreshAheadTime(60 * 1000);
+        final PrincipalCollection pCollection = new SimplePrincipalCollection(USERNAME, "testSharedLoads");
+
+        final AtomicInteger granted = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    if (realm.hasRole(pCollection, ROLE)) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        //wait until every thread is either loading or waiting for the in-flight load:
+        for (Thread thread : threads) {
+            while (thread.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+        }
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(threads.length, granted.get());
+    }
+
+    @Test
+    public void testQueuedPrefetchIsRunByCaller() {
+        final AtomicInteger loads = new AtomicInteger();
+        AuthorizingRealm realm = new AllowAllRealm() {
+            protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+                loads.incrementAndGet();
+                return super.doGetAuthorizationInfo(principals);
+            }
+        };
+        realm.setCacheManager(new MemoryConstrainedCacheManager());
+        //a saturated executor that doesn't get to the queued loads:
+        final List<Runnable> queued = new ArrayList<Runnable>();
+        realm.setAuthorizationLoadExecutor(new Executor() {
+            public void execute(Runnable command) {
+                queued.add(command);
+            }
+        });
+        PrincipalCollection pCollection = new SimplePrincipalCollection(USERNAME, "testQueuedPrefetch");
+
+        realm.prefetchAuthorizationInfo(pCollection);
+        assertEquals(1, queued.size());
+        assertEquals(0, loads.get());
+
+        //the check runs the queued load itself instead of waiting for the executor:
+        assertTrue(realm.hasRole(pCollection, ROLE));
+        assertEquals(1, loads.get());
+        assertEquals(1, realm.getAuthorizationCache().size());
+
+        //once the executor gets to it, the load is not repeated:
+        queued.get(0).run();
+        assertEquals(1, loads.get());
+        assertTrue(realm.hasRole(pCollection, ROLE));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testClearSupersedesLoadInProgress() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch[] release = {new CountDownLatch(1)};
+        AuthorizingRealm realm = new AllowAllRealm() {
+            protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+                loads.incrementAndGet();
+                try {
+                    release[0].await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return super.doGetAuthorizationInfo(principals);
+            }
+        };
+        realm.setCacheManager(new MemoryConstrainedCacheManager());
+        final List<Thread> loaders = new ArrayList<Thread>();
+        realm.setAuthorizationLoadExecutor(new Executor() {
+            public void execute(Runnable command) {
+                Thread thread = new Thread(command);
+                loaders.add(thread);
+                thread.start();
+            }
+        });
+        PrincipalCollection pCollection = new SimplePrincipalCollection(USERNAME, "testClearSupersedesLoad");
+
+        //the account is loading for the first time, so it is not in the role index yet:
+        realm.prefetchAuthorizationInfo(pCollection);
+        while (loads.get() < 1) {
+            Thread.sleep(1);
+        }
+        realm.clearCachedAuthorizationInfoForRole(ROLE);
+        release[0].countDown();
+        loaders.get(0).join();
+        assertEquals(0, realm.getAuthorizationCache().size());
+
+        release[0] = new CountDownLatch(1);
+        realm.prefetchAuthorizationInfo(pCollection);
+        while (loads.get() < 2) {
+            Thread.sleep(1);
+        }
+        realm.clearCachedAuthorizationInfo(pCollection);
+        release[0].countDown();
+        loaders.get(1).join();
+        assertEquals(0, realm.getAuthorizationCache().size());
+
+        //loads starting after the clear are cached as usual:
+        assertTrue(realm.hasRole(pCollection, ROLE));
+        assertEquals(3, loads.get());
+        assertEquals(1, realm.getAuthorizationCache().size());
+
+        //clearing another account (e.g. on its logout) doesn't supersede the load:
+        realm.clearCachedAuthorizationInfo(pCollection);
+        release[0] = new CountDownLatch(1);
+        realm.prefetchAuthorizationInfo(pCollection);
+        while (loads.get() < 4) {
+            Thread.sleep(1);
+        }
+        realm.clearCachedAuthorizationInfo(new SimplePrincipalCollection("other", "testClearSupersedesLoad"));
+        release[0].countDown();
+        loaders.get(2).join();
+        assertEquals(1, realm.getAuthorizationCache().size());
+        assertTrue(realm.hasRole(pCollection, ROLE));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void testClearCachedAuthorizationInfoForRole() {
+        final AtomicInteger loads = new AtomicInteger();
+        AuthorizingRealm realm = new AllowAllRealm() {
+            protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+                loads.incrementAndGet();
+                SimpleAuthorizationInfo info = new SimpleAuthorizationInfo();
+                info.addRole(ROLE);
+                if ("other".equals(principals.getPrimaryPrincipal())) {
+                    info.addRole("other");
+                }
+                return info;
+            }
+        };
+        realm.setCacheManager(new MemoryConstrainedCacheManager());
+        PrincipalCollection user = new SimplePrincipalCollection(USERNAME, "testClearForRole");
+        PrincipalCollection other = new SimplePrincipalCollection("other", "testClearForRole");
+
+        assertTrue(realm.hasRole(user, ROLE));
+        assertTrue(realm.hasRole(other, "other"));
+        assertEquals(2, loads.get());
+        assertEquals(2, realm.getAuthorizationCache().size());
+
+        realm.clearCachedAuthorizationInfoForRole("other");
+        assertEquals(1, realm.getAuthorizationCache().size());
+        assertTrue(realm.hasRole(user, ROLE));
+        assertEquals(2, loads.get());
+        assertTrue(realm.hasRole(other, "other"));
+        assertEquals(3, loads.get());
+
+        realm.clearCachedAuthorizationInfoForRole(ROLE);
+        assertEquals(0, realm.getAuthorizationCache().size());
+    }
+
+    @Test
+    public void testFilterPermitted() {
+        final AuthorizingRealm realm = new AllowAllRealm() {
+            protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+                SimpleAuthorizationInfo info = new SimpleAuthorizationInfo();
+                info.addStringPermission("doc:read:1,2");
+                info.addStringPermission("doc:*:3");
+                info.addStringPermission("doc:read:4:*");
+                info.addStringPermission("doc:read:5:page1");
+                info.addStringPermission("doc:edit");
+                info.addStringPermission("doc:read:ABC");
+                info.addObjectPermission(new InstanceSetPermission("doc", "read", new int[]{6, 7}));
+                info.addObjectPermission(new Permission() {
+                    public boolean implies(Permission p) {
+                        return new WildcardPermission("doc:read:8").equals(p);
+                    }
+                });
+                return info;
+            }
+        };
+        PrincipalCollection pc = new SimplePrincipalCollection(USERNAME, "testFilterPermitted");
+        List<Object> ids = Arrays.<Object>asList(9, 8, 7, 6, 5, 4, 3, 2, 1, "abc", "x,1", "");
+        List<Object> expected = new ArrayList<Object>();
+        for (Object id : ids) {
+            if (realm.isPermitted(pc, "doc:read:" + id)) {
+                expected.add(id);
+            }
+        }
+        assertEquals(Arrays.<Object>asList(8, 7, 6, 4, 3, 2, 1, "abc"), expected);
+        assertEquals(expected, realm.filterPermitted(pc, "doc", "read", ids));
+        assertEquals(ids, realm.filterPermitted(pc, "DOC", "edit", ids));
+        assertTrue(realm.filterPermitted(pc, "invoice", "read", ids).isEmpty());
+
+        //authorizers that are not BulkAuthorizers are checked one id at a time:
+        Authorizer plain = (Authorizer) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{Authorizer.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        return method.invoke(realm, args);
+                    }
+                });
+        assertEquals(expected, AuthorizerUtils.filterPermitted(plain, pc, "doc", "read", ids));
+        assertEquals(expected, new ModularRealmAuthorizer(Arrays.<Realm>asList(realm))
+                .filterPermitted(pc, "doc", "read", ids));
+    }
+
     private void assertArrayEquals(boolean[] expected, boolean[] actual) {
         if (expected.length != actual.length) {
             fail("Expected array of length [" + expected.length + "] but received array of length [" + actual.length + "]");
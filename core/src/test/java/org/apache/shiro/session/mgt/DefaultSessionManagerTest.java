@@ -18,7 +18,11 @@
  */
 package org.apache.shiro.session.mgt;
 
+import org.apache.shiro.authc.ConcurrentAccessException;
 import org.apache.shiro.session.*;
+import org.apache.shiro.session.mgt.eis.MemorySessionDAO;
+import org.apache.shiro.session.mgt.eis.OffHeapSessionDAO;
+import org.apache.shiro.session.mgt.eis.ShardedMemorySessionDAO;
 import org.apache.shiro.session.mgt.eis.SessionDAO;
 import org.apache.shiro.util.ThreadContext;
 import org.easymock.EasyMock;
@@ -27,7 +31,9 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
@@ -117,6 +123,238 @@ public class DefaultSessionManagerTest {
         assertTrue(expired[0]);
     }
 
+    @Test
+    public void testValidateSessionsDeletesExpiredSessions() {
+        final int[] expired = new int[1];
+        sm.getSessionListeners().add(new SessionListenerAdapter() {
+            public void onExpiration(Session session) {
+                expired[0]++;
+            }
+        });
+        sm.setGlobalSessionTimeout(100);
+        sm.start(null);
+        sm.setGlobalSessionTimeout(60000);
+        Session active = sm.start(null);
+        sleep(150);
+        sm.validateSessions();
+        assertEquals(1, expired[0]);
+        assertEquals(1, sm.getSessionDAO().getActiveSessions().size());
+        assertEquals(active.getId(), sm.getSessionDAO().getActiveSessions().iterator().next().getId());
+    }
+
+    @Test
+    public void testParallelChunkedValidation() {
+        sm.setSessionValidationThreads(4);
+        sm.setSessionValidationChunkSize(3);
+        sm.setSessionValidationDutyCycle(0.5);
+        sm.setGlobalSessionTimeout(100);
+        for (int i = 0; i < 10; i++) {
+            sm.start(null);
+        }
+        sm.setGlobalSessionTimeout(60000);
+        for (int i = 0; i < 5; i++) {
+            sm.start(null);
+        }
+        sleep(150);
+        sm.validateSessions();
+        SessionValidationResult result = sm.getLastSessionValidationResult();
+        assertNotNull(result);
+        assertEquals(10, result.getExpiredCount());
+        assertEquals(0, result.getStoppedCount());
+        assertEquals(10, result.getValidatedCount());
+        assertEquals(5, sm.getSessionDAO().getActiveSessions().size());
+    }
+
+    @Test
+    public void testShardedValidation() {
+        final List<Integer> partitions = Collections.synchronizedList(new ArrayList<Integer>());
+        sm.setSessionDAO(new ShardedMemorySessionDAO(4) {
+            @Override
+            public Collection<Session> getPossiblyExpiredSessions(int partition, long time) {
+                partitions.add(partition);
+                return super.getPossiblyExpiredSessions(partition, time);
+            }
+        });
+        sm.setSessionValidationThreads(2);
+        sm.setGlobalSessionTimeout(100);
+        for (int i = 0; i < 20; i++) {
+            sm.start(null);
+        }
+        sm.setGlobalSessionTimeout(60000);
+        for (int i = 0; i < 5; i++) {
+            sm.start(null);
+        }
+        sleep(150);
+        sm.validateSessions();
+        assertEquals(Arrays.asList(0, 1, 2, 3), partitions);
+        assertEquals(20, sm.getLastSessionValidationResult().getExpiredCount());
+        assertEquals(5, sm.getSessionDAO().getActiveSessions().size());
+    }
+
+    @Test
+    public void testRejectExcessSessions() {
+        sm.setMaxConcurrentSessions(1);
+        sm.setRejectExcessSessions(true);
+        Session first = sm.start(null);
+        Session second = sm.start(null);
+        sm.bindPrincipal(new DefaultSessionKey(first.getId()), "user");
+        //rebinding the same principal is not an additional session:
+        sm.bindPrincipal(new DefaultSessionKey(first.getId()), "user");
+        try {
+            sm.bindPrincipal(new DefaultSessionKey(second.getId()), "user");
+            fail("The second session should have been rejected.");
+        } catch (ConcurrentAccessException expected) {
+        }
+        assertEquals(1, sm.getSessions("user").size());
+
+        //once the first session is gone, the second may be bound:
+        sm.setGlobalSessionTimeout(100);
+        Session third = sm.start(null);
+        sm.bindPrincipal(new DefaultSessionKey(first.getId()), null);
+        sm.bindPrincipal(new DefaultSessionKey(third.getId()), "user");
+        sleep(150);
+        sm.validateSessions();
+        assertEquals(0, sm.getSessionPrincipalIndex().size());
+        sm.bindPrincipal(new DefaultSessionKey(second.getId()), "user");
+        assertEquals(second.getId(), sm.getSessions("user").iterator().next().getId());
+    }
+
+    @Test
+    public void testRejectExcessSessionsConcurrently() throws Exception {
+        sm.setMaxConcurrentSessions(1);
+        sm.setRejectExcessSessions(true);
+        final Session[] sessions = new Session[8];
+        for (int i = 0; i < sessions.length; i++) {
+            sessions[i] = sm.start(null);
+        }
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger bound = new AtomicInteger();
+        Thread[] threads = new Thread[sessions.length];
+        for (int i = 0; i < threads.length; i++) {
+            final Session session = sessions[i];
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        sm.bindPrincipal(new DefaultSessionKey(session.getId()), "user");
+                        bound.incrementAndGet();
+                    } catch (ConcurrentAccessException expected) {
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, bound.get());
+        assertEquals(1, sm.getSessions("user").size());
+    }
+
+    @Test
+    public void testTouchThrottling() {
+        final int[] updates = new int[1];
+        //a DAO returning copies, so that touches not persisted are really only kept by the session manager:
+        sm.setSessionDAO(new OffHeapSessionDAO() {
+            @Override
+            protected void doUpdate(Session session) {
+                updates[0]++;
+                super.doUpdate(session);
+            }
+        });
+        sm.setSessionTouchThreshold(0.5);
+        sm.setGlobalSessionTimeout(200);
+        Session session = sm.start(null);
+        DefaultSessionKey key = new DefaultSessionKey(session.getId());
+        int updatesAfterStart = updates[0];
+        for (int i = 0; i < 10; i++) {
+            sm.touch(key);
+        }
+        assertEquals(updatesAfterStart, updates[0]);
+
+        sleep(120);
+        sm.touch(key);
+        assertEquals(updatesAfterStart + 1, updates[0]);
+
+        //touches kept in memory still prevent expiration:
+        sleep(80);
+        sm.touch(key);
+        assertEquals(updatesAfterStart + 1, updates[0]);
+        sleep(150);
+        assertTrue(sm.isValid(key));
+    }
+
+    @Test
+    public void testDeltaUpdates() {
+        final List<SessionDelta> deltas = new ArrayList<SessionDelta>();
+        sm.setSessionDAO(new MemorySessionDAO() {
+            @Override
+            public void update(Session session, SessionDelta delta) {
+                deltas.add(delta);
+                super.update(session, delta);
+            }
+        });
+        Session session = sm.start(null);
+        DefaultSessionKey key = new DefaultSessionKey(session.getId());
+        deltas.clear();
+
+        sm.setAttribute(key, "foo", "bar");
+        assertEquals(1, deltas.size());
+        SessionDelta delta = deltas.get(0);
+        assertEquals(session.getId(), delta.getSessionId());
+        assertTrue(delta.getFields().isEmpty());
+        assertEquals(Collections.singletonMap("foo", "bar"), delta.getSetAttributes());
+
+        sm.removeAttribute(key, "foo");
+        assertEquals(Collections.singleton("foo"), deltas.get(1).getRemovedAttributeKeys());
+
+        //removing an attribute that isn't there changes nothing:
+        sm.removeAttribute(key, "foo");
+        assertEquals(2, deltas.size());
+
+        sm.touch(key);
+        assertEquals(EnumSet.of(SessionDelta.Field.LAST_ACCESS_TIME), deltas.get(2).getFields());
+    }
+
+    @Test
+    public void testFailedDeltaUpdateIsRetried() {
+        final List<SessionDelta> deltas = new ArrayList<SessionDelta>();
+        final boolean[] fail = new boolean[1];
+        sm.setSessionDAO(new MemorySessionDAO() {
+            @Override
+            public void update(Session session, SessionDelta delta) {
+                if (fail[0]) {
+                    throw new IllegalStateException("update failed");
+                }
+                deltas.add(delta);
+                super.update(session, delta);
+            }
+        });
+        Session session = sm.start(null);
+        DefaultSessionKey key = new DefaultSessionKey(session.getId());
+        deltas.clear();
+
+        fail[0] = true;
+        try {
+            sm.setAttribute(key, "foo", "bar");
+            fail("The DAO update should have failed.");
+        } catch (IllegalStateException expected) {
+            //expected
+        }
+
+        //the next update must still carry the change of the failed one:
+        fail[0] = false;
+        sm.setAttribute(key, "baz", "qux");
+        assertEquals(1, deltas.size());
+        Map<Object, Object> expected = new HashMap<Object, Object>();
+        expected.put("foo", "bar");
+        expected.put("baz", "qux");
+        assertEquals(expected, deltas.get(0).getSetAttributes());
+    }
+
     @Test
     public void testSessionDeleteOnExpiration() {
         sm.setGlobalSessionTimeout(100);
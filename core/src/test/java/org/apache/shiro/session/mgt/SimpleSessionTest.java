@@ -21,8 +21,12 @@ package org.apache.shiro.session.mgt;
 import org.junit.Test;
 
 import java.io.*;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class SimpleSessionTest {
@@ -39,6 +43,38 @@ public class SimpleSessionTest {
         assertTrue(serializeAndDeserialize(session).isExpired());
     }
 
+    @Test
+    public void dirtyTracking() throws IOException, ClassNotFoundException {
+        SimpleSession session = new SimpleSession("localhost");
+        assertFalse(session.isDirty());
+        session.setAttribute("foo", "bar");
+        session.clearDirtyState();
+        session.setAttribute("foo", "baz");
+        session.setAttribute("bar", "baz");
+        session.removeAttribute("bar");
+        session.setTimeout(1000);
+        session.touch();
+        assertTrue(session.isDirty());
+
+        SessionDelta delta = session.getDelta();
+        assertEquals(EnumSet.of(SessionDelta.Field.TIMEOUT, SessionDelta.Field.LAST_ACCESS_TIME), delta.getFields());
+        assertEquals(Collections.singletonMap("foo", "baz"), delta.getSetAttributes());
+        assertEquals(Collections.singleton("bar"), delta.getRemovedAttributeKeys());
+
+        session.clearDirtyState();
+        assertFalse(session.isDirty());
+        assertTrue(session.getDelta().isEmpty());
+
+        session.setAttributes(new HashMap<Object, Object>());
+        session.setAttribute("foo", "bar");
+        delta = session.getDelta();
+        assertEquals(EnumSet.of(SessionDelta.Field.ATTRIBUTES), delta.getFields());
+        assertTrue(delta.getSetAttributes().isEmpty());
+
+        //dirty state is not serialized:
+        assertFalse(serializeAndDeserialize(session).isDirty());
+    }
+
     private SimpleSession serializeAndDeserialize(SimpleSession session) throws IOException, ClassNotFoundException {
         ByteArrayOutputStream serialized = new ByteArrayOutputStream();
         ObjectOutputStream serializer = new ObjectOutputStream(serialized);
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @since 1.1
+ */
+public class FileSessionDAOTest {
+
+    private File directory;
+    private List<FileSessionDAO> daos = new ArrayList<FileSessionDAO>();
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("shiro-sessions", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        for (FileSessionDAO dao : daos) {
+            dao.destroy();
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private FileSessionDAO dao() {
+        FileSessionDAO dao = new FileSessionDAO();
+        dao.setDirectory(directory);
+        dao.setSegmentSize(4096);
+        dao.setSyncInterval(0);
+        dao.setCompactionInterval(0);
+        dao.init();
+        daos.add(dao);
+        return dao;
+    }
+
+    private static SimpleSession session(int i) {
+        SimpleSession session = new SimpleSession("10.0.0." + i);
+        session.setAttribute("index", i);
+        session.setAttribute("version", 0);
+        return session;
+    }
+
+    private File[] segmentFiles() {
+        return directory.listFiles();
+    }
+
+    /**
+     * Returns the offset of the last record in the specified segment file, by following the record lengths.
+     */
+    private static long lastRecordOffset(RandomAccessFile file) throws IOException {
+        long offset = 0;
+        long last = -1;
+        while (offset + 8 <= file.length()) {
+            file.seek(offset);
+            int length = file.readInt();
+            if (length <= 0) {
+                break;
+            }
+            last = offset;
+            offset += 8 + length;
+        }
+        return last;
+    }
+
+    @Test
+    public void testCrashRecovery() throws IOException {
+        FileSessionDAO dao = dao();
+        List<Serializable> ids = new ArrayList<Serializable>();
+        for (int i = 0; i < 30; i++) {
+            ids.add(dao.create(session(i)));
+        }
+        for (int i = 0; i < 10; i++) {
+            Session session = dao.readSession(ids.get(i));
+            session.setAttribute("version", 1);
+            dao.update(session);
+        }
+        for (int i = 20; i < 30; i++) {
+            dao.delete(dao.readSession(ids.get(i)));
+        }
+        Session torn = dao.readSession(ids.get(10));
+        torn.setAttribute("version", 1);
+        dao.update(torn);
+        assertTrue(segmentFiles().length > 1);
+
+        //simulate a crash while the last update was written, without closing the DAO:
+        File newest = null;
+        for (File file : segmentFiles()) {
+            if (newest == null || file.getName().compareTo(newest.getName()) > 0) {
+                newest = file;
+            }
+        }
+        RandomAccessFile file = new RandomAccessFile(newest, "rw");
+        file.seek(lastRecordOffset(file) + 40);
+        file.writeLong(0xDEADBEEFL);
+        file.close();
+
+        FileSessionDAO recovered = dao();
+        assertEquals(20, recovered.getActiveSessions().size());
+        for (int i = 0; i < 20; i++) {
+            Session session = recovered.readSession(ids.get(i));
+            assertEquals(i, session.getAttribute("index"));
+            assertEquals("10.0.0." + i, session.getHost());
+            //the torn update of session 10 is lost, the previous version is used:
+            assertEquals(i < 10 ? 1 : 0, session.getAttribute("version"));
+        }
+        assertNull(recovered.doReadSession(ids.get(25)));
+
+        //writes after recovery overwrite the torn record:
+        Session session = recovered.readSession(ids.get(10));
+        session.setAttribute("version", 2);
+        recovered.update(session);
+        Serializable created = recovered.create(session(30));
+        recovered.destroy();
+
+        FileSessionDAO reopened = dao();
+        assertEquals(21, reopened.getActiveSessions().size());
+        assertEquals(2, reopened.readSession(ids.get(10)).getAttribute("version"));
+        assertEquals(30, reopened.readSession(created).getAttribute("index"));
+    }
+
+    @Test
+    public void testCompaction() {
+        FileSessionDAO dao = dao();
+        List<Serializable> ids = new ArrayList<Serializable>();
+        for (int i = 0; i < 10; i++) {
+            ids.add(dao.create(session(i)));
+        }
+        for (int version = 1; version <= 50; version++) {
+            for (Serializable id : ids) {
+                Session session = dao.readSession(id);
+                session.setAttribute("version", version);
+                dao.update(session);
+            }
+        }
+        dao.delete(dao.readSession(ids.get(0)));
+        int segmentsBefore = segmentFiles().length;
+        dao.compact();
+        int segmentsAfter = segmentFiles().length;
+        assertTrue(segmentsAfter + " of " + segmentsBefore, segmentsAfter * 4 < segmentsBefore);
+
+        for (int i = 1; i < 10; i++) {
+            assertEquals(50, dao.readSession(ids.get(i)).getAttribute("version"));
+        }
+        dao.destroy();
+
+        FileSessionDAO reopened = dao();
+        assertEquals(9, reopened.getActiveSessions().size());
+        assertNull(reopened.doReadSession(ids.get(0)));
+        for (int i = 1; i < 10; i++) {
+            assertEquals(i, reopened.readSession(ids.get(i)).getAttribute("index"));
+            assertEquals(50, reopened.readSession(ids.get(i)).getAttribute("version"));
+        }
+    }
+
+    @Test
+    public void testPossiblyExpiredSessions() {
+        long now = System.currentTimeMillis();
+        FileSessionDAO dao = dao();
+        SimpleSession expired = session(1);
+        expired.setLastAccessTime(new Date(now - 31 * 60 * 1000));
+        SimpleSession active = session(2);
+        dao.create(expired);
+        dao.create(active);
+        dao.destroy();
+
+        //the expiry index is rebuilt on recovery:
+        FileSessionDAO reopened = dao();
+        assertEquals(1, reopened.getPossiblyExpiredSessions(now).size());
+        assertEquals(expired.getId(), reopened.getPossiblyExpiredSessions(now).iterator().next().getId());
+    }
+}
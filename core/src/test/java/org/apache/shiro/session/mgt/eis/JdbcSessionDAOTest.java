@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.hsqldb.jdbc.jdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @since 1.1
+ */
+public class JdbcSessionDAOTest {
+
+    private jdbcDataSource dataSource;
+    private JdbcSessionDAO dao;
+
+    @Before
+    public void setUp() throws SQLException {
+        dataSource = new jdbcDataSource();
+        dataSource.setDatabase("jdbc:hsqldb:mem:sessions");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        execute("create table sessions (session_id varchar(255) primary key, session_data varbinary(8192) not null)");
+        dao = new JdbcSessionDAO();
+        dao.setDataSource(dataSource);
+        dao.setFlushInterval(0);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        dao.destroy();
+        execute("shutdown");
+    }
+
+    private void execute(String sql) throws SQLException {
+        Connection conn = dataSource.getConnection();
+        try {
+            Statement statement = conn.createStatement();
+            statement.execute(sql);
+            statement.close();
+        } finally {
+            conn.close();
+        }
+    }
+
+    private int rowCount() throws SQLException {
+        Connection conn = dataSource.getConnection();
+        try {
+            Statement statement = conn.createStatement();
+            ResultSet rs = statement.executeQuery("select count(*) from sessions");
+            rs.next();
+            int count = rs.getInt(1);
+            statement.close();
+            return count;
+        } finally {
+            conn.close();
+        }
+    }
+
+    /**
+     * Returns a second DAO on the same database, without queued writes or cached sessions.
+     */
+    private JdbcSessionDAO reader() {
+        JdbcSessionDAO reader = new JdbcSessionDAO();
+        reader.setDataSource(dataSource);
+        reader.setFlushInterval(0);
+        return reader;
+    }
+
+    private static SimpleSession session(int version) {
+        SimpleSession session = new SimpleSession("localhost");
+        session.setAttribute("version", version);
+        return session;
+    }
+
+    @Test
+    public void testCoalescedWrites() throws SQLException {
+        SimpleSession session = session(0);
+        Serializable id = dao.create(session);
+        for (int version = 1; version <= 100; version++) {
+            session.setAttribute("version", version);
+            dao.update(session);
+        }
+        assertEquals(1, dao.getPendingWriteCount());
+        assertEquals(0, rowCount());
+        //reads see the queued state:
+        assertNull(reader().doReadSession(id));
+        assertEquals(100, dao.doReadSession(id).getAttribute("version"));
+
+        dao.flush();
+        assertEquals(0, dao.getPendingWriteCount());
+        assertEquals(1, rowCount());
+        assertEquals(100, reader().readSession(id).getAttribute("version"));
+
+        session.setAttribute("version", 101);
+        dao.update(session);
+        dao.flush();
+        assertEquals(101, reader().readSession(id).getAttribute("version"));
+    }
+
+    @Test
+    public void testDeletes() throws SQLException {
+        //created and deleted between two flushes, never written:
+        Serializable transientId = dao.create(session(0));
+        dao.delete(dao.readSession(transientId));
+        List<Serializable> ids = new ArrayList<Serializable>();
+        for (int i = 0; i < 10; i++) {
+            ids.add(dao.create(session(i)));
+        }
+        dao.flush();
+        assertEquals(10, rowCount());
+        assertNull(reader().doReadSession(transientId));
+
+        for (int i = 0; i < 5; i++) {
+            dao.delete(dao.readSession(ids.get(i)));
+        }
+        assertEquals(5, dao.getPendingWriteCount());
+        assertNull(dao.doReadSession(ids.get(0)));
+        dao.flush();
+        assertEquals(5, rowCount());
+        assertNull(reader().doReadSession(ids.get(0)));
+        assertNotNull(reader().doReadSession(ids.get(5)));
+    }
+
+    @Test
+    public void testBoundedQueue() throws SQLException {
+        dao.setMaxPendingWrites(10);
+        dao.setBatchSize(3);
+        for (int i = 0; i < 25; i++) {
+            dao.create(session(i));
+        }
+        assertTrue(dao.getPendingWriteCount() <= 10);
+        assertEquals(25, rowCount() + dao.getPendingWriteCount());
+    }
+
+    @Test
+    public void testFailedFlushIsRetried() throws SQLException {
+        Serializable id = dao.create(session(0));
+        execute("drop table sessions");
+        try {
+            dao.flush();
+            fail("the table does not exist");
+        } catch (RuntimeException expected) {
+        }
+        Session session = dao.readSession(id);
+        session.setAttribute("version", 1);
+        dao.update(session);
+        assertEquals(1, dao.getPendingWriteCount());
+
+        execute("create table sessions (session_id varchar(255) primary key, session_data varbinary(8192) not null)");
+        dao.flush();
+        assertEquals(1, rowCount());
+        assertEquals(1, reader().readSession(id).getAttribute("version"));
+    }
+
+    @Test
+    public void testBackgroundFlush() throws Exception {
+        dao.setFlushInterval(50);
+        Serializable id = dao.create(session(0));
+        for (int i = 0; i < 40 && rowCount() == 0; i++) {
+            Thread.sleep(25);
+        }
+        assertEquals(1, rowCount());
+        assertNotNull(reader().readSession(id));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * @since 1.1
+ */
+public class MemorySessionDAOTest {
+
+    private static final long MINUTE = 60 * 1000;
+
+    private static SimpleSession session(long lastAccessTime, long timeout) {
+        SimpleSession session = new SimpleSession();
+        session.setLastAccessTime(new Date(lastAccessTime));
+        session.setTimeout(timeout);
+        return session;
+    }
+
+    @Test
+    public void testPossiblyExpiredSessions() {
+        long now = System.currentTimeMillis();
+        MemorySessionDAO dao = new MemorySessionDAO();
+        SimpleSession expired = session(now - 31 * MINUTE, 30 * MINUTE);
+        SimpleSession active = session(now - 5 * MINUTE, 30 * MINUTE);
+        SimpleSession eternal = session(now - 600 * MINUTE, -1);
+        SimpleSession stopped = session(now, 30 * MINUTE);
+        dao.create(expired);
+        dao.create(active);
+        dao.create(eternal);
+        dao.create(stopped);
+
+        Collection<Session> possiblyExpired = dao.getPossiblyExpiredSessions(now);
+        assertEquals(1, possiblyExpired.size());
+        assertTrue(possiblyExpired.contains(expired));
+
+        stopped.stop();
+        dao.update(stopped);
+        possiblyExpired = dao.getPossiblyExpiredSessions(now);
+        assertEquals(2, possiblyExpired.size());
+        assertTrue(possiblyExpired.contains(stopped));
+
+        dao.delete(expired);
+        dao.delete(stopped);
+        assertTrue(dao.getPossiblyExpiredSessions(now).isEmpty());
+        assertEquals(1, dao.getPossiblyExpiredSessions(now + 30 * MINUTE).size());
+    }
+
+    @Test
+    public void testAccessWithoutUpdateIsReindexed() {
+        long now = System.currentTimeMillis();
+        MemorySessionDAO dao = new MemorySessionDAO();
+        SimpleSession session = session(now - 31 * MINUTE, 30 * MINUTE);
+        dao.create(session);
+        //touched in place, without a DAO update:
+        session.setLastAccessTime(new Date(now));
+        assertTrue(dao.getPossiblyExpiredSessions(now).isEmpty());
+        assertTrue(dao.getPossiblyExpiredSessions(now + 29 * MINUTE).isEmpty());
+        assertEquals(1, dao.getPossiblyExpiredSessions(now + 31 * MINUTE).size());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.codec.Base64;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @since 1.1
+ */
+public class SecureRandomSessionIdGeneratorTest {
+
+    @Test
+    public void testIdFormat() {
+        SecureRandomSessionIdGenerator generator = new SecureRandomSessionIdGenerator();
+        for (int i = 0; i < 1000; i++) {
+            String id = (String) generator.generateId(null);
+            assertEquals(22, id.length());
+            assertTrue(id, id.matches("[A-Za-z0-9_-]+"));
+            //the same bits as standard Base64, apart from the alphabet and padding:
+            byte[] bytes = Base64.decode(id.replace('-', '+').replace('_', '/') + "==");
+            assertEquals(16, bytes.length);
+        }
+        generator.setByteLength(32);
+        assertEquals(43, ((String) generator.generateId(null)).length());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMinimumByteLength() {
+        new SecureRandomSessionIdGenerator().setByteLength(8);
+    }
+
+    @Test
+    public void testUniqueAcrossThreads() throws InterruptedException {
+        final SecureRandomSessionIdGenerator generator = new SecureRandomSessionIdGenerator();
+        final Set<Serializable> ids = Collections.synchronizedSet(new HashSet<Serializable>());
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        ids.add(generator.generateId(null));
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(8000, ids.size());
+    }
+}
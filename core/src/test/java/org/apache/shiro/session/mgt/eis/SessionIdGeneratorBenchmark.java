@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Stand-alone benchmark comparing the throughput of the {@link SessionIdGenerator}s when many threads create
+ * sessions at the same time.  Not run as part of the build; run its {@code main} method with the test classpath,
+ * optionally passing the number of threads (64 by default) and IDs per thread.
+ *
+ * @since 1.1
+ */
+public class SessionIdGeneratorBenchmark {
+
+    private final int threads;
+    private final int operations;
+
+    public SessionIdGeneratorBenchmark(int threads, int operations) {
+        this.threads = threads;
+        this.operations = operations;
+    }
+
+    public void run(final SessionIdGenerator generator) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread() {
+                public void run() {
+                    try {
+                        //let every thread initialize its generator state before timing:
+                        generator.generateId(null);
+                        start.await();
+                        for (int i = 0; i < operations; i++) {
+                            generator.generateId(null);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        long total = (long) threads * operations;
+        System.out.printf("%-40s %,12d ids/s  e.g. %s%n", generator.getClass().getSimpleName(),
+                total * 1000000000L / Math.max(1, elapsed), generator.generateId(null));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+        SessionIdGeneratorBenchmark benchmark = new SessionIdGeneratorBenchmark(threads, operations);
+        for (int round = 0; round < 3; round++) {
+            benchmark.run(new RandomSessionIdGenerator());
+            benchmark.run(new JavaUuidSessionIdGenerator());
+            benchmark.run(new SecureRandomSessionIdGenerator());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @since 1.1
+ */
+public class ShardedMemorySessionDAOTest {
+
+    private static final long MINUTE = 60 * 1000;
+
+    @Test
+    public void testShards() {
+        ShardedMemorySessionDAO dao = new ShardedMemorySessionDAO(3);
+        assertEquals(4, dao.getPartitionCount());
+        Set<Serializable> ids = new HashSet<Serializable>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(dao.create(new SimpleSession()));
+        }
+        assertEquals(200, dao.getActiveSessions().size());
+        Set<Serializable> listed = new HashSet<Serializable>();
+        for (Session session : dao.getActiveSessions()) {
+            listed.add(session.getId());
+        }
+        assertEquals(ids, listed);
+
+        int total = 0;
+        for (int partition = 0; partition < dao.getPartitionCount(); partition++) {
+            int size = dao.getActiveSessions(partition).size();
+            //the sessions are spread over all shards:
+            assertTrue(size > 0);
+            total += size;
+        }
+        assertEquals(200, total);
+
+        for (Serializable id : ids) {
+            Session session = dao.readSession(id);
+            assertEquals(id, session.getId());
+            dao.delete(session);
+        }
+        assertTrue(dao.getActiveSessions().isEmpty());
+        dao.setShardCount(8);
+        assertEquals(8, dao.getPartitionCount());
+    }
+
+    @Test
+    public void testPossiblyExpiredSessionsPerShard() {
+        long now = System.currentTimeMillis();
+        ShardedMemorySessionDAO dao = new ShardedMemorySessionDAO(4);
+        for (int i = 0; i < 40; i++) {
+            SimpleSession session = new SimpleSession();
+            session.setTimeout(30 * MINUTE);
+            session.setLastAccessTime(new Date(now - (i % 2 == 0 ? 31 : 5) * MINUTE));
+            dao.create(session);
+        }
+        assertEquals(20, dao.getPossiblyExpiredSessions(now).size());
+        int total = 0;
+        for (int partition = 0; partition < dao.getPartitionCount(); partition++) {
+            total += dao.getPossiblyExpiredSessions(partition, now).size();
+        }
+        assertEquals(20, total);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testShardCountFixedOnceSessionsExist() {
+        ShardedMemorySessionDAO dao = new ShardedMemorySessionDAO(2);
+        dao.create(new SimpleSession());
+        dao.setShardCount(4);
+    }
+}
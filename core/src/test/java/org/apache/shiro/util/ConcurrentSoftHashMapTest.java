@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.util;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @since 1.1
+ */
+public class ConcurrentSoftHashMapTest {
+
+    @Test
+    public void testMapOperations() {
+        Map<String, Integer> map = new ConcurrentSoftHashMap<String, Integer>(10);
+        assertTrue(map.isEmpty());
+        assertNull(map.put("a", 1));
+        assertEquals(Integer.valueOf(1), map.put("a", 2));
+        map.put("b", 3);
+        assertEquals(2, map.size());
+        assertTrue(map.containsKey("a"));
+        assertTrue(map.containsValue(3));
+        assertEquals(2, map.values().size());
+        assertEquals(2, map.entrySet().size());
+        assertEquals(Integer.valueOf(2), map.remove("a"));
+        assertNull(map.get("a"));
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        final Map<Integer, Integer> map = new ConcurrentSoftHashMap<Integer, Integer>(64);
+        final AtomicInteger mismatches = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            new Thread() {
+                public void run() {
+                    for (int i = 0; i < 20000; i++) {
+                        Integer key = i % 500;
+                        Integer value = map.get(key);
+                        if (value == null) {
+                            map.put(key, key);
+                        } else if (!value.equals(key)) {
+                            mismatches.incrementAndGet();
+                        }
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+        assertEquals(0, mismatches.get());
+        assertTrue(map.size() <= 500);
+    }
+}
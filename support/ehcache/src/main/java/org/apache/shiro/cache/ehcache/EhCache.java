@@ -18,21 +18,34 @@
  */
 package org.apache.shiro.cache.ehcache;
 
+import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
-import org.apache.shiro.cache.Cache;
+import net.sf.ehcache.event.CacheEventListener;
+import org.apache.shiro.cache.BulkCache;
 import org.apache.shiro.cache.CacheException;
+import org.apache.shiro.cache.CacheInvalidationListener;
+import org.apache.shiro.cache.CacheStatistics;
+import org.apache.shiro.cache.DefaultCacheStatistics;
+import org.apache.shiro.cache.InstrumentedCache;
+import org.apache.shiro.cache.InvalidationNotifyingCache;
+import org.apache.shiro.cache.IterableCache;
 import org.apache.shiro.util.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Shiro {@link org.apache.shiro.cache.Cache} implementation that wraps an {@link net.sf.ehcache.Ehcache} instance.
+ * <p/>
+ * Registered {@link CacheInvalidationListener invalidation listeners} are notified through Ehcache's own cache event
+ * notifications, which include changes replicated from other nodes when Ehcache replication is configured.
  *
  * @since 0.2
  */
-public class EhCache<K, V> implements Cache<K, V> {
+public class EhCache<K, V> implements InstrumentedCache<K, V>, BulkCache<K, V>, IterableCache<K, V>,
+        InvalidationNotifyingCache<K, V> {
 
     /**
      * Private internal log instance.
@@ -44,6 +57,18 @@ public class EhCache<K, V> implements Cache<K, V> {
      */
     private net.sf.ehcache.Ehcache cache;
 
+    /**
+     * Shiro-level usage statistics; evictions are taken from Ehcache's own statistics.
+     */
+    private final DefaultCacheStatistics statistics;
+
+    /**
+     * Listeners notified of changes, dispatched to by a single Ehcache event listener registered on first use.
+     */
+    private final List<CacheInvalidationListener<K>> invalidationListeners =
+            new CopyOnWriteArrayList<CacheInvalidationListener<K>>();
+    private CacheEventListener eventListener;
+
     /**
      * Constructs a new EhCache instance with the given cache.
      *
@@ -54,6 +79,20 @@ public class EhCache<K, V> implements Cache<K, V> {
             throw new IllegalArgumentException("Cache argument cannot be null.");
         }
         this.cache = cache;
+        this.statistics = new DefaultCacheStatistics(this) {
+            @Override
+            public long getEvictionCount() {
+                try {
+                    return EhCache.this.cache.getStatistics().getEvictionCount();
+                } catch (Throwable t) {
+                    return 0;
+                }
+            }
+        };
+    }
+
+    net.sf.ehcache.Ehcache getEhcache() {
+        return cache;
     }
 
     /**
@@ -75,8 +114,10 @@ public class EhCache<K, V> implements Cache<K, V> {
                     if (log.isTraceEnabled()) {
                         log.trace("Element for [" + key + "] is null.");
                     }
+                    statistics.recordMiss();
                     return null;
                 } else {
+                    statistics.recordHit();
                     //noinspection unchecked
                     return (V) element.getObjectValue();
                 }
@@ -86,6 +127,15 @@ public class EhCache<K, V> implements Cache<K, V> {
         }
     }
 
+    /**
+     * Returns the value for the given key without counting it as a cache access.
+     */
+    private V peek(K key) {
+        Element element = key != null ? cache.getQuiet(key) : null;
+        //noinspection unchecked
+        return element != null ? (V) element.getObjectValue() : null;
+    }
+
     /**
      * Puts an object into the cache.
      *
@@ -97,9 +147,10 @@ public class EhCache<K, V> implements Cache<K, V> {
             log.trace("Putting object in cache [" + cache.getName() + "] for key [" + key + "]");
         }
         try {
-            V previous = get(key);
+            V previous = peek(key);
             Element element = new Element(key, value);
             cache.put(element);
+            statistics.recordPut();
             return previous;
         } catch (Throwable t) {
             throw new CacheException(t);
@@ -118,7 +169,7 @@ public class EhCache<K, V> implements Cache<K, V> {
             log.trace("Removing object from cache [" + cache.getName() + "] for key [" + key + "]");
         }
         try {
-            V previous = get(key);
+            V previous = peek(key);
             cache.remove(key);
             return previous;
         } catch (Throwable t) {
@@ -126,6 +177,73 @@ public class EhCache<K, V> implements Cache<K, V> {
         }
     }
 
+    /**
+     * Gets the values of the elements matching the given keys, with a single trace message and exception handler
+     * for all of them.
+     *
+     * @param keys the keys of the elements to return.
+     * @return the values found in the cache, keyed by their key.
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys) throws CacheException {
+        if (log.isTraceEnabled()) {
+            log.trace("Getting " + keys.size() + " objects from cache [" + cache.getName() + "]");
+        }
+        try {
+            Map<K, V> values = new HashMap<K, V>(keys.size());
+            for (K key : keys) {
+                Element element = key != null ? cache.get(key) : null;
+                if (element != null) {
+                    //noinspection unchecked
+                    values.put(key, (V) element.getObjectValue());
+                }
+            }
+            statistics.recordHits(values.size());
+            statistics.recordMisses(keys.size() - values.size());
+            return values;
+        } catch (Throwable t) {
+            throw new CacheException(t);
+        }
+    }
+
+    /**
+     * Puts all of the given entries into the cache.  Unlike {@link #put(Object, Object) put}, the previous values
+     * are not looked up.
+     *
+     * @param entries the entries to put into the cache.
+     */
+    public void putAll(Map<? extends K, ? extends V> entries) throws CacheException {
+        if (log.isTraceEnabled()) {
+            log.trace("Putting " + entries.size() + " objects in cache [" + cache.getName() + "]");
+        }
+        try {
+            for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+                cache.put(new Element(entry.getKey(), entry.getValue()));
+            }
+            statistics.recordPuts(entries.size());
+        } catch (Throwable t) {
+            throw new CacheException(t);
+        }
+    }
+
+    /**
+     * Removes the elements matching the given keys.  Unlike {@link #remove(Object) remove}, the previous values
+     * are not looked up.
+     *
+     * @param keys the keys of the elements to remove.
+     */
+    public void removeAll(Collection<? extends K> keys) throws CacheException {
+        if (log.isTraceEnabled()) {
+            log.trace("Removing " + keys.size() + " objects from cache [" + cache.getName() + "]");
+        }
+        try {
+            for (K key : keys) {
+                cache.remove(key);
+            }
+        } catch (Throwable t) {
+            throw new CacheException(t);
+        }
+    }
+
     /**
      * Removes all elements in the cache, but leaves the cache in a useable state.
      */
@@ -169,7 +287,7 @@ public class EhCache<K, V> implements Cache<K, V> {
             if (!CollectionUtils.isEmpty(keys)) {
                 List<V> values = new ArrayList<V>(keys.size());
                 for (K key : keys) {
-                    V value = get(key);
+                    V value = peek(key);
                     if (value != null) {
                         values.add(value);
                     }
@@ -183,6 +301,61 @@ public class EhCache<K, V> implements Cache<K, V> {
         }
     }
 
+    /**
+     * Returns an iterator over the keys of this cache.  The keys are listed by Ehcache itself, which has no key
+     * iterator; unlike {@link #keys()}, they are not copied again into a {@code Set}.
+     *
+     * @return an iterator over the keys of this cache.
+     * @since 1.1
+     */
+    @SuppressWarnings({"unchecked"})
+    public Iterator<K> keyIterator() throws CacheException {
+        try {
+            List<K> keys = cache.getKeys();
+            return Collections.unmodifiableList(keys).iterator();
+        } catch (Throwable t) {
+            throw new CacheException(t);
+        }
+    }
+
+    /**
+     * Returns an iterator over the values of this cache that reads each value only when it is reached, so that the
+     * values are neither copied into a collection nor kept referenced by the iterator.
+     *
+     * @return an iterator over the values of this cache.
+     * @since 1.1
+     */
+    public Iterator<V> valueIterator() throws CacheException {
+        final Iterator<K> keys = keyIterator();
+        return new Iterator<V>() {
+            private V next;
+
+            public boolean hasNext() {
+                try {
+                    while (next == null && keys.hasNext()) {
+                        next = peek(keys.next());
+                    }
+                } catch (Throwable t) {
+                    throw new CacheException(t);
+                }
+                return next != null;
+            }
+
+            public V next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                V value = next;
+                next = null;
+                return value;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
     /**
      * Returns the size (in bytes) that this EhCache is using in memory (RAM), or <code>-1</code> if that
      * number is unknown or cannot be calculated.
@@ -230,6 +403,44 @@ public class EhCache<K, V> implements Cache<K, V> {
         }
     }
 
+    /**
+     * Returns the usage statistics of this cache.  Hits, misses, puts and loads are counted for the operations
+     * performed through this instance, evictions are those reported by Ehcache.
+     *
+     * @return the usage statistics of this cache.
+     * @since 1.1
+     */
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    public void recordLoad(long loadTime) {
+        statistics.recordLoad(loadTime);
+    }
+
+    public void addInvalidationListener(CacheInvalidationListener<K> listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener argument cannot be null.");
+        }
+        synchronized (invalidationListeners) {
+            if (eventListener == null) {
+                eventListener = new InvalidationEventListener();
+                cache.getCacheEventNotificationService().registerListener(eventListener);
+            }
+            invalidationListeners.add(listener);
+        }
+    }
+
+    public void removeInvalidationListener(CacheInvalidationListener<K> listener) {
+        synchronized (invalidationListeners) {
+            invalidationListeners.remove(listener);
+            if (invalidationListeners.isEmpty() && eventListener != null) {
+                cache.getCacheEventNotificationService().unregisterListener(eventListener);
+                eventListener = null;
+            }
+        }
+    }
+
     /**
      * Returns &quot;EhCache [&quot; + cache.getName() + &quot;]&quot;
      *
@@ -238,4 +449,55 @@ public class EhCache<K, V> implements Cache<K, V> {
     public String toString() {
         return "EhCache [" + cache.getName() + "]";
     }
+
+    /**
+     * Ehcache event listener translating Ehcache's cache events into invalidation notifications.
+     */
+    private class InvalidationEventListener implements CacheEventListener {
+
+        @SuppressWarnings({"unchecked"})
+        private void invalidate(Element element) {
+            if (element == null) {
+                return;
+            }
+            K key = (K) element.getObjectKey();
+            for (CacheInvalidationListener<K> listener : invalidationListeners) {
+                listener.onInvalidate(key);
+            }
+        }
+
+        public void notifyElementRemoved(Ehcache ehcache, Element element) {
+            invalidate(element);
+        }
+
+        public void notifyElementPut(Ehcache ehcache, Element element) {
+            invalidate(element);
+        }
+
+        public void notifyElementUpdated(Ehcache ehcache, Element element) {
+            invalidate(element);
+        }
+
+        public void notifyElementExpired(Ehcache ehcache, Element element) {
+            invalidate(element);
+        }
+
+        public void notifyElementEvicted(Ehcache ehcache, Element element) {
+            invalidate(element);
+        }
+
+        public void notifyRemoveAll(Ehcache ehcache) {
+            for (CacheInvalidationListener<K> listener : invalidationListeners) {
+                listener.onClear();
+            }
+        }
+
+        public void dispose() {
+        }
+
+        @Override
+        public Object clone() throws CloneNotSupportedException {
+            throw new CloneNotSupportedException("Invalidation listeners are bound to a single cache.");
+        }
+    }
 }
@@ -20,7 +20,8 @@ package org.apache.shiro.cache.ehcache;
 
 import org.apache.shiro.cache.Cache;
 import org.apache.shiro.cache.CacheException;
-import org.apache.shiro.cache.CacheManager;
+import org.apache.shiro.cache.CacheStatistics;
+import org.apache.shiro.cache.InstrumentedCacheManager;
 import org.apache.shiro.config.ConfigurationException;
 import org.apache.shiro.io.ResourceUtils;
 import org.apache.shiro.util.Destroyable;
@@ -30,6 +31,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Shiro {@code CacheManager} implementation utilizing the Ehcache framework for all cache functionality.
@@ -47,7 +52,7 @@ import java.io.InputStream;
  * @see <a href="http://ehcache.sf.net" target="_top">The Ehcache website</a>
  * @since 0.2
  */
-public class EhCacheManager implements CacheManager, Initializable, Destroyable {
+public class EhCacheManager implements InstrumentedCacheManager, Initializable, Destroyable {
 
     /**
      * This class's private log instance.
@@ -70,6 +75,11 @@ public class EhCacheManager implements CacheManager, Initializable, Destroyable
      */
     private String cacheManagerConfigFile = "classpath:org/apache/shiro/cache/ehcache/ehcache.xml";
 
+    /**
+     * The Shiro cache wrapper of each Ehcache acquired so far, reused so that their statistics accumulate.
+     */
+    private final ConcurrentMap<String, EhCache> caches = new ConcurrentHashMap<String, EhCache>();
+
     /**
      * Default no argument constructor
      */
@@ -170,12 +180,33 @@ public class EhCacheManager implements CacheManager, Initializable, Destroyable
                     log.info("Using existing EHCache named [" + cache.getName() + "]");
                 }
             }
-            return new EhCache<K, V>(cache);
+            EhCache wrapper = caches.get(name);
+            if (wrapper == null || wrapper.getEhcache() != cache) {
+                //first acquisition, or the Ehcache was replaced:
+                wrapper = new EhCache<K, V>(cache);
+                caches.put(name, wrapper);
+            }
+            //noinspection unchecked
+            return wrapper;
         } catch (net.sf.ehcache.CacheException e) {
             throw new CacheException(e);
         }
     }
 
+    /**
+     * Returns the statistics of each cache acquired from this manager so far, keyed by cache name.
+     *
+     * @return the statistics of each cache acquired from this manager so far, keyed by cache name.
+     * @since 1.1
+     */
+    public Map<String, CacheStatistics> getCacheStatistics() {
+        Map<String, CacheStatistics> statistics = new LinkedHashMap<String, CacheStatistics>();
+        for (Map.Entry<String, EhCache> entry : caches.entrySet()) {
+            statistics.put(entry.getKey(), entry.getValue().getStatistics());
+        }
+        return statistics;
+    }
+
     /**
      * Initializes this instance.
      * <p/>
@@ -233,6 +264,7 @@ public class EhCacheManager implements CacheManager, Initializable, Destroyable
      * component to also destroy the CacheManager instance, and it will not attempt to do so.
      */
     public void destroy() {
+        caches.clear();
         if (cacheManagerImplicitlyCreated) {
             try {
                 net.sf.ehcache.CacheManager cacheMgr = getCacheManager();
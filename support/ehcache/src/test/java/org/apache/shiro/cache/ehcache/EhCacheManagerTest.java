@@ -19,11 +19,22 @@
 package org.apache.shiro.cache.ehcache;
 
 import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheStatistics;
+import org.apache.shiro.cache.CacheUtils;
+import org.apache.shiro.cache.NearCache;
+import org.apache.shiro.cache.NearCacheManager;
 import org.apache.shiro.util.LifecycleUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
 import static org.junit.Assert.*;
 
 /**
@@ -75,4 +86,74 @@ public class EhCacheManagerTest {
         assertEquals(value, "world");
     }
 
+    @Test
+    public void testCacheStatistics() {
+        Cache<String, String> cache = cacheManager.getCache("test");
+        cache.put("hello", "world");
+        cache.get("hello");
+        cache.get("missing");
+        //a subsequent acquisition shares the same statistics:
+        cacheManager.getCache("test").get("hello");
+
+        CacheStatistics statistics = cacheManager.getCacheStatistics().get("test");
+        assertNotNull(statistics);
+        assertEquals(2, statistics.getHitCount());
+        assertEquals(1, statistics.getMissCount());
+        assertEquals(1, statistics.getPutCount());
+        assertEquals(1, statistics.getSize());
+    }
+
+    @Test
+    public void testBulkOperations() {
+        Cache<String, String> cache = cacheManager.getCache("bulk");
+        Map<String, String> entries = new HashMap<String, String>();
+        entries.put("a", "1");
+        entries.put("b", "2");
+        entries.put("c", "3");
+        CacheUtils.putAll(cache, entries);
+        assertEquals(3, cache.size());
+        assertEquals(entries, CacheUtils.getAll(cache, Arrays.asList("a", "b", "c", "d")));
+        CacheUtils.removeAll(cache, Arrays.asList("a", "b"));
+        assertEquals(1, cache.size());
+        assertEquals("3", cache.get("c"));
+    }
+
+
+    @Test
+    public void testNearCacheInvalidation() {
+        NearCacheManager nearCacheManager = new NearCacheManager(cacheManager);
+        Cache<String, String> near = nearCacheManager.getCache("test");
+        assertTrue(near instanceof NearCache);
+        near.put("key", "v1");
+        //the first read populates the local tier, the following ones are local hits:
+        assertEquals("v1", near.get("key"));
+        assertEquals("v1", near.get("key"));
+        assertEquals("v1", near.get("key"));
+        assertEquals(2, ((NearCache) near).getStatistics().getHitCount());
+
+        //a change made directly in Ehcache, e.g. replicated from another node, invalidates the near copy:
+        Cache<String, String> backing = cacheManager.getCache("test");
+        backing.put("key", "v2");
+        assertEquals("v2", near.get("key"));
+        backing.clear();
+        assertNull(near.get("key"));
+        LifecycleUtils.destroy(nearCacheManager);
+    }
+
+    @Test
+    public void testIterators() {
+        Cache<String, String> cache = cacheManager.getCache("test");
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        Iterator<String> values = CacheUtils.valueIterator(cache);
+        cache.remove("b");
+        Set<String> seen = new HashSet<String>();
+        while (values.hasNext()) {
+            seen.add(values.next());
+        }
+        //the removed entry is skipped as it is no longer in the cache when it is reached:
+        assertEquals(new HashSet<String>(Arrays.asList("1", "3")), seen);
+        assertEquals(2, CacheUtils.values(cache).size());
+    }
 }
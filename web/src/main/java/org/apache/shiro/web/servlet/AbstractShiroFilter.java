@@ -207,7 +207,10 @@ public abstract class AbstractShiroFilter extends OncePerRequestFilter {
      * If native sessions are not enabled (that is, standard Servlet container sessions are being used) or there is no
      * session ({@code subject.getSession(false) == null}), this method does nothing.
      * <p/>This method implementation merely calls
-     * <code>Session.{@link org.apache.shiro.session.Session#touch() touch}()</code> on the session.
+     * <code>Session.{@link org.apache.shiro.session.Session#touch() touch}()</code> on the session.  To avoid
+     * persisting the session on every request, configure the session manager's
+     * {@link org.apache.shiro.session.mgt.AbstractNativeSessionManager#setSessionTouchThreshold(double)
+     * sessionTouchThreshold}.
      *
      * @param request  incoming request - ignored, but available to subclasses that might wish to override this method
      * @param response outgoing response - ignored, but available to subclasses that might wish to override this method